@@ -16,7 +16,7 @@
  */
 
 import moment from "moment/moment";
-import {Button, Modal, Table} from "antd";
+import {Alert, Button, Modal, Table} from "antd";
 import React from "react";
 
 const ConsumerViewDialog = ({visible, onClose, topic, consumerData, consumerGroupCount, t}) => {
@@ -82,6 +82,9 @@ const ConsumerViewDialog = ({visible, onClose, topic, consumerData, consumerGrou
                             size="small"
                             style={{marginBottom: '12px'}}
                         />
+                        {consumeDetail.errMsg && (
+                            <Alert type="error" showIcon message={consumeDetail.errMsg} style={{marginBottom: '12px'}}/>
+                        )}
                         <Table
                             bordered
                             pagination={false}
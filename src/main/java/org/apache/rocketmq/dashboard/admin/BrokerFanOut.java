@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.admin;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Maps;
+import jakarta.annotation.Resource;
+import org.apache.rocketmq.common.utils.ThreadUtils;
+import org.apache.rocketmq.dashboard.config.CollectExecutorConfig;
+import org.apache.rocketmq.dashboard.util.UserInfoContext;
+import org.apache.rocketmq.dashboard.util.VirtualThreads;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the same admin request to a list of brokers.
+ * <p>
+ * In virtual thread mode (see {@link CollectExecutorConfig#getExecutorMode()}) every broker is called on its own
+ * virtual thread, at most {@link CollectExecutorConfig#getBrokerConcurrency()} requests per broker at a time.
+ * Otherwise the brokers are called one after the other on the caller thread.
+ * <p>
+ * The other fan-outs, whose executors are unbounded in virtual thread mode, send their broker requests through
+ * {@link #invoke(String, BrokerCall)} to share the same per-broker limit.
+ */
+@Component
+public class BrokerFanOut implements DisposableBean {
+
+    @Resource
+    private CollectExecutorConfig collectExecutorConfig;
+
+    private final ConcurrentMap<String/* broker address */, Semaphore> brokerPermits = new ConcurrentHashMap<>();
+
+    private volatile ExecutorService executor;
+
+    @FunctionalInterface
+    public interface BrokerCall<T> {
+        T call(String brokerAddr) throws Exception;
+    }
+
+    /**
+     * @return the result of every broker, in the order of the given addresses
+     * @throws Exception the failure of the first broker that failed, once every call is over
+     */
+    public <T> Map<String, T> invokeAll(List<String> brokerAddrs, BrokerCall<T> call) throws Exception {
+        Map<String, T> results = Maps.newLinkedHashMap();
+        if (brokerAddrs.size() < 2 || !collectExecutorConfig.isVirtualThreadMode()) {
+            for (String brokerAddr : brokerAddrs) {
+                results.put(brokerAddr, call.call(brokerAddr));
+            }
+            return results;
+        }
+        // the user-specific admin pools are looked up from the caller's context
+        Map<String, Object> userContext = UserInfoContext.getAll();
+        Map<String, Future<T>> futures = Maps.newLinkedHashMap();
+        for (String brokerAddr : brokerAddrs) {
+            futures.put(brokerAddr, executor().submit(() -> {
+                Semaphore permits = permits(brokerAddr);
+                permits.acquire();
+                try {
+                    userContext.forEach(UserInfoContext::set);
+                    return call.call(brokerAddr);
+                } finally {
+                    UserInfoContext.clear();
+                    permits.release();
+                }
+            }));
+        }
+        Exception failure = null;
+        for (Map.Entry<String, Future<T>> entry : futures.entrySet()) {
+            try {
+                results.put(entry.getKey(), entry.getValue().get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    Throwables.throwIfInstanceOf(e.getCause(), Error.class);
+                    failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    /**
+     * Send one request of the caller's own fan-out to a broker. In virtual thread mode the request first waits for
+     * a permit of the broker, shared with {@link #invokeAll(List, BrokerCall)}; otherwise the thread pool of the
+     * caller bounds its requests and the call runs at once. The call must not itself go through this class for the
+     * same broker.
+     */
+    public <T> T invoke(String brokerAddr, BrokerCall<T> call) throws Exception {
+        if (!collectExecutorConfig.isVirtualThreadMode()) {
+            return call.call(brokerAddr);
+        }
+        Semaphore permits = permits(brokerAddr);
+        permits.acquire();
+        try {
+            return call.call(brokerAddr);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Semaphore permits(String brokerAddr) {
+        int brokerConcurrency = Math.max(1, collectExecutorConfig.getBrokerConcurrency());
+        return brokerPermits.computeIfAbsent(brokerAddr, key -> new Semaphore(brokerConcurrency));
+    }
+
+    private ExecutorService executor() {
+        if (executor == null) {
+            synchronized (this) {
+                if (executor == null) {
+                    executor = VirtualThreads.newExecutor("BrokerFanOut_");
+                }
+            }
+        }
+        return executor;
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            ThreadUtils.shutdownGracefully(executor, 10L, TimeUnit.SECONDS);
+        }
+    }
+}
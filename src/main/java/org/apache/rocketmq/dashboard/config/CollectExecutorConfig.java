@@ -18,6 +18,9 @@
 package org.apache.rocketmq.dashboard.config;
 
 import lombok.Data;
+import org.apache.rocketmq.dashboard.util.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -28,19 +31,55 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 @Configuration
 @ConfigurationProperties(prefix = "threadpool.config")
 @Data
 public class CollectExecutorConfig {
+    public static final String MODE_PLATFORM = "platform";
+    public static final String MODE_VIRTUAL = "virtual";
+
+    private final static Logger log = LoggerFactory.getLogger(CollectExecutorConfig.class);
+
     private int coreSize = 20;
     private int maxSize = 20;
     private long keepAliveTime = 3000L;
     private int queueSize = 1000;
+    /**
+     * "platform" runs admin fan-out work on the thread pools, "virtual" on one virtual thread per task
+     * when the JVM supports it (Java 21+), falling back to "platform" otherwise
+     */
+    private String executorMode = MODE_PLATFORM;
+    /**
+     * Maximum number of concurrent admin requests sent to one broker in virtual mode
+     */
+    private int brokerConcurrency = 4;
+
+    /**
+     * @return whether fan-out work runs on virtual threads
+     */
+    public boolean isVirtualThreadMode() {
+        return MODE_VIRTUAL.equalsIgnoreCase(executorMode) && VirtualThreads.isSupported();
+    }
+
+    /**
+     * Create the executor of a fan-out: virtual threads in virtual mode, the given pool otherwise.
+     * Virtual executors are unbounded, callers cap their concurrency with semaphores.
+     */
+    public ExecutorService newExecutor(String threadNamePrefix, Supplier<ExecutorService> platformExecutor) {
+        if (MODE_VIRTUAL.equalsIgnoreCase(executorMode)) {
+            if (VirtualThreads.isSupported()) {
+                return VirtualThreads.newExecutor(threadNamePrefix);
+            }
+            log.warn("Virtual threads are not supported by this JVM, {} runs on a thread pool", threadNamePrefix);
+        }
+        return platformExecutor.get();
+    }
 
     @Bean(name = "collectExecutor")
     public ExecutorService collectExecutor(CollectExecutorConfig collectExecutorConfig) {
-        ExecutorService collectExecutor = new ThreadPoolExecutor(
+        return collectExecutorConfig.newExecutor("collectTopicThread_", () -> new ThreadPoolExecutor(
                 collectExecutorConfig.getCoreSize(),
                 collectExecutorConfig.getMaxSize(),
                 collectExecutorConfig.getKeepAliveTime(),
@@ -55,7 +94,6 @@ public class CollectExecutorConfig {
                     }
                 },
                 new ThreadPoolExecutor.DiscardOldestPolicy()
-        );
-        return collectExecutor;
+        ));
     }
 }
@@ -62,6 +62,75 @@ public class RMQConfigure {
     @Getter
     private boolean enableDashBoardCollect;
 
+    /**
+     * How the dashboard collects topic stats: "topic" asks every broker for the stats of every topic and group,
+     * "broker" fetches the consume stats of each master broker once and derives the topic stats from them
+     */
+    private String dashboardCollectMode = "topic";
+
+    /**
+     * Time after its tick by which a topic collect round must be done; topics not started by then are skipped
+     */
+    private long dashboardCollectDeadlineMillis = 50000;
+
+    /**
+     * Time over which the topics of a collect round are spread, hottest first
+     */
+    private long dashboardCollectSpreadMillis = 30000;
+
+    /**
+     * Days the dashboard keeps its per-minute points, zero or less keeps them forever
+     */
+    private int dashboardRawRetentionDays = 7;
+
+    /**
+     * Days the dashboard keeps its 5-minute aggregates, zero or less keeps them forever
+     */
+    private int dashboardFiveMinuteRetentionDays = 90;
+
+    /**
+     * Days the dashboard keeps its 1-hour aggregates, zero or less keeps them forever
+     */
+    private int dashboardHourRetentionDays = 730;
+
+    /**
+     * Number of consumer groups, those with the largest lag, whose lag the dashboard also records per queue;
+     * zero or less records the lag of the groups only
+     */
+    private int dashboardQueueLagGroups = 10;
+
+    /**
+     * How paged message queries find the offsets of the time range in each queue: "binary" searches the offsets by
+     * store timestamp with single-message pulls, "scan" pulls forward and backward from the offsets the broker found
+     */
+    private String messageBoundarySearch = "binary";
+
+    /**
+     * Bytes of the body shown by message lists, zero or less shows whole bodies. The full body of one message
+     * is available from /message/viewMessageBody.query
+     */
+    private int messageBodyPreviewSize = 4096;
+
+    /**
+     * Pull consumers the message queries share per credential and TLS setting
+     */
+    private int messageConsumerPoolSize = 2;
+
+    /**
+     * Time after which an unused pull consumer is shut down
+     */
+    private long messageConsumerIdleTimeoutMillis = 60_000;
+
+    /**
+     * Age after which the stats of a consumer group are refreshed in the background when the group list is read
+     */
+    private long consumerGroupStaleMillis = 60_000;
+
+    /**
+     * Age after which the connections of a consumer group nobody watches or monitors are refreshed in the background
+     */
+    private long consumerConnectionStaleMillis = 300_000;
+
     @Setter
     @Getter
     private boolean loginRequired = false;
@@ -18,6 +18,7 @@ package org.apache.rocketmq.dashboard.controller;
 
 import com.google.common.base.Preconditions;
 import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletResponse;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.rocketmq.dashboard.model.ConnectionInfo;
 import org.apache.rocketmq.dashboard.model.request.ConsumerConfigInfo;
@@ -30,16 +31,23 @@ import org.apache.rocketmq.remoting.protocol.body.ConsumerConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
 @Controller
 @RequestMapping("/consumer")
 @Permission
 public class ConsumerController {
+    private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
     private Logger logger = LoggerFactory.getLogger(ConsumerController.class);
 
     @Resource
@@ -77,6 +85,20 @@ public class ConsumerController {
         return consumerService.resetOffset(resetOffsetRequest);
     }
 
+    @PostMapping("/resetOffset.stream")
+    public void streamResetOffset(HttpServletResponse response,
+                                  @RequestBody ResetOffsetRequest resetOffsetRequest) throws IOException {
+        logger.info("op=look resetOffsetRequest={}", JsonUtil.obj2String(resetOffsetRequest));
+        response.setContentType(NDJSON_CONTENT_TYPE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        OutputStream out = response.getOutputStream();
+        // a reset goes on when the client is gone, so that all groups of the request end up reset
+        consumerService.resetOffset(resetOffsetRequest, stat -> {
+            writeLine(out, stat);
+            return true;
+        });
+    }
+
     @RequestMapping(value = "/skipAccumulate.do", method = {RequestMethod.POST})
     @ResponseBody
     public Object skipAccumulate(@RequestBody ResetOffsetRequest resetOffsetRequest) {
@@ -130,4 +152,18 @@ public class ConsumerController {
                                          @RequestParam boolean jstack) {
         return consumerService.getConsumerRunningInfo(consumerGroup, clientId, jstack);
     }
+
+    private void writeLine(OutputStream out, Object value) {
+        byte[] line = JsonUtil.obj2Byte(value);
+        if (line == null) {
+            return;
+        }
+        try {
+            out.write(line);
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            logger.info("Stop streaming reset results, the client is gone: {}", e.getMessage());
+        }
+    }
 }
@@ -17,6 +17,7 @@
 
 package org.apache.rocketmq.dashboard.controller;
 
+import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import jakarta.annotation.Resource;
 import org.apache.rocketmq.dashboard.permisssion.Permission;
@@ -56,4 +57,24 @@ public class DashboardController {
         return dashboardService.queryTopicCurrentData();
     }
 
+    @RequestMapping(value = "/series.query", method = RequestMethod.GET)
+    @ResponseBody
+    public Object series(@RequestParam String type, @RequestParam String name,
+                         @RequestParam long begin, @RequestParam long end,
+                         @RequestParam(required = false, defaultValue = "1000") int maxPoints) {
+        Preconditions.checkArgument(begin <= end, "begin must not be after end");
+        Preconditions.checkArgument(maxPoints > 0, "maxPoints must be positive");
+        return dashboardService.querySeries(type, name, begin, end, maxPoints);
+    }
+
+    @RequestMapping(value = "/groupLag.query", method = RequestMethod.GET)
+    @ResponseBody
+    public Object groupLag(@RequestParam String consumerGroup,
+                           @RequestParam long begin, @RequestParam long end,
+                           @RequestParam(required = false, defaultValue = "1000") int maxPoints) {
+        Preconditions.checkArgument(begin <= end, "begin must not be after end");
+        Preconditions.checkArgument(maxPoints > 0, "maxPoints must be positive");
+        return dashboardService.queryGroupLag(consumerGroup, begin, end, maxPoints);
+    }
+
 }
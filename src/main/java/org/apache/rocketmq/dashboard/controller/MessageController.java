@@ -18,9 +18,14 @@ package org.apache.rocketmq.dashboard.controller;
 
 import com.google.common.collect.Maps;
 import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.rocketmq.common.Pair;
+import org.apache.rocketmq.dashboard.exception.ServiceException;
+import org.apache.rocketmq.dashboard.model.MessageFilter;
 import org.apache.rocketmq.dashboard.model.MessagePage;
 import org.apache.rocketmq.dashboard.model.MessageView;
+import org.apache.rocketmq.dashboard.model.request.MessageKeyQuery;
 import org.apache.rocketmq.dashboard.model.request.MessageQuery;
 import org.apache.rocketmq.dashboard.permisssion.Permission;
 import org.apache.rocketmq.dashboard.service.MessageService;
@@ -37,13 +42,20 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.PatternSyntaxException;
 
 @Controller
 @RequestMapping("/message")
 @Permission
 public class MessageController {
+    private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
     private Logger logger = LoggerFactory.getLogger(MessageController.class);
     @Resource
     private MessageService messageService;
@@ -58,6 +70,14 @@ public class MessageController {
         return messageViewMap;
     }
 
+    @RequestMapping(value = "/viewMessageBody.query", method = RequestMethod.GET)
+    @ResponseBody
+    public Object viewMessageBody(@RequestParam(required = false) String topic, @RequestParam String msgId,
+                                  @RequestParam(defaultValue = "0") int offset,
+                                  @RequestParam(defaultValue = "0") int length) {
+        return messageService.viewMessageBody(topic, msgId, offset, length);
+    }
+
     @PostMapping("/queryMessagePageByTopic.query")
     @ResponseBody
     public MessagePage queryMessagePageByTopic(@RequestBody MessageQuery query) {
@@ -70,11 +90,90 @@ public class MessageController {
         return messageService.queryMessageByTopicAndKey(topic, key);
     }
 
+    /**
+     * Look up many keys at once, written as newline delimited JSON, one {"key", "messages"} or {"key", "errMsg"}
+     * line per distinct key, in completion order. A key without messages is a line holding only the key.
+     */
+    @PostMapping("/queryMessageByTopicAndKeys.stream")
+    public void streamMessageByTopicAndKeys(HttpServletResponse response,
+                                            @RequestBody MessageKeyQuery query) throws IOException {
+        if (StringUtils.isBlank(query.getTopic())) {
+            throw new ServiceException(-1, "Topic is required");
+        }
+        List<String> keys = query.getKeys() == null ? Collections.emptyList() : query.getKeys();
+        response.setContentType(NDJSON_CONTENT_TYPE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        OutputStream out = response.getOutputStream();
+        messageService.queryMessageByTopicAndKeys(query.getTopic(), keys, result -> writeLine(out, result));
+    }
+
     @RequestMapping(value = "/queryMessageByTopic.query", method = RequestMethod.GET)
     @ResponseBody
     public Object queryMessageByTopic(@RequestParam String topic, @RequestParam long begin,
-                                      @RequestParam long end) {
-        return messageService.queryMessageByTopic(topic, begin, end);
+                                      @RequestParam long end,
+                                      @RequestParam(required = false) String tag,
+                                      @RequestParam(required = false) String key,
+                                      @RequestParam(required = false) String propertyName,
+                                      @RequestParam(required = false) String propertyValue,
+                                      @RequestParam(required = false) String bodyRegex) {
+        MessageFilter filter = messageFilter(tag, key, propertyName, propertyValue, bodyRegex);
+        return messageService.queryMessageByTopic(topic, begin, end, filter);
+    }
+
+    /**
+     * Same scan as queryMessageByTopic.query, written as newline delimited JSON, one message per line, as the
+     * messages are pulled. The result is neither sorted nor limited. If the scan fails after the first message,
+     * the last line is {"errMsg": "..."}.
+     */
+    @RequestMapping(value = "/queryMessageByTopic.stream", method = RequestMethod.GET)
+    public void streamMessageByTopic(HttpServletResponse response,
+                                     @RequestParam String topic, @RequestParam long begin,
+                                     @RequestParam long end,
+                                     @RequestParam(required = false) String tag,
+                                     @RequestParam(required = false) String key,
+                                     @RequestParam(required = false) String propertyName,
+                                     @RequestParam(required = false) String propertyValue,
+                                     @RequestParam(required = false) String bodyRegex) throws IOException {
+        MessageFilter filter = messageFilter(tag, key, propertyName, propertyValue, bodyRegex);
+        response.setContentType(NDJSON_CONTENT_TYPE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        OutputStream out = response.getOutputStream();
+        try {
+            messageService.scanMessageByTopic(topic, begin, end, filter, view -> writeLine(out, view));
+        } catch (RuntimeException e) {
+            logger.error("op=streamMessageByTopic topic={}", topic, e);
+            Map<String, String> error = Maps.newHashMap();
+            error.put("errMsg", e.getMessage());
+            writeLine(out, error);
+        }
+    }
+
+    /**
+     * @return false if the client went away
+     */
+    private boolean writeLine(OutputStream out, Object value) {
+        byte[] line = JsonUtil.obj2Byte(value);
+        if (line == null) {
+            return true;
+        }
+        try {
+            out.write(line);
+            out.write('\n');
+            out.flush();
+            return true;
+        } catch (IOException e) {
+            logger.info("Stop streaming messages, the client is gone: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private MessageFilter messageFilter(String tag, String key, String propertyName, String propertyValue,
+                                        String bodyRegex) {
+        try {
+            return new MessageFilter(tag, key, propertyName, propertyValue, bodyRegex);
+        } catch (PatternSyntaxException e) {
+            throw new ServiceException(-1, "Invalid body regex: " + e.getDescription());
+        }
     }
 
     @RequestMapping(value = "/consumeMessageDirectly.do", method = RequestMethod.POST)
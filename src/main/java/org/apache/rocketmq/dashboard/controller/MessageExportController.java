@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.controller;
+
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.rocketmq.dashboard.model.MessageExportJob;
+import org.apache.rocketmq.dashboard.model.request.MessageExportRequest;
+import org.apache.rocketmq.dashboard.permisssion.Permission;
+import org.apache.rocketmq.dashboard.service.MessageExportService;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+@Controller
+@RequestMapping("/messageExport")
+@Permission
+public class MessageExportController {
+
+    @Resource
+    private MessageExportService messageExportService;
+
+    @PostMapping(value = "/create.do")
+    @ResponseBody
+    public Object create(@RequestBody MessageExportRequest request) {
+        return messageExportService.createJob(request);
+    }
+
+    @GetMapping(value = "/list.query")
+    @ResponseBody
+    public Object list() {
+        return messageExportService.listJobs();
+    }
+
+    @GetMapping(value = "/detail.query")
+    @ResponseBody
+    public Object detail(@RequestParam String jobId) {
+        return messageExportService.getJob(jobId);
+    }
+
+    @PostMapping(value = "/resume.do")
+    @ResponseBody
+    public Object resume(@RequestParam String jobId) {
+        return messageExportService.resumeJob(jobId);
+    }
+
+    @PostMapping(value = "/cancel.do")
+    @ResponseBody
+    public Object cancel(@RequestParam String jobId) {
+        return messageExportService.cancelJob(jobId);
+    }
+
+    @PostMapping(value = "/delete.do")
+    @ResponseBody
+    public Object delete(@RequestParam String jobId) {
+        messageExportService.deleteJob(jobId);
+        return true;
+    }
+
+    /**
+     * Download the export file up to its last checkpoint, which is a complete compressed stream even while the job
+     * is still running.
+     */
+    @GetMapping(value = "/download.do")
+    public void download(HttpServletResponse response, @RequestParam String jobId) throws IOException {
+        MessageExportJob job = messageExportService.getJob(jobId);
+        long remaining = job.getFileSize();
+        response.setContentType("application/octet-stream");
+        response.setHeader("Content-Disposition", "attachment;filename=" + job.getTopic() + "-" + job.getFileName());
+        response.setContentLengthLong(remaining);
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(messageExportService.getJobFile(jobId).toPath())) {
+            OutputStream out = response.getOutputStream();
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    break;
+                }
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+            out.flush();
+        }
+    }
+}
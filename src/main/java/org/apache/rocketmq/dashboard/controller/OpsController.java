@@ -21,6 +21,7 @@ import jakarta.annotation.Resource;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.rocketmq.dashboard.permisssion.Permission;
 import org.apache.rocketmq.dashboard.service.OpsService;
+import org.apache.rocketmq.dashboard.support.AutoCloseConsumerWrapper;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
@@ -35,6 +36,9 @@ public class OpsController {
     @Resource
     private OpsService opsService;
 
+    @Resource
+    private AutoCloseConsumerWrapper autoCloseConsumerWrapper;
+
     @RequestMapping(value = "/homePage.query", method = RequestMethod.GET)
     @ResponseBody
     public Object homePage() {
@@ -70,6 +74,12 @@ public class OpsController {
         return opsService.rocketMqStatusCheck();
     }
 
+    @RequestMapping(value = "/messageConsumerPool.query", method = RequestMethod.GET)
+    @ResponseBody
+    public Object messageConsumerPool() {
+        return autoCloseConsumerWrapper.getStats();
+    }
+
     @RequestMapping(value = "/updateUseTLS.do", method = RequestMethod.POST)
     @ResponseBody
     public Object updateUseTLS(@RequestParam String useTLS) {
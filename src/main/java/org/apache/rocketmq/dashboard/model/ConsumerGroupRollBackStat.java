@@ -22,9 +22,11 @@ import org.apache.rocketmq.remoting.protocol.admin.RollbackStats;
 import java.util.List;
 
 public class ConsumerGroupRollBackStat {
+    private String consumerGroup;
     private boolean status;
     private String errMsg;
     private List<RollbackStats> rollbackStatsList = Lists.newArrayList();
+    private long costMillis;
 
     public ConsumerGroupRollBackStat(boolean status) {
         this.status = status;
@@ -35,6 +37,14 @@ public class ConsumerGroupRollBackStat {
         this.errMsg = errMsg;
     }
 
+    public String getConsumerGroup() {
+        return consumerGroup;
+    }
+
+    public void setConsumerGroup(String consumerGroup) {
+        this.consumerGroup = consumerGroup;
+    }
+
     public String getErrMsg() {
         return errMsg;
     }
@@ -58,4 +68,12 @@ public class ConsumerGroupRollBackStat {
     public void setRollbackStatsList(List<RollbackStats> rollbackStatsList) {
         this.rollbackStatsList = rollbackStatsList;
     }
+
+    public long getCostMillis() {
+        return costMillis;
+    }
+
+    public void setCostMillis(long costMillis) {
+        this.costMillis = costMillis;
+    }
 }
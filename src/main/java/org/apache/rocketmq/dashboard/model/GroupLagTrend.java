@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.model;
+
+import java.util.List;
+
+public class GroupLagTrend {
+    private String consumerGroup;
+    /**
+     * latest collected lag, -1 if none was collected
+     */
+    private long lag;
+    private double consumeTps;
+    /**
+     * messages the lag shrinks by per second over the last minutes, negative while it grows
+     */
+    private double drainTps;
+    /**
+     * estimated time until the lag is consumed at drainTps, -1 if it does not shrink
+     */
+    private long timeToDrainMillis;
+    /**
+     * lag and consume tps of the group over the queried range
+     */
+    private DashboardSeries series;
+    /**
+     * series of the queues whose lag is recorded, group@topic@brokerName@queueId, to query with type queue
+     */
+    private List<String> queueSeries;
+
+    public String getConsumerGroup() {
+        return consumerGroup;
+    }
+
+    public void setConsumerGroup(String consumerGroup) {
+        this.consumerGroup = consumerGroup;
+    }
+
+    public long getLag() {
+        return lag;
+    }
+
+    public void setLag(long lag) {
+        this.lag = lag;
+    }
+
+    public double getConsumeTps() {
+        return consumeTps;
+    }
+
+    public void setConsumeTps(double consumeTps) {
+        this.consumeTps = consumeTps;
+    }
+
+    public double getDrainTps() {
+        return drainTps;
+    }
+
+    public void setDrainTps(double drainTps) {
+        this.drainTps = drainTps;
+    }
+
+    public long getTimeToDrainMillis() {
+        return timeToDrainMillis;
+    }
+
+    public void setTimeToDrainMillis(long timeToDrainMillis) {
+        this.timeToDrainMillis = timeToDrainMillis;
+    }
+
+    public DashboardSeries getSeries() {
+        return series;
+    }
+
+    public void setSeries(DashboardSeries series) {
+        this.series = series;
+    }
+
+    public List<String> getQueueSeries() {
+        return queueSeries;
+    }
+
+    public void setQueueSeries(List<String> queueSeries) {
+        this.queueSeries = queueSeries;
+    }
+}
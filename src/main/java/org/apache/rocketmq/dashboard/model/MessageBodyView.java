@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.model;
+
+/**
+ * A byte range of the body of one message, decoded as UTF-8. The range is aligned to whole characters, so
+ * offset and length may differ a little from the requested ones; the next range starts at offset + length.
+ */
+public class MessageBodyView {
+
+    private String msgId;
+
+    /**
+     * Size in bytes of the whole body
+     */
+    private int bodyLength;
+
+    private int offset;
+
+    private int length;
+
+    private String body;
+
+    public MessageBodyView() {
+    }
+
+    public MessageBodyView(String msgId, int bodyLength, int offset, int length, String body) {
+        this.msgId = msgId;
+        this.bodyLength = bodyLength;
+        this.offset = offset;
+        this.length = length;
+        this.body = body;
+    }
+
+    public String getMsgId() {
+        return msgId;
+    }
+
+    public void setMsgId(String msgId) {
+        this.msgId = msgId;
+    }
+
+    public int getBodyLength() {
+        return bodyLength;
+    }
+
+    public void setBodyLength(int bodyLength) {
+        this.bodyLength = bodyLength;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public void setOffset(int offset) {
+        this.offset = offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public void setLength(int length) {
+        this.length = length;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * State of a message export job, persisted at every checkpoint of its file so the job can resume after a failure
+ * or a restart.
+ */
+@Data
+public class MessageExportJob {
+
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_PAUSED = "PAUSED";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+    public static final String STATUS_CANCELLED = "CANCELLED";
+
+    private String jobId;
+
+    private String topic;
+
+    /**
+     * Store time range of the export, null when the queue ranges were given
+     */
+    private Long begin;
+
+    private Long end;
+
+    private String format;
+
+    private String compression;
+
+    private String status;
+
+    /**
+     * Null until the time range is resolved to queue offsets
+     */
+    private List<MessageExportQueue> queues;
+
+    /**
+     * Number of messages in the queue ranges
+     */
+    private long totalCount;
+
+    private long exportedCount;
+
+    private String fileName;
+
+    /**
+     * Bytes of the file up to the last checkpoint, a valid compressed stream that can be downloaded
+     */
+    private long fileSize;
+
+    private String errMsg;
+
+    private long createTime;
+
+    private long updateTime;
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Offset range of one queue in a message export, with the offset the export has reached.
+ */
+@Data
+@NoArgsConstructor
+public class MessageExportQueue {
+
+    private String brokerName;
+
+    private int queueId;
+
+    private long startOffset;
+
+    /**
+     * Offset following the last message to export
+     */
+    private long endOffset;
+
+    /**
+     * Offset of the next message to export, as of the last checkpoint of the export file
+     */
+    private long nextOffset;
+
+    public MessageExportQueue(String brokerName, int queueId, long startOffset, long endOffset) {
+        this.brokerName = brokerName;
+        this.queueId = queueId;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.nextOffset = startOffset;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.model;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.rocketmq.common.message.MessageConst;
+import org.apache.rocketmq.common.message.MessageExt;
+
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+/**
+ * Conditions a message of a topic scan must meet. The tag expression is evaluated by the broker while pulling,
+ * the other conditions on every pulled message; an empty condition matches every message.
+ */
+public class MessageFilter {
+
+    public static final MessageFilter ALL = new MessageFilter(null, null, null, null, null);
+
+    /**
+     * Tag expression, e.g. "TagA || TagB"
+     */
+    private final String tags;
+
+    private final String key;
+
+    private final String propertyName;
+
+    private final String propertyValue;
+
+    private final Pattern bodyPattern;
+
+    /**
+     * @param bodyRegex regular expression searched in the UTF-8 decoded body
+     * @throws java.util.regex.PatternSyntaxException if bodyRegex is not a valid regular expression
+     */
+    public MessageFilter(String tags, String key, String propertyName, String propertyValue, String bodyRegex) {
+        this.tags = StringUtils.trimToNull(tags);
+        this.key = StringUtils.trimToNull(key);
+        this.propertyName = StringUtils.trimToNull(propertyName);
+        this.propertyValue = propertyValue;
+        this.bodyPattern = StringUtils.isEmpty(bodyRegex) ? null : Pattern.compile(bodyRegex);
+    }
+
+    /**
+     * @return the expression to pull with
+     */
+    public String getSubExpression() {
+        return tags == null ? "*" : tags;
+    }
+
+    /**
+     * Evaluate the conditions that are not part of the sub expression, cheapest first.
+     */
+    public boolean matches(MessageExt messageExt) {
+        if (key != null && !containsKey(messageExt.getKeys())) {
+            return false;
+        }
+        if (propertyName != null) {
+            String value = messageExt.getProperty(propertyName);
+            if (value == null || propertyValue != null && !propertyValue.equals(value)) {
+                return false;
+            }
+        }
+        if (bodyPattern != null) {
+            byte[] body = messageExt.getBody();
+            return body != null && bodyPattern.matcher(new String(body, StandardCharsets.UTF_8)).find();
+        }
+        return true;
+    }
+
+    private boolean containsKey(String keys) {
+        if (keys == null) {
+            return false;
+        }
+        for (String k : keys.split(MessageConst.KEY_SEPARATOR)) {
+            if (key.equals(k)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "MessageFilter{" +
+                "tags='" + tags + '\'' +
+                ", key='" + key + '\'' +
+                ", propertyName='" + propertyName + '\'' +
+                ", propertyValue='" + propertyValue + '\'' +
+                ", bodyPattern=" + bodyPattern +
+                '}';
+    }
+}
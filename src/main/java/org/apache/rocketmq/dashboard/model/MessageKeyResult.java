@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * The messages found for one key of a bulk key lookup. A failed lookup has no messages and an error message.
+ */
+@Data
+@NoArgsConstructor
+public class MessageKeyResult {
+
+    private String key;
+
+    private List<MessageView> messages;
+
+    private String errMsg;
+
+    public MessageKeyResult(String key, List<MessageView> messages, String errMsg) {
+        this.key = key;
+        this.messages = messages;
+        this.errMsg = errMsg;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Position reached by a paged message query: the offset range of the query in every queue, with the offsets of
+ * the last page served, so the following page continues from there.
+ */
+public class MessagePageCursor {
+    /**
+     * zero-based number of the page whose offsets are held by queueOffsetInfos
+     */
+    private int pageNum;
+    private int pageSize;
+    /**
+     * index of the queue the next page starts with
+     */
+    private int nextQueue;
+    private List<QueueOffsetInfo> queueOffsetInfos;
+
+    public MessagePageCursor() {
+    }
+
+    public MessagePageCursor(int pageNum, int pageSize, int nextQueue, List<QueueOffsetInfo> queueOffsetInfos) {
+        this.pageNum = pageNum;
+        this.pageSize = pageSize;
+        this.nextQueue = nextQueue;
+        this.queueOffsetInfos = queueOffsetInfos;
+    }
+
+    public int getPageNum() {
+        return pageNum;
+    }
+
+    public void setPageNum(int pageNum) {
+        this.pageNum = pageNum;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public int getNextQueue() {
+        return nextQueue;
+    }
+
+    public void setNextQueue(int nextQueue) {
+        this.nextQueue = nextQueue;
+    }
+
+    public List<QueueOffsetInfo> getQueueOffsetInfos() {
+        return queueOffsetInfos;
+    }
+
+    public void setQueueOffsetInfos(List<QueueOffsetInfo> queueOffsetInfos) {
+        this.queueOffsetInfos = queueOffsetInfos;
+    }
+
+    /**
+     * @return a copy of the queue offsets, which page queries move
+     */
+    public List<QueueOffsetInfo> copyQueueOffsetInfos() {
+        List<QueueOffsetInfo> copies = new ArrayList<>(queueOffsetInfos.size());
+        for (QueueOffsetInfo queueOffsetInfo : queueOffsetInfos) {
+            copies.add(queueOffsetInfo.copy());
+        }
+        return copies;
+    }
+
+    @Override
+    public String toString() {
+        return "MessagePageCursor{" +
+                "pageNum=" + pageNum +
+                ", pageSize=" + pageSize +
+                ", nextQueue=" + nextQueue +
+                ", queueOffsetInfos=" + queueOffsetInfos +
+                '}';
+    }
+}
@@ -23,12 +23,22 @@ import java.util.List;
 public class MessagePageTask {
     private Page<MessageView> page;
     private List<QueueOffsetInfo> queueOffsetInfos;
+    /**
+     * index of the queue the page after this one starts with
+     */
+    private int nextQueue;
 
     public MessagePageTask(Page<MessageView> page, List<QueueOffsetInfo> queueOffsetInfos) {
         this.page = page;
         this.queueOffsetInfos = queueOffsetInfos;
     }
 
+    public MessagePageTask(Page<MessageView> page, List<QueueOffsetInfo> queueOffsetInfos, int nextQueue) {
+        this.page = page;
+        this.queueOffsetInfos = queueOffsetInfos;
+        this.nextQueue = nextQueue;
+    }
+
     public Page<MessageView> getPage() {
         return page;
     }
@@ -45,11 +55,20 @@ public class MessagePageTask {
         this.queueOffsetInfos = queueOffsetInfos;
     }
 
+    public int getNextQueue() {
+        return nextQueue;
+    }
+
+    public void setNextQueue(int nextQueue) {
+        this.nextQueue = nextQueue;
+    }
+
     @Override
     public String toString() {
         return "MessagePageTask{" +
                 "page=" + page +
                 ", queueOffsetInfos=" + queueOffsetInfos +
+                ", nextQueue=" + nextQueue +
                 '}';
     }
 }
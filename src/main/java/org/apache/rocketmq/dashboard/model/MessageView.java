@@ -18,7 +18,6 @@ package org.apache.rocketmq.dashboard.model;
 
 import com.google.common.base.Charsets;
 import org.apache.rocketmq.common.message.MessageExt;
-import org.springframework.beans.BeanUtils;
 
 import java.net.SocketAddress;
 import java.util.Map;
@@ -55,15 +54,77 @@ public class MessageView {
      * from Message
      **/
 
+    /**
+     * Size in bytes of the whole body
+     */
+    private int bodyLength;
+
+    /**
+     * Whether messageBody only holds the start of the body
+     */
+    private boolean bodyTruncated;
+
     public static MessageView fromMessageExt(MessageExt messageExt) {
+        return fromMessageExt(messageExt, 0);
+    }
+
+    /**
+     * @param bodyPreviewSize maximum bytes of the body to decode, zero or less decodes the whole body
+     */
+    public static MessageView fromMessageExt(MessageExt messageExt, int bodyPreviewSize) {
         MessageView messageView = new MessageView();
-        BeanUtils.copyProperties(messageExt, messageView);
-        if (messageExt.getBody() != null) {
-            messageView.setMessageBody(new String(messageExt.getBody(), Charsets.UTF_8));
+        messageView.setQueueId(messageExt.getQueueId());
+        messageView.setStoreSize(messageExt.getStoreSize());
+        messageView.setQueueOffset(messageExt.getQueueOffset());
+        messageView.setSysFlag(messageExt.getSysFlag());
+        messageView.setBornTimestamp(messageExt.getBornTimestamp());
+        messageView.setBornHost(messageExt.getBornHost());
+        messageView.setStoreTimestamp(messageExt.getStoreTimestamp());
+        messageView.setStoreHost(messageExt.getStoreHost());
+        messageView.setMsgId(messageExt.getMsgId());
+        messageView.setCommitLogOffset(messageExt.getCommitLogOffset());
+        messageView.setBodyCRC(messageExt.getBodyCRC());
+        messageView.setReconsumeTimes(messageExt.getReconsumeTimes());
+        messageView.setPreparedTransactionOffset(messageExt.getPreparedTransactionOffset());
+        messageView.setTopic(messageExt.getTopic());
+        messageView.setFlag(messageExt.getFlag());
+        messageView.setProperties(messageExt.getProperties());
+        byte[] body = messageExt.getBody();
+        if (body != null) {
+            messageView.setBodyLength(body.length);
+            if (bodyPreviewSize > 0 && body.length > bodyPreviewSize) {
+                messageView.setMessageBody(decodeBody(body, 0, bodyPreviewSize));
+                messageView.setBodyTruncated(true);
+            } else {
+                messageView.setMessageBody(new String(body, Charsets.UTF_8));
+            }
         }
         return messageView;
     }
 
+    /**
+     * Decode at most length bytes of a UTF-8 body from offset, leaving out the character cut by the end of the range.
+     */
+    public static String decodeBody(byte[] body, int offset, int length) {
+        int end = utf8Boundary(body, offset + length);
+        return new String(body, offset, Math.max(0, end - offset), Charsets.UTF_8);
+    }
+
+    /**
+     * @return the greatest index not after the given one that does not fall inside a multi-byte character
+     */
+    public static int utf8Boundary(byte[] body, int index) {
+        if (index >= body.length) {
+            return body.length;
+        }
+        int boundary = Math.max(0, index);
+        // continuation bytes look like 10xxxxxx
+        while (boundary > 0 && (body[boundary] & 0xC0) == 0x80) {
+            boundary--;
+        }
+        return boundary;
+    }
+
     public String getTopic() {
         return topic;
     }
@@ -199,4 +260,20 @@ public class MessageView {
     public void setMessageBody(String messageBody) {
         this.messageBody = messageBody;
     }
+
+    public int getBodyLength() {
+        return bodyLength;
+    }
+
+    public void setBodyLength(int bodyLength) {
+        this.bodyLength = bodyLength;
+    }
+
+    public boolean isBodyTruncated() {
+        return bodyTruncated;
+    }
+
+    public void setBodyTruncated(boolean bodyTruncated) {
+        this.bodyTruncated = bodyTruncated;
+    }
 }
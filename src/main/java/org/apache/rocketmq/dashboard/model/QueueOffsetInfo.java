@@ -101,4 +101,8 @@ public class QueueOffsetInfo {
         this.startOffset += size;
         this.endOffset += size;
     }
+
+    public QueueOffsetInfo copy() {
+        return new QueueOffsetInfo(idx, start, end, startOffset, endOffset, messageQueues);
+    }
 }
@@ -18,7 +18,6 @@ package org.apache.rocketmq.dashboard.model;
 
 import org.apache.rocketmq.common.message.MessageQueue;
 import org.apache.rocketmq.remoting.protocol.admin.OffsetWrapper;
-import org.springframework.beans.BeanUtils;
 
 public class QueueStatInfo {
     private String brokerName;
@@ -30,8 +29,11 @@ public class QueueStatInfo {
 
     public static QueueStatInfo fromOffsetTableEntry(MessageQueue key, OffsetWrapper value) {
         QueueStatInfo queueStatInfo = new QueueStatInfo();
-        BeanUtils.copyProperties(key, queueStatInfo);
-        BeanUtils.copyProperties(value, queueStatInfo);
+        queueStatInfo.setBrokerName(key.getBrokerName());
+        queueStatInfo.setQueueId(key.getQueueId());
+        queueStatInfo.setBrokerOffset(value.getBrokerOffset());
+        queueStatInfo.setConsumerOffset(value.getConsumerOffset());
+        queueStatInfo.setLastTimestamp(value.getLastTimestamp());
         return queueStatInfo;
     }
 
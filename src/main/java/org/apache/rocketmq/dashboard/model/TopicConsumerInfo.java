@@ -25,6 +25,14 @@ public class TopicConsumerInfo {
     private long diffTotal;
     private long lastTimestamp;
     private List<QueueStatInfo> queueStatInfoList = Lists.newArrayList();
+    /**
+     * Why the consumption of the group could not be read, null if it was
+     */
+    private String errMsg;
+    /**
+     * Time spent reading the consumption of the group
+     */
+    private long costMillis;
 
     public TopicConsumerInfo(String topic) {
         this.topic = topic;
@@ -54,6 +62,22 @@ public class TopicConsumerInfo {
         return lastTimestamp;
     }
 
+    public String getErrMsg() {
+        return errMsg;
+    }
+
+    public void setErrMsg(String errMsg) {
+        this.errMsg = errMsg;
+    }
+
+    public long getCostMillis() {
+        return costMillis;
+    }
+
+    public void setCostMillis(long costMillis) {
+        this.costMillis = costMillis;
+    }
+
     public void appendQueueStatInfo(QueueStatInfo queueStatInfo) {
         queueStatInfoList.add(queueStatInfo);
         diffTotal = diffTotal + (queueStatInfo.getBrokerOffset() - queueStatInfo.getConsumerOffset());
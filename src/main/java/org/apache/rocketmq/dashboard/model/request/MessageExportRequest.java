@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.model.request;
+
+import lombok.Data;
+import org.apache.rocketmq.dashboard.model.MessageExportQueue;
+
+import java.util.List;
+
+@Data
+public class MessageExportRequest {
+
+    private String topic;
+
+    /**
+     * Store time range to export, ignored when queues are given
+     */
+    private Long begin;
+
+    private Long end;
+
+    /**
+     * Offset ranges to export, startOffset inclusive and endOffset exclusive
+     */
+    private List<MessageExportQueue> queues;
+
+    /**
+     * "ndjson" (default) or "binary"
+     */
+    private String format;
+
+    /**
+     * "gzip" (default) or "zstd"
+     */
+    private String compression;
+}
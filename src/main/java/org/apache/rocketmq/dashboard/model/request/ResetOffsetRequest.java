@@ -23,6 +23,10 @@ public class ResetOffsetRequest {
     private String topic;
     private long resetTime;
     private boolean force;
+    /**
+     * Only report the offsets the groups would be reset to
+     */
+    private boolean dryRun;
 
     public List<String> getConsumerGroupList() {
         return consumerGroupList;
@@ -55,4 +59,12 @@ public class ResetOffsetRequest {
     public void setForce(boolean force) {
         this.force = force;
     }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
 }
@@ -29,6 +29,7 @@ import org.apache.rocketmq.remoting.protocol.body.ConsumerRunningInfo;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 
 public interface ConsumerService {
     List<GroupConsumeInfo> queryGroupList(boolean skipSysGroup, String address);
@@ -44,6 +45,16 @@ public interface ConsumerService {
 
     Map<String /*consumerGroup*/, ConsumerGroupRollBackStat> resetOffset(ResetOffsetRequest resetOffsetRequest);
 
+    /**
+     * Reset the offsets of the groups of a request. The groups are reset concurrently, at most
+     * {@code brokerConcurrency} at a time, and the result of every group is handed to the consumer on the calling
+     * thread as soon as it is done. The brokers reset the groups with online consumers, resolving the offsets of
+     * the queues for each group. A dry run reports the offsets resolved once for all groups, which are also written
+     * directly for the groups without online consumer, in the queues they already have an offset for; the brokers
+     * may resolve slightly different offsets for the online groups. Stops when the consumer returns false.
+     */
+    void resetOffset(ResetOffsetRequest resetOffsetRequest, Predicate<ConsumerGroupRollBackStat> consumer);
+
     List<ConsumerConfigInfo> examineSubscriptionGroupConfig(String group);
 
     boolean deleteSubGroup(DeleteSubGroupRequest deleteSubGroupRequest);
@@ -17,21 +17,71 @@
 package org.apache.rocketmq.dashboard.service;
 
 import com.google.common.cache.LoadingCache;
+import org.apache.rocketmq.dashboard.store.RollupTier;
+import org.apache.rocketmq.dashboard.store.SeriesBuffer;
+import org.apache.rocketmq.dashboard.store.SeriesSchema;
+import org.apache.rocketmq.dashboard.store.SeriesView;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
 public interface DashboardCollectService {
     // todo just move the task to org.apache.rocketmq.dashboard.task.DashboardCollectTask
     // the code can be reconstruct
-    LoadingCache<String, List<String>> getBrokerMap();
+    LoadingCache<String, SeriesBuffer> getBrokerMap();
 
-    LoadingCache<String, List<String>> getTopicMap();
+    LoadingCache<String, SeriesBuffer> getTopicMap();
+
+    /**
+     * @return the lag and consume tps of every consumer group, by group name
+     */
+    LoadingCache<String, SeriesBuffer> getGroupMap();
+
+    /**
+     * @return the lag of the queues of the groups with the largest lag, by group@topic@brokerName@queueId
+     */
+    LoadingCache<String, SeriesBuffer> getQueueMap();
 
     Map<String, List<String>> jsonDataFile2map(File file);
 
     Map<String, List<String>> getBrokerCache(String date);
 
     Map<String, List<String>> getTopicCache(String date);
+
+    /**
+     * @param date format yyyy-MM-dd
+     * @return the persisted points of every series of the schema on that day
+     */
+    Map<String, SeriesView> getSeries(String date, SeriesSchema schema);
+
+    /**
+     * @param date format yyyy-MM-dd
+     * @return the persisted points of one series on that day, empty if there are none
+     */
+    SeriesView getSeries(String date, SeriesSchema schema, String series);
+
+    /**
+     * Append the points collected since the previous flush to the time series store.
+     */
+    void flush() throws IOException;
+
+    /**
+     * @return the finest tier still retaining {@code begin} whose resolution keeps [begin, end] within
+     * {@code maxPoints} buckets, or the coarsest tier if none does
+     */
+    RollupTier selectTier(long begin, long end, int maxPoints);
+
+    /**
+     * @param schema a collected schema
+     * @return the buckets of one series stamped within [begin, end] at the resolution of the tier, in the
+     * rollup schema of {@code schema}
+     */
+    SeriesView querySeries(RollupTier tier, SeriesSchema schema, String series, long begin, long end);
+
+    /**
+     * Aggregate the finished days into the rollup tiers and delete the days past the retention of each tier.
+     */
+    void compact() throws IOException;
 }
@@ -17,6 +17,9 @@
 
 package org.apache.rocketmq.dashboard.service;
 
+import org.apache.rocketmq.dashboard.model.DashboardSeries;
+import org.apache.rocketmq.dashboard.model.GroupLagTrend;
+
 import java.util.List;
 import java.util.Map;
 
@@ -39,4 +42,23 @@ public interface DashboardService {
 
     List<String> queryTopicCurrentData();
 
+    /**
+     * @param type      broker or topic
+     * @param name      brokerName:brokerId or topic name
+     * @param begin     epoch millis, inclusive
+     * @param end       epoch millis, inclusive
+     * @param maxPoints upper bound of the returned rows, used to pick the resolution
+     */
+    DashboardSeries querySeries(String type, String name, long begin, long end, int maxPoints);
+
+    /**
+     * Read from the collected points only, without asking the brokers.
+     *
+     * @param begin     epoch millis, inclusive
+     * @param end       epoch millis, inclusive
+     * @param maxPoints upper bound of the returned rows, used to pick the resolution
+     * @return the lag trend of a consumer group, with its latest lag and the estimated time to drain it
+     */
+    GroupLagTrend queryGroupLag(String consumerGroup, long begin, long end, int maxPoints);
+
 }
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.service;
+
+import org.apache.rocketmq.dashboard.model.MessageExportJob;
+import org.apache.rocketmq.dashboard.model.request.MessageExportRequest;
+
+import java.io.File;
+import java.util.List;
+
+public interface MessageExportService {
+
+    /**
+     * Start exporting the messages of a topic stored in a time range, or of queue offset ranges, to a compressed
+     * file under the dashboard data path.
+     */
+    MessageExportJob createJob(MessageExportRequest request);
+
+    /**
+     * @return every job, latest first
+     */
+    List<MessageExportJob> listJobs();
+
+    MessageExportJob getJob(String jobId);
+
+    /**
+     * Continue a paused or failed job from its last checkpoint.
+     */
+    MessageExportJob resumeJob(String jobId);
+
+    MessageExportJob cancelJob(String jobId);
+
+    /**
+     * Remove a job that is not running, with its file.
+     */
+    void deleteJob(String jobId);
+
+    /**
+     * @return the export file of a job, valid up to {@link MessageExportJob#getFileSize()}
+     */
+    File getJobFile(String jobId);
+}
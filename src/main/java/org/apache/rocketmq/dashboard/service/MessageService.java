@@ -17,15 +17,24 @@
 
 package org.apache.rocketmq.dashboard.service;
 
+import org.apache.rocketmq.client.consumer.PullResult;
 import org.apache.rocketmq.common.Pair;
 import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.dashboard.model.MessageBodyView;
+import org.apache.rocketmq.dashboard.model.MessageFilter;
+import org.apache.rocketmq.dashboard.model.MessageKeyResult;
 import org.apache.rocketmq.dashboard.model.MessagePage;
 import org.apache.rocketmq.dashboard.model.MessageView;
+import org.apache.rocketmq.dashboard.model.QueueOffsetInfo;
 import org.apache.rocketmq.dashboard.model.request.MessageQuery;
 import org.apache.rocketmq.remoting.protocol.body.ConsumeMessageDirectlyResult;
 import org.apache.rocketmq.tools.admin.api.MessageTrack;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.BiPredicate;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
 
 public interface MessageService {
     /**
@@ -36,6 +45,20 @@ public interface MessageService {
 
     List<MessageView> queryMessageByTopicAndKey(final String topic, final String key);
 
+    /**
+     * Look up many keys of a topic at once. Repeated and blank keys are looked up once or not at all. The lookups
+     * run concurrently, at most {@code brokerConcurrency} at a time, and every result is handed to the consumer on
+     * the calling thread as soon as its lookup is done, so the keys come back in completion order. A failed lookup
+     * yields a result with an error message instead of failing the others. Stops when the consumer returns false.
+     */
+    void queryMessageByTopicAndKeys(String topic, Collection<String> keys, Predicate<MessageKeyResult> consumer);
+
+    /**
+     * @param offset first byte of the body to return
+     * @param length bytes of the body to return, zero or less returns the rest of the body
+     */
+    MessageBodyView viewMessageBody(String topic, String msgId, int offset, int length);
+
     /**
      * @param topic
      * @param begin
@@ -44,6 +67,38 @@ public interface MessageService {
     List<MessageView> queryMessageByTopic(final String topic, final long begin,
                                           final long end);
 
+    /**
+     * Scan the messages of a topic stored between begin and end, keeping only those matching the filter.
+     * The result limit counts matched messages, not scanned ones.
+     */
+    List<MessageView> queryMessageByTopic(final String topic, final long begin,
+                                          final long end, final MessageFilter filter);
+
+    /**
+     * Scan the messages of a topic like {@link #queryMessageByTopic(String, long, long, MessageFilter)}, but hand
+     * every match to the consumer as soon as it is pulled, on the calling thread, instead of collecting, sorting
+     * and limiting them. The matches of one queue come in offset order, the few queues pulled at a time are
+     * interleaved. A slow consumer slows the scan down, and the scan stops as soon as the consumer returns false.
+     */
+    void scanMessageByTopic(String topic, long begin, long end, MessageFilter filter,
+                            Predicate<MessageView> consumer);
+
+    /**
+     * @return the offset range of every queue of a topic holding the messages stored between begin and end:
+     * start is the offset of the first message, end the offset following the last one
+     */
+    List<QueueOffsetInfo> queryQueueOffsets(String topic, long begin, long end);
+
+    /**
+     * Pull the messages between the start and end offsets of the queues, bodies included, a few queues at a time
+     * on threads of their own, until the ranges are done or stopped. Fails with the first failed pull.
+     *
+     * @param sink receives every pull result advancing a queue, in offset order per queue, from the pulling
+     *             threads; returns false to stop that queue
+     */
+    void pullQueueOffsets(List<QueueOffsetInfo> queueOffsets, BooleanSupplier stopped,
+                          BiPredicate<QueueOffsetInfo, PullResult> sink);
+
     List<MessageTrack> messageTrackDetail(MessageExt msg);
 
     ConsumeMessageDirectlyResult consumeMessageDirectly(String topic, String msgId, String consumerGroup,
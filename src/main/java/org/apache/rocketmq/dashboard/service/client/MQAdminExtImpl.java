@@ -17,6 +17,9 @@
 package org.apache.rocketmq.dashboard.service.client;
 
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
 import org.apache.rocketmq.client.QueryResult;
 import org.apache.rocketmq.client.exception.MQBrokerException;
 import org.apache.rocketmq.client.exception.MQClientException;
@@ -63,6 +66,7 @@ import org.apache.rocketmq.remoting.protocol.body.TopicConfigSerializeWrapper;
 import org.apache.rocketmq.remoting.protocol.body.TopicList;
 import org.apache.rocketmq.remoting.protocol.body.UserInfo;
 import org.apache.rocketmq.remoting.protocol.header.ExportRocksDBConfigToJsonRequestHeader;
+import org.apache.rocketmq.remoting.protocol.header.GetSubscriptionGroupConfigRequestHeader;
 import org.apache.rocketmq.remoting.protocol.header.GetTopicConfigRequestHeader;
 import org.apache.rocketmq.remoting.protocol.header.controller.ElectMasterResponseHeader;
 import org.apache.rocketmq.remoting.protocol.header.controller.GetMetaDataResponseHeader;
@@ -79,6 +83,7 @@ import org.apache.rocketmq.tools.admin.common.AdminToolResult;
 import org.joor.Reflect;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.stereotype.Service;
 
 import java.io.UnsupportedEncodingException;
@@ -86,17 +91,55 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.apache.rocketmq.remoting.protocol.RemotingSerializable.decode;
 
 @Service
-public class MQAdminExtImpl implements MQAdminExt {
+public class MQAdminExtImpl implements MQAdminExt, DisposableBean {
     private Logger logger = LoggerFactory.getLogger(MQAdminExtImpl.class);
 
+    /**
+     * topic@msgId -> cluster the message was last found in
+     */
+    private final Cache<String, String> messageClusterHints = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
+
+    /**
+     * Queries the clusters of a topic concurrently when viewing a message. A saturated pool runs the query on the
+     * calling thread.
+     */
+    private final ExecutorService viewMessageExecutor = new ThreadPoolExecutor(0, 32, 60L, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), new ThreadFactory() {
+                private final AtomicLong threadIndex = new AtomicLong(0);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ViewMessage_" + this.threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
 
     public MQAdminExtImpl() {
     }
 
+    @Override
+    public void destroy() {
+        viewMessageExecutor.shutdownNow();
+    }
+
 
     @Override
     public void updateBrokerConfig(String brokerAddr, Properties properties)
@@ -128,11 +171,39 @@ public class MQAdminExtImpl implements MQAdminExt {
 
     }
 
+    /**
+     * Ask the broker for the one group. Brokers that do not know this request yet answer with their whole table.
+     *
+     * @return null if the broker has no such group
+     */
     @Override
     public SubscriptionGroupConfig examineSubscriptionGroupConfig(String addr, String group) throws MQBrokerException {
+        GetSubscriptionGroupConfigRequestHeader header = new GetSubscriptionGroupConfigRequestHeader();
+        header.setGroup(group);
+        RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.GET_SUBSCRIPTIONGROUP_CONFIG, header);
+        RemotingCommand response = invokeSubscriptionGroupRequest(addr, request);
+        switch (response.getCode()) {
+            case ResponseCode.SUCCESS:
+                return decode(response.getBody(), SubscriptionGroupConfig.class);
+            case ResponseCode.SUBSCRIPTION_GROUP_NOT_EXIST:
+                return null;
+            case ResponseCode.REQUEST_CODE_NOT_SUPPORTED:
+                break;
+            default:
+                throw new MQBrokerException(response.getCode(), response.getRemark());
+        }
+        request = RemotingCommand.createRequestCommand(RequestCode.GET_ALL_SUBSCRIPTIONGROUP_CONFIG, null);
+        response = invokeSubscriptionGroupRequest(addr, request);
+        if (response.getCode() != ResponseCode.SUCCESS) {
+            throw new MQBrokerException(response.getCode(), response.getRemark());
+        }
+        SubscriptionGroupWrapper subscriptionGroupWrapper = decode(response.getBody(), SubscriptionGroupWrapper.class);
+        return subscriptionGroupWrapper.getSubscriptionGroupTable().get(group);
+    }
+
+    private RemotingCommand invokeSubscriptionGroupRequest(String addr, RemotingCommand request) {
         RemotingClient remotingClient = MQAdminInstance.threadLocalRemotingClient();
-        RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.GET_ALL_SUBSCRIPTIONGROUP_CONFIG, null);
-        RemotingCommand response = null;
+        RemotingCommand response;
         try {
             response = remotingClient.invokeSync(addr, request, 8000);
         } catch (Exception err) {
@@ -140,14 +211,7 @@ public class MQAdminExtImpl implements MQAdminExt {
             throw new RuntimeException(err);
         }
         assert response != null;
-        switch (response.getCode()) {
-            case ResponseCode.SUCCESS: {
-                SubscriptionGroupWrapper subscriptionGroupWrapper = decode(response.getBody(), SubscriptionGroupWrapper.class);
-                return subscriptionGroupWrapper.getSubscriptionGroupTable().get(group);
-            }
-            default:
-                throw new MQBrokerException(response.getCode(), response.getRemark());
-        }
+        return response;
     }
 
     @Override
@@ -459,20 +523,76 @@ public class MQAdminExtImpl implements MQAdminExt {
         MQAdminImpl mqAdminImpl = MQAdminInstance.threadLocalMqClientInstance().getMQAdminImpl();
         Set<String> clusterList = MQAdminInstance.threadLocalMQAdminExt().getTopicClusterList(topic);
         if (clusterList == null || clusterList.isEmpty()) {
-            QueryResult qr = Reflect.on(mqAdminImpl).call("queryMessage", "", topic, msgId, 32,
-                    0L, Long.MAX_VALUE, true).get();
-            if (qr != null && qr.getMessageList() != null && !qr.getMessageList().isEmpty()) {
-                return qr.getMessageList().get(0);
+            return queryMessageByCluster(mqAdminImpl, "", topic, msgId);
+        }
+        String hintKey = topic + "@" + msgId;
+        String hint = messageClusterHints.getIfPresent(hintKey);
+        if (hint != null && clusterList.contains(hint)) {
+            try {
+                MessageExt messageExt = queryMessageByCluster(mqAdminImpl, hint, topic, msgId);
+                if (messageExt != null) {
+                    return messageExt;
+                }
+            } catch (RuntimeException e) {
+                logger.debug("Message {} is no longer found in cluster {}", msgId, hint, e);
             }
-        } else {
-            for (String name : clusterList) {
-                QueryResult qr = Reflect.on(mqAdminImpl).call("queryMessage", name, topic, msgId, 32,
-                        0L, Long.MAX_VALUE, true).get();
-                if (qr != null && qr.getMessageList() != null && !qr.getMessageList().isEmpty()) {
-                    return qr.getMessageList().get(0);
+            messageClusterHints.invalidate(hintKey);
+        }
+        return queryFirstCluster(mqAdminImpl, clusterList, topic, msgId, hintKey);
+    }
+
+    /**
+     * Query every cluster concurrently and return the first message found, cancelling the other queries.
+     * If no cluster has the message, the failure of the last failed query is rethrown.
+     */
+    private MessageExt queryFirstCluster(MQAdminImpl mqAdminImpl, Set<String> clusterList, String topic,
+        String msgId, String hintKey) throws InterruptedException {
+        CompletionService<MessageExt> completionService = new ExecutorCompletionService<>(viewMessageExecutor);
+        List<Future<MessageExt>> futures = Lists.newArrayList();
+        for (String name : clusterList) {
+            futures.add(completionService.submit(() -> {
+                MessageExt messageExt = queryMessageByCluster(mqAdminImpl, name, topic, msgId);
+                if (messageExt != null) {
+                    messageClusterHints.put(hintKey, name);
                 }
+                return messageExt;
+            }));
+        }
+        Throwable failure = null;
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    MessageExt messageExt = completionService.take().get();
+                    if (messageExt != null) {
+                        return messageExt;
+                    }
+                } catch (ExecutionException e) {
+                    failure = e.getCause();
+                }
+            }
+        } finally {
+            for (Future<MessageExt> future : futures) {
+                future.cancel(true);
             }
         }
+        if (failure != null) {
+            Throwables.throwIfUnchecked(failure);
+            throw new RuntimeException(failure);
+        }
+        return null;
+    }
+
+    /**
+     * @param clusterName empty to query the brokers of every cluster
+     * @return the message with a unique key in one cluster, null if the query found none
+     */
+    protected MessageExt queryMessageByCluster(MQAdminImpl mqAdminImpl, String clusterName, String topic,
+        String msgId) {
+        QueryResult qr = Reflect.on(mqAdminImpl).call("queryMessage", clusterName, topic, msgId, 32,
+                0L, Long.MAX_VALUE, true).get();
+        if (qr != null && qr.getMessageList() != null && !qr.getMessageList().isEmpty()) {
+            return qr.getMessageList().get(0);
+        }
         return null;
     }
 
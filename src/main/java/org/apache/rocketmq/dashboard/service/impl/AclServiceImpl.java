@@ -18,6 +18,8 @@
 package org.apache.rocketmq.dashboard.service.impl;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Throwables;
+import org.apache.rocketmq.dashboard.admin.BrokerFanOut;
 import org.apache.rocketmq.dashboard.model.Entry;
 import org.apache.rocketmq.dashboard.model.Policy;
 import org.apache.rocketmq.dashboard.model.PolicyRequest;
@@ -38,6 +40,7 @@ import org.springframework.stereotype.Service;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @Service
@@ -52,6 +55,9 @@ public class AclServiceImpl extends AbstractCommonService implements AclService
     @Autowired
     private ClusterInfoService clusterInfoService;
 
+    @Autowired
+    private BrokerFanOut brokerFanOut;
+
 
     @Override
     public List<UserInfoDto> listUsers(String clusterName, String brokerName) {
@@ -59,15 +65,15 @@ public class AclServiceImpl extends AbstractCommonService implements AclService
         List<String> brokerAddrList = getBrokerAddressList(clusterName, brokerName);
         Set<UserInfoDto> commonUsers = new HashSet<>();
         final boolean[] firstIteration = {true};
-        brokerAddrList.forEach(address -> {
-            List<UserInfo> userList;
+        Map<String, List<UserInfo>> userLists = invokeAll(brokerAddrList, address -> {
             try {
-                userList = mqAdminExt.listUser(address, "");
+                return mqAdminExt.listUser(address, "");
             } catch (Exception ex) {
                 logger.error("Failed to list users from broker: {}", address, ex);
                 throw new RuntimeException("Failed to list users", ex);
             }
-
+        });
+        userLists.forEach((address, userList) -> {
             List<UserInfoDto> userListDtos = new ArrayList<>();
             userList.forEach(user -> {
                 UserInfoDto userInfoDto = new UserInfoDto();
@@ -96,7 +102,7 @@ public class AclServiceImpl extends AbstractCommonService implements AclService
         final boolean[] firstIteration = {true};
         ObjectMapper mapper = new ObjectMapper(); // Initialize ObjectMapper once
 
-        brokerAddrList.forEach(address -> {
+        Map<String, List<AclInfo>> aclLists = invokeAll(brokerAddrList, address -> {
             List<AclInfo> aclListForBroker;
             try {
                 String user = searchParam != null ? searchParam : "";
@@ -132,6 +138,9 @@ public class AclServiceImpl extends AbstractCommonService implements AclService
                 logger.error("Failed to list ACLs from broker: {}", address, ex);
                 throw new RuntimeException("Failed to list ACLs", ex);
             }
+            return aclListForBroker;
+        });
+        aclLists.forEach((address, aclListForBroker) -> {
             List<org.apache.rocketmq.dashboard.model.AclInfo> aclInfoList = new ArrayList<>();
             aclListForBroker.forEach(acl -> {
                 org.apache.rocketmq.dashboard.model.AclInfo aclInfo = new org.apache.rocketmq.dashboard.model.AclInfo();
@@ -199,7 +208,7 @@ public class AclServiceImpl extends AbstractCommonService implements AclService
                             aclInfo.setPolicies(aclPolicies);
                             aclInfo.setSubject(subject);
 
-                            for (String brokerAddress : brokerAddrList) {
+                            invokeAll(brokerAddrList, brokerAddress -> {
                                 try {
                                     logger.info("Attempting to create ACL for subject: {}, resource: {} on broker: {}", subject, resource, brokerAddress);
                                     mqAdminExt.createAcl(brokerAddress, aclInfo);
@@ -207,7 +216,8 @@ public class AclServiceImpl extends AbstractCommonService implements AclService
                                 } catch (Exception ex) {
                                     throw new RuntimeException("Failed to create ACL on broker " + brokerAddress + ex.getMessage());
                                 }
-                            }
+                                return null;
+                            });
                         }
                     }
                 }
@@ -220,7 +230,7 @@ public class AclServiceImpl extends AbstractCommonService implements AclService
     public void deleteUser(String clusterName, String brokerName, String username) {
         List<String> brokerAddrList = getBrokerAddressList(clusterName, brokerName);
 
-        for (String address : brokerAddrList) {
+        invokeAll(brokerAddrList, address -> {
             try {
                 mqAdminExt.deleteUser(address, username);
                 logger.info("Successfully deleted user: {} from broker: {}", username, address);
@@ -228,7 +238,8 @@ public class AclServiceImpl extends AbstractCommonService implements AclService
                 logger.error("Failed to delete user: {} from broker: {}", username, address, ex);
                 throw new RuntimeException("Failed to delete user on broker " + address + ex.getMessage());
             }
-        }
+            return null;
+        });
     }
 
     @Override
@@ -241,7 +252,7 @@ public class AclServiceImpl extends AbstractCommonService implements AclService
 
         List<String> brokerAddrList = getBrokerAddressList(clusterName, brokerName);
 
-        for (String address : brokerAddrList) {
+        invokeAll(brokerAddrList, address -> {
             try {
                 mqAdminExt.updateUser(address, user);
                 logger.info("Successfully updated user: {} on broker: {}", userParam.getUsername(), address);
@@ -249,7 +260,8 @@ public class AclServiceImpl extends AbstractCommonService implements AclService
                 logger.error("Failed to update user: {} on broker: {}", userParam.getUsername(), address, ex);
                 throw new RuntimeException("Failed to update user on broker " + address + ex.getMessage());
             }
-        }
+            return null;
+        });
     }
 
     @Override
@@ -262,7 +274,7 @@ public class AclServiceImpl extends AbstractCommonService implements AclService
 
         List<String> brokerAddrList = getBrokerAddressList(clusterName, brokerName);
 
-        for (String address : brokerAddrList) {
+        invokeAll(brokerAddrList, address -> {
             try {
                 mqAdminExt.createUser(address, user);
                 logger.info("Successfully created user: {} on broker: {}", userParam.getUsername(), address);
@@ -270,7 +282,8 @@ public class AclServiceImpl extends AbstractCommonService implements AclService
                 logger.error("Failed to create user: {} on broker: {}", userParam.getUsername(), address, ex);
                 throw new RuntimeException("Failed to create user on broker " + address + ex.getMessage());
             }
-        }
+            return null;
+        });
     }
 
     @Override
@@ -278,7 +291,7 @@ public class AclServiceImpl extends AbstractCommonService implements AclService
         List<String> brokerAddrList = getBrokerAddressList(clusterName, brokerName);
         String res = resource != null ? resource : "";
 
-        for (String address : brokerAddrList) {
+        invokeAll(brokerAddrList, address -> {
             try {
                 mqAdminExt.deleteAcl(address, subject, res);
                 logger.info("Successfully deleted ACL for subject: {} and resource: {} on broker: {}", subject, resource, address);
@@ -286,7 +299,8 @@ public class AclServiceImpl extends AbstractCommonService implements AclService
                 logger.error("Failed to delete ACL for subject: {} and resource: {} on broker: {}", subject, resource, address, ex);
                 throw new RuntimeException("Failed to delete ACL on broker " + address + ex.getMessage());
             }
-        }
+            return null;
+        });
     }
 
     @Override
@@ -327,7 +341,7 @@ public class AclServiceImpl extends AbstractCommonService implements AclService
                             aclInfo.setPolicies(aclPolicies);
                             aclInfo.setSubject(subject);
 
-                            for (String brokerAddress : brokerAddrList) {
+                            invokeAll(brokerAddrList, brokerAddress -> {
                                 try {
                                     mqAdminExt.updateAcl(brokerAddress, aclInfo);
                                     logger.info("Successfully updated ACL for subject: {}, resource: {} on broker: {}", subject, resource, brokerAddress);
@@ -335,7 +349,8 @@ public class AclServiceImpl extends AbstractCommonService implements AclService
                                     logger.error("Failed to update ACL for subject: {}, resource: {} on broker: {}", subject, resource, brokerAddress, ex);
                                     throw new RuntimeException("Failed to update ACL on broker " + brokerAddress + ex.getMessage());
                                 }
-                            }
+                                return null;
+                            });
                         }
                     }
                 }
@@ -344,6 +359,15 @@ public class AclServiceImpl extends AbstractCommonService implements AclService
     }
 
 
+    private <T> Map<String, T> invokeAll(List<String> brokerAddrList, BrokerFanOut.BrokerCall<T> call) {
+        try {
+            return brokerFanOut.invokeAll(brokerAddrList, call);
+        } catch (Exception e) {
+            Throwables.throwIfUnchecked(e);
+            throw new RuntimeException(e);
+        }
+    }
+
     public List<String> getBrokerAddressList(String clusterName, String brokerName) {
         ClusterInfo clusterInfo = clusterInfoService.get();
         List<String> brokerAddressList = new ArrayList<>();
@@ -21,6 +21,7 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.Maps;
 import jakarta.annotation.Resource;
 import org.apache.rocketmq.common.attribute.TopicMessageType;
+import org.apache.rocketmq.dashboard.admin.BrokerFanOut;
 import org.apache.rocketmq.dashboard.service.ClusterService;
 import org.apache.rocketmq.dashboard.util.JsonUtil;
 import org.apache.rocketmq.remoting.protocol.body.ClusterInfo;
@@ -31,7 +32,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.stream.Collectors;
@@ -42,18 +45,25 @@ public class ClusterServiceImpl implements ClusterService {
     @Resource
     private MQAdminExt mqAdminExt;
 
+    @Resource
+    private BrokerFanOut brokerFanOut;
+
     @Override
     public Map<String, Object> list() {
         try {
             Map<String, Object> resultMap = Maps.newHashMap();
             ClusterInfo clusterInfo = mqAdminExt.examineBrokerClusterInfo();
             logger.info("op=look_clusterInfo {}", JsonUtil.obj2String(clusterInfo));
+            List<String> brokerAddrs = new ArrayList<>();
+            for (BrokerData brokerData : clusterInfo.getBrokerAddrTable().values()) {
+                brokerAddrs.addAll(brokerData.getBrokerAddrs().values());
+            }
+            Map<String, KVTable> runtimeStats = brokerFanOut.invokeAll(brokerAddrs, mqAdminExt::fetchBrokerRuntimeStats);
             Map<String/*brokerName*/, Map<Long/* brokerId */, Object/* brokerDetail */>> brokerServer = Maps.newHashMap();
             for (BrokerData brokerData : clusterInfo.getBrokerAddrTable().values()) {
                 Map<Long, Object> brokerMasterSlaveMap = Maps.newHashMap();
                 for (Map.Entry<Long/* brokerId */, String/* broker address */> brokerAddr : brokerData.getBrokerAddrs().entrySet()) {
-                    KVTable kvTable = mqAdminExt.fetchBrokerRuntimeStats(brokerAddr.getValue());
-                    brokerMasterSlaveMap.put(brokerAddr.getKey(), kvTable.getTable());
+                    brokerMasterSlaveMap.put(brokerAddr.getKey(), runtimeStats.get(brokerAddr.getValue()).getTable());
                 }
                 brokerServer.put(brokerData.getBrokerName(), brokerMasterSlaveMap);
             }
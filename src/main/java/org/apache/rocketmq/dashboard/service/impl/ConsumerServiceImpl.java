@@ -17,20 +17,23 @@
 
 package org.apache.rocketmq.dashboard.service.impl;
 
-import com.google.common.base.Predicate;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.base.Throwables;
-import com.google.common.collect.Iterables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import jakarta.annotation.Resource;
-import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.rocketmq.client.exception.MQClientException;
 import org.apache.rocketmq.common.MQVersion;
 import org.apache.rocketmq.common.MixAll;
 import org.apache.rocketmq.common.message.MessageQueue;
 import org.apache.rocketmq.common.utils.ThreadUtils;
+import org.apache.rocketmq.dashboard.admin.BrokerFanOut;
+import org.apache.rocketmq.dashboard.config.CollectExecutorConfig;
 import org.apache.rocketmq.dashboard.config.RMQConfigure;
 import org.apache.rocketmq.dashboard.model.ConsumerGroupRollBackStat;
 import org.apache.rocketmq.dashboard.model.GroupConsumeInfo;
@@ -42,17 +45,23 @@ import org.apache.rocketmq.dashboard.model.request.ResetOffsetRequest;
 import org.apache.rocketmq.dashboard.service.AbstractCommonService;
 import org.apache.rocketmq.dashboard.service.ClusterInfoService;
 import org.apache.rocketmq.dashboard.service.ConsumerService;
+import org.apache.rocketmq.dashboard.service.MonitorService;
 import org.apache.rocketmq.dashboard.service.client.ProxyAdmin;
+import org.apache.rocketmq.dashboard.util.UserInfoContext;
+import org.apache.rocketmq.remoting.protocol.DataVersion;
 import org.apache.rocketmq.remoting.protocol.ResponseCode;
 import org.apache.rocketmq.remoting.protocol.admin.ConsumeStats;
+import org.apache.rocketmq.remoting.protocol.admin.OffsetWrapper;
 import org.apache.rocketmq.remoting.protocol.admin.RollbackStats;
+import org.apache.rocketmq.remoting.protocol.admin.TopicStatsTable;
 import org.apache.rocketmq.remoting.protocol.body.ClusterInfo;
 import org.apache.rocketmq.remoting.protocol.body.Connection;
+import org.apache.rocketmq.remoting.protocol.body.ConsumeStatsList;
 import org.apache.rocketmq.remoting.protocol.body.ConsumerConnection;
 import org.apache.rocketmq.remoting.protocol.body.ConsumerRunningInfo;
-import org.apache.rocketmq.remoting.protocol.body.GroupList;
 import org.apache.rocketmq.remoting.protocol.body.SubscriptionGroupWrapper;
 import org.apache.rocketmq.remoting.protocol.route.BrokerData;
+import org.apache.rocketmq.remoting.protocol.route.TopicRouteData;
 import org.apache.rocketmq.remoting.protocol.subscription.SubscriptionGroupConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,21 +74,31 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
 
 @Service
 public class ConsumerServiceImpl extends AbstractCommonService implements ConsumerService, InitializingBean, DisposableBean {
@@ -89,19 +108,100 @@ public class ConsumerServiceImpl extends AbstractCommonService implements Consum
     protected ProxyAdmin proxyAdmin;
     @Resource
     private RMQConfigure configure;
+    @Resource
+    private CollectExecutorConfig collectExecutorConfig;
 
     @Autowired
     private ClusterInfoService clusterInfoService;
 
-    private volatile boolean isCacheBeingBuilt = false;
+    @Resource
+    private BrokerFanOut brokerFanOut;
+
+    /**
+     * Time the first read of the group list waits for the stats of the groups, the others are filled in later
+     */
+    private static final long COLD_LOAD_WAIT_MILLIS = 3000;
+
+    private static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * Time a topic detail page waits for the running info of the clients of a group
+     */
+    private static final long RUNNING_INFO_DEADLINE_MILLIS = 5000;
+
+    /**
+     * Running info queries of one page in flight at the same time
+     */
+    private static final int RUNNING_INFO_CONCURRENCY = 16;
+
+    /**
+     * Time the consumers view of a topic waits for its groups
+     */
+    private static final long TOPIC_CONSUMERS_DEADLINE_MILLIS = 10000;
+
+    private static final String SYSTEM_GROUP_PREFIX = "%SYS%";
 
     private static final Set<String> SYSTEM_GROUP_SET = new HashSet<>();
 
+    @Resource
+    private MonitorService monitorService;
+
     private ExecutorService executorService;
 
-    private final List<GroupConsumeInfo> cacheConsumeInfoList = Collections.synchronizedList(new ArrayList<>());
+    /**
+     * Runs the running info requests of {@link #getClientConnection(String)}, which is itself called from tasks of
+     * executorService: waiting on tasks queued to the same pool could hold every thread of it until the deadline
+     */
+    private ExecutorService runningInfoExecutor;
+
+    /**
+     * Bounds the concurrent connection queries of a refresh round. The admin client picks their broker, so unlike
+     * the requests to a known broker they cannot wait for its permits of {@link BrokerFanOut}.
+     */
+    private Semaphore queryGroupPermits;
+
+    /**
+     * The group list served to readers, replaced as a whole by every change
+     */
+    private final AtomicReference<GroupSnapshot> snapshot = new AtomicReference<>(GroupSnapshot.EMPTY);
+
+    /**
+     * Groups recently queried one by one, whose connections are refreshed as often as their stats
+     */
+    private final Cache<String, Boolean> watchedGroups = CacheBuilder.newBuilder()
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * Client each queue of a group is assigned to, shared by the pages opened shortly after each other
+     */
+    private final Cache<String, Map<MessageQueue, String>> queueAssignments = CacheBuilder.newBuilder()
+            .expireAfterWrite(10, TimeUnit.SECONDS)
+            .build();
+
+    /**
+     * When the connections of a group were last queried
+     */
+    private final ConcurrentMap<String, Long> connectionTimes = new ConcurrentHashMap<>();
+
+    /**
+     * Groups updated before this time are refreshed by the next round, whatever their age
+     */
+    private volatile long refreshAllBefore;
 
-    private final HashMap<String, List<String>> consumerGroupMap = Maps.newHashMap();
+    private final Object membershipLock = new Object();
+
+    /**
+     * Subscription group table last read from every broker name, guarded by membershipLock
+     */
+    private final Map<String, BrokerSubscriptions> brokerSubscriptions = Maps.newHashMap();
+
+    private final Object refreshLock = new Object();
+
+    /**
+     * The running or last refresh round, guarded by refreshLock
+     */
+    private Future<?> refreshRound;
 
     @Override
     public void afterPropertiesSet() {
@@ -117,13 +217,29 @@ public class ConsumerServiceImpl extends AbstractCommonService implements Consum
             }
         };
         RejectedExecutionHandler handler = new ThreadPoolExecutor.DiscardOldestPolicy();
-        this.executorService = new ThreadPoolExecutor(corePoolSize, maximumPoolSize, 60L, TimeUnit.SECONDS,
-                new LinkedBlockingQueue<>(5000), threadFactory, handler);
+        this.executorService = collectExecutorConfig.newExecutor("QueryGroup_", () -> new ThreadPoolExecutor(corePoolSize,
+                maximumPoolSize, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(5000), threadFactory, handler));
+        this.queryGroupPermits = new Semaphore(maximumPoolSize);
+        ThreadFactory runningInfoThreadFactory = new ThreadFactory() {
+            private final AtomicLong threadIndex = new AtomicLong(0);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "QueryRunningInfo_" + this.threadIndex.incrementAndGet());
+            }
+        };
+        this.runningInfoExecutor = collectExecutorConfig.newExecutor("QueryRunningInfo_", () -> {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(RUNNING_INFO_CONCURRENCY, RUNNING_INFO_CONCURRENCY,
+                    60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(5000), runningInfoThreadFactory, handler);
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        });
     }
 
     @Override
     public void destroy() {
         ThreadUtils.shutdownGracefully(executorService, 10L, TimeUnit.SECONDS);
+        ThreadUtils.shutdownGracefully(runningInfoExecutor, 10L, TimeUnit.SECONDS);
     }
 
     static {
@@ -137,114 +253,438 @@ public class ConsumerServiceImpl extends AbstractCommonService implements Consum
         SYSTEM_GROUP_SET.add(MixAll.CID_SYS_RMQ_TRANS);
     }
 
+    /**
+     * Served from the last published snapshot without waiting for the brokers, except on the very first read.
+     * Every read starts a background round refreshing what is older than {@code consumerGroupStaleMillis}.
+     */
     @Override
     public List<GroupConsumeInfo> queryGroupList(boolean skipSysGroup, String address) {
-        if (isCacheBeingBuilt) {
-            throw new RuntimeException("Cache is being built, please try again later");
+        boolean cold = snapshot.get().groups.isEmpty();
+        ensureMembership();
+        Future<?> round = refreshStaleGroups();
+        if (cold) {
+            try {
+                round.get(COLD_LOAD_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                logger.info("Consumer group stats are still loading, serve the groups found so far");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                logger.warn("op=refreshStaleGroups_error", e.getCause());
+            }
         }
+        GroupSnapshot current = snapshot.get();
+        return Collections.unmodifiableList(Arrays.asList(skipSysGroup ? current.sorted : current.decorated));
+    }
 
-        synchronized (this) {
-            if (cacheConsumeInfoList.isEmpty() && !isCacheBeingBuilt) {
-                isCacheBeingBuilt = true;
-                try {
-                    makeGroupListCache();
-                } finally {
-                    isCacheBeingBuilt = false;
+    private void ensureMembership() {
+        if (snapshot.get().membershipTime == 0) {
+            synchronized (membershipLock) {
+                if (snapshot.get().membershipTime == 0) {
+                    loadMembership();
                 }
             }
         }
+    }
 
-        if (cacheConsumeInfoList.isEmpty()) {
-            throw new RuntimeException("No consumer group information available");
-        }
+    private void invalidateMembership() {
+        snapshot.updateAndGet(current -> new GroupSnapshot(current, 0));
+    }
 
-        List<GroupConsumeInfo> groupConsumeInfoList = new ArrayList<>(cacheConsumeInfoList);
+    /**
+     * Read the subscription group table of every broker and merge them into the group list: new groups enter it
+     * without stats, groups gone from every broker leave it. A table whose data version did not change since the
+     * last read is not merged again, and when no table changed the list is kept as it is. If a broker does not
+     * answer, its previous table is kept.
+     */
+    private void loadMembership() {
+        synchronized (membershipLock) {
+            long now = System.currentTimeMillis();
+            Map<String, BrokerSubscriptions> tables = Maps.newHashMap();
+            boolean changed = false;
+            Exception failure = null;
+            try {
+                ClusterInfo clusterInfo = clusterInfoService.get();
+                for (BrokerData brokerData : clusterInfo.getBrokerAddrTable().values()) {
+                    String brokerName = brokerData.getBrokerName();
+                    String brokerAddr = brokerData.selectBrokerAddr();
+                    BrokerSubscriptions previous = brokerSubscriptions.get(brokerName);
+                    try {
+                        SubscriptionGroupWrapper subscriptionGroupWrapper = mqAdminExt.getAllSubscriptionGroup(brokerAddr, 30000L);
+                        if (previous != null && previous.isSameVersion(brokerAddr, subscriptionGroupWrapper.getDataVersion())) {
+                            tables.put(brokerName, previous);
+                        } else {
+                            tables.put(brokerName, new BrokerSubscriptions(brokerAddr, subscriptionGroupWrapper));
+                            changed = true;
+                        }
+                    } catch (Exception e) {
+                        logger.warn("op=getAllSubscriptionGroup_error broker={}", brokerAddr, e);
+                        failure = e;
+                        if (previous != null) {
+                            tables.put(brokerName, previous);
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                failure = e;
+            }
+            if (failure != null && tables.isEmpty()) {
+                Throwables.throwIfUnchecked(failure);
+                throw new RuntimeException(failure);
+            }
+            if (!changed && tables.keySet().equals(brokerSubscriptions.keySet())) {
+                snapshot.updateAndGet(current -> new GroupSnapshot(current, now));
+                return;
+            }
+            brokerSubscriptions.clear();
+            brokerSubscriptions.putAll(tables);
+            publishMembership(tables, now);
+        }
+    }
 
-        if (!skipSysGroup) {
-            groupConsumeInfoList.stream().map(group -> {
-                if (SYSTEM_GROUP_SET.contains(group.getGroup())) {
-                    group.setGroup(String.format("%s%s", "%SYS%", group.getGroup()));
+    private void publishMembership(Map<String, BrokerSubscriptions> tables, long now) {
+        Map<String, List<String>> groupAddresses = Maps.newHashMap();
+        Map<String, SubscriptionGroupConfig> groupConfigs = Maps.newHashMap();
+        Map<String, Set<String>> brokerGroups = Maps.newHashMapWithExpectedSize(tables.size());
+        for (Map.Entry<String, BrokerSubscriptions> table : tables.entrySet()) {
+            BrokerSubscriptions subscriptions = table.getValue();
+            brokerGroups.put(table.getKey(), subscriptions.groups.keySet());
+            for (Map.Entry<String, SubscriptionGroupConfig> entry : subscriptions.groups.entrySet()) {
+                groupAddresses.computeIfAbsent(entry.getKey(), key -> new ArrayList<>()).add(subscriptions.brokerAddr);
+                groupConfigs.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+        GroupSnapshot published = snapshot.updateAndGet(current -> {
+            Map<String, GroupConsumeInfo> groups = Maps.newHashMapWithExpectedSize(groupAddresses.size());
+            for (Map.Entry<String, List<String>> entry : groupAddresses.entrySet()) {
+                String consumerGroup = entry.getKey();
+                GroupConsumeInfo old = current.groups.get(consumerGroup);
+                GroupConsumeInfo consumeInfo = old == null ? new GroupConsumeInfo() : copyOf(old);
+                consumeInfo.setGroup(consumerGroup);
+                consumeInfo.setAddress(entry.getValue());
+                if (SYSTEM_GROUP_SET.contains(consumerGroup)) {
+                    consumeInfo.setSubGroupType("SYSTEM");
+                } else {
+                    consumeInfo.setSubGroupType(groupConfigs.get(consumerGroup).isConsumeMessageOrderly() ? "FIFO" : "NORMAL");
                 }
-                return group;
-            }).collect(Collectors.toList());
+                groups.put(consumerGroup, consumeInfo);
+            }
+            return new GroupSnapshot(groups, brokerGroups, now, current.statsTime);
+        });
+        connectionTimes.keySet().retainAll(published.groups.keySet());
+    }
+
+    /**
+     * Start a refresh round unless one is running.
+     *
+     * @return the running round
+     */
+    private Future<?> refreshStaleGroups() {
+        synchronized (refreshLock) {
+            if (refreshRound == null || refreshRound.isDone()) {
+                refreshRound = executorService.submit(this::refreshRound);
+            }
+            return refreshRound;
         }
-        Collections.sort(groupConsumeInfoList);
-        return groupConsumeInfoList;
     }
 
+    /**
+     * Re-read the group names and the consume stats once they are stale, then the connections of the stale
+     * watched and monitored groups, and last those of the other groups at their slower pace. Runs again if
+     * everything was marked stale meanwhile.
+     */
+    private void refreshRound() {
+        while (true) {
+            long roundStart = System.currentTimeMillis();
+            long staleMillis = configure.getConsumerGroupStaleMillis();
+            GroupSnapshot current = snapshot.get();
+            if (roundStart - current.membershipTime >= staleMillis || current.membershipTime < refreshAllBefore) {
+                try {
+                    loadMembership();
+                } catch (RuntimeException e) {
+                    logger.warn("op=loadMembership_error", e);
+                }
+            }
+            if (roundStart - current.statsTime >= staleMillis || current.statsTime < refreshAllBefore) {
+                try {
+                    refreshConsumeStats();
+                } catch (RuntimeException e) {
+                    logger.warn("op=refreshConsumeStats_error", e);
+                }
+            }
+            try {
+                Set<String> activeGroups = Sets.newHashSet(watchedGroups.asMap().keySet());
+                activeGroups.addAll(monitorService.queryConsumerMonitorConfig().keySet());
+                refreshConnections(activeGroups, roundStart, staleMillis);
+                Set<String> otherGroups = Sets.newHashSet(snapshot.get().groups.keySet());
+                otherGroups.removeAll(activeGroups);
+                refreshConnections(otherGroups, roundStart, configure.getConsumerConnectionStaleMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (refreshAllBefore < roundStart) {
+                return;
+            }
+        }
+    }
 
-    public void makeGroupListCache() {
-        SubscriptionGroupWrapper subscriptionGroupWrapper = null;
-        try {
-            ClusterInfo clusterInfo = clusterInfoService.get();
-            for (BrokerData brokerData : clusterInfo.getBrokerAddrTable().values()) {
-                subscriptionGroupWrapper = mqAdminExt.getAllSubscriptionGroup(brokerData.selectBrokerAddr(), 30000L);
-                for (String groupName : subscriptionGroupWrapper.getSubscriptionGroupTable().keySet()) {
-                    if (!consumerGroupMap.containsKey(groupName)) {
-                        consumerGroupMap.putIfAbsent(groupName, new ArrayList<>());
+    /**
+     * Fetch the consume stats of all groups with one call per master broker, and sum them per group. The groups
+     * of a broker that failed to answer keep their previous stats.
+     */
+    private void refreshConsumeStats() {
+        long now = System.currentTimeMillis();
+        Long configuredTimeout = configure.getTimeoutMillis();
+        long timeoutMillis = configuredTimeout == null || configuredTimeout <= 0 ? DEFAULT_TIMEOUT_MILLIS : configuredTimeout;
+        BrokerFanOut.BrokerCall<ConsumeStatsList> fetchConsumeStats = brokerAddr -> mqAdminExt.fetchConsumeStatsInBroker(brokerAddr, false, timeoutMillis);
+        Map<String/* brokerName */, Future<ConsumeStatsList>> futures = Maps.newHashMap();
+        Set<String> failedBrokers = Sets.newHashSet();
+        for (BrokerData brokerData : clusterInfoService.get().getBrokerAddrTable().values()) {
+            String masterAddr = brokerData.getBrokerAddrs().get(MixAll.MASTER_ID);
+            if (masterAddr == null) {
+                failedBrokers.add(brokerData.getBrokerName());
+                continue;
+            }
+            futures.put(brokerData.getBrokerName(), executorService.submit(() -> brokerFanOut.invoke(masterAddr, fetchConsumeStats)));
+        }
+        Map<String, Long> diffTotals = Maps.newHashMap();
+        Map<String, Double> consumeTps = Maps.newHashMap();
+        for (Map.Entry<String, Future<ConsumeStatsList>> entry : futures.entrySet()) {
+            ConsumeStatsList consumeStatsList;
+            try {
+                consumeStatsList = entry.getValue().get(timeoutMillis * 2, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                entry.getValue().cancel(true);
+                logger.warn("op=fetchConsumeStatsInBroker_error broker={}", entry.getKey(), e);
+                failedBrokers.add(entry.getKey());
+                continue;
+            }
+            for (Map<String, List<ConsumeStats>> groupStats : consumeStatsList.getConsumeStatsList()) {
+                for (Map.Entry<String, List<ConsumeStats>> statsEntry : groupStats.entrySet()) {
+                    long diffTotal = 0;
+                    double tps = 0;
+                    for (ConsumeStats consumeStats : statsEntry.getValue()) {
+                        diffTotal += consumeStats.computeTotalDiff();
+                        tps += consumeStats.getConsumeTps();
                     }
-                    List<String> addresses = consumerGroupMap.get(groupName);
-                    addresses.add(brokerData.selectBrokerAddr());
-                    consumerGroupMap.put(groupName, addresses);
+                    diffTotals.merge(statsEntry.getKey(), diffTotal, Long::sum);
+                    consumeTps.merge(statsEntry.getKey(), tps, Double::sum);
                 }
             }
-        } catch (Exception err) {
-            Throwables.throwIfUnchecked(err);
-            throw new RuntimeException(err);
         }
+        Date updateTime = new Date(now);
+        snapshot.updateAndGet(current -> {
+            Set<String> keptGroups = Sets.newHashSet();
+            for (String brokerName : failedBrokers) {
+                keptGroups.addAll(current.brokerGroups.getOrDefault(brokerName, Collections.emptySet()));
+            }
+            Map<String, GroupConsumeInfo> groups = Maps.newHashMapWithExpectedSize(current.groups.size());
+            for (GroupConsumeInfo old : current.groups.values()) {
+                if (keptGroups.contains(old.getGroup())) {
+                    groups.put(old.getGroup(), old);
+                    continue;
+                }
+                GroupConsumeInfo consumeInfo = copyOf(old);
+                Long diffTotal = diffTotals.get(old.getGroup());
+                consumeInfo.setDiffTotal(diffTotal == null ? -1 : diffTotal);
+                consumeInfo.setConsumeTps((int) consumeTps.getOrDefault(old.getGroup(), 0D).doubleValue());
+                consumeInfo.setUpdateTime(updateTime);
+                groups.put(old.getGroup(), consumeInfo);
+            }
+            return new GroupSnapshot(groups, current.brokerGroups, current.membershipTime, now);
+        });
+    }
 
-        if (subscriptionGroupWrapper != null && subscriptionGroupWrapper.getSubscriptionGroupTable().isEmpty()) {
-            logger.warn("No subscription group information available");
-            isCacheBeingBuilt = false;
+    /**
+     * Query the connections of those groups last queried more than staleMillis ago, and publish them at once.
+     */
+    private void refreshConnections(Set<String> consumerGroups, long roundStart, long staleMillis) throws InterruptedException {
+        GroupSnapshot current = snapshot.get();
+        List<String> staleGroups = Lists.newArrayList();
+        for (String consumerGroup : consumerGroups) {
+            Long connectionTime = connectionTimes.get(consumerGroup);
+            if (current.groups.containsKey(consumerGroup) && (connectionTime == null
+                    || roundStart - connectionTime >= staleMillis || connectionTime < refreshAllBefore)) {
+                staleGroups.add(consumerGroup);
+            }
+        }
+        if (staleGroups.isEmpty()) {
             return;
         }
-        final ConcurrentMap<String, SubscriptionGroupConfig> subscriptionGroupTable = subscriptionGroupWrapper.getSubscriptionGroupTable();
-        List<GroupConsumeInfo> groupConsumeInfoList = Collections.synchronizedList(Lists.newArrayList());
-        CountDownLatch countDownLatch = new CountDownLatch(consumerGroupMap.size());
-        for (Map.Entry<String, List<String>> entry : consumerGroupMap.entrySet()) {
-            String consumerGroup = entry.getKey();
+        Map<String, GroupConsumeInfo> connections = new ConcurrentHashMap<>();
+        CountDownLatch countDownLatch = new CountDownLatch(staleGroups.size());
+        for (String consumerGroup : staleGroups) {
+            queryGroupPermits.acquire();
             executorService.submit(() -> {
                 try {
-                    GroupConsumeInfo consumeInfo = queryGroup(consumerGroup, "");
-                    consumeInfo.setAddress(entry.getValue());
-                    if (SYSTEM_GROUP_SET.contains(consumerGroup)) {
-                        consumeInfo.setSubGroupType("SYSTEM");
-                    } else {
-                        try {
-                            consumeInfo.setSubGroupType(subscriptionGroupTable.get(consumerGroup).isConsumeMessageOrderly() ? "FIFO" : "NORMAL");
-                        } catch (NullPointerException e) {
-                            logger.warn("SubscriptionGroupConfig not found for consumer group: {}", consumerGroup);
-                            boolean isFifoType = examineSubscriptionGroupConfig(consumerGroup)
-                                    .stream().map(ConsumerConfigInfo::getSubscriptionGroupConfig)
-                                    .allMatch(SubscriptionGroupConfig::isConsumeMessageOrderly);
-                            consumeInfo.setSubGroupType(isFifoType ? "FIFO" : "NORMAL");
-                        }
-                    }
-                    consumeInfo.setUpdateTime(new Date());
-                    groupConsumeInfoList.add(consumeInfo);
+                    GroupConsumeInfo connection = new GroupConsumeInfo();
+                    setConnection(connection, examineConsumerConnection(consumerGroup, ""));
+                    connections.put(consumerGroup, connection);
+                    connectionTimes.put(consumerGroup, System.currentTimeMillis());
                 } catch (Exception e) {
-                    logger.error("queryGroup exception, consumerGroup: {}", consumerGroup, e);
+                    logger.error("examineConsumerConnectionInfo exception, consumerGroup: {}", consumerGroup, e);
                 } finally {
+                    queryGroupPermits.release();
                     countDownLatch.countDown();
                 }
             });
         }
+        countDownLatch.await();
+        snapshot.updateAndGet(latest -> {
+            Map<String, GroupConsumeInfo> groups = Maps.newHashMap(latest.groups);
+            for (Map.Entry<String, GroupConsumeInfo> entry : connections.entrySet()) {
+                GroupConsumeInfo old = groups.get(entry.getKey());
+                if (old != null) {
+                    GroupConsumeInfo consumeInfo = copyOf(old);
+                    copyConnection(entry.getValue(), consumeInfo);
+                    groups.put(entry.getKey(), consumeInfo);
+                }
+            }
+            return new GroupSnapshot(groups, latest.brokerGroups, latest.membershipTime, latest.statsTime);
+        });
+    }
+
+    /**
+     * @return the connections of a group, null if it has no online consumer
+     */
+    private ConsumerConnection examineConsumerConnection(String consumerGroup, String address) {
         try {
-            countDownLatch.await();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            logger.error("Interruption occurred while waiting for task completion", e);
+            if (StringUtils.isNotEmpty(address)) {
+                return proxyAdmin.examineConsumerConnectionInfo(address, consumerGroup);
+            }
+            return mqAdminExt.examineConsumerConnectionInfo(consumerGroup);
+        } catch (Exception e) {
+            logger.warn("examineConsumerConnectionInfo exception to consumerGroup {}, response [{}]", consumerGroup, e.getMessage());
+            return null;
         }
-        logger.info("All consumer group query tasks have been completed");
-        isCacheBeingBuilt = false;
-        Collections.sort(groupConsumeInfoList);
+    }
+
+    private static void setConnection(GroupConsumeInfo groupConsumeInfo, ConsumerConnection consumerConnection) {
+        if (consumerConnection != null) {
+            groupConsumeInfo.setCount(consumerConnection.getConnectionSet().size());
+            groupConsumeInfo.setMessageModel(consumerConnection.getMessageModel());
+            groupConsumeInfo.setConsumeType(consumerConnection.getConsumeType());
+            groupConsumeInfo.setVersion(MQVersion.getVersionDesc(consumerConnection.computeMinVersion()));
+        }
+    }
+
+    private static void copyConnection(GroupConsumeInfo source, GroupConsumeInfo target) {
+        target.setCount(source.getCount());
+        target.setMessageModel(source.getMessageModel());
+        target.setConsumeType(source.getConsumeType());
+        target.setVersion(source.getVersion());
+    }
+
+    private static GroupConsumeInfo copyOf(GroupConsumeInfo source) {
+        GroupConsumeInfo copy = new GroupConsumeInfo();
+        copy.setGroup(source.getGroup());
+        copyConnection(source, copy);
+        copy.setAddress(source.getAddress());
+        copy.setConsumeTps(source.getConsumeTps());
+        copy.setDiffTotal(source.getDiffTotal());
+        copy.setSubGroupType(source.getSubGroupType());
+        copy.setUpdateTime(source.getUpdateTime());
+        return copy;
+    }
+
+    /**
+     * Immutable state of the group list. System groups are decorated with the %SYS% prefix once, when the
+     * snapshot is built.
+     */
+    private static final class GroupSnapshot {
+
+        static final GroupSnapshot EMPTY = new GroupSnapshot(Collections.emptyMap(), Collections.emptyMap(), 0, 0);
+
+        /**
+         * Groups by name, undecorated
+         */
+        final Map<String, GroupConsumeInfo> groups;
+
+        /**
+         * Groups of every broker name, to keep the stats of the groups of a broker that does not answer
+         */
+        final Map<String, Set<String>> brokerGroups;
+
+        /**
+         * When the group names were read from the brokers, 0 when they must be read again before the next read
+         */
+        final long membershipTime;
+
+        /**
+         * When the consume stats were fetched from the brokers
+         */
+        final long statsTime;
+
+        final GroupConsumeInfo[] sorted;
+
+        final GroupConsumeInfo[] decorated;
 
-        cacheConsumeInfoList.clear();
-        cacheConsumeInfoList.addAll(groupConsumeInfoList);
+        GroupSnapshot(Map<String, GroupConsumeInfo> groups, Map<String, Set<String>> brokerGroups,
+            long membershipTime, long statsTime) {
+            this.groups = Collections.unmodifiableMap(groups);
+            this.brokerGroups = Collections.unmodifiableMap(brokerGroups);
+            this.membershipTime = membershipTime;
+            this.statsTime = statsTime;
+            this.sorted = groups.values().toArray(new GroupConsumeInfo[0]);
+            Arrays.sort(this.sorted);
+            this.decorated = new GroupConsumeInfo[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                if (SYSTEM_GROUP_SET.contains(sorted[i].getGroup())) {
+                    decorated[i] = copyOf(sorted[i]);
+                    decorated[i].setGroup(SYSTEM_GROUP_PREFIX + sorted[i].getGroup());
+                } else {
+                    decorated[i] = sorted[i];
+                }
+            }
+        }
+
+        /**
+         * Same groups with another membership time
+         */
+        GroupSnapshot(GroupSnapshot source, long membershipTime) {
+            this.groups = source.groups;
+            this.brokerGroups = source.brokerGroups;
+            this.membershipTime = membershipTime;
+            this.statsTime = source.statsTime;
+            this.sorted = source.sorted;
+            this.decorated = source.decorated;
+        }
+    }
+
+    private static final class BrokerSubscriptions {
+
+        final String brokerAddr;
+
+        final DataVersion dataVersion;
+
+        final Map<String, SubscriptionGroupConfig> groups;
+
+        BrokerSubscriptions(String brokerAddr, SubscriptionGroupWrapper subscriptionGroupWrapper) {
+            this.brokerAddr = brokerAddr;
+            this.dataVersion = subscriptionGroupWrapper.getDataVersion();
+            this.groups = Collections.unmodifiableMap(Maps.newHashMap(subscriptionGroupWrapper.getSubscriptionGroupTable()));
+        }
+
+        /**
+         * @return whether a table read from this address has not changed since this one, always false for brokers
+         * that do not report a data version
+         */
+        boolean isSameVersion(String brokerAddr, DataVersion dataVersion) {
+            return this.brokerAddr.equals(brokerAddr) && this.dataVersion != null && this.dataVersion.equals(dataVersion);
+        }
     }
 
+    /**
+     * Query one group from the brokers. The group is then watched: its connections are refreshed with the group
+     * list for a while.
+     */
     @Override
     public GroupConsumeInfo queryGroup(String consumerGroup, String address) {
+        watchedGroups.put(consumerGroup, Boolean.TRUE);
         GroupConsumeInfo groupConsumeInfo = new GroupConsumeInfo();
         try {
             ConsumeStats consumeStats = null;
@@ -257,22 +697,7 @@ public class ConsumerServiceImpl extends AbstractCommonService implements Consum
                 groupConsumeInfo.setConsumeTps((int) consumeStats.getConsumeTps());
                 groupConsumeInfo.setDiffTotal(consumeStats.computeTotalDiff());
             }
-            ConsumerConnection consumerConnection = null;
-            try {
-                if (StringUtils.isNotEmpty(address)) {
-                    consumerConnection = proxyAdmin.examineConsumerConnectionInfo(address, consumerGroup);
-                } else {
-                    consumerConnection = mqAdminExt.examineConsumerConnectionInfo(consumerGroup);
-                }
-            } catch (Exception e) {
-                logger.warn("examineConsumeStats exception to consumerGroup {}, response [{}]", consumerGroup, e.getMessage());
-            }
-            if (consumerConnection != null) {
-                groupConsumeInfo.setCount(consumerConnection.getConnectionSet().size());
-                groupConsumeInfo.setMessageModel(consumerConnection.getMessageModel());
-                groupConsumeInfo.setConsumeType(consumerConnection.getConsumeType());
-                groupConsumeInfo.setVersion(MQVersion.getVersionDesc(consumerConnection.computeMinVersion()));
-            }
+            setConnection(groupConsumeInfo, examineConsumerConnection(consumerGroup, address));
         } catch (Exception e) {
             logger.warn("examineConsumeStats or examineConsumerConnectionInfo exception, "
                     + consumerGroup, e);
@@ -295,11 +720,15 @@ public class ConsumerServiceImpl extends AbstractCommonService implements Consum
             throw new RuntimeException(e);
         }
         List<TopicConsumerInfo> res = new ArrayList<>();
-        consumeStatses.forEach(consumeStats -> {
+        Map<MessageQueue, String> messageQueueClientMap = null;
+        for (ConsumeStats consumeStats : consumeStatses) {
             if (consumeStats != null && consumeStats.getOffsetTable() != null && !consumeStats.getOffsetTable().isEmpty()) {
-                res.addAll(toTopicConsumerInfoList(topic, consumeStats, groupName));
+                if (messageQueueClientMap == null) {
+                    messageQueueClientMap = getClientConnection(groupName);
+                }
+                res.addAll(toTopicConsumerInfoList(topic, consumeStats, messageQueueClientMap));
             }
-        });
+        }
         return res;
     }
 
@@ -312,108 +741,455 @@ public class ConsumerServiceImpl extends AbstractCommonService implements Consum
             Throwables.throwIfUnchecked(e);
             throw new RuntimeException(e);
         }
-        return toTopicConsumerInfoList(topic, consumeStats, groupName);
+        return toTopicConsumerInfoList(topic, consumeStats, getClientConnection(groupName));
     }
 
-    private List<TopicConsumerInfo> toTopicConsumerInfoList(String topic, ConsumeStats consumeStats, String groupName) {
-        List<MessageQueue> mqList = Lists.newArrayList(Iterables.filter(consumeStats.getOffsetTable().keySet(), new Predicate<MessageQueue>() {
-            @Override
-            public boolean apply(MessageQueue o) {
-                return StringUtils.isBlank(topic) || o.getTopic().equals(topic);
+    private List<TopicConsumerInfo> toTopicConsumerInfoList(String topic, ConsumeStats consumeStats,
+        Map<MessageQueue, String> messageQueueClientMap) {
+        List<Map.Entry<MessageQueue, OffsetWrapper>> entries = Lists.newArrayListWithCapacity(consumeStats.getOffsetTable().size());
+        for (Map.Entry<MessageQueue, OffsetWrapper> entry : consumeStats.getOffsetTable().entrySet()) {
+            if (StringUtils.isBlank(topic) || entry.getKey().getTopic().equals(topic)) {
+                entries.add(entry);
             }
-        }));
-        Collections.sort(mqList);
+        }
+        entries.sort(Map.Entry.comparingByKey());
         List<TopicConsumerInfo> topicConsumerInfoList = Lists.newArrayList();
         TopicConsumerInfo nowTopicConsumerInfo = null;
-        Map<MessageQueue, String> messageQueueClientMap = getClientConnection(groupName);
-        for (MessageQueue mq : mqList) {
+        for (Map.Entry<MessageQueue, OffsetWrapper> entry : entries) {
+            MessageQueue mq = entry.getKey();
             if (nowTopicConsumerInfo == null || (!StringUtils.equals(mq.getTopic(), nowTopicConsumerInfo.getTopic()))) {
                 nowTopicConsumerInfo = new TopicConsumerInfo(mq.getTopic());
                 topicConsumerInfoList.add(nowTopicConsumerInfo);
             }
-            QueueStatInfo queueStatInfo = QueueStatInfo.fromOffsetTableEntry(mq, consumeStats.getOffsetTable().get(mq));
+            QueueStatInfo queueStatInfo = QueueStatInfo.fromOffsetTableEntry(mq, entry.getValue());
             queueStatInfo.setClientInfo(messageQueueClientMap.get(mq));
             nowTopicConsumerInfo.appendQueueStatInfo(queueStatInfo);
         }
         return topicConsumerInfoList;
     }
 
+    /**
+     * @return the client each queue of a group is assigned to. The running info of the clients is collected
+     * concurrently until {@link #RUNNING_INFO_DEADLINE_MILLIS}; the queues of the clients that have not answered
+     * by then have no client. Only the assignment of a group whose clients all answered is cached.
+     */
     private Map<MessageQueue, String> getClientConnection(String groupName) {
-        Map<MessageQueue, String> results = Maps.newHashMap();
+        Map<MessageQueue, String> cached = queueAssignments.getIfPresent(groupName);
+        if (cached != null) {
+            return cached;
+        }
+        Set<Connection> connections;
         try {
-            ConsumerConnection consumerConnection = mqAdminExt.examineConsumerConnectionInfo(groupName);
-            for (Connection connection : consumerConnection.getConnectionSet()) {
-                String clinetId = connection.getClientId();
-                ConsumerRunningInfo consumerRunningInfo = mqAdminExt.getConsumerRunningInfo(groupName, clinetId, false);
-                for (MessageQueue messageQueue : consumerRunningInfo.getMqTable().keySet()) {
-//                    results.put(messageQueue, clinetId + " " + connection.getClientAddr());
-                    results.put(messageQueue, clinetId);
-                }
-            }
+            connections = mqAdminExt.examineConsumerConnectionInfo(groupName).getConnectionSet();
         } catch (Exception err) {
             logger.error("op=getClientConnection_error", err);
+            return Collections.emptyMap();
+        }
+        long deadline = System.currentTimeMillis() + RUNNING_INFO_DEADLINE_MILLIS;
+        Map<MessageQueue, String> results = new ConcurrentHashMap<>();
+        CompletionService<Boolean> completionService = new ExecutorCompletionService<>(runningInfoExecutor);
+        List<Future<Boolean>> futures = Lists.newArrayListWithCapacity(connections.size());
+        Iterator<Connection> pending = connections.iterator();
+        int running = 0;
+        int answered = 0;
+        try {
+            while (running < RUNNING_INFO_CONCURRENCY && pending.hasNext()) {
+                String clientId = pending.next().getClientId();
+                futures.add(completionService.submit(withUserContext(() -> collectAssignment(groupName, clientId, results))));
+                running++;
+            }
+            while (running > 0) {
+                Future<Boolean> done = completionService.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                if (done == null) {
+                    logger.warn("op=getClientConnection_timeout group={} answered={} clients={}", groupName, answered, connections.size());
+                    break;
+                }
+                running--;
+                if (done.get()) {
+                    answered++;
+                }
+                if (pending.hasNext()) {
+                    String clientId = pending.next().getClientId();
+                    futures.add(completionService.submit(withUserContext(() -> collectAssignment(groupName, clientId, results))));
+                    running++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("op=getClientConnection_error", e.getCause());
+        } finally {
+            for (Future<Boolean> future : futures) {
+                future.cancel(true);
+            }
+        }
+        Map<MessageQueue, String> assignment = Collections.unmodifiableMap(Maps.newHashMap(results));
+        if (answered == connections.size()) {
+            queueAssignments.put(groupName, assignment);
+        }
+        return assignment;
+    }
+
+    /**
+     * @return whether the client answered
+     */
+    private boolean collectAssignment(String groupName, String clientId, Map<MessageQueue, String> results) {
+        try {
+            ConsumerRunningInfo consumerRunningInfo = mqAdminExt.getConsumerRunningInfo(groupName, clientId, false);
+            for (MessageQueue messageQueue : consumerRunningInfo.getMqTable().keySet()) {
+                results.put(messageQueue, clientId);
+            }
+            return true;
+        } catch (Exception e) {
+            logger.warn("op=getConsumerRunningInfo_error group={} clientId={}", groupName, clientId, e);
+            return false;
         }
-        return results;
     }
 
+    /**
+     * Query the groups consuming a topic concurrently, at most {@link CollectExecutorConfig#getBrokerConcurrency()}
+     * at a time so that each broker of the topic receives at most that many stats requests. The route of the topic
+     * is looked up once for all groups. The entry of a group that failed, or did not finish within
+     * {@link #TOPIC_CONSUMERS_DEADLINE_MILLIS}, has no queue and carries the error.
+     */
     @Override
     public Map<String /*groupName*/, TopicConsumerInfo> queryConsumeStatsListByTopicName(String topic) {
+        long start = System.currentTimeMillis();
+        long deadline = start + TOPIC_CONSUMERS_DEADLINE_MILLIS;
+        Set<String> groups;
+        TopicRouteData topicRouteData;
+        try {
+            groups = mqAdminExt.queryTopicConsumeByWho(topic).getGroupList();
+            topicRouteData = mqAdminExt.examineTopicRouteInfo(topic);
+        } catch (Exception e) {
+            Throwables.throwIfUnchecked(e);
+            throw new RuntimeException(e);
+        }
+        List<String> masterAddrs = null;
+        // the queues of a static topic are remapped across brokers, only the admin client resolves them
+        if (topicRouteData.getTopicQueueMappingByBroker() == null || topicRouteData.getTopicQueueMappingByBroker().isEmpty()) {
+            masterAddrs = Lists.newArrayList();
+            for (BrokerData brokerData : topicRouteData.getBrokerDatas()) {
+                String masterAddr = brokerData.getBrokerAddrs().get(MixAll.MASTER_ID);
+                if (masterAddr != null) {
+                    masterAddrs.add(masterAddr);
+                }
+            }
+        }
+        List<String> brokerAddrs = masterAddrs;
+        int concurrency = Math.max(1, collectExecutorConfig.getBrokerConcurrency());
         Map<String, TopicConsumerInfo> group2ConsumerInfoMap = Maps.newHashMap();
+        CompletionService<TopicConsumerInfo> completionService = new ExecutorCompletionService<>(executorService);
+        Map<Future<TopicConsumerInfo>, String> futures = Maps.newHashMap();
+        Iterator<String> pending = groups.iterator();
+        int running = 0;
         try {
-            GroupList groupList = mqAdminExt.queryTopicConsumeByWho(topic);
-            for (String group : groupList.getGroupList()) {
-                List<TopicConsumerInfo> topicConsumerInfoList = null;
-                try {
-                    topicConsumerInfoList = queryConsumeStatsList(topic, group);
-                } catch (Exception ignore) {
+            while (running < concurrency && pending.hasNext()) {
+                String group = pending.next();
+                futures.put(completionService.submit(withUserContext(() -> queryTopicConsumerInfo(topic, group, brokerAddrs, deadline))), group);
+                running++;
+            }
+            while (running > 0) {
+                Future<TopicConsumerInfo> done = completionService.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                if (done == null) {
+                    break;
+                }
+                running--;
+                group2ConsumerInfoMap.put(futures.get(done), done.get());
+                if (pending.hasNext()) {
+                    String group = pending.next();
+                    futures.put(completionService.submit(withUserContext(() -> queryTopicConsumerInfo(topic, group, brokerAddrs, deadline))), group);
+                    running++;
                 }
-                group2ConsumerInfoMap.put(group, CollectionUtils.isEmpty(topicConsumerInfoList) ? new TopicConsumerInfo(topic) : topicConsumerInfoList.get(0));
             }
-            return group2ConsumerInfoMap;
-        } catch (Exception e) {
-            Throwables.throwIfUnchecked(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        } finally {
+            for (Future<TopicConsumerInfo> future : futures.keySet()) {
+                future.cancel(true);
+            }
         }
+        long costMillis = System.currentTimeMillis() - start;
+        for (String group : groups) {
+            if (!group2ConsumerInfoMap.containsKey(group)) {
+                TopicConsumerInfo timedOut = new TopicConsumerInfo(topic);
+                timedOut.setErrMsg("Timed out after " + costMillis + "ms");
+                timedOut.setCostMillis(costMillis);
+                group2ConsumerInfoMap.put(group, timedOut);
+            }
+        }
+        return group2ConsumerInfoMap;
+    }
+
+    /**
+     * @param brokerAddrs the masters hosting the topic, null to let the admin client resolve them
+     * @return the consumption of one group, with the error if it failed
+     */
+    private TopicConsumerInfo queryTopicConsumerInfo(String topic, String group, List<String> brokerAddrs, long deadline) {
+        long start = System.currentTimeMillis();
+        TopicConsumerInfo topicConsumerInfo;
+        try {
+            ConsumeStats consumeStats;
+            if (brokerAddrs == null) {
+                consumeStats = mqAdminExt.examineConsumeStats(group, topic);
+            } else {
+                Map<MessageQueue, OffsetWrapper> offsetTable = Maps.newHashMap();
+                for (String brokerAddr : brokerAddrs) {
+                    ConsumeStats brokerStats = brokerFanOut.invoke(brokerAddr, addr -> {
+                        long timeoutMillis = Math.max(1, Math.min(DEFAULT_TIMEOUT_MILLIS, deadline - System.currentTimeMillis()));
+                        return mqAdminExt.examineConsumeStats(addr, group, topic, timeoutMillis);
+                    });
+                    offsetTable.putAll(brokerStats.getOffsetTable());
+                }
+                consumeStats = new ConsumeStats();
+                consumeStats.setOffsetTable(offsetTable);
+            }
+            List<TopicConsumerInfo> topicConsumerInfoList = consumeStats.getOffsetTable().isEmpty() ? Collections.emptyList()
+                : toTopicConsumerInfoList(topic, consumeStats, getClientConnection(group));
+            topicConsumerInfo = topicConsumerInfoList.isEmpty() ? new TopicConsumerInfo(topic) : topicConsumerInfoList.get(0);
+        } catch (Exception e) {
+            logger.warn("op=queryTopicConsumerInfo_error topic={} group={}", topic, group, e);
+            topicConsumerInfo = new TopicConsumerInfo(topic);
+            topicConsumerInfo.setErrMsg(e.getMessage());
+        }
+        topicConsumerInfo.setCostMillis(System.currentTimeMillis() - start);
+        return topicConsumerInfo;
+    }
+
+    /**
+     * @return the task run on a pool thread with the login of the calling thread, from which the user-specific
+     * admin pools are looked up
+     */
+    private static <T> Callable<T> withUserContext(Callable<T> task) {
+        Map<String, Object> userContext = UserInfoContext.getAll();
+        return () -> {
+            userContext.forEach(UserInfoContext::set);
+            try {
+                return task.call();
+            } finally {
+                UserInfoContext.clear();
+            }
+        };
     }
 
     @Override
     public Map<String, ConsumerGroupRollBackStat> resetOffset(ResetOffsetRequest resetOffsetRequest) {
         Map<String, ConsumerGroupRollBackStat> groupRollbackStats = Maps.newHashMap();
-        for (String consumerGroup : resetOffsetRequest.getConsumerGroupList()) {
-            try {
-                Map<MessageQueue, Long> rollbackStatsMap =
-                        mqAdminExt.resetOffsetByTimestamp(resetOffsetRequest.getTopic(), consumerGroup, resetOffsetRequest.getResetTime(), resetOffsetRequest.isForce());
-                ConsumerGroupRollBackStat consumerGroupRollBackStat = new ConsumerGroupRollBackStat(true);
-                List<RollbackStats> rollbackStatsList = consumerGroupRollBackStat.getRollbackStatsList();
-                for (Map.Entry<MessageQueue, Long> rollbackStatsEntty : rollbackStatsMap.entrySet()) {
-                    RollbackStats rollbackStats = new RollbackStats();
-                    rollbackStats.setRollbackOffset(rollbackStatsEntty.getValue());
-                    rollbackStats.setQueueId(rollbackStatsEntty.getKey().getQueueId());
-                    rollbackStats.setBrokerName(rollbackStatsEntty.getKey().getBrokerName());
-                    rollbackStatsList.add(rollbackStats);
+        resetOffset(resetOffsetRequest, consumerGroupRollBackStat -> {
+            groupRollbackStats.put(consumerGroupRollBackStat.getConsumerGroup(), consumerGroupRollBackStat);
+            return true;
+        });
+        return groupRollbackStats;
+    }
+
+    /**
+     * The groups with online consumers are reset one by one through {@code resetOffsetByTimestamp}, the brokers
+     * resolving the offsets of the queues again for each of them. The offsets resolved once here are only those a
+     * dry run reports, and those written for the groups without online consumer, in the queues they already hold
+     * an offset for.
+     */
+    @Override
+    public void resetOffset(ResetOffsetRequest resetOffsetRequest, Predicate<ConsumerGroupRollBackStat> consumer) {
+        Set<String> consumerGroups = new LinkedHashSet<>(resetOffsetRequest.getConsumerGroupList());
+        Supplier<ResetTargets> targets = Suppliers.memoize(() -> resolveResetTargets(resetOffsetRequest.getTopic(), resetOffsetRequest.getResetTime()));
+        int concurrency = Math.max(1, collectExecutorConfig.getBrokerConcurrency());
+        CompletionService<ConsumerGroupRollBackStat> completionService = new ExecutorCompletionService<>(executorService);
+        List<Future<ConsumerGroupRollBackStat>> futures = Lists.newArrayListWithCapacity(consumerGroups.size());
+        Iterator<String> pending = consumerGroups.iterator();
+        int running = 0;
+        try {
+            while (running < concurrency && pending.hasNext()) {
+                String consumerGroup = pending.next();
+                futures.add(completionService.submit(withUserContext(() -> resetGroupOffset(resetOffsetRequest, consumerGroup, targets))));
+                running++;
+            }
+            while (running > 0) {
+                ConsumerGroupRollBackStat consumerGroupRollBackStat = completionService.take().get();
+                running--;
+                if (!consumer.test(consumerGroupRollBackStat)) {
+                    return;
                 }
-                groupRollbackStats.put(consumerGroup, consumerGroupRollBackStat);
-            } catch (MQClientException e) {
-                if (ResponseCode.CONSUMER_NOT_ONLINE == e.getResponseCode()) {
-                    try {
-                        ConsumerGroupRollBackStat consumerGroupRollBackStat = new ConsumerGroupRollBackStat(true);
-                        List<RollbackStats> rollbackStatsList = mqAdminExt.resetOffsetByTimestampOld(consumerGroup, resetOffsetRequest.getTopic(), resetOffsetRequest.getResetTime(), true);
-                        consumerGroupRollBackStat.setRollbackStatsList(rollbackStatsList);
-                        groupRollbackStats.put(consumerGroup, consumerGroupRollBackStat);
-                        continue;
-                    } catch (Exception err) {
-                        logger.error("op=resetOffset_which_not_online_error", err);
-                    }
-                } else {
-                    logger.error("op=resetOffset_error", e);
+                if (pending.hasNext()) {
+                    String consumerGroup = pending.next();
+                    futures.add(completionService.submit(withUserContext(() -> resetGroupOffset(resetOffsetRequest, consumerGroup, targets))));
+                    running++;
                 }
-                groupRollbackStats.put(consumerGroup, new ConsumerGroupRollBackStat(false, e.getMessage()));
-            } catch (Exception e) {
-                logger.error("op=resetOffset_error", e);
-                groupRollbackStats.put(consumerGroup, new ConsumerGroupRollBackStat(false, e.getMessage()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        } finally {
+            // the resets already sent to the brokers are not undone, the groups not started yet are left as they are
+            for (Future<ConsumerGroupRollBackStat> future : futures) {
+                future.cancel(false);
             }
         }
-        return groupRollbackStats;
+    }
+
+    private ConsumerGroupRollBackStat resetGroupOffset(ResetOffsetRequest resetOffsetRequest, String consumerGroup,
+        Supplier<ResetTargets> targets) {
+        long start = System.currentTimeMillis();
+        String topic = resetOffsetRequest.getTopic();
+        ConsumerGroupRollBackStat consumerGroupRollBackStat;
+        try {
+            if (resetOffsetRequest.isDryRun()) {
+                consumerGroupRollBackStat = new ConsumerGroupRollBackStat(true);
+                consumerGroupRollBackStat.setRollbackStatsList(planGroupReset(topic, consumerGroup, resetOffsetRequest.isForce(), false, targets.get()));
+            } else {
+                consumerGroupRollBackStat = applyGroupReset(resetOffsetRequest, consumerGroup, targets);
+            }
+        } catch (Exception e) {
+            logger.error("op=resetOffset_error group={}", consumerGroup, e);
+            consumerGroupRollBackStat = new ConsumerGroupRollBackStat(false, e.getMessage());
+        }
+        consumerGroupRollBackStat.setConsumerGroup(consumerGroup);
+        consumerGroupRollBackStat.setCostMillis(System.currentTimeMillis() - start);
+        return consumerGroupRollBackStat;
+    }
+
+    private ConsumerGroupRollBackStat applyGroupReset(ResetOffsetRequest resetOffsetRequest, String consumerGroup,
+        Supplier<ResetTargets> targets) throws Exception {
+        String topic = resetOffsetRequest.getTopic();
+        ConsumerGroupRollBackStat consumerGroupRollBackStat = new ConsumerGroupRollBackStat(true);
+        try {
+            Map<MessageQueue, Long> rollbackStatsMap =
+                    mqAdminExt.resetOffsetByTimestamp(topic, consumerGroup, resetOffsetRequest.getResetTime(), resetOffsetRequest.isForce());
+            List<RollbackStats> rollbackStatsList = consumerGroupRollBackStat.getRollbackStatsList();
+            for (Map.Entry<MessageQueue, Long> rollbackStatsEntty : rollbackStatsMap.entrySet()) {
+                RollbackStats rollbackStats = new RollbackStats();
+                rollbackStats.setRollbackOffset(rollbackStatsEntty.getValue());
+                rollbackStats.setQueueId(rollbackStatsEntty.getKey().getQueueId());
+                rollbackStats.setBrokerName(rollbackStatsEntty.getKey().getBrokerName());
+                rollbackStatsList.add(rollbackStats);
+            }
+            return consumerGroupRollBackStat;
+        } catch (MQClientException e) {
+            if (ResponseCode.CONSUMER_NOT_ONLINE != e.getResponseCode()) {
+                throw e;
+            }
+        }
+        // no consumer to notify: write the offsets directly, always forced and only in the queues the group already
+        // has an offset for, as resetOffsetByTimestampOld did
+        ResetTargets resetTargets = targets.get();
+        List<RollbackStats> rollbackStatsList = planGroupReset(topic, consumerGroup, true, true, resetTargets);
+        for (RollbackStats rollbackStats : rollbackStatsList) {
+            MessageQueue mq = new MessageQueue(topic, rollbackStats.getBrokerName(), (int) rollbackStats.getQueueId());
+            brokerFanOut.invoke(resetTargets.masterAddrs.get(rollbackStats.getBrokerName()), addr -> {
+                mqAdminExt.updateConsumeOffset(addr, consumerGroup, mq, rollbackStats.getRollbackOffset());
+                return null;
+            });
+        }
+        consumerGroupRollBackStat.setRollbackStatsList(rollbackStatsList);
+        return consumerGroupRollBackStat;
+    }
+
+    /**
+     * @param consumedOnly skip the queues the group has no offset for, reported with a consumer offset of -1 otherwise
+     * @return the offset every queue of the topic would be reset to for the group, with its current offset. Without
+     * force a queue is only moved backwards, as the brokers do.
+     */
+    private List<RollbackStats> planGroupReset(String topic, String consumerGroup, boolean force, boolean consumedOnly,
+        ResetTargets targets) throws Exception {
+        Map<MessageQueue, OffsetWrapper> offsetTable = Maps.newHashMap();
+        for (String masterAddr : targets.masterAddrs.values()) {
+            ConsumeStats consumeStats = brokerFanOut.invoke(masterAddr, addr -> mqAdminExt.examineConsumeStats(addr, consumerGroup, topic, DEFAULT_TIMEOUT_MILLIS));
+            offsetTable.putAll(consumeStats.getOffsetTable());
+        }
+        List<RollbackStats> rollbackStatsList = Lists.newArrayListWithCapacity(targets.queues.size());
+        for (Map.Entry<MessageQueue, RollbackStats> entry : targets.queues.entrySet()) {
+            RollbackStats target = entry.getValue();
+            OffsetWrapper current = offsetTable.get(entry.getKey());
+            if (current == null && consumedOnly) {
+                continue;
+            }
+            RollbackStats rollbackStats = new RollbackStats();
+            rollbackStats.setBrokerName(target.getBrokerName());
+            rollbackStats.setQueueId(target.getQueueId());
+            rollbackStats.setBrokerOffset(target.getBrokerOffset());
+            rollbackStats.setTimestampOffset(target.getTimestampOffset());
+            rollbackStats.setConsumerOffset(current == null ? -1 : current.getConsumerOffset());
+            if (force || current == null || target.getTimestampOffset() <= current.getConsumerOffset()) {
+                rollbackStats.setRollbackOffset(target.getTimestampOffset());
+            } else {
+                rollbackStats.setRollbackOffset(current.getConsumerOffset());
+            }
+            rollbackStatsList.add(rollbackStats);
+        }
+        return rollbackStatsList;
+    }
+
+    /**
+     * Resolve the offset of every queue of the topic at a time, or its max offset if the time is -1.
+     * The queues of a broker are searched one after the other, the brokers through {@link BrokerFanOut}.
+     */
+    private ResetTargets resolveResetTargets(String topic, long resetTime) {
+        try {
+            TopicRouteData topicRouteData = mqAdminExt.examineTopicRouteInfo(topic);
+            Map<String, String> masterAddrs = Maps.newHashMap();
+            Map<String, String> brokerNames = Maps.newHashMap();
+            for (BrokerData brokerData : topicRouteData.getBrokerDatas()) {
+                String masterAddr = brokerData.getBrokerAddrs().get(MixAll.MASTER_ID);
+                if (masterAddr != null) {
+                    masterAddrs.put(brokerData.getBrokerName(), masterAddr);
+                    brokerNames.put(masterAddr, brokerData.getBrokerName());
+                }
+            }
+            TopicStatsTable topicStatsTable = mqAdminExt.examineTopicStats(topic);
+            Map<String, List<MessageQueue>> brokerQueues = Maps.newHashMap();
+            for (MessageQueue mq : topicStatsTable.getOffsetTable().keySet()) {
+                if (masterAddrs.containsKey(mq.getBrokerName())) {
+                    brokerQueues.computeIfAbsent(mq.getBrokerName(), key -> Lists.newArrayList()).add(mq);
+                }
+            }
+            Map<String, Map<MessageQueue, Long>> brokerTargets = brokerFanOut.invokeAll(Lists.newArrayList(brokerNames.keySet()), brokerAddr -> {
+                Map<MessageQueue, Long> offsets = Maps.newHashMap();
+                for (MessageQueue mq : brokerQueues.getOrDefault(brokerNames.get(brokerAddr), Collections.emptyList())) {
+                    long maxOffset = topicStatsTable.getOffsetTable().get(mq).getMaxOffset();
+                    offsets.put(mq, resetTime == -1 ? maxOffset : mqAdminExt.searchOffset(mq, resetTime));
+                }
+                return offsets;
+            });
+            Map<MessageQueue, RollbackStats> queues = Maps.newTreeMap();
+            for (Map<MessageQueue, Long> offsets : brokerTargets.values()) {
+                for (Map.Entry<MessageQueue, Long> entry : offsets.entrySet()) {
+                    RollbackStats target = new RollbackStats();
+                    target.setBrokerName(entry.getKey().getBrokerName());
+                    target.setQueueId(entry.getKey().getQueueId());
+                    target.setBrokerOffset(topicStatsTable.getOffsetTable().get(entry.getKey()).getMaxOffset());
+                    target.setTimestampOffset(entry.getValue());
+                    queues.put(entry.getKey(), target);
+                }
+            }
+            return new ResetTargets(masterAddrs, queues);
+        } catch (Exception e) {
+            Throwables.throwIfUnchecked(e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static final class ResetTargets {
+
+        /**
+         * Master address of every broker name hosting the topic
+         */
+        final Map<String, String> masterAddrs;
+
+        /**
+         * Max and target offset of every queue, in queue order
+         */
+        final Map<MessageQueue, RollbackStats> queues;
+
+        ResetTargets(Map<String, String> masterAddrs, Map<MessageQueue, RollbackStats> queues) {
+            this.masterAddrs = masterAddrs;
+            this.queues = queues;
+        }
     }
 
     @Override
@@ -459,6 +1235,8 @@ public class ConsumerServiceImpl extends AbstractCommonService implements Consum
                 deleteResources(MixAll.RETRY_GROUP_TOPIC_PREFIX + deleteSubGroupRequest.getGroupName(), brokerName, clusterInfo, deleteInNsFlag);
                 deleteResources(MixAll.DLQ_GROUP_TOPIC_PREFIX + deleteSubGroupRequest.getGroupName(), brokerName, clusterInfo, deleteInNsFlag);
             }
+            // the group list reads the group names again before it is served next
+            invalidateMembership();
         } catch (Exception e) {
             Throwables.throwIfUnchecked(e);
             throw new RuntimeException(e);
@@ -486,6 +1264,7 @@ public class ConsumerServiceImpl extends AbstractCommonService implements Consum
                     consumerConfigInfo.getClusterNameList(), consumerConfigInfo.getBrokerNameList())) {
                 mqAdminExt.createAndUpdateSubscriptionGroupConfig(clusterInfo.getBrokerAddrTable().get(brokerName).selectBrokerAddr(), consumerConfigInfo.getSubscriptionGroupConfig());
             }
+            invalidateMembership();
         } catch (Exception err) {
             Throwables.throwIfUnchecked(err);
             throw new RuntimeException(err);
@@ -533,30 +1312,40 @@ public class ConsumerServiceImpl extends AbstractCommonService implements Consum
 
     @Override
     public GroupConsumeInfo refreshGroup(String address, String consumerGroup) {
-
-        if (isCacheBeingBuilt || cacheConsumeInfoList.isEmpty()) {
-            throw new RuntimeException("Cache is being built or empty, please try again later");
-        }
-        synchronized (cacheConsumeInfoList) {
-            for (int i = 0; i < cacheConsumeInfoList.size(); i++) {
-                GroupConsumeInfo groupConsumeInfo = cacheConsumeInfoList.get(i);
-                if (groupConsumeInfo.getGroup().equals(consumerGroup)) {
-                    GroupConsumeInfo updatedInfo = queryGroup(consumerGroup, "");
-                    updatedInfo.setUpdateTime(new Date());
-                    updatedInfo.setGroup(consumerGroup);
-                    updatedInfo.setAddress(consumerGroupMap.get(consumerGroup));
-                    cacheConsumeInfoList.set(i, updatedInfo);
-                    return updatedInfo;
-                }
+        ensureMembership();
+        if (!snapshot.get().groups.containsKey(consumerGroup)) {
+            throw new RuntimeException("No consumer group information available");
+        }
+        GroupConsumeInfo groupConsumeInfo = queryGroup(consumerGroup, "");
+        groupConsumeInfo.setUpdateTime(new Date());
+        connectionTimes.put(consumerGroup, System.currentTimeMillis());
+        GroupSnapshot published = snapshot.updateAndGet(current -> {
+            GroupConsumeInfo old = current.groups.get(consumerGroup);
+            if (old == null) {
+                return current;
             }
+            GroupConsumeInfo consumeInfo = copyOf(groupConsumeInfo);
+            consumeInfo.setAddress(old.getAddress());
+            consumeInfo.setSubGroupType(old.getSubGroupType());
+            Map<String, GroupConsumeInfo> groups = Maps.newHashMap(current.groups);
+            groups.put(consumerGroup, consumeInfo);
+            return new GroupSnapshot(groups, current.brokerGroups, current.membershipTime, current.statsTime);
+        });
+        GroupConsumeInfo refreshed = published.groups.get(consumerGroup);
+        if (refreshed == null) {
+            throw new RuntimeException("No consumer group information available");
         }
-        throw new RuntimeException("No consumer group information available");
+        return refreshed;
     }
 
+    /**
+     * Re-read the group names now and mark every group stale. The current snapshot is returned while the
+     * groups are refreshed in the background.
+     */
     @Override
     public List<GroupConsumeInfo> refreshAllGroup(String address) {
-        cacheConsumeInfoList.clear();
-        consumerGroupMap.clear();
+        refreshAllBefore = System.currentTimeMillis();
+        loadMembership();
         return queryGroupList(false, address);
     }
 }
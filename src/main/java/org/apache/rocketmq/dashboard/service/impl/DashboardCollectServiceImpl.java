@@ -28,19 +28,35 @@ import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.io.Files;
 import jakarta.annotation.Resource;
 import org.apache.rocketmq.dashboard.config.RMQConfigure;
 import org.apache.rocketmq.dashboard.service.DashboardCollectService;
+import org.apache.rocketmq.dashboard.store.Downsampler;
+import org.apache.rocketmq.dashboard.store.RollupTier;
+import org.apache.rocketmq.dashboard.store.SeriesBuffer;
+import org.apache.rocketmq.dashboard.store.SeriesSchema;
+import org.apache.rocketmq.dashboard.store.SeriesView;
+import org.apache.rocketmq.dashboard.store.TimeSeriesStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.io.IOException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Service
 public class DashboardCollectServiceImpl implements DashboardCollectService {
@@ -50,58 +66,64 @@ public class DashboardCollectServiceImpl implements DashboardCollectService {
 
     private final static Logger log = LoggerFactory.getLogger(DashboardCollectServiceImpl.class);
 
-    private LoadingCache<String, List<String>> brokerMap = CacheBuilder.newBuilder()
-            .maximumSize(1000)
-            .concurrencyLevel(10)
-            .recordStats()
-            .ticker(Ticker.systemTicker())
-            .removalListener(new RemovalListener<Object, Object>() {
-                @Override
-                public void onRemoval(RemovalNotification<Object, Object> notification) {
-                    log.debug(notification.getKey() + " was removed, cause is " + notification.getCause());
-                }
-            })
-            .build(
-                    new CacheLoader<String, List<String>>() {
-                        @Override
-                        public List<String> load(String key) {
-                            List<String> list = Lists.newArrayList();
-                            return list;
-                        }
+    private static final RollupTier[] ROLLUP_TIERS = {RollupTier.FIVE_MINUTES, RollupTier.ONE_HOUR};
+
+    /**
+     * Points kept in memory per series, two hours of the per-minute collection
+     */
+    private static final int SERIES_BUFFER_CAPACITY = 120;
+
+    private final Map<RollupTier, TimeSeriesStore> stores = new ConcurrentHashMap<>();
+
+    private LoadingCache<String, SeriesBuffer> brokerMap = newSeriesCache(SeriesSchema.BROKER);
+
+    private LoadingCache<String, SeriesBuffer> topicMap = newSeriesCache(SeriesSchema.TOPIC);
+
+    private LoadingCache<String, SeriesBuffer> groupMap = newSeriesCache(SeriesSchema.GROUP);
+
+    private LoadingCache<String, SeriesBuffer> queueMap = newSeriesCache(SeriesSchema.QUEUE);
+
+    private static LoadingCache<String, SeriesBuffer> newSeriesCache(SeriesSchema schema) {
+        return CacheBuilder.newBuilder()
+                .concurrencyLevel(10)
+                .recordStats()
+                .ticker(Ticker.systemTicker())
+                .removalListener(new RemovalListener<Object, Object>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<Object, Object> notification) {
+                        log.debug(notification.getKey() + " was removed, cause is " + notification.getCause());
                     }
-            );
-
-    private LoadingCache<String, List<String>> topicMap = CacheBuilder.newBuilder()
-            .maximumSize(1000)
-            .concurrencyLevel(10)
-            .recordStats()
-            .ticker(Ticker.systemTicker())
-            .removalListener(new RemovalListener<Object, Object>() {
-                @Override
-                public void onRemoval(RemovalNotification<Object, Object> notification) {
-                    log.debug(notification.getKey() + " was removed, cause is " + notification.getCause());
-                }
-            })
-            .build(
-                    new CacheLoader<String, List<String>>() {
-                        @Override
-                        public List<String> load(String key) {
-                            List<String> list = Lists.newArrayList();
-                            return list;
+                })
+                .build(
+                        new CacheLoader<String, SeriesBuffer>() {
+                            @Override
+                            public SeriesBuffer load(String key) {
+                                return new SeriesBuffer(schema, SERIES_BUFFER_CAPACITY);
+                            }
                         }
-                    }
-            );
+                );
+    }
 
     @Override
-    public LoadingCache<String, List<String>> getBrokerMap() {
+    public LoadingCache<String, SeriesBuffer> getBrokerMap() {
         return brokerMap;
     }
 
     @Override
-    public LoadingCache<String, List<String>> getTopicMap() {
+    public LoadingCache<String, SeriesBuffer> getTopicMap() {
         return topicMap;
     }
 
+    @Override
+    public LoadingCache<String, SeriesBuffer> getGroupMap() {
+        return groupMap;
+    }
+
+    @Override
+    public LoadingCache<String, SeriesBuffer> getQueueMap() {
+        return queueMap;
+    }
+
     @Override
     public Map<String, List<String>> jsonDataFile2map(File file) {
         List<String> strings;
@@ -135,25 +157,350 @@ public class DashboardCollectServiceImpl implements DashboardCollectService {
 
     @Override
     public Map<String, List<String>> getBrokerCache(String date) {
-        String dataLocationPath = configure.getDashboardCollectData();
-        File file = new File(dataLocationPath + date + ".json");
+        if (isStored(date, SeriesSchema.BROKER)) {
+            return formatRows(readStore(date, SeriesSchema.BROKER));
+        }
+        File file = legacyDataFile(date, SeriesSchema.BROKER);
         if (!file.exists()) {
-            log.info(String.format("No dashboard data for broker cache data: %s", date));
-            return Maps.newHashMap();
+            Map<String, SeriesView> rolledUp = readRolledUp(date, SeriesSchema.BROKER);
+            if (rolledUp.isEmpty()) {
+                log.info(String.format("No dashboard data for broker cache data: %s", date));
+            }
+            return formatRows(rolledUp);
         }
         return jsonDataFile2map(file);
     }
 
     @Override
     public Map<String, List<String>> getTopicCache(String date) {
-        String dataLocationPath = configure.getDashboardCollectData();
-        File file = new File(dataLocationPath + date + "_topic" + ".json");
+        if (isStored(date, SeriesSchema.TOPIC)) {
+            return formatRows(readStore(date, SeriesSchema.TOPIC));
+        }
+        File file = legacyDataFile(date, SeriesSchema.TOPIC);
         if (!file.exists()) {
-            log.info(String.format("No dashboard data for data: %s", date));
+            Map<String, SeriesView> rolledUp = readRolledUp(date, SeriesSchema.TOPIC);
+            if (rolledUp.isEmpty()) {
+                log.info(String.format("No dashboard data for data: %s", date));
+            }
             //throw Throwables.propagate(new ServiceException(1, "This date have't data!"));
-            return Maps.newHashMap();
+            return formatRows(rolledUp);
         }
         return jsonDataFile2map(file);
     }
 
+    @Override
+    public Map<String, SeriesView> getSeries(String date, SeriesSchema schema) {
+        if (isStored(date, schema)) {
+            return readStore(date, schema);
+        }
+        File file = legacyDataFile(date, schema);
+        if (file == null || !file.exists()) {
+            return readRolledUp(date, schema);
+        }
+        return parseRows(jsonDataFile2map(file), schema);
+    }
+
+    @Override
+    public SeriesView getSeries(String date, SeriesSchema schema, String series) {
+        if (isStored(date, schema)) {
+            try {
+                return getStore().read(date, schema, series);
+            } catch (IOException e) {
+                Throwables.throwIfUnchecked(e);
+                throw new RuntimeException(e);
+            }
+        }
+        SeriesView view = getSeries(date, schema).get(series);
+        return view == null ? SeriesView.empty(schema) : view;
+    }
+
+    /**
+     * The raw points of a day are deleted past {@code dashboardRawRetentionDays}, after being rolled up: the day is
+     * then served from the finest tier still holding it, one point per bucket.
+     *
+     * @return the points of every series of the schema, empty if no tier holds the day
+     */
+    private Map<String, SeriesView> readRolledUp(String date, SeriesSchema schema) {
+        SeriesSchema rollupSchema = schema.getRollupSchema();
+        for (RollupTier tier : ROLLUP_TIERS) {
+            if (!getStore(tier).contains(date, rollupSchema)) {
+                continue;
+            }
+            try {
+                Map<String, SeriesView> result = Maps.newHashMap();
+                for (Map.Entry<String, SeriesView> entry : getStore(tier).readAll(date, rollupSchema).entrySet()) {
+                    result.put(entry.getKey(), Downsampler.toPoints(entry.getValue()));
+                }
+                return result;
+            } catch (IOException e) {
+                Throwables.throwIfUnchecked(e);
+                throw new RuntimeException(e);
+            }
+        }
+        return Maps.newHashMap();
+    }
+
+    /**
+     * A finished day still kept as a legacy json file is imported on its first read, so it is
+     * parsed only once and then served by the mapped reader of the store like any other past day.
+     */
+    private boolean isStored(String date, SeriesSchema schema) {
+        if (getStore().contains(date, schema)) {
+            return true;
+        }
+        File legacyFile = legacyDataFile(date, schema);
+        if (!getStore().isSealed(date) || legacyFile == null || !legacyFile.exists()) {
+            return false;
+        }
+        try {
+            importLegacyDataFileIfAbsent(date, schema);
+        } catch (IOException e) {
+            log.warn("Failed to import legacy dashboard data of {}", date, e);
+            return false;
+        }
+        return getStore().contains(date, schema);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flush(brokerMap);
+        flush(topicMap);
+        flush(groupMap);
+        flush(queueMap);
+    }
+
+    private void flush(LoadingCache<String, SeriesBuffer> cache) throws IOException {
+        DateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        for (Map.Entry<String, SeriesBuffer> entry : cache.asMap().entrySet()) {
+            SeriesBuffer buffer = entry.getValue();
+            SeriesView pending;
+            long flushedSequence;
+            synchronized (buffer) {
+                if (buffer.lostSinceFlush() > 0) {
+                    log.warn("{} points of {} were overwritten before being flushed", buffer.lostSinceFlush(), entry.getKey());
+                }
+                pending = buffer.unflushed();
+                flushedSequence = buffer.getNextSequence();
+            }
+            // split the pending points by the day of their timestamp
+            int from = 0;
+            String day = null;
+            for (int i = 0; i < pending.size(); i++) {
+                String pointDay = format.format(new Date(pending.getTimestamp(i)));
+                if (!pointDay.equals(day)) {
+                    append(day, entry.getKey(), pending.slice(from, i));
+                    from = i;
+                    day = pointDay;
+                }
+            }
+            append(day, entry.getKey(), pending.slice(from, pending.size()));
+            buffer.markFlushed(flushedSequence);
+        }
+    }
+
+    @Override
+    public RollupTier selectTier(long begin, long end, int maxPoints) {
+        LocalDate first = toDay(begin);
+        for (RollupTier tier : RollupTier.values()) {
+            if (isRetained(tier, first) && (end - begin) / tier.getResolutionMillis() <= maxPoints) {
+                return tier;
+            }
+        }
+        return RollupTier.ONE_HOUR;
+    }
+
+    @Override
+    public SeriesView querySeries(RollupTier tier, SeriesSchema schema, String series, long begin, long end) {
+        List<SeriesView> views = Lists.newArrayList();
+        LocalDate last = toDay(end);
+        for (LocalDate day = toDay(begin); !day.isAfter(last); day = day.plusDays(1)) {
+            // nothing is kept before the retention of the tier
+            if (isRetained(tier, day)) {
+                views.add(readTier(tier, day.toString(), schema, series).between(begin, end));
+            }
+        }
+        return SeriesView.concat(schema.getRollupSchema(), views);
+    }
+
+    /**
+     * Days not rolled up yet, today or those kept as raw points only, are aggregated from their raw points
+     * on the fly; a raw day is bounded to one point per minute.
+     */
+    private SeriesView readTier(RollupTier tier, String day, SeriesSchema schema, String series) {
+        SeriesSchema rollupSchema = schema.getRollupSchema();
+        if (tier != RollupTier.RAW && getStore(tier).contains(day, rollupSchema)) {
+            try {
+                return getStore(tier).read(day, rollupSchema, series);
+            } catch (IOException e) {
+                Throwables.throwIfUnchecked(e);
+                throw new RuntimeException(e);
+            }
+        }
+        return Downsampler.downsample(getSeries(day, schema, series), tier.getResolutionMillis());
+    }
+
+    @Override
+    public void compact() throws IOException {
+        Set<String> days = Sets.newTreeSet(getStore().listDays());
+        days.addAll(legacyDataDays());
+        for (String day : days) {
+            if (getStore().isSealed(day)) {
+                rollup(day, SeriesSchema.BROKER);
+                rollup(day, SeriesSchema.TOPIC);
+                rollup(day, SeriesSchema.GROUP);
+                rollup(day, SeriesSchema.QUEUE);
+            }
+        }
+        for (RollupTier tier : RollupTier.values()) {
+            for (String day : getStore(tier).listDays()) {
+                if (!isRetained(tier, LocalDate.parse(day))) {
+                    getStore(tier).delete(day);
+                }
+            }
+        }
+    }
+
+    private void rollup(String day, SeriesSchema schema) throws IOException {
+        if (!isStored(day, schema)) {
+            return;
+        }
+        // the json file of previous versions is no longer needed once its day is in the store
+        File legacyFile = legacyDataFile(day, schema);
+        if (legacyFile != null && legacyFile.exists() && !legacyFile.delete()) {
+            log.warn("Failed to delete imported legacy dashboard data file {}", legacyFile.getAbsolutePath());
+        }
+        Map<String, SeriesView> points = null;
+        for (RollupTier tier : ROLLUP_TIERS) {
+            if (!isRetained(tier, LocalDate.parse(day)) || getStore(tier).contains(day, schema.getRollupSchema())) {
+                continue;
+            }
+            if (points == null) {
+                points = readStore(day, schema);
+            }
+            log.info("Roll up {} dashboard data of {} to {}", schema.getDirName(), day, tier.getName());
+            for (Map.Entry<String, SeriesView> entry : points.entrySet()) {
+                getStore(tier).append(day, entry.getKey(), Downsampler.downsample(entry.getValue(), tier.getResolutionMillis()));
+            }
+        }
+    }
+
+    private LocalDate toDay(long timestamp) {
+        return Instant.ofEpochMilli(timestamp).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private void append(String day, String series, SeriesView points) throws IOException {
+        if (day == null || points.isEmpty()) {
+            return;
+        }
+        if (!getStore().contains(day, points.getSchema())) {
+            importLegacyDataFileIfAbsent(day, points.getSchema());
+        }
+        getStore().append(day, series, points);
+    }
+
+    /**
+     * Move the json file written by previous versions into the store the first time its day is flushed,
+     * so the points collected earlier that day are kept.
+     */
+    private synchronized void importLegacyDataFileIfAbsent(String day, SeriesSchema schema) throws IOException {
+        File file = legacyDataFile(day, schema);
+        if (file == null || !file.exists() || getStore().contains(day, schema)) {
+            return;
+        }
+        log.info("Import legacy dashboard data file {}", file.getAbsolutePath());
+        for (Map.Entry<String, SeriesView> entry : parseRows(jsonDataFile2map(file), schema).entrySet()) {
+            getStore().append(day, entry.getKey(), entry.getValue());
+        }
+    }
+
+    private Map<String, SeriesView> readStore(String date, SeriesSchema schema) {
+        try {
+            return getStore().readAll(date, schema);
+        } catch (IOException e) {
+            Throwables.throwIfUnchecked(e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Map<String, List<String>> formatRows(Map<String, SeriesView> series) {
+        Map<String, List<String>> result = Maps.newHashMapWithExpectedSize(series.size());
+        for (Map.Entry<String, SeriesView> entry : series.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().formatRows());
+        }
+        return result;
+    }
+
+    private Map<String, SeriesView> parseRows(Map<String, List<String>> rows, SeriesSchema schema) {
+        Map<String, SeriesView> result = Maps.newHashMapWithExpectedSize(rows.size());
+        for (Map.Entry<String, List<String>> entry : rows.entrySet()) {
+            SeriesBuffer buffer = new SeriesBuffer(schema, Math.max(1, entry.getValue().size()));
+            for (String row : entry.getValue()) {
+                try {
+                    buffer.appendRecord(schema.parseRow(row));
+                } catch (RuntimeException e) {
+                    log.warn("Skip malformed dashboard row {} of {}", row, entry.getKey());
+                }
+            }
+            result.put(entry.getKey(), buffer.snapshot());
+        }
+        return result;
+    }
+
+    /**
+     * @return the json file of a day written by previous versions, null for the schemas they did not collect
+     */
+    private File legacyDataFile(String date, SeriesSchema schema) {
+        String dataLocationPath = configure.getDashboardCollectData();
+        switch (schema) {
+            case BROKER:
+                return new File(dataLocationPath + date + ".json");
+            case TOPIC:
+                return new File(dataLocationPath + date + "_topic" + ".json");
+            default:
+                return null;
+        }
+    }
+
+    private List<String> legacyDataDays() {
+        File collectData = new File(configure.getDashboardCollectData()).getAbsoluteFile();
+        Pattern pattern = Pattern.compile(Pattern.quote(collectData.getName()) + "(\\d{4}-\\d{2}-\\d{2})(_topic)?\\.json");
+        String[] names = collectData.getParentFile().list();
+        List<String> days = Lists.newArrayList();
+        if (names == null) {
+            return days;
+        }
+        for (String name : names) {
+            Matcher matcher = pattern.matcher(name);
+            if (matcher.matches()) {
+                days.add(matcher.group(1));
+            }
+        }
+        return days;
+    }
+
+    private boolean isRetained(RollupTier tier, LocalDate day) {
+        int retentionDays;
+        switch (tier) {
+            case RAW:
+                retentionDays = configure.getDashboardRawRetentionDays();
+                break;
+            case FIVE_MINUTES:
+                retentionDays = configure.getDashboardFiveMinuteRetentionDays();
+                break;
+            default:
+                retentionDays = configure.getDashboardHourRetentionDays();
+                break;
+        }
+        return retentionDays <= 0 || !day.isBefore(LocalDate.now().minusDays(retentionDays));
+    }
+
+    private TimeSeriesStore getStore() {
+        return getStore(RollupTier.RAW);
+    }
+
+    private TimeSeriesStore getStore(RollupTier tier) {
+        return stores.computeIfAbsent(tier, key -> new TimeSeriesStore(
+                new File(configure.getDashboardCollectData() + File.separator + key.getDirName())));
+    }
+
 }
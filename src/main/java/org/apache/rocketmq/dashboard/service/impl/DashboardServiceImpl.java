@@ -19,19 +19,32 @@ package org.apache.rocketmq.dashboard.service.impl;
 
 import com.google.common.collect.Lists;
 import jakarta.annotation.Resource;
+import org.apache.rocketmq.dashboard.model.DashboardSeries;
+import org.apache.rocketmq.dashboard.model.GroupLagTrend;
 import org.apache.rocketmq.dashboard.service.DashboardCollectService;
 import org.apache.rocketmq.dashboard.service.DashboardService;
+import org.apache.rocketmq.dashboard.store.RollupTier;
+import org.apache.rocketmq.dashboard.store.SeriesBuffer;
+import org.apache.rocketmq.dashboard.store.SeriesSchema;
+import org.apache.rocketmq.dashboard.store.SeriesView;
 import org.springframework.stereotype.Service;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class DashboardServiceImpl implements DashboardService {
 
+    /**
+     * Time over which the drain rate of a group is estimated
+     */
+    private static final long DRAIN_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
     @Resource
     private DashboardCollectService dashboardCollectService;
 
@@ -54,22 +67,130 @@ public class DashboardServiceImpl implements DashboardService {
      */
     @Override
     public List<String> queryTopicData(String date, String topicName) {
-        if (null != dashboardCollectService.getTopicCache(date)) {
-            return dashboardCollectService.getTopicCache(date).get(topicName);
+        SeriesView series = dashboardCollectService.getSeries(date, SeriesSchema.TOPIC, topicName);
+        if (series.isEmpty()) {
+            return null;
         }
-        return null;
+        return series.formatRows();
     }
 
     @Override
     public List<String> queryTopicCurrentData() {
-        Date date = new Date();
+        Map<String, SeriesBuffer> buffers = dashboardCollectService.getTopicMap().asMap();
+        if (!buffers.isEmpty()) {
+            List<String> result = Lists.newArrayListWithCapacity(buffers.size());
+            for (Map.Entry<String, SeriesBuffer> entry : buffers.entrySet()) {
+                if (entry.getValue().size() > 0) {
+                    result.add(entry.getKey() + "," + entry.getValue().latestRaw(SeriesSchema.TOPIC_OUT_MSG_CNT_TODAY, 0));
+                }
+            }
+            return result;
+        }
+        // nothing collected since the dashboard started, fall back to the persisted points of today
         DateFormat format = new SimpleDateFormat("yyyy-MM-dd");
-        Map<String, List<String>> topicCache = dashboardCollectService.getTopicCache(format.format(date));
-        List<String> result = Lists.newArrayList();
-        for (Map.Entry<String, List<String>> entry : topicCache.entrySet()) {
-            List<String> value = entry.getValue();
-            result.add(entry.getKey() + "," + value.get(value.size() - 1).split(",")[4]);
+        Map<String, SeriesView> series = dashboardCollectService.getSeries(format.format(new Date()), SeriesSchema.TOPIC);
+        List<String> result = Lists.newArrayListWithCapacity(series.size());
+        for (Map.Entry<String, SeriesView> entry : series.entrySet()) {
+            SeriesView value = entry.getValue();
+            if (!value.isEmpty()) {
+                result.add(entry.getKey() + "," + value.getLong(value.size() - 1, SeriesSchema.TOPIC_OUT_MSG_CNT_TODAY));
+            }
         }
         return result;
     }
+
+    @Override
+    public DashboardSeries querySeries(String type, String name, long begin, long end, int maxPoints) {
+        SeriesSchema schema = SeriesSchema.of(type);
+        RollupTier tier = dashboardCollectService.selectTier(begin, end, maxPoints);
+        SeriesView view = dashboardCollectService.querySeries(tier, schema, name, begin, end);
+        SeriesSchema rollupSchema = view.getSchema();
+        List<String> columns = Lists.newArrayListWithCapacity(rollupSchema.getColumnCount() + 1);
+        columns.add("timestamp");
+        for (int column = 0; column < rollupSchema.getColumnCount(); column++) {
+            columns.add(rollupSchema.getColumnName(column));
+        }
+        DashboardSeries series = new DashboardSeries();
+        series.setTier(tier.getName());
+        series.setResolutionMillis(tier.getResolutionMillis());
+        series.setColumns(columns);
+        series.setRows(view.formatRows());
+        return series;
+    }
+
+    @Override
+    public GroupLagTrend queryGroupLag(String consumerGroup, long begin, long end, int maxPoints) {
+        GroupLagTrend trend = new GroupLagTrend();
+        trend.setConsumerGroup(consumerGroup);
+        trend.setSeries(querySeries(SeriesSchema.GROUP.getDirName(), consumerGroup, begin, end, maxPoints));
+        List<String> queueSeries = Lists.newArrayList();
+        String queuePrefix = consumerGroup + "@";
+        for (String series : dashboardCollectService.getQueueMap().asMap().keySet()) {
+            if (series.startsWith(queuePrefix)) {
+                queueSeries.add(series);
+            }
+        }
+        Collections.sort(queueSeries);
+        trend.setQueueSeries(queueSeries);
+
+        SeriesView recent = recentGroupPoints(consumerGroup);
+        if (recent.isEmpty()) {
+            trend.setLag(-1);
+            trend.setTimeToDrainMillis(-1);
+            return trend;
+        }
+        int last = recent.size() - 1;
+        long lag = recent.getLong(last, SeriesSchema.GROUP_LAG);
+        double drainTps = -lagSlope(recent.between(recent.getTimestamp(last) - DRAIN_WINDOW_MILLIS, recent.getTimestamp(last)));
+        trend.setLag(lag);
+        trend.setConsumeTps(recent.getDouble(last, SeriesSchema.GROUP_CONSUME_TPS));
+        trend.setDrainTps(drainTps);
+        if (lag <= 0) {
+            trend.setTimeToDrainMillis(0);
+        } else if (drainTps > 0) {
+            trend.setTimeToDrainMillis((long) (lag / drainTps * 1000));
+        } else {
+            trend.setTimeToDrainMillis(-1);
+        }
+        return trend;
+    }
+
+    /**
+     * @return the points of a group still in memory, or those persisted today if none was collected since the
+     * dashboard started
+     */
+    private SeriesView recentGroupPoints(String consumerGroup) {
+        SeriesBuffer buffer = dashboardCollectService.getGroupMap().getIfPresent(consumerGroup);
+        if (buffer != null && buffer.size() > 0) {
+            return buffer.snapshot();
+        }
+        DateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        return dashboardCollectService.getSeries(format.format(new Date()), SeriesSchema.GROUP, consumerGroup);
+    }
+
+    /**
+     * @return the least squares slope of the lag in messages per second, so that a single irregular point does
+     * not swing the estimate; 0 with less than two points
+     */
+    private static double lagSlope(SeriesView points) {
+        int n = points.size();
+        if (n < 2) {
+            return 0;
+        }
+        long origin = points.getTimestamp(0);
+        double sumX = 0;
+        double sumY = 0;
+        double sumXX = 0;
+        double sumXY = 0;
+        for (int i = 0; i < n; i++) {
+            double x = (points.getTimestamp(i) - origin) / 1000.0;
+            double y = points.getLong(i, SeriesSchema.GROUP_LAG);
+            sumX += x;
+            sumY += y;
+            sumXX += x * x;
+            sumXY += x * y;
+        }
+        double denominator = n * sumXX - sumX * sumX;
+        return denominator == 0 ? 0 : (n * sumXY - sumX * sumY) / denominator;
+    }
 }
@@ -0,0 +1,420 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.service.impl;
+
+import com.google.common.collect.Lists;
+import jakarta.annotation.Resource;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.common.utils.ThreadUtils;
+import org.apache.rocketmq.dashboard.config.RMQConfigure;
+import org.apache.rocketmq.dashboard.exception.ServiceException;
+import org.apache.rocketmq.dashboard.model.MessageExportJob;
+import org.apache.rocketmq.dashboard.model.MessageExportQueue;
+import org.apache.rocketmq.dashboard.model.QueueOffsetInfo;
+import org.apache.rocketmq.dashboard.model.request.MessageExportRequest;
+import org.apache.rocketmq.dashboard.service.MessageExportService;
+import org.apache.rocketmq.dashboard.service.MessageService;
+import org.apache.rocketmq.dashboard.store.MessageExportFile;
+import org.apache.rocketmq.dashboard.util.JsonUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Runs message exports in the background, a few at a time. The queues of an export are pulled a few at a time by
+ * {@link MessageService#pullQueueOffsets}, apart from the interactive queries; the pulling threads take turns
+ * writing their batches to the export file, so memory use is bounded by one batch per pulling queue whatever the
+ * size of the export.
+ * <p>
+ * A job and its file are checkpointed together every few seconds: the file is synced and the offsets reached in
+ * every queue are saved with the job. A paused or failed job, or one interrupted by a restart, resumes from there.
+ */
+@Service
+public class MessageExportServiceImpl implements MessageExportService, InitializingBean, DisposableBean {
+
+    private final static Logger log = LoggerFactory.getLogger(MessageExportServiceImpl.class);
+
+    private static final String JOB_SUFFIX = ".json";
+
+    private static final Pattern JOB_ID = Pattern.compile("[0-9a-f]{32}");
+
+    private static final int MAX_RUNNING_JOBS = 2;
+
+    private static final int CHECKPOINT_MESSAGES = 10000;
+
+    private static final long CHECKPOINT_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    @Resource
+    private MessageService messageService;
+
+    @Resource
+    private RMQConfigure configure;
+
+    private File exportDir;
+
+    private final Map<String, MessageExportJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * jobId -> control of the running jobs
+     */
+    private final Map<String, JobControl> running = new ConcurrentHashMap<>();
+
+    private ExecutorService exportExecutor;
+
+    @Override
+    public void afterPropertiesSet() {
+        this.exportDir = new File(configure.getRocketMqDashboardDataPath(), "message-export");
+        File[] files = exportDir.listFiles((dir, name) -> name.endsWith(JOB_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                try {
+                    MessageExportJob job = JsonUtil.byte2Obj(Files.readAllBytes(file.toPath()), MessageExportJob.class);
+                    if (job == null) {
+                        continue;
+                    }
+                    if (MessageExportJob.STATUS_RUNNING.equals(job.getStatus())) {
+                        // interrupted by the last shutdown
+                        job.setStatus(MessageExportJob.STATUS_PAUSED);
+                    }
+                    jobs.put(job.getJobId(), job);
+                } catch (IOException e) {
+                    log.warn("Failed to read message export job {}", file.getAbsolutePath(), e);
+                }
+            }
+        }
+        this.exportExecutor = new ThreadPoolExecutor(MAX_RUNNING_JOBS, MAX_RUNNING_JOBS, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new ThreadFactory() {
+                    private final AtomicLong threadIndex = new AtomicLong(0);
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        return new Thread(r, "MessageExport_" + this.threadIndex.incrementAndGet());
+                    }
+                });
+    }
+
+    @Override
+    public void destroy() {
+        for (JobControl control : running.values()) {
+            control.stop(MessageExportJob.STATUS_PAUSED);
+        }
+        ThreadUtils.shutdownGracefully(exportExecutor, 10L, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public MessageExportJob createJob(MessageExportRequest request) {
+        if (StringUtils.isBlank(request.getTopic())) {
+            throw new ServiceException(-1, "Topic is required");
+        }
+        String format = StringUtils.defaultIfBlank(request.getFormat(), MessageExportFile.FORMAT_NDJSON).toLowerCase();
+        if (!MessageExportFile.FORMAT_NDJSON.equals(format) && !MessageExportFile.FORMAT_BINARY.equals(format)) {
+            throw new ServiceException(-1, "Unknown export format: " + request.getFormat());
+        }
+        String compression = StringUtils.defaultIfBlank(request.getCompression(), MessageExportFile.COMPRESSION_GZIP).toLowerCase();
+        if (!MessageExportFile.COMPRESSION_GZIP.equals(compression) && !MessageExportFile.COMPRESSION_ZSTD.equals(compression)) {
+            throw new ServiceException(-1, "Unknown export compression: " + request.getCompression());
+        }
+        MessageExportJob job = new MessageExportJob();
+        job.setJobId(UUID.randomUUID().toString().replace("-", ""));
+        job.setTopic(request.getTopic());
+        job.setFormat(format);
+        job.setCompression(compression);
+        if (request.getQueues() != null && !request.getQueues().isEmpty()) {
+            List<MessageExportQueue> queues = Lists.newArrayList();
+            for (MessageExportQueue queue : request.getQueues()) {
+                if (StringUtils.isBlank(queue.getBrokerName()) || queue.getStartOffset() < 0
+                    || queue.getEndOffset() < queue.getStartOffset()) {
+                    throw new ServiceException(-1, "Invalid queue range: " + queue);
+                }
+                queues.add(new MessageExportQueue(queue.getBrokerName(), queue.getQueueId(), queue.getStartOffset(), queue.getEndOffset()));
+            }
+            setQueues(job, queues);
+        } else if (request.getBegin() == null || request.getEnd() == null || request.getBegin() > request.getEnd()) {
+            throw new ServiceException(-1, "A time range or queue ranges are required");
+        } else {
+            job.setBegin(request.getBegin());
+            job.setEnd(request.getEnd());
+        }
+        job.setFileName(job.getJobId() + MessageExportFile.extension(format, compression));
+        job.setCreateTime(System.currentTimeMillis());
+        job.setUpdateTime(job.getCreateTime());
+        synchronized (job) {
+            jobs.put(job.getJobId(), job);
+            start(job);
+        }
+        return job;
+    }
+
+    @Override
+    public List<MessageExportJob> listJobs() {
+        List<MessageExportJob> result = Lists.newArrayList(jobs.values());
+        result.sort(Comparator.comparingLong(MessageExportJob::getCreateTime).reversed());
+        return result;
+    }
+
+    @Override
+    public MessageExportJob getJob(String jobId) {
+        MessageExportJob job = jobId == null ? null : jobs.get(jobId);
+        if (job == null) {
+            throw new ServiceException(-1, "Unknown export job: " + jobId);
+        }
+        return job;
+    }
+
+    @Override
+    public MessageExportJob resumeJob(String jobId) {
+        MessageExportJob job = getJob(jobId);
+        synchronized (job) {
+            if (running.containsKey(jobId)) {
+                throw new ServiceException(-1, "Export job is running: " + jobId);
+            }
+            if (!MessageExportJob.STATUS_PAUSED.equals(job.getStatus()) && !MessageExportJob.STATUS_FAILED.equals(job.getStatus())) {
+                throw new ServiceException(-1, "Export job cannot be resumed, it is " + job.getStatus());
+            }
+            job.setErrMsg(null);
+            start(job);
+        }
+        return job;
+    }
+
+    @Override
+    public MessageExportJob cancelJob(String jobId) {
+        MessageExportJob job = getJob(jobId);
+        synchronized (job) {
+            JobControl control = running.get(jobId);
+            if (control != null) {
+                control.stop(MessageExportJob.STATUS_CANCELLED);
+            } else if (MessageExportJob.STATUS_PAUSED.equals(job.getStatus()) || MessageExportJob.STATUS_FAILED.equals(job.getStatus())) {
+                job.setStatus(MessageExportJob.STATUS_CANCELLED);
+                save(job);
+            }
+        }
+        return job;
+    }
+
+    @Override
+    public void deleteJob(String jobId) {
+        MessageExportJob job = getJob(jobId);
+        synchronized (job) {
+            if (running.containsKey(jobId)) {
+                throw new ServiceException(-1, "Export job is running, cancel it first: " + jobId);
+            }
+            jobs.remove(jobId);
+            try {
+                Files.deleteIfExists(new File(exportDir, jobId + JOB_SUFFIX).toPath());
+                Files.deleteIfExists(new File(exportDir, job.getFileName()).toPath());
+            } catch (IOException e) {
+                throw new ServiceException(-1, "Failed to delete export job " + jobId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public File getJobFile(String jobId) {
+        return new File(exportDir, getJob(jobId).getFileName());
+    }
+
+    /**
+     * Must hold the lock of the job.
+     */
+    private void start(MessageExportJob job) {
+        JobControl control = new JobControl();
+        running.put(job.getJobId(), control);
+        job.setStatus(MessageExportJob.STATUS_RUNNING);
+        save(job);
+        exportExecutor.submit(() -> run(job, control));
+    }
+
+    private void run(MessageExportJob job, JobControl control) {
+        String status = MessageExportJob.STATUS_COMPLETED;
+        String errMsg = null;
+        try {
+            if (job.getQueues() == null) {
+                setQueues(job, resolveQueues(job));
+            }
+            export(job, control);
+        } catch (Exception e) {
+            log.error("Message export {} of topic {} failed", job.getJobId(), job.getTopic(), e);
+            status = MessageExportJob.STATUS_FAILED;
+            errMsg = e.getMessage();
+        }
+        synchronized (job) {
+            String stopStatus = control.stopStatus;
+            job.setStatus(stopStatus != null ? stopStatus : status);
+            job.setErrMsg(stopStatus != null ? null : errMsg);
+            job.setUpdateTime(System.currentTimeMillis());
+            save(job);
+            running.remove(job.getJobId());
+        }
+    }
+
+    private List<MessageExportQueue> resolveQueues(MessageExportJob job) {
+        List<MessageExportQueue> queues = Lists.newArrayList();
+        for (QueueOffsetInfo queueOffset : messageService.queryQueueOffsets(job.getTopic(), job.getBegin(), job.getEnd())) {
+            MessageQueue mq = queueOffset.getMessageQueues();
+            queues.add(new MessageExportQueue(mq.getBrokerName(), mq.getQueueId(), queueOffset.getStart(), queueOffset.getEnd()));
+        }
+        queues.sort(Comparator.comparing(MessageExportQueue::getBrokerName).thenComparingInt(MessageExportQueue::getQueueId));
+        return queues;
+    }
+
+    private void setQueues(MessageExportJob job, List<MessageExportQueue> queues) {
+        long totalCount = 0;
+        for (MessageExportQueue queue : queues) {
+            totalCount += queue.getEndOffset() - queue.getStartOffset();
+        }
+        synchronized (job) {
+            job.setQueues(queues);
+            job.setTotalCount(totalCount);
+            save(job);
+        }
+    }
+
+    private void export(MessageExportJob job, JobControl control) throws IOException {
+        List<MessageExportQueue> queues = job.getQueues();
+        Progress progress = new Progress(job);
+        List<QueueOffsetInfo> queueOffsets = Lists.newArrayList();
+        for (int i = 0; i < queues.size(); i++) {
+            MessageExportQueue queue = queues.get(i);
+            if (queue.getNextOffset() < queue.getEndOffset()) {
+                MessageQueue mq = new MessageQueue(job.getTopic(), queue.getBrokerName(), queue.getQueueId());
+                queueOffsets.add(new QueueOffsetInfo(i, queue.getNextOffset(), queue.getEndOffset(),
+                    queue.getNextOffset(), queue.getNextOffset(), mq));
+            }
+        }
+        File target = new File(exportDir, job.getFileName());
+        Files.createDirectories(exportDir.toPath());
+        try (MessageExportFile file = MessageExportFile.open(target, job.getFileSize(), job.getFormat(), job.getCompression())) {
+            messageService.pullQueueOffsets(queueOffsets, () -> control.stopStatus != null, (queueOffset, pullResult) -> {
+                synchronized (file) {
+                    try {
+                        List<MessageExt> messages = pullResult.getMsgFoundList();
+                        if (messages != null) {
+                            for (MessageExt messageExt : messages) {
+                                file.write(messageExt);
+                            }
+                            progress.exportedCount += messages.size();
+                            progress.pending += messages.size();
+                        }
+                        progress.nextOffsets[queueOffset.getIdx()] = Math.min(pullResult.getNextBeginOffset(), queueOffset.getEnd());
+                        if (progress.pending >= CHECKPOINT_MESSAGES
+                            || System.currentTimeMillis() - progress.checkpointTime >= CHECKPOINT_INTERVAL_MILLIS) {
+                            checkpoint(job, file, progress);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return true;
+            });
+            synchronized (file) {
+                checkpoint(job, file, progress);
+            }
+        }
+    }
+
+    /**
+     * Sync the file and save the job with the progress written so far. Only checkpointed progress is visible in
+     * the job, so the saved job always matches the file.
+     */
+    private void checkpoint(MessageExportJob job, MessageExportFile file, Progress progress) throws IOException {
+        long fileSize = file.checkpoint();
+        synchronized (job) {
+            List<MessageExportQueue> queues = job.getQueues();
+            for (int i = 0; i < queues.size(); i++) {
+                queues.get(i).setNextOffset(progress.nextOffsets[i]);
+            }
+            job.setExportedCount(progress.exportedCount);
+            job.setFileSize(fileSize);
+            job.setUpdateTime(System.currentTimeMillis());
+            save(job);
+        }
+        progress.pending = 0;
+        progress.checkpointTime = System.currentTimeMillis();
+    }
+
+    private void save(MessageExportJob job) {
+        if (!JOB_ID.matcher(job.getJobId()).matches()) {
+            throw new IllegalArgumentException("Invalid job id: " + job.getJobId());
+        }
+        File file = new File(exportDir, job.getJobId() + JOB_SUFFIX);
+        File tmp = new File(exportDir, job.getJobId() + JOB_SUFFIX + ".tmp");
+        try {
+            Files.createDirectories(exportDir.toPath());
+            Files.write(tmp.toPath(), JsonUtil.obj2Byte(job));
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // the job resumes from an older checkpoint after a restart, the file is truncated to match it
+            log.warn("Failed to save message export job {}", file.getAbsolutePath(), e);
+        }
+    }
+
+    private static final class JobControl {
+
+        /**
+         * Status the job ends with once stopped, null while it should go on
+         */
+        private volatile String stopStatus;
+
+        private void stop(String status) {
+            if (stopStatus == null) {
+                stopStatus = status;
+            }
+        }
+    }
+
+    /**
+     * Progress of a running export, guarded by the lock of its file
+     */
+    private static final class Progress {
+
+        private final long[] nextOffsets;
+
+        private long exportedCount;
+
+        private int pending;
+
+        private long checkpointTime = System.currentTimeMillis();
+
+        private Progress(MessageExportJob job) {
+            this.nextOffsets = job.getQueues().stream().mapToLong(MessageExportQueue::getNextOffset).toArray();
+            this.exportedCount = job.getExportedCount();
+        }
+    }
+}
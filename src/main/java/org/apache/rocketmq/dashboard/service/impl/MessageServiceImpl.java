@@ -19,12 +19,12 @@ package org.apache.rocketmq.dashboard.service.impl;
 
 
 import com.google.common.base.Function;
-import com.google.common.base.Predicate;
 import com.google.common.base.Throwables;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
 import jakarta.annotation.Resource;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.rocketmq.acl.common.AclClientRPCHook;
@@ -37,17 +37,26 @@ import org.apache.rocketmq.common.Pair;
 import org.apache.rocketmq.common.message.MessageClientIDSetter;
 import org.apache.rocketmq.common.message.MessageExt;
 import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.common.utils.ThreadUtils;
+import org.apache.rocketmq.dashboard.config.CollectExecutorConfig;
 import org.apache.rocketmq.dashboard.config.RMQConfigure;
 import org.apache.rocketmq.dashboard.exception.ServiceException;
+import org.apache.rocketmq.dashboard.model.MessageBodyView;
+import org.apache.rocketmq.dashboard.model.MessageFilter;
+import org.apache.rocketmq.dashboard.model.MessageKeyResult;
 import org.apache.rocketmq.dashboard.model.MessagePage;
+import org.apache.rocketmq.dashboard.model.MessagePageCursor;
 import org.apache.rocketmq.dashboard.model.MessagePageTask;
 import org.apache.rocketmq.dashboard.model.MessageQueryByPage;
 import org.apache.rocketmq.dashboard.model.MessageView;
 import org.apache.rocketmq.dashboard.model.QueueOffsetInfo;
 import org.apache.rocketmq.dashboard.model.request.MessageQuery;
 import org.apache.rocketmq.dashboard.service.MessageService;
+import org.apache.rocketmq.dashboard.store.MessageCursorStore;
+import org.apache.rocketmq.dashboard.store.QueueOffsetIndex;
 import org.apache.rocketmq.dashboard.support.AutoCloseConsumerWrapper;
 import org.apache.rocketmq.remoting.RPCHook;
+import org.apache.rocketmq.remoting.protocol.ResponseCode;
 import org.apache.rocketmq.remoting.protocol.body.Connection;
 import org.apache.rocketmq.remoting.protocol.body.ConsumeMessageDirectlyResult;
 import org.apache.rocketmq.remoting.protocol.body.ConsumerConnection;
@@ -55,32 +64,66 @@ import org.apache.rocketmq.tools.admin.MQAdminExt;
 import org.apache.rocketmq.tools.admin.api.MessageTrack;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.stereotype.Service;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Service
-public class MessageServiceImpl implements MessageService {
+public class MessageServiceImpl implements MessageService, InitializingBean, DisposableBean {
 
     @Resource
     private AutoCloseConsumerWrapper autoCloseConsumerWrapper;
 
     private Logger logger = LoggerFactory.getLogger(MessageServiceImpl.class);
 
-    private static final Cache<String, List<QueueOffsetInfo>> CACHE = CacheBuilder.newBuilder()
-            .maximumSize(10000)
-            .expireAfterWrite(60, TimeUnit.MINUTES)
+    /**
+     * Time a paged query can be continued after its last page
+     */
+    private static final long CURSOR_EXPIRE_MILLIS = TimeUnit.MINUTES.toMillis(60);
+
+    private static final Cache<String, Future<MessagePageTask>> PREFETCHED_PAGES = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(10, TimeUnit.MINUTES)
             .build();
 
     @Autowired
@@ -90,8 +133,87 @@ public class MessageServiceImpl implements MessageService {
      * @see org.apache.rocketmq.store.index.IndexService maxNum = Math.min(maxNum, this.defaultMessageStore.getMessageStoreConfig().getMaxMsgsNumBatch());
      */
     private final static int QUERY_MESSAGE_MAX_NUM = 64;
+    /**
+     * Number of distinct keys one bulk key lookup accepts
+     */
+    private final static int QUERY_MESSAGE_KEY_MAX_NUM = 1000;
+    /**
+     * Number of matched messages after which queryMessageByTopic stops pulling
+     */
+    private final static int QUERY_MESSAGE_BY_TOPIC_MAX_NUM = 2000;
+
+    /**
+     * Matches a topic scan holds between the pulling queues and the reading thread
+     */
+    private final static int SCAN_BUFFER_SIZE = 256;
+
+    /**
+     * Queues a topic scan pulls at a time: a stalled reader holds at most that many threads of the query pool
+     */
+    private final static int SCAN_QUEUE_CONCURRENCY = 4;
+
+    /**
+     * Queues an export pulls at a time, each until its whole range is pulled
+     */
+    private final static int EXPORT_QUEUE_CONCURRENCY = 4;
+
+    /**
+     * Threads shared by the running exports
+     */
+    private final static int EXPORT_THREADS = 8;
+    private final static String BOUNDARY_SEARCH_SCAN = "scan";
     @Resource
     private MQAdminExt mqAdminExt;
+    @Resource
+    private CollectExecutorConfig collectExecutorConfig;
+
+    /**
+     * Pulls the queues of a topic concurrently, and prefetches the next message page
+     */
+    private ExecutorService queryMessageExecutor;
+
+    /**
+     * Pulls the queues of the exports, which may hold their threads for hours, apart from the interactive queries
+     */
+    private ExecutorService exportMessageExecutor;
+
+    private MessageCursorStore cursorStore;
+
+    /**
+     * Timestamp to offset anchors of the queues, shared by all queries
+     */
+    private final QueueOffsetIndex offsetIndex = new QueueOffsetIndex(10000, 1024, TimeUnit.MINUTES.toMillis(10));
+
+    @Override
+    public void afterPropertiesSet() {
+        int poolSize = Math.max(16, Runtime.getRuntime().availableProcessors() * 2);
+        this.queryMessageExecutor = collectExecutorConfig.newExecutor("QueryMessage_", () -> new ThreadPoolExecutor(poolSize,
+                poolSize, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new ThreadFactory() {
+                    private final AtomicLong threadIndex = new AtomicLong(0);
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        return new Thread(r, "QueryMessage_" + this.threadIndex.incrementAndGet());
+                    }
+                }));
+        this.exportMessageExecutor = collectExecutorConfig.newExecutor("ExportMessage_", () -> new ThreadPoolExecutor(EXPORT_THREADS,
+                EXPORT_THREADS, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new ThreadFactory() {
+                    private final AtomicLong threadIndex = new AtomicLong(0);
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        return new Thread(r, "ExportMessage_" + this.threadIndex.incrementAndGet());
+                    }
+                }));
+        this.cursorStore = new MessageCursorStore(new File(configure.getRocketMqDashboardDataPath(), "message-cursor"),
+                CURSOR_EXPIRE_MILLIS);
+    }
+
+    @Override
+    public void destroy() {
+        ThreadUtils.shutdownGracefully(queryMessageExecutor, 10L, TimeUnit.SECONDS);
+        ThreadUtils.shutdownGracefully(exportMessageExecutor, 10L, TimeUnit.SECONDS);
+    }
 
     @Override
     public Pair<MessageView, List<MessageTrack>> viewMessage(String subject, final String msgId) {
@@ -105,13 +227,32 @@ public class MessageServiceImpl implements MessageService {
         }
     }
 
+    @Override
+    public MessageBodyView viewMessageBody(String topic, String msgId, int offset, int length) {
+        MessageExt messageExt;
+        try {
+            messageExt = mqAdminExt.viewMessage(topic, msgId);
+        } catch (Exception e) {
+            throw new ServiceException(-1, String.format("Failed to query message by Id: %s", msgId));
+        }
+        byte[] body = messageExt.getBody() == null ? new byte[0] : messageExt.getBody();
+        if (offset < 0 || offset > body.length) {
+            throw new ServiceException(-1, String.format("Invalid offset %d for a body of %d bytes", offset, body.length));
+        }
+        int start = MessageView.utf8Boundary(body, offset);
+        int end = length <= 0 ? body.length : MessageView.utf8Boundary(body, (int) Math.min((long) offset + length, body.length));
+        end = Math.max(start, end);
+        return new MessageBodyView(msgId, body.length, start, end - start, MessageView.decodeBody(body, start, end - start));
+    }
+
     @Override
     public List<MessageView> queryMessageByTopicAndKey(String topic, String key) {
+        int bodyPreviewSize = configure.getMessageBodyPreviewSize();
         try {
             return Lists.transform(mqAdminExt.queryMessage(topic, key, QUERY_MESSAGE_MAX_NUM, 0, System.currentTimeMillis()).getMessageList(), new Function<MessageExt, MessageView>() {
                 @Override
                 public MessageView apply(MessageExt messageExt) {
-                    return MessageView.fromMessageExt(messageExt);
+                    return MessageView.fromMessageExt(messageExt, bodyPreviewSize);
                 }
             });
         } catch (Exception err) {
@@ -123,8 +264,87 @@ public class MessageServiceImpl implements MessageService {
         }
     }
 
+    @Override
+    public void queryMessageByTopicAndKeys(String topic, Collection<String> keys,
+        Predicate<MessageKeyResult> consumer) {
+        Set<String> uniqueKeys = new LinkedHashSet<>();
+        for (String key : keys) {
+            if (StringUtils.isNotBlank(key)) {
+                uniqueKeys.add(key.trim());
+            }
+        }
+        if (uniqueKeys.size() > QUERY_MESSAGE_KEY_MAX_NUM) {
+            throw new ServiceException(-1, "At most " + QUERY_MESSAGE_KEY_MAX_NUM + " keys can be looked up at once");
+        }
+        // every lookup queries the index of each broker hosting the topic once, so the number of lookups
+        // in flight is the number of concurrent index queries each broker receives
+        int concurrency = Math.max(1, collectExecutorConfig.getBrokerConcurrency());
+        int bodyPreviewSize = configure.getMessageBodyPreviewSize();
+        long end = System.currentTimeMillis();
+        CompletionService<MessageKeyResult> completionService = new ExecutorCompletionService<>(queryMessageExecutor);
+        List<Future<MessageKeyResult>> futures = Lists.newArrayListWithCapacity(uniqueKeys.size());
+        Iterator<String> pending = uniqueKeys.iterator();
+        int running = 0;
+        try {
+            while (running < concurrency && pending.hasNext()) {
+                String key = pending.next();
+                futures.add(completionService.submit(() -> queryMessageByKey(topic, key, end, bodyPreviewSize)));
+                running++;
+            }
+            while (running > 0) {
+                MessageKeyResult result = completionService.take().get();
+                running--;
+                if (!consumer.test(result)) {
+                    return;
+                }
+                if (pending.hasNext()) {
+                    String key = pending.next();
+                    futures.add(completionService.submit(() -> queryMessageByKey(topic, key, end, bodyPreviewSize)));
+                    running++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        } finally {
+            for (Future<MessageKeyResult> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * @return the messages of one key, or the reason the lookup failed. A key without messages is not a failure.
+     */
+    private MessageKeyResult queryMessageByKey(String topic, String key, long end, int bodyPreviewSize) {
+        try {
+            List<MessageExt> messageList = mqAdminExt.queryMessage(topic, key, QUERY_MESSAGE_MAX_NUM, 0, end).getMessageList();
+            List<MessageView> messageViews = Lists.newArrayListWithCapacity(messageList.size());
+            for (MessageExt messageExt : messageList) {
+                messageViews.add(MessageView.fromMessageExt(messageExt, bodyPreviewSize));
+            }
+            return new MessageKeyResult(key, messageViews, null);
+        } catch (MQClientException e) {
+            if (e.getResponseCode() == ResponseCode.NO_MESSAGE) {
+                return new MessageKeyResult(key, Collections.emptyList(), null);
+            }
+            return new MessageKeyResult(key, null, e.getErrorMessage());
+        } catch (Exception e) {
+            logger.warn("op=queryMessageByKey topic={} key={}", topic, key, e);
+            return new MessageKeyResult(key, null, e.getMessage());
+        }
+    }
+
     @Override
     public List<MessageView> queryMessageByTopic(String topic, final long begin, final long end) {
+        return queryMessageByTopic(topic, begin, end, MessageFilter.ALL);
+    }
+
+    @Override
+    public List<MessageView> queryMessageByTopic(String topic, final long begin, final long end, final MessageFilter filter) {
         boolean isEnableAcl = !StringUtils.isEmpty(configure.getAccessKey()) && !StringUtils.isEmpty(configure.getSecretKey());
         RPCHook rpcHook = null;
         if (isEnableAcl) {
@@ -132,66 +352,307 @@ public class MessageServiceImpl implements MessageService {
         }
 
         DefaultMQPullConsumer consumer = autoCloseConsumerWrapper.getConsumer(rpcHook, configure.isUseTLS());
-        List<MessageView> messageViewList = Lists.newArrayList();
         try {
-            String subExpression = "*";
             Set<MessageQueue> mqs = consumer.fetchSubscribeMessageQueues(topic);
-            for (MessageQueue mq : mqs) {
-                long minOffset = consumer.searchOffset(mq, begin);
-                long maxOffset = consumer.searchOffset(mq, end);
-                READQ:
-                for (long offset = minOffset; offset <= maxOffset; ) {
-                    try {
-                        if (messageViewList.size() > 2000) {
-                            break;
-                        }
-                        PullResult pullResult = consumer.pull(mq, subExpression, offset, 32);
-                        offset = pullResult.getNextBeginOffset();
-                        switch (pullResult.getPullStatus()) {
-                            case FOUND:
-
-                                List<MessageView> messageViewListByQuery = Lists.transform(pullResult.getMsgFoundList(), new Function<MessageExt, MessageView>() {
-                                    @Override
-                                    public MessageView apply(MessageExt messageExt) {
-                                        messageExt.setBody(null);
-                                        return MessageView.fromMessageExt(messageExt);
-                                    }
-                                });
-                                List<MessageView> filteredList = Lists.newArrayList(Iterables.filter(messageViewListByQuery, new Predicate<MessageView>() {
-                                    @Override
-                                    public boolean apply(MessageView messageView) {
-                                        if (messageView.getStoreTimestamp() < begin || messageView.getStoreTimestamp() > end) {
-                                            logger.info("begin={} end={} time not in range {} {}", begin, end, messageView.getStoreTimestamp(), new Date(messageView.getStoreTimestamp()).toString());
-                                        }
-                                        return messageView.getStoreTimestamp() >= begin && messageView.getStoreTimestamp() <= end;
-                                    }
-                                }));
-                                messageViewList.addAll(filteredList);
-                                break;
-                            case NO_MATCHED_MSG:
-                            case NO_NEW_MSG:
-                            case OFFSET_ILLEGAL:
-                                break READQ;
-                        }
-                    } catch (Exception e) {
-                        break;
+            AtomicInteger matched = new AtomicInteger();
+            BooleanSupplier full = () -> matched.get() >= QUERY_MESSAGE_BY_TOPIC_MAX_NUM;
+            List<Future<List<MessageView>>> futures = submitPerQueue(queryMessageExecutor, mqs, mqs.size(), mq -> {
+                List<MessageView> messageViewList = Lists.newArrayList();
+                // every match reserves its place in the result, so the queues together keep at most the budget
+                pullQueue(consumer, mq, begin, end, filter, full, view -> {
+                    if (matched.incrementAndGet() > QUERY_MESSAGE_BY_TOPIC_MAX_NUM) {
+                        return false;
                     }
+                    messageViewList.add(view);
+                    return true;
+                });
+                return messageViewList;
+            });
+            List<List<MessageView>> queueMessages = Lists.newArrayListWithCapacity(futures.size());
+            try {
+                for (Future<List<MessageView>> future : futures) {
+                    queueMessages.add(future.get());
                 }
+            } catch (ExecutionException e) {
+                matched.set(QUERY_MESSAGE_BY_TOPIC_MAX_NUM + 1);
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
             }
-            Collections.sort(messageViewList, new Comparator<MessageView>() {
-                @Override
-                public int compare(MessageView o1, MessageView o2) {
-                    if (o1.getStoreTimestamp() - o2.getStoreTimestamp() == 0) {
-                        return 0;
+            List<MessageView> merged = mergeByStoreTimestamp(queueMessages);
+            return merged.size() > QUERY_MESSAGE_BY_TOPIC_MAX_NUM
+                ? Lists.newArrayList(merged.subList(0, QUERY_MESSAGE_BY_TOPIC_MAX_NUM)) : merged;
+        } catch (Exception e) {
+            Throwables.throwIfUnchecked(e);
+            throw new RuntimeException(e);
+        } finally {
+            autoCloseConsumerWrapper.releaseConsumer(consumer);
+        }
+    }
+
+    @Override
+    public void scanMessageByTopic(String topic, long begin, long end, MessageFilter filter,
+        Predicate<MessageView> consumer) {
+        DefaultMQPullConsumer pullConsumer = pullConsumer();
+        AtomicBoolean stopped = new AtomicBoolean();
+        BlockingQueue<MessageView> buffer = new ArrayBlockingQueue<>(SCAN_BUFFER_SIZE);
+        List<Future<Void>> futures = Lists.newArrayList();
+        try {
+            Set<MessageQueue> mqs = pullConsumer.fetchSubscribeMessageQueues(topic);
+            futures = submitPerQueue(queryMessageExecutor, mqs, SCAN_QUEUE_CONCURRENCY, mq -> {
+                pullQueue(pullConsumer, mq, begin, end, filter, stopped::get, view -> offerUntilStopped(buffer, view, stopped));
+                return null;
+            });
+            while (true) {
+                MessageView view = buffer.poll(100, TimeUnit.MILLISECONDS);
+                if (view != null) {
+                    if (!consumer.test(view)) {
+                        break;
                     }
-                    return (o1.getStoreTimestamp() > o2.getStoreTimestamp()) ? -1 : 1;
+                } else if (futures.stream().allMatch(Future::isDone) && buffer.isEmpty()) {
+                    // a queue puts its last match before it is done
+                    for (Future<Void> future : futures) {
+                        future.get();
+                    }
+                    break;
                 }
-            });
-            return messageViewList;
+            }
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
         } catch (Exception e) {
             Throwables.throwIfUnchecked(e);
             throw new RuntimeException(e);
+        } finally {
+            stopped.set(true);
+            autoCloseConsumerWrapper.releaseConsumer(pullConsumer);
+        }
+    }
+
+    @Override
+    public List<QueueOffsetInfo> queryQueueOffsets(String topic, long begin, long end) {
+        DefaultMQPullConsumer consumer = pullConsumer();
+        try {
+            List<QueueOffsetInfo> queueOffsetInfos = Lists.newArrayList();
+            int idx = 0;
+            for (MessageQueue mq : consumer.fetchSubscribeMessageQueues(topic)) {
+                long minOffset = searchOffset(consumer, mq, begin);
+                long maxOffset = searchOffset(consumer, mq, end);
+                QueueOffsetInfo queueOffset = new QueueOffsetInfo(idx++, minOffset, maxOffset, minOffset, minOffset, mq);
+                searchQueueBoundaries(consumer, queueOffset, begin, end);
+                queueOffsetInfos.add(queueOffset);
+            }
+            return queueOffsetInfos;
+        } catch (Exception e) {
+            Throwables.throwIfUnchecked(e);
+            throw new RuntimeException(e);
+        } finally {
+            autoCloseConsumerWrapper.releaseConsumer(consumer);
+        }
+    }
+
+    @Override
+    public void pullQueueOffsets(List<QueueOffsetInfo> queueOffsets, BooleanSupplier stopped,
+        BiPredicate<QueueOffsetInfo, PullResult> sink) {
+        DefaultMQPullConsumer consumer = pullConsumer();
+        Map<MessageQueue, QueueOffsetInfo> ranges = Maps.newLinkedHashMap();
+        for (QueueOffsetInfo queueOffset : queueOffsets) {
+            ranges.put(queueOffset.getMessageQueues(), queueOffset);
+        }
+        AtomicBoolean failed = new AtomicBoolean();
+        BooleanSupplier stop = () -> failed.get() || stopped.getAsBoolean();
+        try {
+            List<Future<Void>> futures = submitPerQueue(exportMessageExecutor, ranges.keySet(), EXPORT_QUEUE_CONCURRENCY, mq -> {
+                pullRange(consumer, ranges.get(mq), stop, sink);
+                return null;
+            });
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            failed.set(true);
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            failed.set(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            autoCloseConsumerWrapper.releaseConsumer(consumer);
+        }
+    }
+
+    /**
+     * Pull the offsets between start and end of one queue, with the message bodies.
+     */
+    private void pullRange(DefaultMQPullConsumer consumer, QueueOffsetInfo queueOffset, BooleanSupplier stopped,
+        BiPredicate<QueueOffsetInfo, PullResult> sink) throws Exception {
+        MessageQueue mq = queueOffset.getMessageQueues();
+        long offset = queueOffset.getStart();
+        while (offset < queueOffset.getEnd() && !stopped.getAsBoolean()) {
+            PullResult pullResult = consumer.pull(mq, "*", offset, (int) Math.min(queueOffset.getEnd() - offset, 32));
+            if (pullResult.getPullStatus() == PullStatus.FOUND) {
+                offsetIndex.recordAll(mq, pullResult.getMsgFoundList());
+            } else if (pullResult.getPullStatus() == PullStatus.OFFSET_ILLEGAL) {
+                offsetIndex.invalidate(mq);
+            }
+            // messages removed by the retention of the broker are skipped
+            if (pullResult.getNextBeginOffset() <= offset || !sink.test(queueOffset, pullResult)) {
+                break;
+            }
+            offset = pullResult.getNextBeginOffset();
+        }
+    }
+
+    /**
+     * Hand a match over to the reading thread, waiting while the buffer is full.
+     *
+     * @return false once the scan is stopped
+     */
+    private static boolean offerUntilStopped(BlockingQueue<MessageView> buffer, MessageView view, AtomicBoolean stopped) {
+        try {
+            while (!stopped.get()) {
+                if (buffer.offer(view, 100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * Run a task for every queue on the given pool, at most concurrency queues at a time: that many workers take
+     * the queues one after the other, so the queues waiting for their turn hold no thread. With virtual threads,
+     * at most brokerConcurrency queues of the same broker are pulled at a time.
+     */
+    private <T> List<Future<T>> submitPerQueue(ExecutorService executor, Collection<MessageQueue> mqs, int concurrency,
+        QueueTask<T> task) {
+        boolean virtualThreads = collectExecutorConfig.isVirtualThreadMode();
+        int brokerConcurrency = Math.max(1, collectExecutorConfig.getBrokerConcurrency());
+        Map<String/* brokerName */, Semaphore> brokerPermits = Maps.newHashMap();
+        List<Future<T>> futures = Lists.newArrayListWithCapacity(mqs.size());
+        Queue<FutureTask<T>> pending = new ConcurrentLinkedQueue<>();
+        for (MessageQueue mq : mqs) {
+            Semaphore permits = virtualThreads ? brokerPermits.computeIfAbsent(mq.getBrokerName(), key -> new Semaphore(brokerConcurrency)) : null;
+            FutureTask<T> future = new FutureTask<>(() -> {
+                if (permits == null) {
+                    return task.run(mq);
+                }
+                permits.acquire();
+                try {
+                    return task.run(mq);
+                } finally {
+                    permits.release();
+                }
+            });
+            pending.add(future);
+            futures.add(future);
+        }
+        for (int i = 0; i < Math.min(Math.max(1, concurrency), futures.size()); i++) {
+            executor.execute(() -> {
+                FutureTask<T> next;
+                while ((next = pending.poll()) != null) {
+                    // the cancellation of the previous queue does not carry over to the next one
+                    Thread.interrupted();
+                    next.run();
+                }
+            });
+        }
+        return futures;
+    }
+
+    private interface QueueTask<T> {
+        T run(MessageQueue mq) throws Exception;
+    }
+
+    /**
+     * Pull the messages of one queue stored between begin and end, until the end of the range, until stopped
+     * or until the sink refuses a message. The broker skips the messages whose tag does not match, the other
+     * conditions of the filter are checked as the messages are decoded.
+     *
+     * @param sink receives the matched messages in queue order, returns false to stop the pull
+     */
+    private void pullQueue(DefaultMQPullConsumer consumer, MessageQueue mq, long begin, long end,
+        MessageFilter filter, BooleanSupplier stopped, Predicate<MessageView> sink) throws MQClientException {
+        if (stopped.getAsBoolean()) {
+            return;
+        }
+        String subExpression = filter.getSubExpression();
+        long minOffset = searchOffset(consumer, mq, begin);
+        long maxOffset = searchOffset(consumer, mq, end);
+        READQ:
+        for (long offset = minOffset; offset <= maxOffset; ) {
+            try {
+                if (stopped.getAsBoolean()) {
+                    break;
+                }
+                PullResult pullResult = consumer.pull(mq, subExpression, offset, 32);
+                long pulledOffset = offset;
+                offset = pullResult.getNextBeginOffset();
+                switch (pullResult.getPullStatus()) {
+                    case FOUND:
+                        offsetIndex.recordAll(mq, pullResult.getMsgFoundList());
+                        for (MessageExt messageExt : pullResult.getMsgFoundList()) {
+                            if (messageExt.getStoreTimestamp() < begin || messageExt.getStoreTimestamp() > end) {
+                                logger.info("begin={} end={} time not in range {} {}", begin, end, messageExt.getStoreTimestamp(), new Date(messageExt.getStoreTimestamp()).toString());
+                                continue;
+                            }
+                            if (!filter.matches(messageExt)) {
+                                continue;
+                            }
+                            messageExt.setBody(null);
+                            if (!sink.test(MessageView.fromMessageExt(messageExt))) {
+                                break READQ;
+                            }
+                        }
+                        break;
+                    case NO_MATCHED_MSG:
+                        // none of the pulled messages has a matching tag, go on with the next batch
+                        if (offset <= pulledOffset) {
+                            break READQ;
+                        }
+                        break;
+                    case NO_NEW_MSG:
+                        break READQ;
+                    case OFFSET_ILLEGAL:
+                        offsetIndex.invalidate(mq);
+                        break READQ;
+                }
+            } catch (Exception e) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * K-way merge of the messages pulled from every queue, latest store timestamp first. The messages of a queue
+     * are in offset order, which is the store timestamp order but for clock adjustments on the broker.
+     */
+    static List<MessageView> mergeByStoreTimestamp(List<List<MessageView>> queueMessages) {
+        Comparator<MessageView> ascending = Comparator.comparingLong(MessageView::getStoreTimestamp);
+        int total = 0;
+        // cursor: {queue index, position}, walking every queue from its latest message
+        Comparator<int[]> latestFirst = (c1, c2) -> ascending.compare(queueMessages.get(c2[0]).get(c2[1]), queueMessages.get(c1[0]).get(c1[1]));
+        PriorityQueue<int[]> cursors = new PriorityQueue<>(Math.max(1, queueMessages.size()), latestFirst);
+        for (int i = 0; i < queueMessages.size(); i++) {
+            List<MessageView> messages = queueMessages.get(i);
+            if (!Ordering.from(ascending).isOrdered(messages)) {
+                messages.sort(ascending);
+            }
+            total += messages.size();
+            if (!messages.isEmpty()) {
+                cursors.add(new int[] {i, messages.size() - 1});
+            }
+        }
+        List<MessageView> messageViewList = Lists.newArrayListWithCapacity(total);
+        while (!cursors.isEmpty()) {
+            int[] cursor = cursors.poll();
+            messageViewList.add(queueMessages.get(cursor[0]).get(cursor[1]));
+            if (--cursor[1] >= 0) {
+                cursors.add(cursor);
+            }
         }
+        return messageViewList;
     }
 
     @Override
@@ -243,18 +704,32 @@ public class MessageServiceImpl implements MessageService {
                 query.getBegin(),
                 query.getEnd());
 
-        List<QueueOffsetInfo> queueOffsetInfos = CACHE.getIfPresent(query.getTaskId());
+        MessagePageCursor cursor = cursorStore.get(query.getTaskId());
 
-        if (queueOffsetInfos == null) {
+        if (cursor == null) {
             query.setPageNum(1);
             MessagePageTask task = this.queryFirstMessagePage(queryByPage);
             String taskId = MessageClientIDSetter.createUniqID();
-            CACHE.put(taskId, task.getQueueOffsetInfos());
-
+            cursorStore.put(taskId, new MessagePageCursor(queryByPage.getPageNum(), queryByPage.getPageSize(),
+                    task.getNextQueue(), task.getQueueOffsetInfos()));
+            prefetchNextPage(taskId, queryByPage, task);
             return new MessagePage(task.getPage(), taskId);
         }
-        Page<MessageView> messageViews = queryMessageByTaskPage(queryByPage, queueOffsetInfos);
-        return new MessagePage(messageViews, query.getTaskId());
+        MessagePageTask task = takePrefetchedPage(query.getTaskId(), queryByPage);
+        if (task == null) {
+            if (queryByPage.getPageNum() == cursor.getPageNum() + 1 && queryByPage.getPageSize() == cursor.getPageSize()) {
+                task = queryNextMessagePage(queryByPage, cursor);
+            } else {
+                task = queryMessageByTaskPage(queryByPage, cursor.copyQueueOffsetInfos());
+            }
+        }
+        // a page past the end leaves the cursor where it was
+        if (task.getQueueOffsetInfos() != null) {
+            cursorStore.put(query.getTaskId(), new MessagePageCursor(queryByPage.getPageNum(), queryByPage.getPageSize(),
+                    task.getNextQueue(), task.getQueueOffsetInfos()));
+            prefetchNextPage(query.getTaskId(), queryByPage, task);
+        }
+        return new MessagePage(task.getPage(), query.getTaskId());
 
     }
 
@@ -276,80 +751,18 @@ public class MessageServiceImpl implements MessageService {
             Collection<MessageQueue> messageQueues = consumer.fetchSubscribeMessageQueues(query.getTopic());
             int idx = 0;
             for (MessageQueue messageQueue : messageQueues) {
-                Long minOffset = consumer.searchOffset(messageQueue, query.getBegin());
-                Long maxOffset = consumer.searchOffset(messageQueue, query.getEnd());
+                Long minOffset = searchOffset(consumer, messageQueue, query.getBegin());
+                Long maxOffset = searchOffset(consumer, messageQueue, query.getEnd());
                 queueOffsetInfos.add(new QueueOffsetInfo(idx++, minOffset, maxOffset, minOffset, minOffset, messageQueue));
             }
 
-            // check first offset has message
-            // filter the begin time
-            for (QueueOffsetInfo queueOffset : queueOffsetInfos) {
-                Long start = queueOffset.getStart();
-                boolean hasData = false;
-                boolean hasIllegalOffset = true;
-                while (hasIllegalOffset) {
-                    PullResult pullResult = consumer.pull(queueOffset.getMessageQueues(), "*", start, 32);
-                    if (pullResult.getPullStatus() == PullStatus.FOUND) {
-                        hasData = true;
-                        List<MessageExt> msgFoundList = pullResult.getMsgFoundList();
-                        for (MessageExt messageExt : msgFoundList) {
-                            if (messageExt.getStoreTimestamp() < query.getBegin()) {
-                                start++;
-                            } else {
-                                hasIllegalOffset = false;
-                                break;
-                            }
-                        }
-                    } else {
-                        hasIllegalOffset = false;
-                    }
-                }
-                if (!hasData) {
-                    queueOffset.setEnd(queueOffset.getStart());
-                }
-                queueOffset.setStart(start);
-                queueOffset.setStartOffset(start);
-                queueOffset.setEndOffset(start);
-            }
-
-            // filter the end time
-            for (QueueOffsetInfo queueOffset : queueOffsetInfos) {
-                if (queueOffset.getStart().equals(queueOffset.getEnd())) {
-                    continue;
-                }
-                long end = queueOffset.getEnd();
-                long pullOffset = end;
-                int pullSize = 32;
-                boolean hasIllegalOffset = true;
-                while (hasIllegalOffset) {
-
-                    if (pullOffset - pullSize > queueOffset.getStart()) {
-                        pullOffset = pullOffset - pullSize;
-                    } else {
-                        pullOffset = queueOffset.getStartOffset();
-                        pullSize = (int) (end - pullOffset);
-                    }
-                    PullResult pullResult = consumer.pull(queueOffset.getMessageQueues(), "*", pullOffset, pullSize);
-                    if (pullResult.getPullStatus() == PullStatus.FOUND) {
-                        List<MessageExt> msgFoundList = pullResult.getMsgFoundList();
-                        for (int i = msgFoundList.size() - 1; i >= 0; i--) {
-                            MessageExt messageExt = msgFoundList.get(i);
-                            if (messageExt.getStoreTimestamp() > query.getEnd()) {
-                                end--;
-                            } else {
-                                hasIllegalOffset = false;
-                                break;
-                            }
-                        }
-                    } else {
-                        hasIllegalOffset = false;
-                    }
-                    if (pullOffset == queueOffset.getStartOffset()) {
-                        break;
-                    }
+            if (BOUNDARY_SEARCH_SCAN.equalsIgnoreCase(configure.getMessageBoundarySearch())) {
+                total = scanQueueBoundaries(consumer, queueOffsetInfos, query);
+            } else {
+                for (QueueOffsetInfo queueOffset : queueOffsetInfos) {
+                    searchQueueBoundaries(consumer, queueOffset, query.getBegin(), query.getEnd());
+                    total += queueOffset.getEnd() - queueOffset.getStart();
                 }
-                queueOffset.setEnd(end);
-                total += queueOffset.getEnd() - queueOffset.getStart();
             }
 
             long pageSize = total > query.getPageSize() ? query.getPageSize() : total;
@@ -357,57 +770,146 @@ public class MessageServiceImpl implements MessageService {
 
             // move startOffset
             int next = moveStartOffset(queueOffsetInfos, query);
-            moveEndOffset(queueOffsetInfos, query, next);
+            next = moveEndOffset(queueOffsetInfos, query, next);
 
             // find the first page of message
-            for (QueueOffsetInfo queueOffsetInfo : queueOffsetInfos) {
-                Long start = queueOffsetInfo.getStartOffset();
-                Long end = queueOffsetInfo.getEndOffset();
-                long size = Math.min(end - start, pageSize);
-                if (size == 0) {
-                    continue;
-                }
+            messageViews.addAll(pullPage(consumer, queueOffsetInfos, pageSize));
+            PageImpl<MessageView> page = new PageImpl<>(messageViews, query.page(), total);
+            return new MessagePageTask(page, queueOffsetInfos, next);
+        } catch (Exception e) {
+            Throwables.throwIfUnchecked(e);
+            throw new RuntimeException(e);
+        } finally {
+            autoCloseConsumerWrapper.releaseConsumer(consumer);
+        }
+    }
 
-                while (size > 0) {
-                    PullResult pullResult = consumer.pull(queueOffsetInfo.getMessageQueues(), "*", start, 32);
-                    if (pullResult.getPullStatus() == PullStatus.FOUND) {
-                        List<MessageExt> poll = pullResult.getMsgFoundList();
-                        if (poll.size() == 0) {
+    /**
+     * Find the offsets of the query range in every queue by pulling forward from the start offset and backward
+     * from the end offset, one batch at a time.
+     *
+     * @return the number of messages in the range
+     */
+    private long scanQueueBoundaries(DefaultMQPullConsumer consumer, List<QueueOffsetInfo> queueOffsetInfos,
+        MessageQueryByPage query) throws Exception {
+        long total = 0;
+        // check first offset has message
+        // filter the begin time
+        for (QueueOffsetInfo queueOffset : queueOffsetInfos) {
+            Long start = queueOffset.getStart();
+            boolean hasData = false;
+            boolean hasIllegalOffset = true;
+            while (hasIllegalOffset) {
+                PullResult pullResult = consumer.pull(queueOffset.getMessageQueues(), "*", start, 32);
+                if (pullResult.getPullStatus() == PullStatus.FOUND) {
+                    hasData = true;
+                    List<MessageExt> msgFoundList = pullResult.getMsgFoundList();
+                    for (MessageExt messageExt : msgFoundList) {
+                        if (messageExt.getStoreTimestamp() < query.getBegin()) {
+                            start++;
+                        } else {
+                            hasIllegalOffset = false;
                             break;
                         }
-                        List<MessageView> collect = poll.stream()
-                                .map(MessageView::fromMessageExt).collect(Collectors.toList());
+                    }
+                } else {
+                    hasIllegalOffset = false;
+                }
+            }
+            if (!hasData) {
+                queueOffset.setEnd(queueOffset.getStart());
+            }
+            queueOffset.setStart(start);
+            queueOffset.setStartOffset(start);
+            queueOffset.setEndOffset(start);
+        }
 
-                        for (MessageView view : collect) {
-                            if (size > 0) {
-                                messageViews.add(view);
-                                size--;
-                            }
+        // filter the end time
+        for (QueueOffsetInfo queueOffset : queueOffsetInfos) {
+            if (queueOffset.getStart().equals(queueOffset.getEnd())) {
+                continue;
+            }
+            long end = queueOffset.getEnd();
+            long pullOffset = end;
+            int pullSize = 32;
+            boolean hasIllegalOffset = true;
+            while (hasIllegalOffset) {
+
+                if (pullOffset - pullSize > queueOffset.getStart()) {
+                    pullOffset = pullOffset - pullSize;
+                } else {
+                    pullOffset = queueOffset.getStartOffset();
+                    pullSize = (int) (end - pullOffset);
+                }
+                PullResult pullResult = consumer.pull(queueOffset.getMessageQueues(), "*", pullOffset, pullSize);
+                if (pullResult.getPullStatus() == PullStatus.FOUND) {
+                    List<MessageExt> msgFoundList = pullResult.getMsgFoundList();
+                    for (int i = msgFoundList.size() - 1; i >= 0; i--) {
+                        MessageExt messageExt = msgFoundList.get(i);
+                        if (messageExt.getStoreTimestamp() > query.getEnd()) {
+                            end--;
+                        } else {
+                            hasIllegalOffset = false;
+                            break;
                         }
-                    } else {
-                        break;
                     }
-
+                } else {
+                    hasIllegalOffset = false;
+                }
+                if (pullOffset == queueOffset.getStartOffset()) {
+                    break;
                 }
             }
-            PageImpl<MessageView> page = new PageImpl<>(messageViews, query.page(), total);
-            return new MessagePageTask(page, queueOffsetInfos);
-        } catch (Exception e) {
-            Throwables.throwIfUnchecked(e);
-            throw new RuntimeException(e);
+            queueOffset.setEnd(end);
+            total += queueOffset.getEnd() - queueOffset.getStart();
         }
+        return total;
     }
 
-    private Page<MessageView> queryMessageByTaskPage(MessageQueryByPage query, List<QueueOffsetInfo> queueOffsetInfos) {
-        boolean isEnableAcl = !StringUtils.isEmpty(configure.getAccessKey()) && !StringUtils.isEmpty(configure.getSecretKey());
-        RPCHook rpcHook = null;
-        if (isEnableAcl) {
-            rpcHook = new AclClientRPCHook(new SessionCredentials(configure.getAccessKey(), configure.getSecretKey()));
-        }
+    /**
+     * Find the offsets of the query range in one queue by binary search on the store timestamp, so each boundary
+     * costs O(log n) single-message pulls. Store timestamps grow with the queue offset.
+     */
+    private void searchQueueBoundaries(DefaultMQPullConsumer consumer, QueueOffsetInfo queueOffset,
+        long begin, long end) throws Exception {
+        MessageQueue mq = queueOffset.getMessageQueues();
+        long start = searchFirstOffset(consumer, mq, queueOffset.getStart(), queueOffset.getEnd(), timestamp -> timestamp >= begin);
+        long endOffset = searchFirstOffset(consumer, mq, start, queueOffset.getEnd(), timestamp -> timestamp > end);
+        queueOffset.setStart(start);
+        queueOffset.setEnd(endOffset);
+        queueOffset.setStartOffset(start);
+        queueOffset.setEndOffset(start);
+    }
 
-        DefaultMQPullConsumer consumer = autoCloseConsumerWrapper.getConsumer(rpcHook, configure.isUseTLS());
-        List<MessageView> messageViews = new ArrayList<>();
+    /**
+     * @return the first offset in [low, high) whose message store timestamp is reached, high if none.
+     * An offset without message counts as reached. Offsets already in the offset index are not pulled again.
+     */
+    private long searchFirstOffset(DefaultMQPullConsumer consumer, MessageQueue mq, long low, long high,
+        LongPredicate reached) throws Exception {
+        long[] range = offsetIndex.narrow(mq, low, high, reached);
+        low = range[0];
+        high = range[1];
+        while (low < high) {
+            long mid = low + (high - low) / 2;
+            Long storeTimestamp = offsetIndex.timestampAt(mq, mid);
+            if (storeTimestamp == null) {
+                PullResult pullResult = consumer.pull(mq, "*", mid, 1);
+                if (pullResult.getPullStatus() == PullStatus.FOUND && !pullResult.getMsgFoundList().isEmpty()) {
+                    storeTimestamp = pullResult.getMsgFoundList().get(0).getStoreTimestamp();
+                    offsetIndex.record(mq, mid, storeTimestamp);
+                }
+            }
+            if (storeTimestamp != null && !reached.test(storeTimestamp)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
 
+    private MessagePageTask queryMessageByTaskPage(MessageQueryByPage query, List<QueueOffsetInfo> queueOffsetInfos) {
         long offset = query.getPageNum() * query.getPageSize();
 
         long total = 0;
@@ -420,50 +922,148 @@ public class MessageServiceImpl implements MessageService {
                 total += end - start;
             }
             if (total <= offset) {
-                return Page.empty();
+                return new MessagePageTask(Page.empty(), null);
             }
             long pageSize = total - offset > query.getPageSize() ? query.getPageSize() : total - offset;
 
             int next = moveStartOffset(queueOffsetInfos, query);
-            moveEndOffset(queueOffsetInfos, query, next);
+            next = moveEndOffset(queueOffsetInfos, query, next);
+
+            List<MessageView> messageViews = pullPage(queueOffsetInfos, pageSize);
+            return new MessagePageTask(new PageImpl<>(messageViews, query.page(), total), queueOffsetInfos, next);
+        } catch (Exception e) {
+            Throwables.throwIfUnchecked(e);
+            throw new RuntimeException(e);
+        }
+    }
 
+    /**
+     * Continue a query with the page following the one held by its cursor: every queue starts where the last page
+     * ended, so only the messages of the new page are pulled.
+     */
+    private MessagePageTask queryNextMessagePage(MessageQueryByPage query, MessagePageCursor cursor) {
+        List<QueueOffsetInfo> queueOffsetInfos = cursor.copyQueueOffsetInfos();
+        long offset = query.getPageNum() * query.getPageSize();
+        long total = 0;
+        try {
             for (QueueOffsetInfo queueOffsetInfo : queueOffsetInfos) {
-                Long start = queueOffsetInfo.getStartOffset();
-                Long end = queueOffsetInfo.getEndOffset();
-                long size = Math.min(end - start, pageSize);
-                if (size == 0) {
-                    continue;
-                }
+                total += queueOffsetInfo.getEnd() - queueOffsetInfo.getStart();
+                queueOffsetInfo.setStartOffset(queueOffsetInfo.getEndOffset());
+            }
+            if (total <= offset) {
+                return new MessagePageTask(Page.empty(), null);
+            }
+            int next = moveEndOffset(queueOffsetInfos, query, cursor.getNextQueue());
+            List<MessageView> messageViews = pullPage(queueOffsetInfos, query.getPageSize());
+            return new MessagePageTask(new PageImpl<>(messageViews, query.page(), total), queueOffsetInfos, next);
+        } catch (Exception e) {
+            Throwables.throwIfUnchecked(e);
+            throw new RuntimeException(e);
+        }
+    }
 
-                while (size > 0) {
-                    PullResult pullResult = consumer.pull(queueOffsetInfo.getMessageQueues(), "*", start, 32);
-                    if (pullResult.getPullStatus() == PullStatus.FOUND) {
-                        List<MessageExt> poll = pullResult.getMsgFoundList();
-                        if (poll.size() == 0) {
-                            break;
-                        }
-                        List<MessageView> collect = poll.stream()
-                                .map(MessageView::fromMessageExt).collect(Collectors.toList());
+    /**
+     * Start computing the page after the one just served, unless it is the last one.
+     */
+    private void prefetchNextPage(String taskId, MessageQueryByPage query, MessagePageTask task) {
+        if ((long) (query.getPageNum() + 1) * query.getPageSize() >= task.getPage().getTotalElements()) {
+            return;
+        }
+        MessageQueryByPage nextQuery = new MessageQueryByPage(query.getPageNum() + 2, query.getPageSize(),
+                query.getTopic(), query.getBegin(), query.getEnd());
+        MessagePageCursor cursor = new MessagePageCursor(query.getPageNum(), query.getPageSize(), task.getNextQueue(),
+                task.getQueueOffsetInfos());
+        String key = prefetchKey(taskId, nextQuery);
+        try {
+            PREFETCHED_PAGES.put(key, queryMessageExecutor.submit(() -> queryNextMessagePage(nextQuery, cursor)));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Skip prefetching page {} of task {}", nextQuery.getPageNum(), taskId);
+        }
+    }
 
-                        for (MessageView view : collect) {
-                            if (size > 0) {
-                                messageViews.add(view);
-                                size--;
-                            }
-                        }
-                    } else {
-                        break;
-                    }
+    /**
+     * @return the prefetched page matching the query, or null if there is none or prefetching it failed
+     */
+    private MessagePageTask takePrefetchedPage(String taskId, MessageQueryByPage query) {
+        Future<MessagePageTask> future = PREFETCHED_PAGES.asMap().remove(prefetchKey(taskId, query));
+        if (future == null) {
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            logger.warn("Prefetching page {} of task {} failed", query.getPageNum(), taskId, e.getCause());
+            return null;
+        }
+    }
 
+    private static String prefetchKey(String taskId, MessageQueryByPage query) {
+        return taskId + "_" + query.getPageNum() + "_" + query.getPageSize();
+    }
+
+    /**
+     * Pull the messages of a page: the offsets between startOffset and endOffset of every queue.
+     */
+    private List<MessageView> pullPage(DefaultMQPullConsumer consumer, List<QueueOffsetInfo> queueOffsetInfos,
+        long pageSize) throws Exception {
+        List<MessageView> messageViews = new ArrayList<>();
+        for (QueueOffsetInfo queueOffsetInfo : queueOffsetInfos) {
+            long start = queueOffsetInfo.getStartOffset();
+            long size = Math.min(queueOffsetInfo.getEndOffset() - start, pageSize);
+            while (size > 0) {
+                PullResult pullResult = consumer.pull(queueOffsetInfo.getMessageQueues(), "*", start, (int) Math.min(size, 32));
+                if (pullResult.getPullStatus() == PullStatus.OFFSET_ILLEGAL) {
+                    offsetIndex.invalidate(queueOffsetInfo.getMessageQueues());
+                }
+                if (pullResult.getPullStatus() != PullStatus.FOUND || pullResult.getMsgFoundList().isEmpty()) {
+                    break;
                 }
+                offsetIndex.recordAll(queueOffsetInfo.getMessageQueues(), pullResult.getMsgFoundList());
+                for (MessageExt messageExt : pullResult.getMsgFoundList()) {
+                    if (size > 0) {
+                        messageViews.add(MessageView.fromMessageExt(messageExt, configure.getMessageBodyPreviewSize()));
+                        size--;
+                    }
+                }
+                start = pullResult.getNextBeginOffset();
             }
-            return new PageImpl<>(messageViews, query.page(), total);
-        } catch (Exception e) {
-            Throwables.throwIfUnchecked(e);
-            throw new RuntimeException(e);
+        }
+        return messageViews;
+    }
+
+    /**
+     * searchOffset answered from the offset index when possible, so that queries of the same time window by several
+     * users do not reach the brokers again.
+     */
+    private long searchOffset(DefaultMQPullConsumer consumer, MessageQueue mq, long timestamp) throws MQClientException {
+        Long offset = offsetIndex.lookup(mq, timestamp);
+        if (offset == null) {
+            offset = consumer.searchOffset(mq, timestamp);
+            offsetIndex.recordSearch(mq, timestamp, offset);
+        }
+        return offset;
+    }
+
+    private List<MessageView> pullPage(List<QueueOffsetInfo> queueOffsetInfos, long pageSize) throws Exception {
+        DefaultMQPullConsumer consumer = pullConsumer();
+        try {
+            return pullPage(consumer, queueOffsetInfos, pageSize);
+        } finally {
+            autoCloseConsumerWrapper.releaseConsumer(consumer);
         }
     }
 
+    private DefaultMQPullConsumer pullConsumer() {
+        RPCHook rpcHook = null;
+        if (!StringUtils.isEmpty(configure.getAccessKey()) && !StringUtils.isEmpty(configure.getSecretKey())) {
+            rpcHook = new AclClientRPCHook(new SessionCredentials(configure.getAccessKey(), configure.getSecretKey()));
+        }
+        return autoCloseConsumerWrapper.getConsumer(rpcHook, configure.isUseTLS());
+    }
+
     private int moveStartOffset(List<QueueOffsetInfo> queueOffsets, MessageQueryByPage query) {
         int size = queueOffsets.size();
         int next = 0;
@@ -526,7 +1126,10 @@ public class MessageServiceImpl implements MessageService {
         return next;
     }
 
-    private void moveEndOffset(List<QueueOffsetInfo> queueOffsets, MessageQueryByPage query, int next) {
+    /**
+     * @return index of the queue the following page starts with
+     */
+    private int moveEndOffset(List<QueueOffsetInfo> queueOffsets, MessageQueryByPage query, int next) {
         int size = queueOffsets.size();
         for (int j = 0; j < query.getPageSize(); j++) {
             QueueOffsetInfo nextQueueOffset = queueOffsets.get(next);
@@ -536,11 +1139,12 @@ public class MessageServiceImpl implements MessageService {
                 nextQueueOffset = queueOffsets.get(next);
                 next = (next + 1) % size;
                 if (start == next) {
-                    return;
+                    return next;
                 }
             }
             nextQueueOffset.incEndOffset();
         }
+        return next;
     }
 
 //    public DefaultMQPullConsumer buildDefaultMQPullConsumer(RPCHook rpcHook, boolean useTLS) {
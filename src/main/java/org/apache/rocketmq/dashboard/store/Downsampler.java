@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.store;
+
+import org.apache.rocketmq.dashboard.store.SeriesSchema.Aggregate;
+import org.apache.rocketmq.dashboard.store.SeriesSchema.ColumnType;
+
+import java.util.Arrays;
+
+/**
+ * Aggregates the points of a collected series into fixed-width buckets of the matching rollup schema.
+ * Buckets are aligned on the epoch and stamped with their start time; a bucket with no point is not emitted.
+ */
+public final class Downsampler {
+
+    private Downsampler() {
+    }
+
+    /**
+     * @param points collected points in time order
+     */
+    public static SeriesView downsample(SeriesView points, long bucketMillis) {
+        SeriesSchema source = points.getSchema();
+        SeriesSchema rollup = source.getRollupSchema();
+        int sourceColumns = source.getColumnCount();
+        long[] timestamps = new long[points.size()];
+        long[][] columns = new long[rollup.getColumnCount()][points.size()];
+        double[] sums = new double[sourceColumns];
+        int buckets = 0;
+        int count = 0;
+        long bucketStart = 0;
+        for (int i = 0; i < points.size(); i++) {
+            long timestamp = points.getTimestamp(i);
+            long start = timestamp - Math.floorMod(timestamp, bucketMillis);
+            if (count == 0 || start != bucketStart) {
+                if (count > 0) {
+                    complete(source, columns, buckets++, sums, count);
+                }
+                bucketStart = start;
+                timestamps[buckets] = start;
+                count = 0;
+                Arrays.fill(sums, 0);
+            }
+            for (int column = 0; column < sourceColumns; column++) {
+                accumulate(source.getColumnType(column), columns, column, buckets, points.getRaw(i, column), count == 0);
+                sums[column] += source.getColumnType(column) == ColumnType.DOUBLE
+                        ? points.getDouble(i, column) : points.getLong(i, column);
+            }
+            count++;
+        }
+        if (count > 0) {
+            complete(source, columns, buckets++, sums, count);
+        }
+        return new SeriesView(rollup, timestamps, columns, 0, buckets);
+    }
+
+    /**
+     * Inverse view of {@link #downsample(SeriesView, long)} for the readers of collected points: one point per
+     * bucket, stamped with its start time, holding the average of the double columns and the last value of the
+     * long columns, which are counters.
+     *
+     * @param buckets buckets of a rollup schema
+     */
+    public static SeriesView toPoints(SeriesView buckets) {
+        SeriesSchema source = buckets.getSchema().getSourceSchema();
+        long[] timestamps = new long[buckets.size()];
+        long[][] columns = new long[source.getColumnCount()][buckets.size()];
+        for (int i = 0; i < buckets.size(); i++) {
+            timestamps[i] = buckets.getTimestamp(i);
+            for (int column = 0; column < source.getColumnCount(); column++) {
+                Aggregate aggregate = source.getColumnType(column) == ColumnType.DOUBLE ? Aggregate.AVG : Aggregate.LAST;
+                columns[column][i] = buckets.getRaw(i, SeriesSchema.rollupColumn(column, aggregate));
+            }
+        }
+        return new SeriesView(source, timestamps, columns, 0, buckets.size());
+    }
+
+    private static void accumulate(ColumnType type, long[][] columns, int column, int bucket, long raw, boolean initial) {
+        long[] min = columns[SeriesSchema.rollupColumn(column, Aggregate.MIN)];
+        long[] max = columns[SeriesSchema.rollupColumn(column, Aggregate.MAX)];
+        columns[SeriesSchema.rollupColumn(column, Aggregate.LAST)][bucket] = raw;
+        if (initial) {
+            min[bucket] = raw;
+            max[bucket] = raw;
+        } else if (type == ColumnType.DOUBLE) {
+            double value = Double.longBitsToDouble(raw);
+            if (value < Double.longBitsToDouble(min[bucket])) {
+                min[bucket] = raw;
+            }
+            if (value > Double.longBitsToDouble(max[bucket])) {
+                max[bucket] = raw;
+            }
+        } else {
+            min[bucket] = Math.min(min[bucket], raw);
+            max[bucket] = Math.max(max[bucket], raw);
+        }
+    }
+
+    private static void complete(SeriesSchema source, long[][] columns, int bucket, double[] sums, int count) {
+        for (int column = 0; column < source.getColumnCount(); column++) {
+            columns[SeriesSchema.rollupColumn(column, Aggregate.AVG)][bucket] = Double.doubleToRawLongBits(sums[column] / count);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.store;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.rocketmq.dashboard.model.MessagePageCursor;
+import org.apache.rocketmq.dashboard.util.JsonUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Cursors of the paged message queries, kept in memory and in one small JSON file per query so that paging can go
+ * on after a dashboard restart. A cursor expires a fixed time after its last update.
+ */
+public class MessageCursorStore {
+
+    private final static Logger log = LoggerFactory.getLogger(MessageCursorStore.class);
+
+    private static final String SUFFIX = ".json";
+
+    /**
+     * Task ids are hexadecimal message ids, anything else must not reach the file system
+     */
+    private static final Pattern TASK_ID = Pattern.compile("[0-9A-Fa-f]{1,64}");
+
+    private final File dir;
+
+    private final long expireMillis;
+
+    private final Cache<String, MessagePageCursor> cursors;
+
+    private volatile long lastPurgeTime;
+
+    public MessageCursorStore(File dir, long expireMillis) {
+        this.dir = dir;
+        this.expireMillis = expireMillis;
+        this.cursors = CacheBuilder.newBuilder()
+                .maximumSize(10000)
+                .expireAfterWrite(expireMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * @return the cursor of a query, or null if it is unknown or expired
+     */
+    public MessagePageCursor get(String taskId) {
+        if (taskId == null || !TASK_ID.matcher(taskId).matches()) {
+            return null;
+        }
+        MessagePageCursor cursor = cursors.getIfPresent(taskId);
+        if (cursor != null) {
+            return cursor;
+        }
+        File file = new File(dir, taskId + SUFFIX);
+        if (!file.exists() || isExpired(file)) {
+            return null;
+        }
+        try {
+            cursor = JsonUtil.byte2Obj(Files.readAllBytes(file.toPath()), MessagePageCursor.class);
+        } catch (IOException e) {
+            log.warn("Failed to read message cursor {}", file.getAbsolutePath(), e);
+            return null;
+        }
+        if (cursor != null) {
+            cursors.put(taskId, cursor);
+        }
+        return cursor;
+    }
+
+    public void put(String taskId, MessagePageCursor cursor) {
+        if (taskId == null || !TASK_ID.matcher(taskId).matches()) {
+            throw new IllegalArgumentException("Invalid task id: " + taskId);
+        }
+        cursors.put(taskId, cursor);
+        File file = new File(dir, taskId + SUFFIX);
+        File tmp = new File(dir, taskId + SUFFIX + ".tmp");
+        try {
+            Files.createDirectories(dir.toPath());
+            Files.write(tmp.toPath(), JsonUtil.obj2Byte(cursor));
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // the cursor still lives in memory, only a restart loses it
+            log.warn("Failed to persist message cursor {}", file.getAbsolutePath(), e);
+        }
+        purgeExpired();
+    }
+
+    /**
+     * Delete the files of expired cursors, at most a few times per expiry period.
+     */
+    private void purgeExpired() {
+        long now = System.currentTimeMillis();
+        if (now - lastPurgeTime < expireMillis / 4) {
+            return;
+        }
+        lastPurgeTime = now;
+        File[] files = dir.listFiles((parent, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (isExpired(file) && !file.delete()) {
+                log.warn("Failed to delete expired message cursor {}", file.getAbsolutePath());
+            }
+        }
+    }
+
+    private boolean isExpired(File file) {
+        return System.currentTimeMillis() - file.lastModified() >= expireMillis;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.store;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import com.google.common.base.Throwables;
+import org.apache.rocketmq.common.message.MessageDecoder;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.dashboard.model.MessageView;
+import org.apache.rocketmq.dashboard.util.JsonUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compressed file a message export is written to.
+ * <p>
+ * Formats: "ndjson" writes one {@link MessageView} per line, bodies included; "binary" writes the messages in the
+ * store encoding of {@link MessageDecoder#encode(MessageExt, boolean)}, readable with
+ * {@link MessageDecoder#decodes(java.nio.ByteBuffer)}.
+ * <p>
+ * Every {@link #checkpoint()} ends the current gzip member or zstd frame and syncs the file. Concatenated members
+ * and frames form one valid stream, so the file up to a checkpoint can be read as is, and an interrupted export
+ * resumes by truncating the file to its last checkpoint and appending.
+ */
+public class MessageExportFile implements Closeable {
+
+    public static final String FORMAT_NDJSON = "ndjson";
+    public static final String FORMAT_BINARY = "binary";
+    public static final String COMPRESSION_GZIP = "gzip";
+    public static final String COMPRESSION_ZSTD = "zstd";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+
+    private final boolean binary;
+
+    private final boolean zstd;
+
+    /**
+     * Compressing stream of the current member, null right after a checkpoint
+     */
+    private OutputStream member;
+
+    private long checkpointSize;
+
+    private MessageExportFile(FileChannel channel, long checkpointSize, boolean binary, boolean zstd) {
+        this.channel = channel;
+        this.checkpointSize = checkpointSize;
+        this.binary = binary;
+        this.zstd = zstd;
+    }
+
+    /**
+     * Open a file for writing after its last checkpoint, dropping anything written after it.
+     */
+    public static MessageExportFile open(File file, long checkpointSize, String format,
+        String compression) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            channel.truncate(checkpointSize);
+            channel.position(checkpointSize);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new MessageExportFile(channel, checkpointSize, FORMAT_BINARY.equals(format), COMPRESSION_ZSTD.equals(compression));
+    }
+
+    /**
+     * @return the extension of the files of a format and compression, e.g. ".ndjson.gz"
+     */
+    public static String extension(String format, String compression) {
+        return (FORMAT_BINARY.equals(format) ? ".bin" : ".ndjson") + (COMPRESSION_ZSTD.equals(compression) ? ".zst" : ".gz");
+    }
+
+    public void write(MessageExt messageExt) throws IOException {
+        if (member == null) {
+            OutputStream file = new BufferedOutputStream(new FilterOutputStream(Channels.newOutputStream(channel)) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    // the channel outlives the member
+                    flush();
+                }
+            }, BUFFER_SIZE);
+            member = zstd ? new ZstdOutputStream(file) : new GZIPOutputStream(file, BUFFER_SIZE);
+        }
+        if (binary) {
+            try {
+                member.write(MessageDecoder.encode(messageExt, false));
+            } catch (Exception e) {
+                Throwables.throwIfInstanceOf(e, IOException.class);
+                Throwables.throwIfUnchecked(e);
+                throw new RuntimeException(e);
+            }
+        } else {
+            member.write(JsonUtil.obj2Byte(MessageView.fromMessageExt(messageExt)));
+            member.write('\n');
+        }
+    }
+
+    /**
+     * End the current member and sync the file.
+     *
+     * @return the size of the file, which can be read and resumed from up to here
+     */
+    public long checkpoint() throws IOException {
+        if (member != null) {
+            member.close();
+            member = null;
+        }
+        channel.force(false);
+        checkpointSize = channel.position();
+        return checkpointSize;
+    }
+
+    public long getCheckpointSize() {
+        return checkpointSize;
+    }
+
+    /**
+     * Close the file without a checkpoint; what was written after the last one is dropped on resume.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (member != null) {
+                member.close();
+            }
+        } catch (IOException e) {
+            // only releases the compressor, the unfinished member is dropped anyway
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.store;
+
+import com.google.common.collect.Maps;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only, memory-mapped form of a finished day: all series of one schema packed into a single file.
+ * <p>
+ * Layout: int seriesCount, then per series (short nameLength, UTF-8 name, long offset, int count),
+ * followed by the fixed-width records of every series. Reading a series only touches its own pages.
+ */
+class PackedDay {
+
+    static final String PACKED_FILE = "packed.dat";
+
+    private final SeriesSchema schema;
+
+    private final MappedByteBuffer buffer;
+
+    /**
+     * series name -> {offset, count}
+     */
+    private final Map<String, long[]> entries;
+
+    private PackedDay(SeriesSchema schema, MappedByteBuffer buffer, Map<String, long[]> entries) {
+        this.schema = schema;
+        this.buffer = buffer;
+        this.entries = entries;
+    }
+
+    static boolean exists(File dir) {
+        return new File(dir, PACKED_FILE).exists();
+    }
+
+    static PackedDay open(File dir, SeriesSchema schema) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(new File(dir, PACKED_FILE).toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer header = buffer.duplicate();
+        int seriesCount = header.getInt();
+        Map<String, long[]> entries = Maps.newHashMapWithExpectedSize(seriesCount);
+        for (int i = 0; i < seriesCount; i++) {
+            byte[] name = new byte[header.getShort() & 0xFFFF];
+            header.get(name);
+            long offset = header.getLong();
+            int count = header.getInt();
+            entries.put(new String(name, StandardCharsets.UTF_8), new long[] {offset, count});
+        }
+        return new PackedDay(schema, buffer, entries);
+    }
+
+    /**
+     * Pack the segments listed by an index into a single file, replacing any previous one atomically.
+     * Segment bytes are copied channel to channel, so memory use does not depend on the size of the day.
+     */
+    static void pack(SeriesIndex index, File dir, SeriesSchema schema) throws IOException {
+        int recordSize = schema.getRecordSize();
+        Map<String, Integer> ids = index.snapshot();
+        Map<String, byte[]> names = Maps.newLinkedHashMap();
+        Map<String, Long> lengths = Maps.newHashMap();
+        int headerSize = Integer.BYTES;
+        for (Map.Entry<String, Integer> entry : ids.entrySet()) {
+            byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            long length = index.segmentFile(entry.getValue()).length();
+            names.put(entry.getKey(), name);
+            lengths.put(entry.getKey(), length - length % recordSize);
+            headerSize += Short.BYTES + name.length + Long.BYTES + Integer.BYTES;
+        }
+        ByteBuffer header = ByteBuffer.allocate(headerSize);
+        header.putInt(names.size());
+        long offset = headerSize;
+        for (Map.Entry<String, byte[]> entry : names.entrySet()) {
+            long length = lengths.get(entry.getKey());
+            header.putShort((short) entry.getValue().length).put(entry.getValue())
+                    .putLong(offset).putInt((int) (length / recordSize));
+            offset += length;
+        }
+        header.flip();
+        File tmp = new File(dir, PACKED_FILE + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            for (String name : names.keySet()) {
+                long length = lengths.get(name);
+                if (length == 0) {
+                    continue;
+                }
+                try (FileChannel in = FileChannel.open(index.segmentFile(ids.get(name)).toPath(), StandardOpenOption.READ)) {
+                    long position = 0;
+                    while (position < length) {
+                        position += in.transferTo(position, length - position, out);
+                    }
+                }
+            }
+            out.force(true);
+        }
+        Files.move(tmp.toPath(), new File(dir, PACKED_FILE).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    Set<String> seriesNames() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    SeriesView read(String series) {
+        long[] entry = entries.get(series);
+        if (entry == null) {
+            return SeriesView.empty(schema);
+        }
+        int position = (int) entry[0];
+        int count = (int) entry[1];
+        long[] timestamps = new long[count];
+        long[][] columns = new long[schema.getColumnCount()][count];
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = buffer.getLong(position);
+            position += Long.BYTES;
+            for (int column = 0; column < columns.length; column++) {
+                columns[column][i] = buffer.getLong(position);
+                position += Long.BYTES;
+            }
+        }
+        return new SeriesView(schema, timestamps, columns, 0, count);
+    }
+}
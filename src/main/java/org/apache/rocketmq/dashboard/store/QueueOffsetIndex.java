@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.store;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongPredicate;
+
+/**
+ * Shared in-memory index of what the dashboard already learned about the queues: anchors mapping a queue offset to
+ * the store timestamp of its message, collected from pulls, and the results of earlier searchOffset calls.
+ * <p>
+ * Store timestamps grow with the queue offset, so the anchors of a queue answer a timestamp lookup when two of them
+ * are adjacent around it, and narrow a boundary search otherwise. Both queues and anchors are bounded; a queue
+ * expires some time after its last access, so offsets removed by the broker's retention are forgotten as well.
+ */
+public class QueueOffsetIndex {
+
+    /**
+     * A search for a timestamp this recent may still move as messages arrive, so its result is not kept
+     */
+    private static final long STABLE_AFTER_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final int MAX_SEARCHES_PER_QUEUE = 64;
+
+    private final int maxAnchorsPerQueue;
+
+    private final Cache<MessageQueue, QueueAnchors> queues;
+
+    public QueueOffsetIndex(int maxQueues, int maxAnchorsPerQueue, long expireMillis) {
+        this.maxAnchorsPerQueue = maxAnchorsPerQueue;
+        this.queues = CacheBuilder.newBuilder()
+                .maximumSize(maxQueues)
+                .expireAfterAccess(expireMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public void record(MessageQueue mq, long offset, long storeTimestamp) {
+        anchors(mq).put(offset, storeTimestamp);
+    }
+
+    /**
+     * Record the offsets of pulled messages.
+     */
+    public void recordAll(MessageQueue mq, List<MessageExt> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+        QueueAnchors anchors = anchors(mq);
+        for (MessageExt messageExt : messages) {
+            anchors.put(messageExt.getQueueOffset(), messageExt.getStoreTimestamp());
+        }
+    }
+
+    /**
+     * Record the offset the broker returned for a timestamp, unless the timestamp is too recent to be stable.
+     */
+    public void recordSearch(MessageQueue mq, long timestamp, long offset) {
+        if (timestamp < System.currentTimeMillis() - STABLE_AFTER_MILLIS) {
+            anchors(mq).putSearch(timestamp, offset);
+        }
+    }
+
+    /**
+     * @return the offset of the first message stored at or after a timestamp, or null if it is not known locally
+     */
+    public Long lookup(MessageQueue mq, long timestamp) {
+        QueueAnchors anchors = queues.getIfPresent(mq);
+        return anchors == null ? null : anchors.lookup(timestamp);
+    }
+
+    /**
+     * @return the store timestamp of the message at an offset, or null if it is not known locally
+     */
+    public Long timestampAt(MessageQueue mq, long offset) {
+        QueueAnchors anchors = queues.getIfPresent(mq);
+        return anchors == null ? null : anchors.timestampAt(offset);
+    }
+
+    /**
+     * Narrow the range [low, high) of a search for the first offset whose store timestamp is reached, using the
+     * known anchors in between.
+     *
+     * @return {low, high} of the narrowed range
+     */
+    public long[] narrow(MessageQueue mq, long low, long high, LongPredicate reached) {
+        QueueAnchors anchors = queues.getIfPresent(mq);
+        return anchors == null ? new long[] {low, high} : anchors.narrow(low, high, reached);
+    }
+
+    /**
+     * Forget a queue, e.g. when the broker rejected an offset taken from the index.
+     */
+    public void invalidate(MessageQueue mq) {
+        queues.invalidate(mq);
+    }
+
+    private QueueAnchors anchors(MessageQueue mq) {
+        try {
+            return queues.get(mq, QueueAnchors::new);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private final class QueueAnchors {
+
+        /**
+         * queue offset -> store timestamp
+         */
+        private final TreeMap<Long, Long> timestamps = new TreeMap<>();
+
+        /**
+         * searched timestamp -> offset, least recently used first
+         */
+        private final Map<Long, Long> searches = new LinkedHashMap<Long, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                return size() > MAX_SEARCHES_PER_QUEUE;
+            }
+        };
+
+        private synchronized void put(long offset, long storeTimestamp) {
+            timestamps.put(offset, storeTimestamp);
+            if (timestamps.size() > maxAnchorsPerQueue) {
+                // keep the recent part of the queue, which is what operators look at
+                timestamps.pollFirstEntry();
+            }
+        }
+
+        private synchronized void putSearch(long timestamp, long offset) {
+            searches.put(timestamp, offset);
+        }
+
+        private synchronized Long timestampAt(long offset) {
+            return timestamps.get(offset);
+        }
+
+        private synchronized Long lookup(long timestamp) {
+            Long offset = searches.get(timestamp);
+            if (offset != null) {
+                return offset;
+            }
+            Long before = null;
+            for (Map.Entry<Long, Long> entry : timestamps.entrySet()) {
+                if (entry.getValue() >= timestamp) {
+                    return before != null && before + 1 == entry.getKey() ? entry.getKey() : null;
+                }
+                before = entry.getKey();
+            }
+            return null;
+        }
+
+        private synchronized long[] narrow(long low, long high, LongPredicate reached) {
+            if (low < high) {
+                for (Map.Entry<Long, Long> entry : timestamps.subMap(low, high).entrySet()) {
+                    if (reached.test(entry.getValue())) {
+                        high = entry.getKey();
+                        break;
+                    }
+                    low = entry.getKey() + 1;
+                }
+            }
+            return new long[] {low, high};
+        }
+    }
+}
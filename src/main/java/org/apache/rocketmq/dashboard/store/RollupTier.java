@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.store;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolutions the dashboard series are kept at. Every tier is a {@link TimeSeriesStore} of its own;
+ * the coarser tiers hold {@link SeriesSchema#getRollupSchema() rollup} records built from the raw points.
+ */
+public enum RollupTier {
+    RAW("raw", "store", TimeUnit.MINUTES.toMillis(1)),
+    FIVE_MINUTES("5m", "store-5m", TimeUnit.MINUTES.toMillis(5)),
+    ONE_HOUR("1h", "store-1h", TimeUnit.HOURS.toMillis(1));
+
+    private final String name;
+    private final String dirName;
+    private final long resolutionMillis;
+
+    RollupTier(String name, String dirName, long resolutionMillis) {
+        this.name = name;
+        this.dirName = dirName;
+        this.resolutionMillis = resolutionMillis;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDirName() {
+        return dirName;
+    }
+
+    public long getResolutionMillis() {
+        return resolutionMillis;
+    }
+}
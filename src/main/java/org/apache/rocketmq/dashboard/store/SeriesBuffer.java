@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.store;
+
+/**
+ * Fixed-capacity columnar ring buffer holding the latest points of one series.
+ * <p>
+ * Every appended point gets a monotonically increasing sequence number; the buffer remembers up to which
+ * sequence its points were flushed to the {@link TimeSeriesStore}, so a flush only copies the new points.
+ * Double columns are passed and kept as {@link Double#doubleToRawLongBits(double)}.
+ */
+public class SeriesBuffer {
+
+    private final SeriesSchema schema;
+
+    private final int capacity;
+
+    private final long[] timestamps;
+
+    private final long[][] columns;
+
+    /**
+     * Sequence of the next point to append
+     */
+    private long nextSequence;
+
+    /**
+     * Sequence of the first point not yet flushed
+     */
+    private long flushedSequence;
+
+    public SeriesBuffer(SeriesSchema schema, int capacity) {
+        this.schema = schema;
+        this.capacity = capacity;
+        this.timestamps = new long[capacity];
+        this.columns = new long[schema.getColumnCount()][capacity];
+    }
+
+    public SeriesSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * @param columnValues one raw value per schema column, double columns as raw long bits
+     */
+    public synchronized void append(long timestamp, long... columnValues) {
+        int slot = (int) (nextSequence % capacity);
+        timestamps[slot] = timestamp;
+        for (int column = 0; column < columns.length; column++) {
+            columns[column][slot] = columnValues[column];
+        }
+        nextSequence++;
+    }
+
+    /**
+     * Append a record in the {timestamp, column...} layout returned by {@link SeriesSchema#parseRow(String)}.
+     */
+    public synchronized void appendRecord(long[] record) {
+        int slot = (int) (nextSequence % capacity);
+        timestamps[slot] = record[0];
+        for (int column = 0; column < columns.length; column++) {
+            columns[column][slot] = record[column + 1];
+        }
+        nextSequence++;
+    }
+
+    public synchronized int size() {
+        return (int) Math.min(nextSequence, capacity);
+    }
+
+    /**
+     * @return a copy of every point still held by the buffer, oldest first
+     */
+    public synchronized SeriesView snapshot() {
+        return copy(nextSequence - size());
+    }
+
+    /**
+     * @return a copy of the points appended since the last {@link #markFlushed(long)}, oldest first.
+     * Points overwritten before they could be flushed are skipped.
+     */
+    public synchronized SeriesView unflushed() {
+        return copy(Math.max(flushedSequence, nextSequence - capacity));
+    }
+
+    /**
+     * @return the number of points appended since the last flush that the ring has already overwritten
+     */
+    public synchronized long lostSinceFlush() {
+        return Math.max(0, nextSequence - capacity - flushedSequence);
+    }
+
+    /**
+     * @return the sequence following the last appended point, to be passed to {@link #markFlushed(long)}
+     */
+    public synchronized long getNextSequence() {
+        return nextSequence;
+    }
+
+    public synchronized void markFlushed(long sequence) {
+        flushedSequence = Math.max(flushedSequence, sequence);
+    }
+
+    /**
+     * @return the latest value of a column, or {@code defaultValue} if the buffer is empty
+     */
+    public synchronized long latestRaw(int column, long defaultValue) {
+        if (nextSequence == 0) {
+            return defaultValue;
+        }
+        return columns[column][(int) ((nextSequence - 1) % capacity)];
+    }
+
+    private SeriesView copy(long fromSequence) {
+        int count = (int) (nextSequence - fromSequence);
+        long[] copiedTimestamps = new long[count];
+        long[][] copiedColumns = new long[columns.length][count];
+        int start = (int) (fromSequence % capacity);
+        int firstPart = Math.min(count, capacity - start);
+        System.arraycopy(timestamps, start, copiedTimestamps, 0, firstPart);
+        System.arraycopy(timestamps, 0, copiedTimestamps, firstPart, count - firstPart);
+        for (int column = 0; column < columns.length; column++) {
+            System.arraycopy(columns[column], start, copiedColumns[column], 0, firstPart);
+            System.arraycopy(columns[column], 0, copiedColumns[column], firstPart, count - firstPart);
+        }
+        return new SeriesView(schema, copiedTimestamps, copiedColumns, 0, count);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.store;
+
+import com.google.common.collect.Maps;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Append-only mapping from series name to segment id for one day directory.
+ * Each entry is written as: int id, short nameLength, UTF-8 name bytes.
+ */
+class SeriesIndex {
+
+    static final String INDEX_FILE = "series.idx";
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final File dir;
+
+    private final Map<String, Integer> ids = Maps.newLinkedHashMap();
+
+    private long validLength;
+
+    private SeriesIndex(File dir) {
+        this.dir = dir;
+    }
+
+    static boolean exists(File dir) {
+        return new File(dir, INDEX_FILE).exists();
+    }
+
+    static SeriesIndex load(File dir) throws IOException {
+        SeriesIndex index = new SeriesIndex(dir);
+        File file = new File(dir, INDEX_FILE);
+        if (!file.exists()) {
+            return index;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        while (buffer.remaining() >= Integer.BYTES + Short.BYTES) {
+            int id = buffer.getInt();
+            int length = buffer.getShort() & 0xFFFF;
+            if (buffer.remaining() < length) {
+                // a torn entry left by a crash, ignore it and overwrite on the next append
+                break;
+            }
+            byte[] name = new byte[length];
+            buffer.get(name);
+            index.ids.put(new String(name, StandardCharsets.UTF_8), id);
+            index.validLength = buffer.position();
+        }
+        return index;
+    }
+
+    synchronized Integer lookup(String series) {
+        return ids.get(series);
+    }
+
+    synchronized int getOrCreate(String series) throws IOException {
+        Integer id = ids.get(series);
+        if (id != null) {
+            return id;
+        }
+        byte[] name = series.getBytes(StandardCharsets.UTF_8);
+        int newId = ids.size();
+        ByteBuffer entry = ByteBuffer.allocate(Integer.BYTES + Short.BYTES + name.length);
+        entry.putInt(newId).putShort((short) name.length).put(name);
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create series directory " + dir);
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(new File(dir, INDEX_FILE), "rw")) {
+            raf.setLength(validLength);
+            raf.seek(validLength);
+            raf.write(entry.array());
+        }
+        validLength += entry.capacity();
+        ids.put(series, newId);
+        return newId;
+    }
+
+    synchronized Map<String, Integer> snapshot() {
+        return Collections.unmodifiableMap(Maps.newLinkedHashMap(ids));
+    }
+
+    File segmentFile(int id) {
+        return new File(dir, id + SEGMENT_SUFFIX);
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.store;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Layout of the fixed-width records kept by {@link TimeSeriesStore}. Every record starts with the
+ * sample timestamp followed by one 8-byte slot per column; double columns are stored as raw long bits.
+ * <p>
+ * Each collected schema has a rollup schema holding, for every one of its columns, the min, max, avg and last
+ * value of a bucket; see {@link #rollupColumn(int, Aggregate)}.
+ */
+public enum SeriesSchema {
+    /**
+     * timestamp,averageTps
+     */
+    BROKER("broker", new String[] {"tps"}, ColumnType.DOUBLE),
+    /**
+     * timestamp,inTps,inMsgCntToday,outTps,outMsgCntToday
+     */
+    TOPIC("topic", new String[] {"inTps", "inMsgCntToday", "outTps", "outMsgCntToday"},
+            ColumnType.DOUBLE, ColumnType.LONG, ColumnType.DOUBLE, ColumnType.LONG),
+    /**
+     * timestamp,lag,consumeTps of a consumer group
+     */
+    GROUP("group", new String[] {"lag", "consumeTps"}, ColumnType.LONG, ColumnType.DOUBLE),
+    /**
+     * timestamp,lag of one queue of a consumer group, series named group@topic@brokerName@queueId
+     */
+    QUEUE("queue", new String[] {"lag"}, ColumnType.LONG),
+    /**
+     * Buckets of {@link #BROKER}
+     */
+    BROKER_ROLLUP(BROKER),
+    /**
+     * Buckets of {@link #TOPIC}
+     */
+    TOPIC_ROLLUP(TOPIC),
+    /**
+     * Buckets of {@link #GROUP}
+     */
+    GROUP_ROLLUP(GROUP),
+    /**
+     * Buckets of {@link #QUEUE}
+     */
+    QUEUE_ROLLUP(QUEUE);
+
+    public enum ColumnType {
+        DOUBLE,
+        LONG
+    }
+
+    /**
+     * Values kept per source column in a rollup record, in this order. AVG is always a double column,
+     * the others have the type of the source column.
+     */
+    public enum Aggregate {
+        MIN,
+        MAX,
+        AVG,
+        LAST
+    }
+
+    public static final int BROKER_TPS = 0;
+
+    public static final int TOPIC_IN_TPS = 0;
+
+    public static final int TOPIC_IN_MSG_CNT_TODAY = 1;
+
+    public static final int TOPIC_OUT_TPS = 2;
+
+    public static final int TOPIC_OUT_MSG_CNT_TODAY = 3;
+
+    public static final int GROUP_LAG = 0;
+
+    public static final int GROUP_CONSUME_TPS = 1;
+
+    public static final int QUEUE_LAG = 0;
+
+    private static final int TPS_SCALE = 5;
+
+    private final String dirName;
+    private final String[] names;
+    private final ColumnType[] columns;
+    private final SeriesSchema source;
+
+    SeriesSchema(String dirName, String[] names, ColumnType... columns) {
+        this.dirName = dirName;
+        this.names = names;
+        this.columns = columns;
+        this.source = null;
+    }
+
+    SeriesSchema(SeriesSchema source) {
+        int aggregates = Aggregate.values().length;
+        this.dirName = source.dirName;
+        this.names = new String[source.columns.length * aggregates];
+        this.columns = new ColumnType[source.columns.length * aggregates];
+        for (int column = 0; column < source.columns.length; column++) {
+            for (Aggregate aggregate : Aggregate.values()) {
+                int target = column * aggregates + aggregate.ordinal();
+                names[target] = source.names[column] + "." + aggregate.name().toLowerCase();
+                columns[target] = aggregate == Aggregate.AVG ? ColumnType.DOUBLE : source.columns[column];
+            }
+        }
+        this.source = source;
+    }
+
+    /**
+     * @return the schema of a dashboard query type, "broker", "topic", "group" or "queue"
+     */
+    public static SeriesSchema of(String dirName) {
+        for (SeriesSchema schema : values()) {
+            if (!schema.isRollup() && schema.dirName.equals(dirName)) {
+                return schema;
+            }
+        }
+        throw new IllegalArgumentException("Unknown series type: " + dirName);
+    }
+
+    /**
+     * @return the rollup column holding one aggregate of a source column
+     */
+    public static int rollupColumn(int column, Aggregate aggregate) {
+        return column * Aggregate.values().length + aggregate.ordinal();
+    }
+
+    public String getDirName() {
+        return dirName;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public ColumnType getColumnType(int column) {
+        return columns[column];
+    }
+
+    public String getColumnName(int column) {
+        return names[column];
+    }
+
+    public boolean isRollup() {
+        return source != null;
+    }
+
+    /**
+     * @return the collected schema a rollup schema aggregates, or this schema if it is not a rollup
+     */
+    public SeriesSchema getSourceSchema() {
+        return source == null ? this : source;
+    }
+
+    /**
+     * @return the schema of the buckets aggregating this schema
+     */
+    public SeriesSchema getRollupSchema() {
+        switch (this) {
+            case BROKER:
+                return BROKER_ROLLUP;
+            case TOPIC:
+                return TOPIC_ROLLUP;
+            case GROUP:
+                return GROUP_ROLLUP;
+            case QUEUE:
+                return QUEUE_ROLLUP;
+            default:
+                return this;
+        }
+    }
+
+    /**
+     * Size in bytes of one record: the timestamp plus every column.
+     */
+    public int getRecordSize() {
+        return (columns.length + 1) * Long.BYTES;
+    }
+
+    /**
+     * Parse a row in the legacy "timestamp,value,..." format into a record. Missing columns are stored as zero.
+     */
+    public long[] parseRow(String row) {
+        String[] fields = row.split(",");
+        long[] record = new long[columns.length + 1];
+        record[0] = Long.parseLong(fields[0].trim());
+        for (int i = 0; i < columns.length; i++) {
+            String field = i + 1 < fields.length ? fields[i + 1].trim() : "0";
+            if (columns[i] == ColumnType.DOUBLE) {
+                record[i + 1] = Double.doubleToRawLongBits(Double.parseDouble(field));
+            } else {
+                record[i + 1] = Long.parseLong(field);
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Append one column value, double columns rounded to the precision the collectors always used.
+     */
+    void formatValue(StringBuilder sb, int column, long raw) {
+        if (columns[column] == ColumnType.LONG) {
+            sb.append(raw);
+            return;
+        }
+        double value = Double.longBitsToDouble(raw);
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            value = 0;
+        }
+        sb.append(new BigDecimal(value).setScale(TPS_SCALE, RoundingMode.HALF_UP).toPlainString());
+    }
+}
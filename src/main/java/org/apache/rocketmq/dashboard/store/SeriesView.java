@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.store;
+
+import com.google.common.collect.Lists;
+
+import java.util.List;
+
+/**
+ * Immutable columnar chunk of a series: one {@code long[]} of timestamps plus one {@code long[]} per column,
+ * double columns holding raw long bits. Values are read in place, nothing is parsed.
+ */
+public class SeriesView {
+
+    private final SeriesSchema schema;
+
+    private final long[] timestamps;
+
+    private final long[][] columns;
+
+    private final int offset;
+
+    private final int size;
+
+    SeriesView(SeriesSchema schema, long[] timestamps, long[][] columns, int offset, int size) {
+        this.schema = schema;
+        this.timestamps = timestamps;
+        this.columns = columns;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    public static SeriesView empty(SeriesSchema schema) {
+        return new SeriesView(schema, new long[0], new long[schema.getColumnCount()][0], 0, 0);
+    }
+
+    public SeriesSchema getSchema() {
+        return schema;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[offset + index];
+    }
+
+    public long getRaw(int index, int column) {
+        return columns[column][offset + index];
+    }
+
+    public double getDouble(int index, int column) {
+        return Double.longBitsToDouble(columns[column][offset + index]);
+    }
+
+    public long getLong(int index, int column) {
+        return columns[column][offset + index];
+    }
+
+    /**
+     * @return the points in [from, to), sharing the arrays of this view
+     */
+    public SeriesView slice(int from, int to) {
+        return new SeriesView(schema, timestamps, columns, offset + from, to - from);
+    }
+
+    /**
+     * @return the points stamped within [begin, end], the view being in time order
+     */
+    public SeriesView between(long begin, long end) {
+        int from = 0;
+        while (from < size && getTimestamp(from) < begin) {
+            from++;
+        }
+        int to = size;
+        while (to > from && getTimestamp(to - 1) > end) {
+            to--;
+        }
+        return slice(from, to);
+    }
+
+    /**
+     * @return one view holding the points of all views, in the given order
+     */
+    public static SeriesView concat(SeriesSchema schema, List<SeriesView> views) {
+        int count = 0;
+        for (SeriesView view : views) {
+            count += view.size;
+        }
+        long[] timestamps = new long[count];
+        long[][] columns = new long[schema.getColumnCount()][count];
+        int position = 0;
+        for (SeriesView view : views) {
+            System.arraycopy(view.timestamps, view.offset, timestamps, position, view.size);
+            for (int column = 0; column < columns.length; column++) {
+                System.arraycopy(view.columns[column], view.offset, columns[column], position, view.size);
+            }
+            position += view.size;
+        }
+        return new SeriesView(schema, timestamps, columns, 0, count);
+    }
+
+    /**
+     * Format one point as the "timestamp,value,..." row the dashboard pages consume.
+     */
+    public String formatRow(int index) {
+        StringBuilder sb = new StringBuilder(16 * (columns.length + 1));
+        sb.append(getTimestamp(index));
+        for (int column = 0; column < columns.length; column++) {
+            sb.append(',');
+            schema.formatValue(sb, column, getRaw(index, column));
+        }
+        return sb.toString();
+    }
+
+    public List<String> formatRows() {
+        List<String> rows = Lists.newArrayListWithCapacity(size);
+        for (int i = 0; i < size; i++) {
+            rows.add(formatRow(i));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.store;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only binary store for the dashboard time series.
+ * <p>
+ * Layout: {@code <root>/<yyyy-MM-dd>/<schema>/series.idx} maps every series name to an id, and
+ * {@code <id>.seg} holds that series' fixed-width records in collection order. Flushing new points only
+ * appends to the matching segment, so the cost is proportional to the number of new points.
+ * <p>
+ * Once a day is over it never changes again. The first read of such a sealed day packs its segments into one
+ * {@link PackedDay} file, which is then memory-mapped once and kept open for the following requests.
+ */
+public class TimeSeriesStore {
+
+    private final static Logger log = LoggerFactory.getLogger(TimeSeriesStore.class);
+
+    /**
+     * Time after midnight during which the previous day may still receive its last flushed points
+     */
+    private static final long SEAL_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final File rootDir;
+
+    private final Cache<File, PackedDay> packedDays = CacheBuilder.newBuilder()
+            .maximumSize(32)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
+
+    private final LoadingCache<File, SeriesIndex> writerIndexes = CacheBuilder.newBuilder()
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build(new CacheLoader<File, SeriesIndex>() {
+                @Override
+                public SeriesIndex load(File dir) throws IOException {
+                    return SeriesIndex.load(dir);
+                }
+            });
+
+    public TimeSeriesStore(File rootDir) {
+        this.rootDir = rootDir;
+    }
+
+    public File getRootDir() {
+        return rootDir;
+    }
+
+    /**
+     * @param day format yyyy-MM-dd
+     */
+    public boolean contains(String day, SeriesSchema schema) {
+        File dir = dayDir(day, schema);
+        return SeriesIndex.exists(dir) || PackedDay.exists(dir);
+    }
+
+    /**
+     * @param day format yyyy-MM-dd
+     * @return whether the day is over and can no longer receive points
+     */
+    public boolean isSealed(String day) {
+        long dayEnd = LocalDate.parse(day).plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return System.currentTimeMillis() >= dayEnd + SEAL_GRACE_MILLIS;
+    }
+
+    /**
+     * @return the days holding data, oldest first
+     */
+    public List<String> listDays() {
+        List<String> days = Lists.newArrayList();
+        File[] dirs = rootDir.listFiles(File::isDirectory);
+        if (dirs == null) {
+            return days;
+        }
+        for (File dir : dirs) {
+            try {
+                days.add(LocalDate.parse(dir.getName()).toString());
+            } catch (DateTimeParseException e) {
+                log.debug("Skip {} which is not a day directory", dir.getAbsolutePath());
+            }
+        }
+        Collections.sort(days);
+        return days;
+    }
+
+    /**
+     * Remove every series of a day.
+     */
+    public synchronized void delete(String day) throws IOException {
+        File dir = new File(rootDir, day);
+        packedDays.asMap().keySet().removeIf(key -> dir.equals(key.getParentFile()));
+        writerIndexes.asMap().keySet().removeIf(key -> dir.equals(key.getParentFile()));
+        log.info("Delete dashboard data of {}", dir.getAbsolutePath());
+        FileSystemUtils.deleteRecursively(dir.toPath());
+    }
+
+    /**
+     * Append the points of a view to the end of a series segment.
+     */
+    public void append(String day, String series, SeriesView points) throws IOException {
+        if (points.isEmpty()) {
+            return;
+        }
+        SeriesSchema schema = points.getSchema();
+        File dir = dayDir(day, schema);
+        if (PackedDay.exists(dir)) {
+            log.warn("Drop {} points of {} for sealed day {}", points.size(), series, day);
+            return;
+        }
+        SeriesIndex index = writerIndex(dir);
+        int recordSize = schema.getRecordSize();
+        ByteBuffer buffer = ByteBuffer.allocate(points.size() * recordSize);
+        for (int i = 0; i < points.size(); i++) {
+            buffer.putLong(points.getTimestamp(i));
+            for (int column = 0; column < schema.getColumnCount(); column++) {
+                buffer.putLong(points.getRaw(i, column));
+            }
+        }
+        buffer.flip();
+        synchronized (index) {
+            File segment = index.segmentFile(index.getOrCreate(series));
+            try (FileChannel channel = FileChannel.open(segment.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                long size = channel.size();
+                // drop a torn record left by a crash so the segment stays aligned
+                long aligned = size - size % recordSize;
+                if (aligned != size) {
+                    channel.truncate(aligned);
+                }
+                channel.position(aligned);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param day format yyyy-MM-dd
+     * @return the points of one series, empty if the series has no data that day
+     */
+    public SeriesView read(String day, SeriesSchema schema, String series) throws IOException {
+        PackedDay packed = packedDay(day, schema);
+        if (packed != null) {
+            return packed.read(series);
+        }
+        File dir = dayDir(day, schema);
+        if (!SeriesIndex.exists(dir)) {
+            return SeriesView.empty(schema);
+        }
+        SeriesIndex index = SeriesIndex.load(dir);
+        Integer id = index.lookup(series);
+        if (id == null) {
+            return SeriesView.empty(schema);
+        }
+        return readSegment(index.segmentFile(id), schema);
+    }
+
+    /**
+     * @param day format yyyy-MM-dd
+     */
+    public Map<String, SeriesView> readAll(String day, SeriesSchema schema) throws IOException {
+        Map<String, SeriesView> result = Maps.newHashMap();
+        PackedDay packed = packedDay(day, schema);
+        if (packed != null) {
+            for (String series : packed.seriesNames()) {
+                result.put(series, packed.read(series));
+            }
+            return result;
+        }
+        File dir = dayDir(day, schema);
+        if (!SeriesIndex.exists(dir)) {
+            return result;
+        }
+        SeriesIndex index = SeriesIndex.load(dir);
+        for (Map.Entry<String, Integer> entry : index.snapshot().entrySet()) {
+            result.put(entry.getKey(), readSegment(index.segmentFile(entry.getValue()), schema));
+        }
+        return result;
+    }
+
+    private SeriesView readSegment(File segment, SeriesSchema schema) throws IOException {
+        if (!segment.exists()) {
+            return SeriesView.empty(schema);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment.toPath()));
+        int count = buffer.capacity() / schema.getRecordSize();
+        long[] timestamps = new long[count];
+        long[][] columns = new long[schema.getColumnCount()][count];
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = buffer.getLong();
+            for (int column = 0; column < columns.length; column++) {
+                columns[column][i] = buffer.getLong();
+            }
+        }
+        return new SeriesView(schema, timestamps, columns, 0, count);
+    }
+
+    /**
+     * @return the mapped reader of a sealed day, or null if the day is still open or has no data
+     */
+    private PackedDay packedDay(String day, SeriesSchema schema) throws IOException {
+        if (!isSealed(day)) {
+            return null;
+        }
+        File dir = dayDir(day, schema);
+        PackedDay packed = packedDays.getIfPresent(dir);
+        if (packed != null) {
+            return packed;
+        }
+        if (!contains(day, schema)) {
+            return null;
+        }
+        try {
+            return packedDays.get(dir, () -> {
+                if (SeriesIndex.exists(dir)) {
+                    seal(dir, schema);
+                }
+                return PackedDay.open(dir, schema);
+            });
+        } catch (ExecutionException e) {
+            Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Replace the segments of a finished day by its packed file.
+     */
+    private void seal(File dir, SeriesSchema schema) throws IOException {
+        SeriesIndex index = SeriesIndex.load(dir);
+        synchronized (this) {
+            // a previous run may have crashed after writing the packed file, before removing the segments
+            if (!PackedDay.exists(dir)) {
+                log.info("Pack dashboard data of {}", dir.getAbsolutePath());
+                PackedDay.pack(index, dir, schema);
+            }
+            writerIndexes.invalidate(dir);
+            for (Integer id : index.snapshot().values()) {
+                Files.deleteIfExists(index.segmentFile(id).toPath());
+            }
+            Files.deleteIfExists(new File(dir, SeriesIndex.INDEX_FILE).toPath());
+        }
+    }
+
+    private SeriesIndex writerIndex(File dir) throws IOException {
+        try {
+            return writerIndexes.get(dir);
+        } catch (ExecutionException e) {
+            Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private File dayDir(String day, SeriesSchema schema) {
+        return new File(new File(rootDir, day), schema.getDirName());
+    }
+}
@@ -14,124 +14,447 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.apache.rocketmq.dashboard.support;
 
+import com.google.common.collect.Lists;
+import jakarta.annotation.Resource;
+import org.apache.rocketmq.acl.common.AclClientRPCHook;
+import org.apache.rocketmq.acl.common.SessionCredentials;
 import org.apache.rocketmq.client.consumer.DefaultMQPullConsumer;
+import org.apache.rocketmq.client.consumer.PullResult;
+import org.apache.rocketmq.client.exception.MQBrokerException;
 import org.apache.rocketmq.client.exception.MQClientException;
 import org.apache.rocketmq.common.MixAll;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.dashboard.config.RMQConfigure;
 import org.apache.rocketmq.remoting.RPCHook;
+import org.apache.rocketmq.remoting.exception.RemotingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.stereotype.Component;
 
-import java.time.Duration;
-import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Keyed pool of the pull consumers used by the message queries.
+ * <p>
+ * Consumers are pooled per access key, secret key and TLS setting. Each pool holds up to
+ * {@link RMQConfigure#getMessageConsumerPoolSize()} consumers, each with its own client instance, and hands out
+ * the one with the fewest requests in flight. The first request of a pool starts the other consumers in the
+ * background, and a consumer is shut down once it has been idle for
+ * {@link RMQConfigure#getMessageConsumerIdleTimeoutMillis()}.
+ * <p>
+ * Every {@link #getConsumer(RPCHook, Boolean)} takes a lease on the consumer, which the caller gives back with
+ * {@link #releaseConsumer(DefaultMQPullConsumer)} once done. A leased consumer is never shut down, however long
+ * its holder waits between two requests.
+ */
 @Component
-public class AutoCloseConsumerWrapper {
+public class AutoCloseConsumerWrapper implements DisposableBean {
 
     private final Logger logger = LoggerFactory.getLogger(AutoCloseConsumerWrapper.class);
 
-    private static final AtomicReference<DefaultMQPullConsumer> CONSUMER_REF = new AtomicReference<>();
-    private final AtomicBoolean isTaskScheduled = new AtomicBoolean(false);
-    private final AtomicBoolean isClosing = new AtomicBoolean(false);
-    private static volatile Instant lastUsedTime = Instant.now();
+    private static final int DEFAULT_POOL_SIZE = 2;
+
+    private static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 60_000;
+
+    private static final AtomicInteger INSTANCE_INDEX = new AtomicInteger();
 
+    @Resource
+    private RMQConfigure configure;
 
-    private static final ScheduledExecutorService SCHEDULER =
-            Executors.newSingleThreadScheduledExecutor();
+    private final ConcurrentMap<PoolKey, ConsumerPool> pools = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "PullConsumerPool");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     public AutoCloseConsumerWrapper() {
-        startIdleCheckTask();
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                checkAndCloseIdleConsumer();
+            } catch (Exception e) {
+                logger.error("Idle check failed", e);
+            }
+        }, 1, 1, TimeUnit.MINUTES);
     }
 
-
+    /**
+     * @return a started consumer, leased until given back with {@link #releaseConsumer(DefaultMQPullConsumer)}
+     */
     public DefaultMQPullConsumer getConsumer(RPCHook rpcHook, Boolean useTLS) {
-        lastUsedTime = Instant.now();
-
-        DefaultMQPullConsumer consumer = CONSUMER_REF.get();
-        if (consumer == null) {
-            synchronized (this) {
-                consumer = CONSUMER_REF.get();
-                if (consumer == null) {
-                    consumer = createNewConsumer(rpcHook, useTLS);
-                    CONSUMER_REF.set(consumer);
+        PoolKey key = PoolKey.of(rpcHook, Boolean.TRUE.equals(useTLS));
+        ConsumerPool pool = pools.computeIfAbsent(key, k -> new ConsumerPool(k, rpcHook, Math.max(1, poolSize())));
+        return pool.acquire();
+    }
+
+    /**
+     * Give back the lease taken by {@link #getConsumer(RPCHook, Boolean)}.
+     */
+    public void releaseConsumer(DefaultMQPullConsumer consumer) {
+        for (ConsumerPool pool : pools.values()) {
+            if (pool.release(consumer)) {
+                return;
+            }
+        }
+        logger.warn("Released a pull consumer that is not leased");
+    }
+
+    protected DefaultMQPullConsumer createNewConsumer(RPCHook rpcHook, Boolean useTLS) {
+        return new TrackedPullConsumer(rpcHook, useTLS);
+    }
+
+    /**
+     * @return one entry per pooled consumer, started or not
+     */
+    public List<ConsumerStats> getStats() {
+        List<ConsumerStats> stats = Lists.newArrayList();
+        for (ConsumerPool pool : pools.values()) {
+            pool.collectStats(stats);
+        }
+        return stats;
+    }
+
+    public void checkAndCloseIdleConsumer() {
+        long idleTimeoutMillis = idleTimeoutMillis();
+        for (ConsumerPool pool : pools.values()) {
+            pool.closeIdle(idleTimeoutMillis);
+        }
+    }
+
+    public void close() {
+        for (ConsumerPool pool : pools.values()) {
+            pool.closeIdle(-1);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+        close();
+        pools.clear();
+    }
+
+    protected int poolSize() {
+        return configure == null ? DEFAULT_POOL_SIZE : configure.getMessageConsumerPoolSize();
+    }
+
+    protected long idleTimeoutMillis() {
+        return configure == null ? DEFAULT_IDLE_TIMEOUT_MILLIS : configure.getMessageConsumerIdleTimeoutMillis();
+    }
+
+    private final class ConsumerPool {
+
+        private final PoolKey key;
+
+        private final RPCHook rpcHook;
+
+        private final Slot[] slots;
+
+        private ConsumerPool(PoolKey key, RPCHook rpcHook, int size) {
+            this.key = key;
+            this.rpcHook = rpcHook;
+            this.slots = new Slot[size];
+            for (int i = 0; i < size; i++) {
+                slots[i] = new Slot(i);
+            }
+        }
+
+        private DefaultMQPullConsumer acquire() {
+            Slot least = slots[0];
+            for (Slot slot : slots) {
+                if (slot.inFlight() < least.inFlight()) {
+                    least = slot;
                 }
+            }
+            boolean cold = true;
+            for (Slot slot : slots) {
+                cold &= slot.consumer == null;
+            }
+            DefaultMQPullConsumer consumer = least.lease();
+            if (cold && slots.length > 1) {
+                // pre-warm the rest of the pool while the first consumer serves this request
+                scheduler.execute(this::warmUp);
+            }
+            return consumer;
+        }
+
+        private void warmUp() {
+            for (Slot slot : slots) {
                 try {
-                    consumer.start();
-                } catch (MQClientException e) {
-                    consumer.shutdown();
-                    CONSUMER_REF.set(null);
-                    throw new RuntimeException("Failed to start consumer", e);
+                    slot.get();
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to pre-warm pull consumer {} of {}", slot.index, key, e);
+                }
+            }
+        }
 
+        private boolean release(DefaultMQPullConsumer consumer) {
+            for (Slot slot : slots) {
+                synchronized (slot) {
+                    if (slot.consumer == consumer && slot.leases > 0) {
+                        slot.leases--;
+                        slot.lastUsedTime = System.currentTimeMillis();
+                        return true;
+                    }
                 }
             }
+            return false;
         }
-        return consumer;
-    }
 
+        /**
+         * @param idleTimeoutMillis negative to shut down every consumer, leased or not
+         */
+        private void closeIdle(long idleTimeoutMillis) {
+            long now = System.currentTimeMillis();
+            for (Slot slot : slots) {
+                synchronized (slot) {
+                    boolean idle = slot.leases == 0 && now - slot.lastUsedTime() >= idleTimeoutMillis && slot.inFlight() == 0;
+                    if (slot.consumer != null && (idle || idleTimeoutMillis < 0)) {
+                        logger.info("Shut down idle pull consumer {} of {}", slot.index, key);
+                        slot.consumer.shutdown();
+                        slot.consumer = null;
+                        slot.leases = 0;
+                    }
+                }
+            }
+        }
 
-    protected DefaultMQPullConsumer createNewConsumer(RPCHook rpcHook, Boolean useTLS) {
-        return new DefaultMQPullConsumer(MixAll.TOOLS_CONSUMER_GROUP, rpcHook) {
-            {
-                setUseTLS(useTLS);
+        private void collectStats(List<ConsumerStats> stats) {
+            long now = System.currentTimeMillis();
+            for (Slot slot : slots) {
+                DefaultMQPullConsumer consumer = slot.consumer;
+                TrackedPullConsumer tracked = consumer instanceof TrackedPullConsumer ? (TrackedPullConsumer) consumer : null;
+                stats.add(new ConsumerStats(key.toString(), slot.index, consumer != null,
+                        tracked == null ? 0 : tracked.inFlight.get(),
+                        tracked == null ? 0 : tracked.requests.get(),
+                        consumer == null ? 0 : now - slot.lastUsedTime()));
             }
-        };
-    }
+        }
 
-    private void startIdleCheckTask() {
-        if (!isTaskScheduled.get()) {
-            synchronized (this) {
-                if (!isTaskScheduled.get()) {
-                    SCHEDULER.scheduleWithFixedDelay(() -> {
-                        try {
-                            checkAndCloseIdleConsumer();
-                        } catch (Exception e) {
-                            logger.error("Idle check failed", e);
-                        }
-                    }, 1, 1, TimeUnit.MINUTES);
+        private final class Slot {
+
+            private final int index;
+
+            private volatile DefaultMQPullConsumer consumer;
+
+            private volatile long lastUsedTime;
+
+            /**
+             * Callers holding the consumer, guarded by the slot
+             */
+            private int leases;
+
+            private Slot(int index) {
+                this.index = index;
+            }
 
-                    isTaskScheduled.set(true);
+            /**
+             * @return when the consumer was last handed out or, for a long scan, last ran a request
+             */
+            private long lastUsedTime() {
+                DefaultMQPullConsumer current = consumer;
+                if (current instanceof TrackedPullConsumer) {
+                    return Math.max(lastUsedTime, ((TrackedPullConsumer) current).lastRequestTime);
                 }
+                return lastUsedTime;
             }
-        }
-    }
 
-    public void checkAndCloseIdleConsumer() {
-        if (shouldClose()) {
-            synchronized (this) {
-                if (shouldClose()) {
-                    close();
+            private int inFlight() {
+                DefaultMQPullConsumer current = consumer;
+                if (current == null) {
+                    // prefer started consumers
+                    return Integer.MAX_VALUE;
+                }
+                return current instanceof TrackedPullConsumer ? ((TrackedPullConsumer) current).inFlight.get() : 0;
+            }
+
+            private synchronized DefaultMQPullConsumer lease() {
+                DefaultMQPullConsumer leased = get();
+                leases++;
+                return leased;
+            }
+
+            private DefaultMQPullConsumer get() {
+                lastUsedTime = System.currentTimeMillis();
+                DefaultMQPullConsumer current = consumer;
+                if (current != null) {
+                    return current;
+                }
+                synchronized (this) {
+                    if (consumer == null) {
+                        DefaultMQPullConsumer created = createNewConsumer(rpcHook, key.useTLS);
+                        // every consumer gets its own client instance, and with it its own connections
+                        created.setInstanceName("DASHBOARD_PULL_" + INSTANCE_INDEX.incrementAndGet());
+                        try {
+                            created.start();
+                        } catch (MQClientException e) {
+                            created.shutdown();
+                            throw new RuntimeException("Failed to start consumer", e);
+                        }
+                        consumer = created;
+                    }
+                    return consumer;
                 }
             }
         }
     }
 
-    private boolean shouldClose() {
-        long idleTimeoutMs = 60_000;
-        return CONSUMER_REF.get() != null &&
-                Duration.between(lastUsedTime, Instant.now()).toMillis() > idleTimeoutMs;
-    }
+    /**
+     * Pull consumer counting the pulls and offset searches it is running.
+     */
+    static class TrackedPullConsumer extends DefaultMQPullConsumer {
 
+        private final AtomicInteger inFlight = new AtomicInteger();
 
-    public void close() {
-        if (isClosing.compareAndSet(false, true)) {
+        private final AtomicLong requests = new AtomicLong();
+
+        private volatile long lastRequestTime;
+
+        TrackedPullConsumer(RPCHook rpcHook, Boolean useTLS) {
+            super(MixAll.TOOLS_CONSUMER_GROUP, rpcHook);
+            setUseTLS(Boolean.TRUE.equals(useTLS));
+        }
+
+        @Override
+        public PullResult pull(MessageQueue mq, String subExpression, long offset, int maxNums)
+            throws MQClientException, RemotingException, MQBrokerException, InterruptedException {
+            inFlight.incrementAndGet();
+            requests.incrementAndGet();
+            lastRequestTime = System.currentTimeMillis();
             try {
-                DefaultMQPullConsumer consumer = CONSUMER_REF.getAndSet(null);
-                if (consumer != null) {
-                    consumer.shutdown();
-                }
-                isTaskScheduled.set(false);
+                return super.pull(mq, subExpression, offset, maxNums);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        @Override
+        public long searchOffset(MessageQueue mq, long timestamp) throws MQClientException {
+            inFlight.incrementAndGet();
+            requests.incrementAndGet();
+            lastRequestTime = System.currentTimeMillis();
+            try {
+                return super.searchOffset(mq, timestamp);
             } finally {
-                isClosing.set(false);
+                inFlight.decrementAndGet();
             }
         }
     }
 
+    private static final class PoolKey {
+
+        private final String accessKey;
+
+        private final String secretKey;
+
+        /**
+         * Hooks other than {@link AclClientRPCHook} are only equal to themselves
+         */
+        private final RPCHook otherHook;
+
+        private final boolean useTLS;
+
+        private PoolKey(String accessKey, String secretKey, RPCHook otherHook, boolean useTLS) {
+            this.accessKey = accessKey;
+            this.secretKey = secretKey;
+            this.otherHook = otherHook;
+            this.useTLS = useTLS;
+        }
+
+        private static PoolKey of(RPCHook rpcHook, boolean useTLS) {
+            if (rpcHook instanceof AclClientRPCHook && ((AclClientRPCHook) rpcHook).getSessionCredentials() != null) {
+                SessionCredentials credentials = ((AclClientRPCHook) rpcHook).getSessionCredentials();
+                return new PoolKey(credentials.getAccessKey(), credentials.getSecretKey(), null, useTLS);
+            }
+            return new PoolKey(null, null, rpcHook, useTLS);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PoolKey)) {
+                return false;
+            }
+            PoolKey other = (PoolKey) o;
+            return useTLS == other.useTLS && Objects.equals(accessKey, other.accessKey)
+                    && Objects.equals(secretKey, other.secretKey) && otherHook == other.otherHook;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(accessKey, secretKey, System.identityHashCode(otherHook), useTLS);
+        }
+
+        /**
+         * Never shows the secret key
+         */
+        @Override
+        public String toString() {
+            return (accessKey == null ? "anonymous" : accessKey) + (useTLS ? "/tls" : "");
+        }
+    }
+
+    public static class ConsumerStats {
+
+        private final String pool;
+
+        private final int index;
+
+        private final boolean started;
+
+        private final int inFlight;
+
+        private final long requests;
+
+        private final long idleMillis;
+
+        public ConsumerStats(String pool, int index, boolean started, int inFlight, long requests, long idleMillis) {
+            this.pool = pool;
+            this.index = index;
+            this.started = started;
+            this.inFlight = inFlight;
+            this.requests = requests;
+            this.idleMillis = idleMillis;
+        }
+
+        public String getPool() {
+            return pool;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public boolean isStarted() {
+            return started;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        /**
+         * Pulls and offset searches since the consumer was started
+         */
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getIdleMillis() {
+            return idleMillis;
+        }
+    }
 }
@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.task;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import jakarta.annotation.Resource;
+import org.apache.rocketmq.common.MixAll;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.dashboard.admin.BrokerFanOut;
+import org.apache.rocketmq.dashboard.config.RMQConfigure;
+import org.apache.rocketmq.dashboard.service.DashboardCollectService;
+import org.apache.rocketmq.remoting.protocol.admin.ConsumeStats;
+import org.apache.rocketmq.remoting.protocol.admin.OffsetWrapper;
+import org.apache.rocketmq.remoting.protocol.body.ConsumeStatsList;
+import org.apache.rocketmq.remoting.protocol.route.BrokerData;
+import org.apache.rocketmq.tools.admin.MQAdminExt;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the stats of all topics with one {@code fetchConsumeStatsInBroker} call per master broker, instead of
+ * one {@code viewBrokerStatsData} call per topic, group and broker.
+ * <p>
+ * The consume stats of a broker hold, for every group and queue it serves, the queue max offset, the committed
+ * consumer offset and the consume tps of the group on the topic. The put tps and the 24-hour counts are derived
+ * from the offsets of the successive rounds by a {@link TopicOffsetCounter} per topic and broker.
+ * <p>
+ * The same stats give the lag and consume tps of every consumer group, recorded with each round.
+ */
+@Component
+public class BrokerTopicStatsCollector {
+
+    private final static Logger log = LoggerFactory.getLogger(BrokerTopicStatsCollector.class);
+
+    private static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * Counters of a topic no longer seen for this long are dropped
+     */
+    private static final long COUNTER_EXPIRE_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    @Resource
+    private MQAdminExt mqAdminExt;
+
+    @Resource
+    private RMQConfigure rmqConfigure;
+
+    @Resource
+    private DashboardCollectService dashboardCollectService;
+
+    @Resource
+    private ExecutorService collectExecutor;
+
+    @Resource
+    private BrokerFanOut brokerFanOut;
+
+    /**
+     * topic@brokerAddr -> counter
+     */
+    private final Map<String, TopicOffsetCounter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Collect one point for every topic found in the consume stats of the master brokers.
+     *
+     * @param topics the topics to collect
+     * @return the topics found on no broker, typically those without any consumer group, to be collected one by one
+     */
+    public Set<String> collect(Set<String> topics) throws Exception {
+        Date date = new Date();
+        Map<String, ConsumeStatsList> brokerStats = fetchConsumeStats();
+        Map<String, double[]> topicStats = Maps.newHashMap();
+        for (Map.Entry<String, ConsumeStatsList> entry : brokerStats.entrySet()) {
+            collectBroker(date.getTime(), entry.getKey(), entry.getValue(), topics, topicStats);
+        }
+        for (Map.Entry<String, double[]> entry : topicStats.entrySet()) {
+            double[] stats = entry.getValue();
+            dashboardCollectService.getTopicMap().get(entry.getKey()).append(date.getTime(),
+                    Double.doubleToRawLongBits(stats[0]), (long) stats[1], Double.doubleToRawLongBits(stats[2]), (long) stats[3]);
+        }
+        collectGroups(date.getTime(), brokerStats.values());
+        counters.values().removeIf(counter -> counter.getLastTimestamp() < date.getTime() - COUNTER_EXPIRE_MILLIS);
+        return Sets.newHashSet(Sets.difference(topics, topicStats.keySet()));
+    }
+
+    /**
+     * Collect one lag point for every consumer group, for the rounds collecting the topics one by one.
+     */
+    public void collectGroups() throws Exception {
+        long timestamp = System.currentTimeMillis();
+        collectGroups(timestamp, fetchConsumeStats().values());
+    }
+
+    /**
+     * @return the consume stats of every master broker that answered, by address
+     */
+    private Map<String, ConsumeStatsList> fetchConsumeStats() throws Exception {
+        long timeoutMillis = rmqConfigure.getTimeoutMillis() == null ? DEFAULT_TIMEOUT_MILLIS : rmqConfigure.getTimeoutMillis();
+        BrokerFanOut.BrokerCall<ConsumeStatsList> fetchConsumeStats = brokerAddr -> mqAdminExt.fetchConsumeStatsInBroker(brokerAddr, false, timeoutMillis);
+        Map<String, Future<ConsumeStatsList>> futures = Maps.newHashMap();
+        for (BrokerData brokerData : mqAdminExt.examineBrokerClusterInfo().getBrokerAddrTable().values()) {
+            String masterAddr = brokerData.getBrokerAddrs().get(MixAll.MASTER_ID);
+            if (masterAddr != null) {
+                futures.put(masterAddr, collectExecutor.submit(() -> brokerFanOut.invoke(masterAddr, fetchConsumeStats)));
+            }
+        }
+        Map<String, ConsumeStatsList> brokerStats = Maps.newHashMap();
+        for (Map.Entry<String, Future<ConsumeStatsList>> entry : futures.entrySet()) {
+            try {
+                brokerStats.put(entry.getKey(), entry.getValue().get(timeoutMillis * 2, TimeUnit.MILLISECONDS));
+            } catch (Exception e) {
+                entry.getValue().cancel(true);
+                log.warn("Exception caught: mqAdminExt fetch consume stats in broker failed, broker [{}]", entry.getKey(), e);
+            }
+        }
+        return brokerStats;
+    }
+
+    /**
+     * Record the lag and consume tps of every group, summed over the brokers, and the lag of every queue of the
+     * {@code dashboardQueueLagGroups} groups with the largest lag.
+     */
+    private void collectGroups(long timestamp, Collection<ConsumeStatsList> consumeStatsLists) {
+        Map<String, Long> groupLags = Maps.newHashMap();
+        Map<String, Double> groupTps = Maps.newHashMap();
+        Map<String, List<ConsumeStats>> groupStats = Maps.newHashMap();
+        for (ConsumeStatsList consumeStatsList : consumeStatsLists) {
+            for (Map<String, List<ConsumeStats>> brokerGroupStats : consumeStatsList.getConsumeStatsList()) {
+                for (Map.Entry<String, List<ConsumeStats>> entry : brokerGroupStats.entrySet()) {
+                    for (ConsumeStats consumeStats : entry.getValue()) {
+                        groupLags.merge(entry.getKey(), consumeStats.computeTotalDiff(), Long::sum);
+                        groupTps.merge(entry.getKey(), consumeStats.getConsumeTps(), Double::sum);
+                        groupStats.computeIfAbsent(entry.getKey(), key -> Lists.newArrayList()).add(consumeStats);
+                    }
+                }
+            }
+        }
+        for (Map.Entry<String, Long> entry : groupLags.entrySet()) {
+            dashboardCollectService.getGroupMap().getUnchecked(entry.getKey())
+                    .append(timestamp, entry.getValue(), Double.doubleToRawLongBits(groupTps.get(entry.getKey())));
+        }
+        List<String> hotGroups = Lists.newArrayList(groupLags.keySet());
+        hotGroups.sort((a, b) -> Long.compare(groupLags.get(b), groupLags.get(a)));
+        int queueLagGroups = Math.min(Math.max(0, rmqConfigure.getDashboardQueueLagGroups()), hotGroups.size());
+        for (String group : hotGroups.subList(0, queueLagGroups)) {
+            if (groupLags.get(group) <= 0) {
+                break;
+            }
+            for (ConsumeStats consumeStats : groupStats.get(group)) {
+                for (Map.Entry<MessageQueue, OffsetWrapper> entry : consumeStats.getOffsetTable().entrySet()) {
+                    MessageQueue mq = entry.getKey();
+                    long lag = Math.max(0, entry.getValue().getBrokerOffset() - Math.max(0, entry.getValue().getConsumerOffset()));
+                    dashboardCollectService.getQueueMap()
+                            .getUnchecked(group + "@" + mq.getTopic() + "@" + mq.getBrokerName() + "@" + mq.getQueueId())
+                            .append(timestamp, lag);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the stats of the topics served by one broker to {@code topicStats}: {inTps, inMsgCnt, outTps, outMsgCnt}.
+     */
+    private void collectBroker(long timestamp, String brokerAddr, ConsumeStatsList consumeStatsList,
+                               Set<String> topics, Map<String, double[]> topicStats) {
+        Map<String, Map<MessageQueue, Long>> putOffsets = Maps.newHashMap();
+        Map<String, Long> consumeOffsets = Maps.newHashMap();
+        Map<String, Double> consumeTps = Maps.newHashMap();
+        for (Map<String, List<ConsumeStats>> groupStats : consumeStatsList.getConsumeStatsList()) {
+            for (List<ConsumeStats> statsList : groupStats.values()) {
+                for (ConsumeStats consumeStats : statsList) {
+                    String topic = null;
+                    for (Map.Entry<MessageQueue, OffsetWrapper> entry : consumeStats.getOffsetTable().entrySet()) {
+                        topic = entry.getKey().getTopic();
+                        if (!topics.contains(topic)) {
+                            break;
+                        }
+                        // every group lists the same queues, the max offset is counted once per queue
+                        putOffsets.computeIfAbsent(topic, key -> Maps.newHashMap())
+                                .merge(entry.getKey(), entry.getValue().getBrokerOffset(), Math::max);
+                        consumeOffsets.merge(topic, Math.max(0, entry.getValue().getConsumerOffset()), Long::sum);
+                    }
+                    if (topic != null && topics.contains(topic)) {
+                        consumeTps.merge(topic, consumeStats.getConsumeTps(), Double::sum);
+                    }
+                }
+            }
+        }
+        for (Map.Entry<String, Map<MessageQueue, Long>> entry : putOffsets.entrySet()) {
+            String topic = entry.getKey();
+            long putOffset = 0;
+            for (Long offset : entry.getValue().values()) {
+                putOffset += offset;
+            }
+            TopicOffsetCounter counter = counters.computeIfAbsent(topic + "@" + brokerAddr, key -> new TopicOffsetCounter());
+            counter.update(timestamp, putOffset, consumeOffsets.getOrDefault(topic, 0L));
+            double[] stats = topicStats.computeIfAbsent(topic, key -> new double[4]);
+            stats[0] += counter.getPutTps();
+            stats[1] += counter.getPutCount();
+            stats[2] += consumeTps.getOrDefault(topic, 0D);
+            stats[3] += counter.getConsumeCount();
+        }
+    }
+}
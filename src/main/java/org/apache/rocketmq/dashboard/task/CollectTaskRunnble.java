@@ -16,11 +16,10 @@
  */
 package org.apache.rocketmq.dashboard.task;
 
-import com.google.common.base.Throwables;
-import com.google.common.collect.Lists;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.common.MixAll;
 import org.apache.rocketmq.common.stats.Stats;
+import org.apache.rocketmq.dashboard.admin.BrokerFanOut;
 import org.apache.rocketmq.dashboard.service.DashboardCollectService;
 import org.apache.rocketmq.remoting.protocol.body.BrokerStatsData;
 import org.apache.rocketmq.remoting.protocol.body.GroupList;
@@ -29,10 +28,7 @@ import org.apache.rocketmq.remoting.protocol.route.TopicRouteData;
 import org.apache.rocketmq.tools.admin.MQAdminExt;
 import org.apache.rocketmq.tools.command.stats.StatsAllSubCommand;
 
-import java.math.BigDecimal;
 import java.util.Date;
-import java.util.List;
-import java.util.concurrent.ExecutionException;
 
 @Slf4j
 public class CollectTaskRunnble implements Runnable {
@@ -43,15 +39,25 @@ public class CollectTaskRunnble implements Runnable {
 
     private DashboardCollectService dashboardCollectService;
 
+    private BrokerFanOut brokerFanOut;
+
     public CollectTaskRunnble(String topic, MQAdminExt mqAdminExt,
-                              DashboardCollectService dashboardCollectService) {
+                              DashboardCollectService dashboardCollectService, BrokerFanOut brokerFanOut) {
         this.topic = topic;
         this.mqAdminExt = mqAdminExt;
         this.dashboardCollectService = dashboardCollectService;
+        this.brokerFanOut = brokerFanOut;
     }
 
     @Override
     public void run() {
+        collect();
+    }
+
+    /**
+     * @return whether the point of the topic was collected
+     */
+    public boolean collect() {
         Date date = new Date();
         try {
             TopicRouteData topicRouteData = mqAdminExt.examineTopicRouteInfo(topic);
@@ -64,7 +70,7 @@ public class CollectTaskRunnble implements Runnable {
                 String masterAddr = bd.getBrokerAddrs().get(MixAll.MASTER_ID);
                 if (masterAddr != null) {
                     try {
-                        BrokerStatsData bsd = mqAdminExt.viewBrokerStatsData(masterAddr, Stats.TOPIC_PUT_NUMS, topic);
+                        BrokerStatsData bsd = brokerFanOut.invoke(masterAddr, addr -> mqAdminExt.viewBrokerStatsData(addr, Stats.TOPIC_PUT_NUMS, topic));
                         inTPS += bsd.getStatsMinute().getTps();
                         inMsgCntToday += StatsAllSubCommand.compute24HourSum(bsd);
                     } catch (Exception e) {
@@ -79,7 +85,7 @@ public class CollectTaskRunnble implements Runnable {
                         if (masterAddr != null) {
                             try {
                                 String statsKey = String.format("%s@%s", topic, group);
-                                BrokerStatsData bsd = mqAdminExt.viewBrokerStatsData(masterAddr, Stats.GROUP_GET_NUMS, statsKey);
+                                BrokerStatsData bsd = brokerFanOut.invoke(masterAddr, addr -> mqAdminExt.viewBrokerStatsData(addr, Stats.GROUP_GET_NUMS, statsKey));
                                 outTPS += bsd.getStatsMinute().getTps();
                                 outMsgCntToday += StatsAllSubCommand.compute24HourSum(bsd);
                             } catch (Exception e) {
@@ -90,21 +96,12 @@ public class CollectTaskRunnble implements Runnable {
                 }
             }
 
-            List<String> list;
-            try {
-                list = dashboardCollectService.getTopicMap().get(topic);
-            } catch (ExecutionException e) {
-                Throwables.throwIfUnchecked(e);
-                throw new RuntimeException(e);
-            }
-            if (null == list) {
-                list = Lists.newArrayList();
-            }
-
-            list.add(date.getTime() + "," + new BigDecimal(inTPS).setScale(5, BigDecimal.ROUND_HALF_UP) + "," + inMsgCntToday + "," + new BigDecimal(outTPS).setScale(5, BigDecimal.ROUND_HALF_UP) + "," + outMsgCntToday);
-            dashboardCollectService.getTopicMap().put(topic, list);
+            dashboardCollectService.getTopicMap().get(topic).append(date.getTime(),
+                    Double.doubleToRawLongBits(inTPS), inMsgCntToday, Double.doubleToRawLongBits(outTPS), outMsgCntToday);
+            return true;
         } catch (Exception e) {
             log.error("Failed to collect topic: {} data", topic, e);
+            return false;
         }
     }
 }
@@ -17,17 +17,14 @@
 package org.apache.rocketmq.dashboard.task;
 
 import com.google.common.base.Throwables;
-import com.google.common.cache.LoadingCache;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.io.Files;
+import com.google.common.collect.Sets;
 import jakarta.annotation.Resource;
 import org.apache.rocketmq.common.MixAll;
 import org.apache.rocketmq.common.topic.TopicValidator;
 import org.apache.rocketmq.dashboard.config.RMQConfigure;
 import org.apache.rocketmq.dashboard.service.ConsumerService;
 import org.apache.rocketmq.dashboard.service.DashboardCollectService;
-import org.apache.rocketmq.dashboard.util.JsonUtil;
 import org.apache.rocketmq.remoting.protocol.body.ClusterInfo;
 import org.apache.rocketmq.remoting.protocol.body.KVTable;
 import org.apache.rocketmq.remoting.protocol.body.TopicList;
@@ -38,17 +35,14 @@ import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
 
 @Component
 public class DashboardCollectTask {
@@ -66,31 +60,47 @@ public class DashboardCollectTask {
 
     private final static Logger log = LoggerFactory.getLogger(DashboardCollectTask.class);
 
+    private static final String BROKER_COLLECT_MODE = "broker";
+
+    @Resource
+    private BrokerTopicStatsCollector brokerTopicStatsCollector;
+
     @Resource
-    private ExecutorService collectExecutor;
+    private TopicCollectScheduler topicCollectScheduler;
 
     @Scheduled(cron = "30 0/1 * * * ?")
     public void collectTopic() {
         if (!rmqConfigure.isEnableDashBoardCollect()) {
             return;
         }
-        try {
-            TopicList topicList = mqAdminExt.fetchAllTopicList();
-            Set<String> topicSet = topicList.getTopicList();
-            this.addSystemTopic();
-            for (String topic : topicSet) {
-                if (topic.startsWith(MixAll.RETRY_GROUP_TOPIC_PREFIX)
-                        || topic.startsWith(MixAll.DLQ_GROUP_TOPIC_PREFIX)
-                        || TopicValidator.isSystemTopic(topic)) {
-                    continue;
-                }
-                CollectTaskRunnble collectTask = new CollectTaskRunnble(topic, mqAdminExt, dashboardCollectService);
-                collectExecutor.submit(collectTask);
+        topicCollectScheduler.runRound(this::prepareTopics);
+    }
+
+    /**
+     * @return the topics left to collect one by one
+     */
+    private Set<String> prepareTopics() throws Exception {
+        TopicList topicList = mqAdminExt.fetchAllTopicList();
+        this.addSystemTopic();
+        Set<String> topicSet = Sets.newHashSet();
+        for (String topic : topicList.getTopicList()) {
+            if (topic.startsWith(MixAll.RETRY_GROUP_TOPIC_PREFIX)
+                    || topic.startsWith(MixAll.DLQ_GROUP_TOPIC_PREFIX)
+                    || TopicValidator.isSystemTopic(topic)) {
+                continue;
+            }
+            topicSet.add(topic);
+        }
+        if (BROKER_COLLECT_MODE.equalsIgnoreCase(rmqConfigure.getDashboardCollectMode())) {
+            topicSet = brokerTopicStatsCollector.collect(topicSet);
+        } else {
+            try {
+                brokerTopicStatsCollector.collectGroups();
+            } catch (Exception e) {
+                log.warn("Failed to collect the lag of the consumer groups", e);
             }
-        } catch (Exception err) {
-            Throwables.throwIfUnchecked(err);
-            throw new RuntimeException(err);
         }
+        return topicSet;
     }
 
     @Scheduled(cron = "0 0 2 * * ?")
@@ -119,10 +129,6 @@ public class DashboardCollectTask {
             }
             Set<Map.Entry<String, String>> entries = addresses.entrySet();
             for (Map.Entry<String, String> entry : entries) {
-                List<String> list = dashboardCollectService.getBrokerMap().get(entry.getValue());
-                if (null == list) {
-                    list = Lists.newArrayList();
-                }
                 KVTable kvTable = fetchBrokerRuntimeStats(entry.getKey(), 3);
                 if (kvTable == null) {
                     continue;
@@ -133,10 +139,10 @@ public class DashboardCollectTask {
                     totalTps = totalTps.add(new BigDecimal(tps));
                 }
                 BigDecimal averageTps = totalTps.divide(new BigDecimal(tpsArray.length), 5, BigDecimal.ROUND_HALF_UP);
-                list.add(date.getTime() + "," + averageTps.toString());
-                dashboardCollectService.getBrokerMap().put(entry.getValue(), list);
+                dashboardCollectService.getBrokerMap().get(entry.getValue())
+                        .append(date.getTime(), Double.doubleToRawLongBits(averageTps.doubleValue()));
             }
-            log.debug("Broker Collected Data in memory = {}" + JsonUtil.obj2String(dashboardCollectService.getBrokerMap().asMap()));
+            log.debug("Broker Collected Data in memory = {} series", dashboardCollectService.getBrokerMap().size());
         } catch (Exception e) {
             Throwables.throwIfUnchecked(e);
             throw new RuntimeException(e);
@@ -167,95 +173,40 @@ public class DashboardCollectTask {
         if (!rmqConfigure.isEnableDashBoardCollect()) {
             return;
         }
+        try {
+            dashboardCollectService.flush();
+        } catch (IOException e) {
+            Throwables.throwIfUnchecked(e);
+            throw new RuntimeException(e);
+        }
         //one day refresh cache one time
-        String dataLocationPath = rmqConfigure.getDashboardCollectData();
         DateFormat format = new SimpleDateFormat("yyyy-MM-dd");
         String nowDateStr = format.format(new Date());
         String currentDateStr = format.format(currentDate);
         if (!currentDateStr.equals(nowDateStr)) {
             dashboardCollectService.getBrokerMap().invalidateAll();
             dashboardCollectService.getTopicMap().invalidateAll();
+            dashboardCollectService.getGroupMap().invalidateAll();
+            dashboardCollectService.getQueueMap().invalidateAll();
             currentDate = new Date();
         }
-        File brokerFile = new File(dataLocationPath + nowDateStr + ".json");
-        File topicFile = new File(dataLocationPath + nowDateStr + "_topic" + ".json");
-        try {
-            Map<String, List<String>> brokerFileMap;
-            Map<String, List<String>> topicFileMap;
-            if (brokerFile.exists()) {
-                brokerFileMap = dashboardCollectService.jsonDataFile2map(brokerFile);
-            } else {
-                brokerFileMap = Maps.newHashMap();
-                Files.createParentDirs(brokerFile);
-            }
-
-            if (topicFile.exists()) {
-                topicFileMap = dashboardCollectService.jsonDataFile2map(topicFile);
-            } else {
-                topicFileMap = Maps.newHashMap();
-                Files.createParentDirs(topicFile);
-            }
-
-            brokerFile.createNewFile();
-            topicFile.createNewFile();
-
-            writeFile(dashboardCollectService.getBrokerMap(), brokerFileMap, brokerFile);
-            writeFile(dashboardCollectService.getTopicMap(), topicFileMap, topicFile);
-            log.debug("Broker Collected Data in memory = {}" + JsonUtil.obj2String(dashboardCollectService.getBrokerMap().asMap()));
-            log.debug("Topic Collected Data in memory = {}" + JsonUtil.obj2String(dashboardCollectService.getTopicMap().asMap()));
+        log.debug("Broker Collected Data in memory = {} series", dashboardCollectService.getBrokerMap().size());
+        log.debug("Topic Collected Data in memory = {} series", dashboardCollectService.getTopicMap().size());
+    }
 
+    @Scheduled(cron = "0 15 * * * ?")
+    public void compactData() {
+        if (!rmqConfigure.isEnableDashBoardCollect()) {
+            return;
+        }
+        try {
+            dashboardCollectService.compact();
         } catch (IOException e) {
             Throwables.throwIfUnchecked(e);
             throw new RuntimeException(e);
         }
     }
 
-    private void writeFile(LoadingCache<String, List<String>> map, Map<String, List<String>> fileMap,
-                           File file) throws IOException {
-        Map<String, List<String>> newMap = map.asMap();
-        Map<String, List<String>> resultMap = Maps.newHashMap();
-        if (fileMap.size() == 0) {
-            resultMap = newMap;
-        } else {
-            for (Map.Entry<String, List<String>> entry : fileMap.entrySet()) {
-                List<String> oldList = entry.getValue();
-                List<String> newList = newMap.get(entry.getKey());
-                resultMap.put(entry.getKey(), appendData(newList, oldList));
-                if (newList == null || newList.size() == 0) {
-                    map.put(entry.getKey(), appendData(newList, oldList));
-                }
-            }
-
-            for (Map.Entry<String, List<String>> entry : newMap.entrySet()) {
-                List<String> oldList = fileMap.get(entry.getKey());
-                if (oldList == null || oldList.size() == 0) {
-                    resultMap.put(entry.getKey(), entry.getValue());
-                }
-            }
-        }
-        Files.write(JsonUtil.obj2String(resultMap).getBytes(), file);
-    }
-
-    private List<String> appendData(List<String> newTpsList, List<String> oldTpsList) {
-        List<String> result = Lists.newArrayList();
-        if (newTpsList == null || newTpsList.size() == 0) {
-            return oldTpsList;
-        }
-        if (oldTpsList == null || oldTpsList.size() == 0) {
-            return newTpsList;
-        }
-        String oldLastTps = oldTpsList.get(oldTpsList.size() - 1);
-        Long oldLastTimestamp = Long.parseLong(oldLastTps.split(",")[0]);
-        String newFirstTps = newTpsList.get(0);
-        Long newFirstTimestamp = Long.parseLong(newFirstTps.split(",")[0]);
-        if (oldLastTimestamp.longValue() < newFirstTimestamp.longValue()) {
-            result.addAll(oldTpsList);
-            result.addAll(newTpsList);
-            return result;
-        }
-        return newTpsList;
-    }
-
     private void addSystemTopic() throws Exception {
         ClusterInfo clusterInfo = mqAdminExt.examineBrokerClusterInfo();
         Map<String, Set<String>> clusterTable = clusterInfo.getClusterAddrTable();
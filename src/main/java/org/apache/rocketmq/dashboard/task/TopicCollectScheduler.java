@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.task;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import org.apache.rocketmq.dashboard.admin.BrokerFanOut;
+import org.apache.rocketmq.dashboard.config.RMQConfigure;
+import org.apache.rocketmq.dashboard.service.DashboardCollectService;
+import org.apache.rocketmq.dashboard.store.SeriesBuffer;
+import org.apache.rocketmq.dashboard.store.SeriesSchema;
+import org.apache.rocketmq.tools.admin.MQAdminExt;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the per-topic collection in rounds bounded by a deadline.
+ * <p>
+ * A round starts only when every task of the previous one is over, so a slow round delays the next one instead of
+ * piling work on the brokers. The topics of a round are dispatched hottest first, spread evenly with some jitter
+ * over the first part of the minute, and never more at a time than the collect executor has threads, so its
+ * queue never drops a task. Tasks not started by the deadline are skipped. On virtual threads the broker requests
+ * of the tasks also wait for the per-broker permits of {@link BrokerFanOut}.
+ * <p>
+ * Every round publishes its completion ratio (topics collected before the deadline / topics planned) and its lag
+ * (time from the tick to the end of its last task).
+ */
+@Component
+public class TopicCollectScheduler {
+
+    private final static Logger log = LoggerFactory.getLogger(TopicCollectScheduler.class);
+
+    private static final String METRIC_PREFIX = "rocketmq.dashboard.collect.round.";
+
+    private static final int DEFAULT_CONCURRENCY = 10;
+
+    @Resource
+    private RMQConfigure rmqConfigure;
+
+    @Resource
+    private MQAdminExt mqAdminExt;
+
+    @Resource
+    private DashboardCollectService dashboardCollectService;
+
+    @Resource
+    private ExecutorService collectExecutor;
+
+    @Resource
+    private BrokerFanOut brokerFanOut;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Tasks of any round not finished yet
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile Counter skippedRounds;
+
+    private volatile double lastCompletionRatio = 1;
+
+    private volatile long lastLagMillis;
+
+    private volatile int lastTopicCount;
+
+    /**
+     * Run a round over the topics returned by {@code topics}, unless the previous round is still running.
+     *
+     * @return false if the round was skipped
+     */
+    public boolean runRound(Callable<Set<String>> topics) {
+        long tickTime = System.currentTimeMillis();
+        registerMeters();
+        if (inFlight.get() > 0 || !running.compareAndSet(false, true)) {
+            skippedRounds.increment();
+            log.warn("Skip topic collect round, the previous round still has {} topics in flight", inFlight.get());
+            return false;
+        }
+        try {
+            collect(Lists.newArrayList(topics.call()), tickTime);
+            return true;
+        } catch (Exception e) {
+            Throwables.throwIfUnchecked(e);
+            throw new RuntimeException(e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void collect(List<String> topics, long tickTime) throws InterruptedException {
+        long deadline = tickTime + rmqConfigure.getDashboardCollectDeadlineMillis();
+        long spreadMillis = Math.max(0, Math.min(rmqConfigure.getDashboardCollectSpreadMillis(), deadline - tickTime));
+        topics.sort(hottestFirst());
+        Semaphore permits = new Semaphore(concurrency());
+        CountDownLatch done = new CountDownLatch(topics.size());
+        AtomicInteger onTime = new AtomicInteger();
+        AtomicLong lastFinish = new AtomicLong(tickTime);
+        int dispatched = 0;
+        for (String topic : topics) {
+            long slotStart = tickTime + spreadMillis * dispatched / topics.size();
+            long jitter = spreadMillis == 0 ? 0 : ThreadLocalRandom.current().nextLong(Math.max(1, spreadMillis / topics.size()));
+            long wait = slotStart + jitter - System.currentTimeMillis();
+            if (wait > 0) {
+                Thread.sleep(wait);
+            }
+            if (!permits.tryAcquire(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS)) {
+                break;
+            }
+            CollectTaskRunnble task = new CollectTaskRunnble(topic, mqAdminExt, dashboardCollectService, brokerFanOut);
+            inFlight.incrementAndGet();
+            try {
+                collectExecutor.submit(() -> {
+                    try {
+                        if (System.currentTimeMillis() < deadline && task.collect() && System.currentTimeMillis() <= deadline) {
+                            onTime.incrementAndGet();
+                        }
+                    } finally {
+                        lastFinish.accumulateAndGet(System.currentTimeMillis(), Math::max);
+                        inFlight.decrementAndGet();
+                        permits.release();
+                        done.countDown();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                log.warn("Collect task of topic {} was rejected", topic);
+                inFlight.decrementAndGet();
+                permits.release();
+                done.countDown();
+            }
+            dispatched++;
+        }
+        boolean finished = done.await(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        long lagMillis = (finished ? lastFinish.get() : System.currentTimeMillis()) - tickTime;
+        lastTopicCount = topics.size();
+        lastCompletionRatio = topics.isEmpty() ? 1 : (double) onTime.get() / topics.size();
+        lastLagMillis = lagMillis;
+        if (dispatched < topics.size() || !finished) {
+            log.warn("Topic collect round missed its deadline: {}/{} topics collected, {} not started, {} still running",
+                    onTime.get(), topics.size(), topics.size() - dispatched, inFlight.get());
+        } else {
+            log.info("Topic collect round done: {}/{} topics collected in {}ms", onTime.get(), topics.size(), lagMillis);
+        }
+    }
+
+    /**
+     * Topics with the highest latest in + out tps first, those never collected last.
+     */
+    private Comparator<String> hottestFirst() {
+        Map<String, SeriesBuffer> buffers = dashboardCollectService.getTopicMap().asMap();
+        return Comparator.comparingDouble((String topic) -> {
+            SeriesBuffer buffer = buffers.get(topic);
+            if (buffer == null) {
+                return -1D;
+            }
+            return Double.longBitsToDouble(buffer.latestRaw(SeriesSchema.TOPIC_IN_TPS, 0))
+                    + Double.longBitsToDouble(buffer.latestRaw(SeriesSchema.TOPIC_OUT_TPS, 0));
+        }).reversed();
+    }
+
+    private int concurrency() {
+        if (collectExecutor instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) collectExecutor).getMaximumPoolSize();
+        }
+        return DEFAULT_CONCURRENCY;
+    }
+
+    private void registerMeters() {
+        if (skippedRounds != null) {
+            return;
+        }
+        synchronized (this) {
+            if (skippedRounds == null) {
+                Gauge.builder(METRIC_PREFIX + "completion", this, scheduler -> scheduler.lastCompletionRatio)
+                        .description("Share of the topics of the last round collected before its deadline")
+                        .register(meterRegistry);
+                Gauge.builder(METRIC_PREFIX + "lag", this, scheduler -> scheduler.lastLagMillis)
+                        .description("Milliseconds from the tick of the last round to the end of its last task")
+                        .baseUnit("milliseconds")
+                        .register(meterRegistry);
+                Gauge.builder(METRIC_PREFIX + "topics", this, scheduler -> scheduler.lastTopicCount)
+                        .description("Topics planned by the last round")
+                        .register(meterRegistry);
+                skippedRounds = Counter.builder(METRIC_PREFIX + "skipped")
+                        .description("Rounds skipped because the previous one was still running")
+                        .register(meterRegistry);
+            }
+        }
+    }
+}
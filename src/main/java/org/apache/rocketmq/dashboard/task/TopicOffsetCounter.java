@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.task;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns the successive put and consume offsets of one topic on one broker into the rates and 24-hour counts
+ * that the per-topic stats calls used to return.
+ * <p>
+ * The offsets are remembered once an hour, so the 24-hour counts are the offsets now minus the offsets of the
+ * newest checkpoint at least a day old, or of the first sample while less than a day was seen.
+ */
+class TopicOffsetCounter {
+
+    private static final long CHECKPOINT_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static final long WINDOW_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private static final int TIMESTAMP = 0;
+
+    private static final int PUT = 1;
+
+    private static final int CONSUME = 2;
+
+    /**
+     * {timestamp, putOffset, consumeOffset}, oldest first
+     */
+    private final Deque<long[]> checkpoints = new ArrayDeque<>();
+
+    private long[] last;
+
+    private double putTps;
+
+    synchronized void update(long timestamp, long putOffset, long consumeOffset) {
+        putTps = 0;
+        if (last != null) {
+            // offsets moving back (topic recreated, consumer offsets reset) shift the window instead of counting negative
+            long putShift = Math.min(0, putOffset - last[PUT]);
+            long consumeShift = Math.min(0, consumeOffset - last[CONSUME]);
+            if (putShift != 0 || consumeShift != 0) {
+                for (long[] checkpoint : checkpoints) {
+                    checkpoint[PUT] += putShift;
+                    checkpoint[CONSUME] += consumeShift;
+                }
+            }
+            if (timestamp > last[TIMESTAMP]) {
+                putTps = (putOffset - last[PUT] - putShift) * 1000.0 / (timestamp - last[TIMESTAMP]);
+            }
+        }
+        last = new long[] {timestamp, putOffset, consumeOffset};
+        if (checkpoints.isEmpty() || timestamp - checkpoints.peekLast()[TIMESTAMP] >= CHECKPOINT_INTERVAL_MILLIS) {
+            checkpoints.addLast(last.clone());
+        }
+        while (checkpoints.size() > 1) {
+            Iterator<long[]> iterator = checkpoints.iterator();
+            iterator.next();
+            if (iterator.next()[TIMESTAMP] > timestamp - WINDOW_MILLIS) {
+                break;
+            }
+            checkpoints.pollFirst();
+        }
+    }
+
+    synchronized double getPutTps() {
+        return putTps;
+    }
+
+    synchronized long getPutCount() {
+        return last == null ? 0 : Math.max(0, last[PUT] - checkpoints.peekFirst()[PUT]);
+    }
+
+    synchronized long getConsumeCount() {
+        return last == null ? 0 : Math.max(0, last[CONSUME] - checkpoints.peekFirst()[CONSUME]);
+    }
+
+    synchronized long getLastTimestamp() {
+        return last == null ? 0 : last[TIMESTAMP];
+    }
+}
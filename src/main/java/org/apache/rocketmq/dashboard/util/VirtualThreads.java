@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to the virtual threads of Java 21 while the dashboard is still built for Java 17.
+ * The JDK API is looked up reflectively once; on older runtimes, or when virtual threads are a disabled
+ * preview feature, {@link #isSupported()} returns false.
+ */
+public final class VirtualThreads {
+
+    private final static Logger log = LoggerFactory.getLogger(VirtualThreads.class);
+
+    private static final Method OF_VIRTUAL = lookupOfVirtual();
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * @return an executor starting one virtual thread per task, threads named prefix + index
+     * @throws UnsupportedOperationException if the runtime has no virtual threads
+     */
+    public static ExecutorService newExecutor(String threadNamePrefix) {
+        if (OF_VIRTUAL == null) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this JVM");
+        }
+        try {
+            ThreadFactory factory = newThreadFactory(OF_VIRTUAL, threadNamePrefix);
+            Method newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newThreadPerTaskExecutor.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to create a virtual thread executor", e);
+        }
+    }
+
+    private static Method lookupOfVirtual() {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            // a preview runtime throws UnsupportedOperationException unless preview features are enabled
+            newThreadFactory(ofVirtual, "probe");
+            Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return ofVirtual;
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (Exception e) {
+            log.info("Virtual threads are not available: {}", e.toString());
+            return null;
+        }
+    }
+
+    private static ThreadFactory newThreadFactory(Method ofVirtual, String threadNamePrefix) throws ReflectiveOperationException {
+        Class<?> builderType = Class.forName("java.lang.Thread$Builder$OfVirtual");
+        Object builder = ofVirtual.invoke(null);
+        builder = builderType.getMethod("name", String.class, long.class).invoke(builder, threadNamePrefix, 1L);
+        return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.admin;
+
+import org.apache.rocketmq.dashboard.config.CollectExecutorConfig;
+import org.apache.rocketmq.dashboard.util.UserInfoContext;
+import org.apache.rocketmq.dashboard.util.WebUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+
+public class BrokerFanOutTest {
+
+    private static final List<String> BROKER_ADDRS = Arrays.asList("127.0.0.1:10911", "127.0.0.2:10911", "127.0.0.3:10911");
+
+    private CollectExecutorConfig collectExecutorConfig;
+
+    private BrokerFanOut brokerFanOut;
+
+    @Before
+    public void init() {
+        collectExecutorConfig = new CollectExecutorConfig();
+        brokerFanOut = new BrokerFanOut();
+        ReflectionTestUtils.setField(brokerFanOut, "collectExecutorConfig", collectExecutorConfig);
+        UserInfoContext.set(WebUtil.USER_NAME, "admin");
+    }
+
+    @After
+    public void after() {
+        UserInfoContext.clear();
+        brokerFanOut.destroy();
+    }
+
+    @Test
+    public void testInvokeAll() throws Exception {
+        for (String mode : Arrays.asList(CollectExecutorConfig.MODE_PLATFORM, CollectExecutorConfig.MODE_VIRTUAL)) {
+            collectExecutorConfig.setExecutorMode(mode);
+            Map<String, String> results = brokerFanOut.invokeAll(BROKER_ADDRS, brokerAddr -> brokerAddr + "@" + UserInfoContext.get(WebUtil.USER_NAME));
+            Assert.assertEquals(BROKER_ADDRS, Arrays.asList(results.keySet().toArray()));
+            Assert.assertEquals("127.0.0.2:10911@admin", results.get("127.0.0.2:10911"));
+        }
+    }
+
+    @Test
+    public void testInvokeAllFailure() {
+        for (String mode : Arrays.asList(CollectExecutorConfig.MODE_PLATFORM, CollectExecutorConfig.MODE_VIRTUAL)) {
+            collectExecutorConfig.setExecutorMode(mode);
+            try {
+                brokerFanOut.invokeAll(BROKER_ADDRS, brokerAddr -> {
+                    if (!brokerAddr.equals(BROKER_ADDRS.get(0))) {
+                        throw new IllegalStateException("broker down: " + brokerAddr);
+                    }
+                    return brokerAddr;
+                });
+                Assert.fail("the failure of a broker must be thrown");
+            } catch (Exception e) {
+                Assert.assertEquals("broker down: 127.0.0.2:10911", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testInvokeWaitsForBrokerPermit() throws Exception {
+        CollectExecutorConfig virtualConfig = spy(collectExecutorConfig);
+        doReturn(true).when(virtualConfig).isVirtualThreadMode();
+        virtualConfig.setBrokerConcurrency(2);
+        ReflectionTestUtils.setField(brokerFanOut, "collectExecutorConfig", virtualConfig);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(callers.submit(() -> brokerFanOut.invoke(BROKER_ADDRS.get(0), brokerAddr -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.sleep(20);
+                    running.decrementAndGet();
+                    return brokerAddr;
+                })));
+            }
+            for (Future<String> future : futures) {
+                Assert.assertEquals(BROKER_ADDRS.get(0), future.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        // the callers of the broker run at most brokerConcurrency requests at a time
+        Assert.assertEquals(2, maxRunning.get());
+    }
+}
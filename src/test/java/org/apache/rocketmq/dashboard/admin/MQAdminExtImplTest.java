@@ -21,9 +21,11 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import org.apache.rocketmq.client.QueryResult;
 import org.apache.rocketmq.client.exception.MQBrokerException;
+import org.apache.rocketmq.client.impl.MQAdminImpl;
 import org.apache.rocketmq.client.impl.MQClientAPIImpl;
 import org.apache.rocketmq.client.impl.factory.MQClientInstance;
 import org.apache.rocketmq.common.TopicConfig;
+import org.apache.rocketmq.common.message.MessageClientIDSetter;
 import org.apache.rocketmq.common.message.MessageExt;
 import org.apache.rocketmq.common.message.MessageQueue;
 import org.apache.rocketmq.dashboard.service.client.MQAdminExtImpl;
@@ -32,6 +34,7 @@ import org.apache.rocketmq.dashboard.util.MockObjectUtil;
 import org.apache.rocketmq.remoting.RemotingClient;
 import org.apache.rocketmq.remoting.protocol.RemotingCommand;
 import org.apache.rocketmq.remoting.protocol.RemotingSerializable;
+import org.apache.rocketmq.remoting.protocol.RequestCode;
 import org.apache.rocketmq.remoting.protocol.ResponseCode;
 import org.apache.rocketmq.remoting.protocol.admin.ConsumeStats;
 import org.apache.rocketmq.remoting.protocol.admin.RollbackStats;
@@ -59,6 +62,7 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatcher;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -74,6 +78,7 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertNotNull;
@@ -82,6 +87,8 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.Silent.class)
@@ -163,24 +170,42 @@ public class MQAdminExtImplTest {
     public void testExamineSubscriptionGroupConfig() throws Exception {
         assertNotNull(mqAdminExtImpl);
 
-        // Create valid SubscriptionGroupWrapper with group_test entry
+        SubscriptionGroupConfig config = new SubscriptionGroupConfig();
+        config.setGroupName("group_test");
+        RemotingCommand successResponse = RemotingCommand.createResponseCommand(null);
+        successResponse.setCode(ResponseCode.SUCCESS);
+        successResponse.setBody(RemotingSerializable.encode(config));
+        RemotingCommand notExistResponse = RemotingCommand.createResponseCommand(null);
+        notExistResponse.setCode(ResponseCode.SUBSCRIPTION_GROUP_NOT_EXIST);
+
+        // only the requested group is asked for
+        when(remotingClient.invokeSync(eq(brokerAddr), argThat(requestCode(RequestCode.GET_SUBSCRIPTIONGROUP_CONFIG)), anyLong()))
+                .thenReturn(successResponse, notExistResponse);
+        SubscriptionGroupConfig subscriptionGroupConfig = mqAdminExtImpl.examineSubscriptionGroupConfig(brokerAddr, "group_test");
+        Assert.assertNotNull(subscriptionGroupConfig);
+        Assert.assertEquals("group_test", subscriptionGroupConfig.getGroupName());
+        Assert.assertNull(mqAdminExtImpl.examineSubscriptionGroupConfig(brokerAddr, "group_unknown"));
+        verify(remotingClient, never()).invokeSync(eq(brokerAddr), argThat(requestCode(RequestCode.GET_ALL_SUBSCRIPTIONGROUP_CONFIG)), anyLong());
+    }
+
+    @Test
+    public void testExamineSubscriptionGroupConfigOfOldBroker() throws Exception {
         SubscriptionGroupWrapper wrapper = new SubscriptionGroupWrapper();
         ConcurrentMap<String, SubscriptionGroupConfig> subscriptionGroupTable = new ConcurrentHashMap<>();
         SubscriptionGroupConfig config = new SubscriptionGroupConfig();
         config.setGroupName("group_test");
         subscriptionGroupTable.put("group_test", config);
         wrapper.setSubscriptionGroupTable(subscriptionGroupTable);
+        RemotingCommand notSupportedResponse = RemotingCommand.createResponseCommand(null);
+        notSupportedResponse.setCode(ResponseCode.REQUEST_CODE_NOT_SUPPORTED);
+        RemotingCommand tableResponse = RemotingCommand.createResponseCommand(null);
+        tableResponse.setCode(ResponseCode.SUCCESS);
+        tableResponse.setBody(RemotingSerializable.encode(wrapper));
+        when(remotingClient.invokeSync(eq(brokerAddr), argThat(requestCode(RequestCode.GET_SUBSCRIPTIONGROUP_CONFIG)), anyLong()))
+                .thenReturn(notSupportedResponse);
+        when(remotingClient.invokeSync(eq(brokerAddr), argThat(requestCode(RequestCode.GET_ALL_SUBSCRIPTIONGROUP_CONFIG)), anyLong()))
+                .thenReturn(tableResponse);
 
-        // Create successful response
-        RemotingCommand successResponse = RemotingCommand.createResponseCommand(null);
-        successResponse.setCode(ResponseCode.SUCCESS);
-        successResponse.setBody(RemotingSerializable.encode(wrapper));
-
-        // Mock the remote invocation
-        when(remotingClient.invokeSync(eq(brokerAddr), any(RemotingCommand.class), anyLong()))
-                .thenReturn(successResponse);
-
-        // Test successful case
         SubscriptionGroupConfig subscriptionGroupConfig = mqAdminExtImpl.examineSubscriptionGroupConfig(brokerAddr, "group_test");
         Assert.assertNotNull(subscriptionGroupConfig);
         Assert.assertEquals("group_test", subscriptionGroupConfig.getGroupName());
@@ -493,6 +518,64 @@ public class MQAdminExtImplTest {
         Assert.assertNotNull(consumerRunningInfo);
     }
 
+    @Test
+    public void testViewMessage() throws Exception {
+        when(defaultMQAdminExt.getTopicClusterList("topic_test")).thenReturn(Sets.newHashSet("cluster-a", "cluster-b", "cluster-c"));
+        String msgId = MessageClientIDSetter.createUniqID();
+        MessageExt found = new MessageExt();
+        Set<String> queried = ConcurrentHashMap.newKeySet();
+        CountDownLatch hanging = new CountDownLatch(1);
+        MQAdminExtImpl admin = new MQAdminExtImpl() {
+            @Override
+            protected MessageExt queryMessageByCluster(MQAdminImpl mqAdminImpl, String clusterName, String topic,
+                String msgId) {
+                queried.add(clusterName);
+                if ("cluster-a".equals(clusterName)) {
+                    throw new IllegalStateException("query message by key finished, but no message.");
+                }
+                if ("cluster-c".equals(clusterName)) {
+                    try {
+                        hanging.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return null;
+                }
+                return found;
+            }
+        };
+        try {
+            // the hit in cluster-b wins while cluster-c does not answer
+            Assert.assertSame(found, admin.viewMessage("topic_test", msgId));
+
+            // the next view goes straight to the cluster the message was found in
+            queried.clear();
+            Assert.assertSame(found, admin.viewMessage("topic_test", msgId));
+            Assert.assertEquals(Sets.newHashSet("cluster-b"), queried);
+        } finally {
+            hanging.countDown();
+            admin.destroy();
+        }
+    }
+
+    @Test
+    public void testViewMessageNotFound() throws Exception {
+        when(defaultMQAdminExt.getTopicClusterList("topic_test")).thenReturn(Sets.newHashSet("cluster-a", "cluster-b"));
+        String msgId = MessageClientIDSetter.createUniqID();
+        MQAdminExtImpl admin = new MQAdminExtImpl() {
+            @Override
+            protected MessageExt queryMessageByCluster(MQAdminImpl mqAdminImpl, String clusterName, String topic,
+                String msgId) {
+                return null;
+            }
+        };
+        try {
+            assertNull(admin.viewMessage("topic_test", msgId));
+        } finally {
+            admin.destroy();
+        }
+    }
+
     @Test
     public void testConsumeMessageDirectly() throws Exception {
         assertNotNull(mqAdminExtImpl);
@@ -751,4 +834,8 @@ public class MQAdminExtImplTest {
         }
         Assert.assertEquals(mqAdminExtImpl.getUserTopicConfig("127.0.0.1:10911", true, 3000), wrapper);
     }
+
+    private static ArgumentMatcher<RemotingCommand> requestCode(int code) {
+        return request -> request != null && request.getCode() == code;
+    }
 }
@@ -16,11 +16,13 @@
  */
 package org.apache.rocketmq.dashboard.config;
 
+import org.apache.rocketmq.dashboard.util.VirtualThreads;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class CollectExecutorConfigTest {
@@ -48,4 +50,17 @@ public class CollectExecutorConfigTest {
         System.out.println(collectExecutor.isTerminated());
         Assert.assertEquals(COUNT, num.get());
     }
+
+    @Test
+    public void testVirtualThreadMode() throws Exception {
+        CollectExecutorConfig config = new CollectExecutorConfig();
+        Assert.assertFalse(config.isVirtualThreadMode());
+        config.setExecutorMode(CollectExecutorConfig.MODE_VIRTUAL);
+        Assert.assertEquals(VirtualThreads.isSupported(), config.isVirtualThreadMode());
+        ExecutorService collectExecutor = config.collectExecutor(config);
+        // JVMs without virtual threads keep the thread pool
+        Assert.assertEquals(!VirtualThreads.isSupported(), collectExecutor instanceof ThreadPoolExecutor);
+        Assert.assertEquals(COUNT, (int) collectExecutor.submit(() -> COUNT).get());
+        collectExecutor.shutdown();
+    }
 }
@@ -16,6 +16,8 @@
  */
 package org.apache.rocketmq.dashboard.controller;
 
+import org.apache.rocketmq.dashboard.admin.BrokerFanOut;
+import org.apache.rocketmq.dashboard.config.CollectExecutorConfig;
 import org.apache.rocketmq.dashboard.service.impl.ClusterServiceImpl;
 import org.apache.rocketmq.dashboard.util.MockObjectUtil;
 import org.apache.rocketmq.remoting.protocol.body.ClusterInfo;
@@ -41,6 +43,11 @@ public class ClusterControllerTest extends BaseControllerTest {
     @Spy
     private ClusterServiceImpl clusterService;
 
+    @Spy
+    private BrokerFanOut brokerFanOut;
+
+    private CollectExecutorConfig collectExecutorConfig = new CollectExecutorConfig();
+
     @Test
     public void testList() throws Exception {
         final String url = "/cluster/list.query";
@@ -19,27 +19,42 @@ package org.apache.rocketmq.dashboard.controller;
 
 import com.alibaba.fastjson.JSON;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.apache.rocketmq.client.exception.MQBrokerException;
 import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.common.MixAll;
 import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.dashboard.admin.BrokerFanOut;
+import org.apache.rocketmq.dashboard.config.CollectExecutorConfig;
+import org.apache.rocketmq.dashboard.model.ConsumerGroupRollBackStat;
+import org.apache.rocketmq.dashboard.model.ConsumerMonitorConfig;
 import org.apache.rocketmq.dashboard.model.QueueStatInfo;
 import org.apache.rocketmq.dashboard.model.TopicConsumerInfo;
 import org.apache.rocketmq.dashboard.model.request.ConsumerConfigInfo;
 import org.apache.rocketmq.dashboard.model.request.DeleteSubGroupRequest;
 import org.apache.rocketmq.dashboard.model.request.ResetOffsetRequest;
 import org.apache.rocketmq.dashboard.service.ClusterInfoService;
+import org.apache.rocketmq.dashboard.service.MonitorService;
 import org.apache.rocketmq.dashboard.service.impl.ConsumerServiceImpl;
 import org.apache.rocketmq.dashboard.util.MockObjectUtil;
+import org.apache.rocketmq.remoting.protocol.DataVersion;
 import org.apache.rocketmq.remoting.protocol.ResponseCode;
 import org.apache.rocketmq.remoting.protocol.admin.ConsumeStats;
 import org.apache.rocketmq.remoting.protocol.admin.RollbackStats;
+import org.apache.rocketmq.remoting.protocol.admin.TopicOffset;
+import org.apache.rocketmq.remoting.protocol.admin.TopicStatsTable;
 import org.apache.rocketmq.remoting.protocol.body.ClusterInfo;
+import org.apache.rocketmq.remoting.protocol.body.ConsumeStatsList;
 import org.apache.rocketmq.remoting.protocol.body.Connection;
 import org.apache.rocketmq.remoting.protocol.body.ConsumerConnection;
 import org.apache.rocketmq.remoting.protocol.body.ConsumerRunningInfo;
+import org.apache.rocketmq.remoting.protocol.body.GroupList;
+import org.apache.rocketmq.remoting.protocol.body.ProcessQueueInfo;
 import org.apache.rocketmq.remoting.protocol.body.SubscriptionGroupWrapper;
 import org.apache.rocketmq.remoting.protocol.heartbeat.ConsumeType;
 import org.apache.rocketmq.remoting.protocol.heartbeat.MessageModel;
 import org.apache.rocketmq.remoting.protocol.subscription.SubscriptionGroupConfig;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
@@ -49,15 +64,25 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.after;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -70,9 +95,17 @@ public class ConsumerControllerTest extends BaseControllerTest {
     @Spy
     private ConsumerServiceImpl consumerService;
 
+    @Spy
+    private BrokerFanOut brokerFanOut;
+
     @Mock
     private ClusterInfoService clusterInfoService;
 
+    @Mock
+    private MonitorService monitorService;
+
+    private CollectExecutorConfig collectExecutorConfig = new CollectExecutorConfig();
+
     @Before
     public void init() throws Exception {
         // 2. mock ClusterInfo data
@@ -87,6 +120,13 @@ public class ConsumerControllerTest extends BaseControllerTest {
         ConsumeStats stats = MockObjectUtil.createConsumeStats();
         when(mqAdminExt.examineConsumeStats(anyString())).thenReturn(stats);
         when(mqAdminExt.examineConsumeStats(anyString(), isNull())).thenReturn(stats);
+        ConsumeStatsList consumeStatsList = new ConsumeStatsList();
+        consumeStatsList.setBrokerAddr("localhost:10911");
+        consumeStatsList.setConsumeStatsList(Lists.newArrayList(Collections.singletonMap("group_test", Lists.newArrayList(stats))));
+        when(mqAdminExt.fetchConsumeStatsInBroker(anyString(), anyBoolean(), anyLong())).thenReturn(consumeStatsList);
+        // group_test is monitored, so the group list refreshes its connections
+        when(monitorService.queryConsumerMonitorConfig())
+                .thenReturn(Collections.singletonMap("group_test", new ConsumerMonitorConfig(1, 100)));
         ConsumerConnection connection = MockObjectUtil.createConsumerConnection();
         when(mqAdminExt.examineConsumerConnectionInfo(anyString())).thenReturn(connection);
         ConsumerRunningInfo runningInfo = MockObjectUtil.createConsumerRunningInfo();
@@ -105,12 +145,117 @@ public class ConsumerControllerTest extends BaseControllerTest {
         perform = mockMvc.perform(requestBuilder);
         perform.andExpect(status().isOk())
                 .andExpect(jsonPath("$.data", hasSize(2)))
+                .andExpect(jsonPath("$.data[0].group").value("group_test"))
+                .andExpect(jsonPath("$.data[0].diffTotal").value(6))
                 .andExpect(jsonPath("$.data[0].consumeType").value(ConsumeType.CONSUME_ACTIVELY.name()))
-                .andExpect(jsonPath("$.data[0].messageModel").value(MessageModel.CLUSTERING.name()));
+                .andExpect(jsonPath("$.data[0].messageModel").value(MessageModel.CLUSTERING.name()))
+                .andExpect(jsonPath("$.data[1].group").value("%SYS%" + MixAll.TOOLS_CONSUMER_GROUP))
+                .andExpect(jsonPath("$.data[1].diffTotal").value(-1))
+                .andExpect(jsonPath("$.data[1].consumeType").value(ConsumeType.CONSUME_ACTIVELY.name()));
+        // the stats come from one call per broker, the connections are queried for every group
+        verify(mqAdminExt, never()).examineConsumeStats(anyString());
+        verify(mqAdminExt).examineConsumerConnectionInfo("group_test");
+        verify(mqAdminExt).examineConsumerConnectionInfo(MixAll.TOOLS_CONSUMER_GROUP);
         // executorService shutdown
         consumerService.destroy();
     }
 
+    @Test
+    public void testListRefreshesUnwatchedConnectionsSlower() throws Exception {
+        when(configure.getConsumerGroupStaleMillis()).thenReturn(0L);
+        when(configure.getConsumerConnectionStaleMillis()).thenReturn(TimeUnit.HOURS.toMillis(1));
+        requestBuilder = MockMvcRequestBuilders.get("/consumer/groupList.query");
+        try {
+            mockMvc.perform(requestBuilder)
+                    .andExpect(jsonPath("$.data[1].consumeType").value(ConsumeType.CONSUME_ACTIVELY.name()));
+            // the next round only queries the monitored group again
+            mockMvc.perform(requestBuilder).andExpect(status().isOk());
+            verify(mqAdminExt, timeout(10000).times(2)).examineConsumerConnectionInfo("group_test");
+            verify(mqAdminExt, after(500)).examineConsumerConnectionInfo(MixAll.TOOLS_CONSUMER_GROUP);
+        } finally {
+            consumerService.destroy();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testListServesSnapshotWhileRefreshing() throws Exception {
+        final String url = "/consumer/groupList.query";
+        requestBuilder = MockMvcRequestBuilders.get(url);
+        perform = mockMvc.perform(requestBuilder);
+        perform.andExpect(jsonPath("$.data", hasSize(2)));
+
+        // the brokers hang, the next reads are still served at once from the last snapshot
+        CountDownLatch release = new CountDownLatch(1);
+        when(mqAdminExt.fetchConsumeStatsInBroker(anyString(), anyBoolean(), anyLong())).thenAnswer(invocation -> {
+            release.await();
+            return new ConsumeStatsList();
+        });
+        try {
+            for (int i = 0; i < 3; i++) {
+                perform = mockMvc.perform(requestBuilder);
+                perform.andExpect(status().isOk())
+                        .andExpect(jsonPath("$.data", hasSize(2)))
+                        .andExpect(jsonPath("$.data[0].consumeType").value(ConsumeType.CONSUME_ACTIVELY.name()));
+            }
+        } finally {
+            release.countDown();
+            consumerService.destroy();
+        }
+    }
+
+    @Test
+    public void testRefresh() throws Exception {
+        requestBuilder = MockMvcRequestBuilders.get("/consumer/group.refresh");
+        requestBuilder.param("consumerGroup", "group_test");
+        perform = mockMvc.perform(requestBuilder);
+        perform.andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.group").value("group_test"))
+                .andExpect(jsonPath("$.data.subGroupType").value("NORMAL"))
+                .andExpect(jsonPath("$.data.address", hasSize(1)))
+                .andExpect(jsonPath("$.data.messageModel").value(MessageModel.CLUSTERING.name()));
+
+        requestBuilder = MockMvcRequestBuilders.get("/consumer/group.refresh");
+        requestBuilder.param("consumerGroup", "group_unknown");
+        perform = mockMvc.perform(requestBuilder);
+        performErrorExpect(perform);
+
+        requestBuilder = MockMvcRequestBuilders.get("/consumer/group.refresh.all");
+        perform = mockMvc.perform(requestBuilder);
+        perform.andExpect(status().isOk())
+                .andExpect(jsonPath("$.data", hasSize(2)));
+        consumerService.destroy();
+    }
+
+    @Test
+    public void testRefreshSkipsUnchangedSubscriptionTable() throws Exception {
+        SubscriptionGroupWrapper previous = MockObjectUtil.createSubscriptionGroupWrapper();
+        when(mqAdminExt.getAllSubscriptionGroup(anyString(), anyLong())).thenReturn(previous);
+        requestBuilder = MockMvcRequestBuilders.get("/consumer/group.refresh.all");
+        perform = mockMvc.perform(requestBuilder);
+        perform.andExpect(status().isOk())
+                .andExpect(jsonPath("$.data", hasSize(2)));
+
+        // a table reported with the same data version is not merged again
+        SubscriptionGroupWrapper wrapper = MockObjectUtil.createSubscriptionGroupWrapper();
+        SubscriptionGroupConfig config = new SubscriptionGroupConfig();
+        config.setGroupName("group_new");
+        wrapper.getSubscriptionGroupTable().put("group_new", config);
+        DataVersion dataVersion = new DataVersion();
+        dataVersion.assignNewOne(previous.getDataVersion());
+        wrapper.setDataVersion(dataVersion);
+        when(mqAdminExt.getAllSubscriptionGroup(anyString(), anyLong())).thenReturn(wrapper);
+        perform = mockMvc.perform(requestBuilder);
+        perform.andExpect(status().isOk())
+                .andExpect(jsonPath("$.data", hasSize(2)));
+
+        dataVersion.nextVersion();
+        perform = mockMvc.perform(requestBuilder);
+        perform.andExpect(status().isOk())
+                .andExpect(jsonPath("$.data", hasSize(3)))
+                .andExpect(jsonPath("$.data[?(@.group == 'group_new')]", hasSize(1)));
+        consumerService.destroy();
+    }
+
     @Test
     public void testGroupQuery() throws Exception {
         final String url = "/consumer/group.query";
@@ -137,25 +282,28 @@ public class ConsumerControllerTest extends BaseControllerTest {
     }
 
     private void resetOffsetOrSkipAccumulate(String url, Long resetTime) throws Exception {
-        RollbackStats rollbackStats = new RollbackStats();
-        rollbackStats.setRollbackOffset(10L);
-        rollbackStats.setQueueId(5L);
-        rollbackStats.setBrokerName("broker-a");
         Map<MessageQueue, Long> rollbackStatsMap = new HashMap<>(0);
         rollbackStatsMap.put(new MessageQueue("topic_test", "broker-a", 5), 10L);
         {
             MQClientException exception = new MQClientException(ResponseCode.CONSUMER_NOT_ONLINE, "不在线");
             when(mqAdminExt.resetOffsetByTimestamp(anyString(), anyString(), anyLong(), anyBoolean()))
                     .thenReturn(rollbackStatsMap).thenThrow(exception);
-            when(mqAdminExt.resetOffsetByTimestampOld(anyString(), anyString(), anyLong(), anyBoolean()))
-                    .thenReturn(Lists.newArrayList(rollbackStats));
+            mockResetTargets(resetTime);
+            // the topic has queues 2 and 3, the group only has an offset in queue 2
+            TopicStatsTable topicStatsTable = MockObjectUtil.createTopicStatsTable();
+            TopicOffset topicOffset = new TopicOffset();
+            topicOffset.setMaxOffset(100);
+            topicStatsTable.getOffsetTable().put(new MessageQueue("topic_test", "broker-a", 3), topicOffset);
+            when(mqAdminExt.examineTopicStats("topic_test")).thenReturn(topicStatsTable);
+            when(mqAdminExt.examineConsumeStats(anyString(), eq("group_test"), eq("topic_test"), anyLong()))
+                    .thenReturn(MockObjectUtil.createConsumeStats());
         }
         ResetOffsetRequest request = new ResetOffsetRequest();
         String groupId = "group_test";
         request.setTopic("topic_test");
         request.setResetTime(resetTime);
         request.setConsumerGroupList(Lists.newArrayList(groupId));
-        // 1、consumer not online
+        // 1、consumer online
         requestBuilder = MockMvcRequestBuilders.post(url);
         requestBuilder.contentType(MediaType.APPLICATION_JSON_UTF8);
         requestBuilder.content(JSON.toJSONString(request));
@@ -165,9 +313,60 @@ public class ConsumerControllerTest extends BaseControllerTest {
                 .andExpect(jsonPath("$.data." + groupId + ".rollbackStatsList").isArray())
                 .andExpect(jsonPath("$.data." + groupId + ".rollbackStatsList[0].rollbackOffset").value(10L));
 
-        // 2、consumer not online
+        // 2、consumer not online, the resolved offsets are written directly
         perform = mockMvc.perform(requestBuilder);
-        perform.andExpect(status().isOk()).andExpect(jsonPath("$.data").isMap());
+        perform.andExpect(status().isOk())
+                .andExpect(jsonPath("$.data." + groupId + ".status").value(true))
+                .andExpect(jsonPath("$.data." + groupId + ".rollbackStatsList[0].rollbackOffset").value(resetTime == -1 ? 100L : 5L));
+        verify(mqAdminExt).updateConsumeOffset("127.0.0.1:10911", groupId,
+                new MessageQueue("topic_test", "broker-a", 2), resetTime == -1 ? 100L : 5L);
+        verify(mqAdminExt, never()).updateConsumeOffset(anyString(), anyString(), eq(new MessageQueue("topic_test", "broker-a", 3)), anyLong());
+    }
+
+    @Test
+    public void testResetOffsetDryRun() throws Exception {
+        long resetTime = System.currentTimeMillis();
+        mockResetTargets(resetTime);
+        ConsumeStats stats = MockObjectUtil.createConsumeStats();
+        when(mqAdminExt.examineConsumeStats(eq("127.0.0.1:10911"), eq("group_behind"), eq("topic_test"), anyLong()))
+                .thenReturn(stats);
+        ResetOffsetRequest request = new ResetOffsetRequest();
+        request.setTopic("topic_test");
+        request.setResetTime(resetTime);
+        request.setConsumerGroupList(Lists.newArrayList("group_test", "group_behind", "group_test"));
+        request.setDryRun(true);
+
+        List<ConsumerGroupRollBackStat> results = new ArrayList<>();
+        consumerService.resetOffset(request, results::add);
+        Assert.assertEquals(2, results.size());
+        for (ConsumerGroupRollBackStat result : results) {
+            Assert.assertTrue(result.isStatus());
+            RollbackStats rollbackStats = result.getRollbackStatsList().get(0);
+            Assert.assertEquals(100L, rollbackStats.getBrokerOffset());
+            Assert.assertEquals(5L, rollbackStats.getTimestampOffset());
+            if ("group_behind".equals(result.getConsumerGroup())) {
+                // without force a queue is not moved forward
+                Assert.assertEquals(7L, rollbackStats.getConsumerOffset());
+                Assert.assertEquals(5L, rollbackStats.getRollbackOffset());
+            } else {
+                Assert.assertEquals(-1L, rollbackStats.getConsumerOffset());
+                Assert.assertEquals(5L, rollbackStats.getRollbackOffset());
+            }
+        }
+        // the offsets are resolved once for all groups, and nothing is reset
+        verify(mqAdminExt, times(1)).searchOffset(any(MessageQueue.class), anyLong());
+        verify(mqAdminExt, times(1)).examineTopicStats("topic_test");
+        verify(mqAdminExt, never()).resetOffsetByTimestamp(anyString(), anyString(), anyLong(), anyBoolean());
+        verify(mqAdminExt, never()).updateConsumeOffset(anyString(), anyString(), any(MessageQueue.class), anyLong());
+        consumerService.destroy();
+    }
+
+    private void mockResetTargets(long resetTime) throws Exception {
+        when(mqAdminExt.examineTopicRouteInfo("topic_test")).thenReturn(MockObjectUtil.createTopicRouteData());
+        when(mqAdminExt.examineTopicStats("topic_test")).thenReturn(MockObjectUtil.createTopicStatsTable());
+        when(mqAdminExt.searchOffset(any(MessageQueue.class), eq(resetTime))).thenReturn(5L);
+        when(mqAdminExt.examineConsumeStats(anyString(), anyString(), eq("topic_test"), anyLong()))
+                .thenReturn(new ConsumeStats());
     }
 
     @Test
@@ -282,6 +481,84 @@ public class ConsumerControllerTest extends BaseControllerTest {
                 .andExpect(jsonPath("$.data[0].queueStatInfoList[1].brokerName").value("broker-1"));
     }
 
+    @Test
+    public void testQueryTopicByConsumerJoinsClientAssignment() throws Exception {
+        ConsumeStats stats = MockObjectUtil.createConsumeStats();
+        when(mqAdminExt.examineConsumeStats(anyString(), anyString(), isNull(), anyLong())).thenReturn(stats);
+        ConsumerConnection consumerConnection = MockObjectUtil.createConsumerConnection();
+        Connection connection = new Connection();
+        connection.setClientId("clientId_2");
+        consumerConnection.getConnectionSet().add(connection);
+        when(mqAdminExt.examineConsumerConnectionInfo(anyString())).thenReturn(consumerConnection);
+        when(mqAdminExt.getConsumerRunningInfo(anyString(), eq("clientId_2"), anyBoolean()))
+                .thenThrow(new MQClientException(ResponseCode.SYSTEM_ERROR, "timeout"));
+
+        // the queues of a client that does not answer are returned without client
+        requestBuilder = MockMvcRequestBuilders.get("/consumer/queryTopicByConsumer.query");
+        requestBuilder.param("consumerGroup", "group_test");
+        requestBuilder.param("address", "127.0.0.1:10911");
+        for (int i = 0; i < 2; i++) {
+            perform = mockMvc.perform(requestBuilder);
+            perform.andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data[0].queueStatInfoList", hasSize(2)))
+                    .andExpect(jsonPath("$.data[0].queueStatInfoList[0].queueId").value(1))
+                    .andExpect(jsonPath("$.data[0].queueStatInfoList[0].clientInfo").value("clientId"))
+                    .andExpect(jsonPath("$.data[0].queueStatInfoList[1].clientInfo").doesNotExist());
+        }
+        // a partial assignment is not cached
+        verify(mqAdminExt, times(2)).getConsumerRunningInfo("group_test", "clientId", false);
+
+        ConsumerRunningInfo runningInfo = MockObjectUtil.createConsumerRunningInfo();
+        runningInfo.getMqTable().clear();
+        runningInfo.getMqTable().put(new MessageQueue("topic_test", "broker-a", 2), new ProcessQueueInfo());
+        doReturn(runningInfo).when(mqAdminExt).getConsumerRunningInfo(anyString(), eq("clientId_2"), anyBoolean());
+        for (int i = 0; i < 2; i++) {
+            perform = mockMvc.perform(requestBuilder);
+            perform.andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data[0].queueStatInfoList[1].clientInfo").value("clientId_2"));
+        }
+        verify(mqAdminExt, times(3)).getConsumerRunningInfo("group_test", "clientId", false);
+        consumerService.destroy();
+    }
+
+    @Test
+    public void testQueryConsumeStatsListByTopicName() throws Exception {
+        GroupList groupList = new GroupList();
+        groupList.setGroupList(Sets.newHashSet("group_test", "group_fail"));
+        when(mqAdminExt.queryTopicConsumeByWho("topic_test")).thenReturn(groupList);
+        when(mqAdminExt.examineTopicRouteInfo("topic_test")).thenReturn(MockObjectUtil.createTopicRouteData());
+        when(mqAdminExt.examineConsumeStats(eq("127.0.0.1:10911"), eq("group_test"), eq("topic_test"), anyLong()))
+                .thenReturn(MockObjectUtil.createConsumeStats());
+        when(mqAdminExt.examineConsumeStats(eq("127.0.0.1:10911"), eq("group_fail"), eq("topic_test"), anyLong()))
+                .thenThrow(new MQBrokerException(ResponseCode.SYSTEM_ERROR, "broker busy"));
+        ConsumerRunningInfo runningInfo = MockObjectUtil.createConsumerRunningInfo();
+        Set<String> runningInfoThreads = ConcurrentHashMap.newKeySet();
+        when(mqAdminExt.getConsumerRunningInfo(anyString(), anyString(), anyBoolean())).thenAnswer(invocation -> {
+            runningInfoThreads.add(Thread.currentThread().getName());
+            return runningInfo;
+        });
+
+        Map<String, TopicConsumerInfo> consumerInfos = consumerService.queryConsumeStatsListByTopicName("topic_test");
+        Assert.assertEquals(2, consumerInfos.size());
+        TopicConsumerInfo consumerInfo = consumerInfos.get("group_test");
+        Assert.assertNull(consumerInfo.getErrMsg());
+        Assert.assertEquals(2, consumerInfo.getQueueStatInfoList().size());
+        Assert.assertEquals("clientId", consumerInfo.getQueueStatInfoList().get(0).getClientInfo());
+        // a failed group is reported instead of looking like a group without queues
+        TopicConsumerInfo failed = consumerInfos.get("group_fail");
+        Assert.assertTrue(failed.getQueueStatInfoList().isEmpty());
+        Assert.assertTrue(failed.getErrMsg().contains("broker busy"));
+        // the route is looked up once for all groups
+        verify(mqAdminExt, times(1)).examineTopicRouteInfo("topic_test");
+        verify(mqAdminExt, never()).examineConsumeStats(anyString(), eq("topic_test"));
+        // the group tasks do not wait on running info tasks queued behind them in their own pool
+        Assert.assertFalse(runningInfoThreads.isEmpty());
+        for (String thread : runningInfoThreads) {
+            Assert.assertTrue(thread, thread.startsWith("QueryRunningInfo_"));
+        }
+        consumerService.destroy();
+    }
+
     @Test
     public void testConsumerConnection() throws Exception {
         // Prepare test data
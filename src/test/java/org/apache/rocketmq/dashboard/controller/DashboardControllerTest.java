@@ -20,6 +20,7 @@ import com.google.common.collect.Maps;
 import com.google.common.io.Files;
 import org.apache.rocketmq.dashboard.service.impl.DashboardCollectServiceImpl;
 import org.apache.rocketmq.dashboard.service.impl.DashboardServiceImpl;
+import org.apache.rocketmq.dashboard.store.SeriesBuffer;
 import org.apache.rocketmq.dashboard.util.JsonUtil;
 import org.junit.After;
 import org.junit.Before;
@@ -39,6 +40,7 @@ import java.util.Map;
 
 import static org.hamcrest.Matchers.hasKey;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -160,6 +162,72 @@ public class DashboardControllerTest extends BaseControllerTest {
                 .andExpect(jsonPath("$.data").value("topic_test,100"));
     }
 
+    @Test
+    public void testSeries() throws Exception {
+        final String url = "/dashboard/series.query";
+        long begin = System.currentTimeMillis() - 60 * 60 * 1000;
+        // a short range is served by the per-minute points
+        requestBuilder = MockMvcRequestBuilders.get(url);
+        requestBuilder.param("type", "topic");
+        requestBuilder.param("name", "topic_test");
+        requestBuilder.param("begin", String.valueOf(begin));
+        requestBuilder.param("end", String.valueOf(begin + 4 * 60 * 60 * 1000));
+        perform = mockMvc.perform(requestBuilder);
+        perform.andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.tier").value("raw"))
+                .andExpect(jsonPath("$.data.columns", hasSize(17)))
+                .andExpect(jsonPath("$.data.rows", hasSize(100)));
+
+        // a longer range is served by 5-minute buckets
+        requestBuilder = MockMvcRequestBuilders.get(url);
+        requestBuilder.param("type", "broker");
+        requestBuilder.param("name", "broker-a:0");
+        requestBuilder.param("begin", String.valueOf(begin));
+        requestBuilder.param("end", String.valueOf(begin + 24 * 60 * 60 * 1000));
+        perform = mockMvc.perform(requestBuilder);
+        perform.andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.tier").value("5m"))
+                .andExpect(jsonPath("$.data.resolutionMillis").value(5 * 60 * 1000))
+                .andExpect(jsonPath("$.data.columns", hasSize(5)))
+                .andExpect(jsonPath("$.data.rows", hasSize(lessThanOrEqualTo(21))));
+    }
+
+    @Test
+    public void testGroupLag() throws Exception {
+        final String url = "/dashboard/groupLag.query";
+        long now = System.currentTimeMillis();
+        SeriesBuffer buffer = dashboardCollectService.getGroupMap().get("group_test");
+        // the lag shrinks by 60 messages a minute
+        for (int i = 0; i < 5; i++) {
+            buffer.append(now - (4 - i) * 60 * 1000, 1000 - 60 * i, Double.doubleToRawLongBits(10));
+        }
+        dashboardCollectService.getQueueMap().get("group_test@topic_test@broker-a@0").append(now, 760);
+        dashboardCollectService.getQueueMap().get("group_other@topic_test@broker-a@0").append(now, 5);
+        requestBuilder = MockMvcRequestBuilders.get(url);
+        requestBuilder.param("consumerGroup", "group_test");
+        requestBuilder.param("begin", String.valueOf(now - 60 * 60 * 1000));
+        requestBuilder.param("end", String.valueOf(now));
+        perform = mockMvc.perform(requestBuilder);
+        perform.andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.lag").value(760))
+                .andExpect(jsonPath("$.data.consumeTps").value(10.0))
+                .andExpect(jsonPath("$.data.drainTps").value(1.0))
+                .andExpect(jsonPath("$.data.timeToDrainMillis").value(760000))
+                .andExpect(jsonPath("$.data.series.tier").value("raw"))
+                .andExpect(jsonPath("$.data.queueSeries", hasSize(1)))
+                .andExpect(jsonPath("$.data.queueSeries[0]").value("group_test@topic_test@broker-a@0"));
+
+        // nothing collected for the group
+        requestBuilder = MockMvcRequestBuilders.get(url);
+        requestBuilder.param("consumerGroup", "group_unknown");
+        requestBuilder.param("begin", String.valueOf(now - 60 * 60 * 1000));
+        requestBuilder.param("end", String.valueOf(now));
+        perform = mockMvc.perform(requestBuilder);
+        perform.andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.lag").value(-1))
+                .andExpect(jsonPath("$.data.timeToDrainMillis").value(-1));
+    }
+
     @Override
     protected Object getTestController() {
         return dashboardController;
@@ -17,7 +17,7 @@
 package org.apache.rocketmq.dashboard.controller;
 
 import com.alibaba.fastjson.JSON;
-import com.google.common.cache.Cache;
+import com.alibaba.fastjson.JSONObject;
 import org.apache.rocketmq.client.QueryResult;
 import org.apache.rocketmq.client.consumer.DefaultMQPullConsumer;
 import org.apache.rocketmq.client.consumer.PullResult;
@@ -27,35 +27,47 @@ import org.apache.rocketmq.client.exception.MQClientException;
 import org.apache.rocketmq.common.message.MessageClientIDSetter;
 import org.apache.rocketmq.common.message.MessageExt;
 import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.dashboard.config.CollectExecutorConfig;
+import org.apache.rocketmq.dashboard.model.MessagePageCursor;
 import org.apache.rocketmq.dashboard.model.QueueOffsetInfo;
 import org.apache.rocketmq.dashboard.model.request.MessageQuery;
 import org.apache.rocketmq.dashboard.service.impl.MessageServiceImpl;
+import org.apache.rocketmq.dashboard.store.MessageCursorStore;
 import org.apache.rocketmq.dashboard.support.AutoCloseConsumerWrapper;
 import org.apache.rocketmq.dashboard.util.MockObjectUtil;
 import org.apache.rocketmq.remoting.RPCHook;
+import org.apache.rocketmq.remoting.protocol.ResponseCode;
 import org.apache.rocketmq.remoting.protocol.body.CMResult;
 import org.apache.rocketmq.remoting.protocol.body.ConsumeMessageDirectlyResult;
 import org.apache.rocketmq.remoting.protocol.body.ConsumerConnection;
 import org.apache.rocketmq.tools.admin.api.MessageTrack;
 import org.apache.rocketmq.tools.admin.api.TrackType;
+import org.junit.After;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.util.FileSystemUtils;
 
-import java.lang.reflect.Field;
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -74,9 +86,16 @@ public class MessageControllerTest extends BaseControllerTest {
     @Mock
     private AutoCloseConsumerWrapper autoCloseConsumerWrapper;
 
+    private CollectExecutorConfig collectExecutorConfig = new CollectExecutorConfig();
+
+    private File dataDir;
+
     @Before
     public void init() throws Exception {
         super.mockRmqConfigure();
+        dataDir = new File(System.getProperty("java.io.tmpdir"), "rocketmq-dashboard-message-test-" + System.nanoTime());
+        when(configure.getRocketMqDashboardDataPath()).thenReturn(dataDir.getAbsolutePath());
+        messageService.afterPropertiesSet();
         {
             List<MessageExt> wrappers = new ArrayList<>(1);
             wrappers.add(MockObjectUtil.createMessageExt());
@@ -121,6 +140,12 @@ public class MessageControllerTest extends BaseControllerTest {
         }
     }
 
+    @After
+    public void after() {
+        messageService.destroy();
+        FileSystemUtils.deleteRecursively(dataDir);
+    }
+
     @Test
     public void testViewMessage() throws Exception {
         final String url = "/message/viewMessage.query";
@@ -188,11 +213,8 @@ public class MessageControllerTest extends BaseControllerTest {
                 Long maxOffset = defaultMQPullConsumer.searchOffset(messageQueue, query.getEnd()) + 1;
                 queueOffsetInfos.add(new QueueOffsetInfo(idx++, minOffset, maxOffset, minOffset, minOffset, messageQueue));
             }
-            // Use reflection to add data to the CACHE
-            Field field = MessageServiceImpl.class.getDeclaredField("CACHE");
-            field.setAccessible(true);
-            Cache<String, List<QueueOffsetInfo>> cache = (Cache<String, List<QueueOffsetInfo>>) field.get(messageService);
-            cache.put(taskId, queueOffsetInfos);
+            MessageCursorStore cursorStore = (MessageCursorStore) ReflectionTestUtils.getField(messageService, "cursorStore");
+            cursorStore.put(taskId, new MessagePageCursor(0, query.getPageSize(), 0, queueOffsetInfos));
         }
 
         // hit cache
@@ -205,6 +227,21 @@ public class MessageControllerTest extends BaseControllerTest {
                 .andExpect(jsonPath("$.data.page.content[0].msgId").value("0A9A003F00002A9F0000000000000319"));
     }
 
+    @Test
+    public void testViewMessageBody() throws Exception {
+        final String url = "/message/viewMessageBody.query";
+        when(mqAdminExt.viewMessage(anyString(), anyString())).thenReturn(MockObjectUtil.createMessageExt());
+        requestBuilder = MockMvcRequestBuilders.get(url);
+        requestBuilder.param("topic", "topic_test");
+        requestBuilder.param("msgId", "0A9A003F00002A9F0000000000000319");
+        requestBuilder.param("offset", "5");
+        requestBuilder.param("length", "2");
+        perform = mockMvc.perform(requestBuilder);
+        perform.andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.body").value("is"))
+                .andExpect(jsonPath("$.data.bodyLength").value(24));
+    }
+
     @Test
     public void testQueryMessageByTopicAndKey() throws Exception {
         final String url = "/message/queryMessageByTopicAndKey.query";
@@ -235,6 +272,70 @@ public class MessageControllerTest extends BaseControllerTest {
         perform.andExpect(status().isOk())
                 .andExpect(jsonPath("$.data", hasSize(1)))
                 .andExpect(jsonPath("$.data[0].msgId").value("0A9A003F00002A9F0000000000000319"));
+
+        // the message has no key KeyB
+        requestBuilder.param("key", "KeyB");
+        perform = mockMvc.perform(requestBuilder);
+        perform.andExpect(status().isOk())
+                .andExpect(jsonPath("$.data", hasSize(0)));
+
+        requestBuilder.param("bodyRegex", "(unclosed");
+        perform = mockMvc.perform(requestBuilder);
+        performErrorExpect(perform);
+    }
+
+    @Test
+    public void testStreamMessageByTopic() throws Exception {
+        final String url = "/message/queryMessageByTopic.stream";
+        requestBuilder = MockMvcRequestBuilders.get(url);
+        requestBuilder.param("topic", "topic_test")
+                .param("begin", Long.toString(System.currentTimeMillis() - 3 * 24 * 60 * 60 * 1000))
+                .param("end", Long.toString(System.currentTimeMillis()));
+        String content = mockMvc.perform(requestBuilder)
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson;charset=UTF-8"))
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = content.split("\n");
+        Assert.assertEquals(1, lines.length);
+        Assert.assertTrue(lines[0].contains("\"msgId\":\"0A9A003F00002A9F0000000000000319\""));
+    }
+
+    @Test
+    public void testStreamMessageByTopicAndKeys() throws Exception {
+        final String url = "/message/queryMessageByTopicAndKeys.stream";
+        {
+            QueryResult queryResult = new QueryResult(System.currentTimeMillis(),
+                    Collections.singletonList(MockObjectUtil.createMessageExt()));
+            when(mqAdminExt.queryMessage(anyString(), eq("KeyA"), anyInt(), anyLong(), anyLong()))
+                    .thenReturn(queryResult);
+            when(mqAdminExt.queryMessage(anyString(), eq("KeyB"), anyInt(), anyLong(), anyLong()))
+                    .thenThrow(new MQClientException(ResponseCode.NO_MESSAGE, "query message by key finished, but no message."));
+        }
+        requestBuilder = MockMvcRequestBuilders.post(url)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"topic\":\"topic_test\",\"keys\":[\"KeyA\",\"KeyB\",\"KeyA\",\" \"]}");
+        String content = mockMvc.perform(requestBuilder)
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson;charset=UTF-8"))
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = content.split("\n");
+        Assert.assertEquals(2, lines.length);
+        Map<String, JSONObject> results = new HashMap<>();
+        for (String line : lines) {
+            JSONObject result = JSON.parseObject(line);
+            results.put(result.getString("key"), result);
+        }
+        Assert.assertEquals("0A9A003F00002A9F0000000000000319",
+                results.get("KeyA").getJSONArray("messages").getJSONObject(0).getString("msgId"));
+        // a key without messages is not an error, empty fields are left out
+        Assert.assertEquals(1, results.get("KeyB").size());
+
+        // a topic is required
+        requestBuilder = MockMvcRequestBuilders.post(url)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"keys\":[\"KeyA\"]}");
+        perform = mockMvc.perform(requestBuilder);
+        performErrorExpect(perform);
     }
 
     @Test
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.controller;
+
+import org.apache.rocketmq.dashboard.exception.ServiceException;
+import org.apache.rocketmq.dashboard.model.MessageExportJob;
+import org.apache.rocketmq.dashboard.model.request.MessageExportRequest;
+import org.apache.rocketmq.dashboard.service.MessageExportService;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class MessageExportControllerTest extends BaseControllerTest {
+
+    @InjectMocks
+    private MessageExportController messageExportController;
+
+    @Mock
+    private MessageExportService messageExportService;
+
+    private File exportFile;
+
+    @After
+    public void after() {
+        if (exportFile != null) {
+            FileSystemUtils.deleteRecursively(exportFile);
+        }
+    }
+
+    @Test
+    public void testCreate() throws Exception {
+        final String url = "/messageExport/create.do";
+        {
+            when(messageExportService.createJob(any(MessageExportRequest.class))).thenReturn(job(0));
+        }
+        requestBuilder = MockMvcRequestBuilders.post(url)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"topic\":\"topic_test\",\"begin\":1000,\"end\":2000,\"compression\":\"zstd\"}");
+        perform = mockMvc.perform(requestBuilder);
+        performOkExpect(perform)
+            .andExpect(jsonPath("$.data.jobId").value("0123456789abcdef0123456789abcdef"))
+            .andExpect(jsonPath("$.data.status").value(MessageExportJob.STATUS_RUNNING));
+    }
+
+    @Test
+    public void testDetailOfUnknownJob() throws Exception {
+        final String url = "/messageExport/detail.query";
+        {
+            when(messageExportService.getJob(anyString())).thenThrow(new ServiceException(-1, "Unknown export job: 42"));
+        }
+        requestBuilder = MockMvcRequestBuilders.get(url).param("jobId", "42");
+        perform = mockMvc.perform(requestBuilder);
+        performErrorExpect(perform);
+    }
+
+    @Test
+    public void testDownloadUpToCheckpoint() throws Exception {
+        final String url = "/messageExport/download.do";
+        exportFile = File.createTempFile("rocketmq-dashboard-export", ".ndjson.gz");
+        Files.write(exportFile.toPath(), "checkpointed|unfinished".getBytes(StandardCharsets.UTF_8));
+        {
+            when(messageExportService.getJob("0123456789abcdef0123456789abcdef")).thenReturn(job("checkpointed".length()));
+            when(messageExportService.getJobFile("0123456789abcdef0123456789abcdef")).thenReturn(exportFile);
+        }
+        requestBuilder = MockMvcRequestBuilders.get(url).param("jobId", "0123456789abcdef0123456789abcdef");
+        perform = mockMvc.perform(requestBuilder);
+        perform.andExpect(status().isOk())
+            .andExpect(content().string("checkpointed"));
+    }
+
+    private MessageExportJob job(long fileSize) {
+        MessageExportJob job = new MessageExportJob();
+        job.setJobId("0123456789abcdef0123456789abcdef");
+        job.setTopic("topic_test");
+        job.setStatus(MessageExportJob.STATUS_RUNNING);
+        job.setFileName(job.getJobId() + ".ndjson.gz");
+        job.setFileSize(fileSize);
+        return job;
+    }
+
+    @Override
+    protected Object getTestController() {
+        return messageExportController;
+    }
+}
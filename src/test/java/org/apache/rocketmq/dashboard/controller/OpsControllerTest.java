@@ -22,6 +22,7 @@ import org.apache.rocketmq.dashboard.service.checker.RocketMqChecker;
 import org.apache.rocketmq.dashboard.service.checker.impl.ClusterHealthCheckerImpl;
 import org.apache.rocketmq.dashboard.service.checker.impl.TopicOnlyOneBrokerCheckerImpl;
 import org.apache.rocketmq.dashboard.service.impl.OpsServiceImpl;
+import org.apache.rocketmq.dashboard.support.AutoCloseConsumerWrapper;
 import org.apache.rocketmq.tools.admin.MQAdminExt;
 import org.junit.Assert;
 import org.junit.Before;
@@ -39,6 +40,7 @@ import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -52,6 +54,9 @@ public class OpsControllerTest extends BaseControllerTest {
     @Mock
     private GenericObjectPool<MQAdminExt> mqAdminExtPool;
 
+    @Mock
+    private AutoCloseConsumerWrapper autoCloseConsumerWrapper;
+
     @Before
     public void init() {
         super.mockRmqConfigure();
@@ -70,6 +75,23 @@ public class OpsControllerTest extends BaseControllerTest {
                 .andExpect(jsonPath("$.data.namesvrAddrList[0]").value("127.0.0.1:9876"));
     }
 
+    @Test
+    public void testMessageConsumerPool() throws Exception {
+        final String url = "/ops/messageConsumerPool.query";
+        {
+            List<AutoCloseConsumerWrapper.ConsumerStats> stats = new ArrayList<>();
+            stats.add(new AutoCloseConsumerWrapper.ConsumerStats("12345678", 0, true, 3, 120, 0));
+            stats.add(new AutoCloseConsumerWrapper.ConsumerStats("12345678", 1, false, 0, 0, 0));
+            when(autoCloseConsumerWrapper.getStats()).thenReturn(stats);
+        }
+        requestBuilder = MockMvcRequestBuilders.get(url);
+        perform = mockMvc.perform(requestBuilder);
+        perform.andExpect(status().isOk())
+                .andExpect(jsonPath("$.data", hasSize(2)))
+                .andExpect(jsonPath("$.data[0].inFlight").value(3))
+                .andExpect(jsonPath("$.data[1].started").value(false));
+    }
+
     @Test
     public void testUpdateNameSvrAddr() throws Exception {
         final String url = "/ops/updateNameSvrAddr.do";
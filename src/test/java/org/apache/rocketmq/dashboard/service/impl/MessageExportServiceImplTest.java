@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.service.impl;
+
+import org.apache.rocketmq.client.consumer.PullResult;
+import org.apache.rocketmq.client.consumer.PullStatus;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.dashboard.config.RMQConfigure;
+import org.apache.rocketmq.dashboard.exception.ServiceException;
+import org.apache.rocketmq.dashboard.model.MessageExportJob;
+import org.apache.rocketmq.dashboard.model.MessageExportQueue;
+import org.apache.rocketmq.dashboard.model.QueueOffsetInfo;
+import org.apache.rocketmq.dashboard.model.request.MessageExportRequest;
+import org.apache.rocketmq.dashboard.service.MessageService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class MessageExportServiceImplTest {
+
+    private static final String TOPIC = "topic_test";
+
+    @InjectMocks
+    private MessageExportServiceImpl exportService;
+
+    @Mock
+    private MessageService messageService;
+
+    @Mock
+    private RMQConfigure configure;
+
+    private File dataDir;
+
+    /**
+     * Batches pulled from every queue before the pull waits to be stopped, unlimited when negative
+     */
+    private volatile int batchesBeforeStop = -1;
+
+    private final CountDownLatch waitingForStop = new CountDownLatch(1);
+
+    @Before
+    public void setUp() {
+        dataDir = new File(System.getProperty("java.io.tmpdir"), "rocketmq-dashboard-export-service-test-" + System.nanoTime());
+        when(configure.getRocketMqDashboardDataPath()).thenReturn(dataDir.getAbsolutePath());
+        doAnswer(invocation -> {
+            pull(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2));
+            return null;
+        }).when(messageService).pullQueueOffsets(any(), any(), any());
+        exportService.afterPropertiesSet();
+    }
+
+    @After
+    public void tearDown() {
+        exportService.destroy();
+        FileSystemUtils.deleteRecursively(dataDir);
+    }
+
+    @Test
+    public void testExportTimeRange() throws Exception {
+        MessageQueue mq0 = new MessageQueue(TOPIC, "broker-a", 0);
+        MessageQueue mq1 = new MessageQueue(TOPIC, "broker-b", 0);
+        when(messageService.queryQueueOffsets(eq(TOPIC), anyLong(), anyLong())).thenReturn(Arrays.asList(
+            new QueueOffsetInfo(0, 10L, 45L, 10L, 10L, mq1), new QueueOffsetInfo(1, 100L, 120L, 100L, 100L, mq0)));
+        MessageExportRequest request = new MessageExportRequest();
+        request.setTopic(TOPIC);
+        request.setBegin(1000L);
+        request.setEnd(2000L);
+
+        MessageExportJob job = waitUntilDone(exportService.createJob(request).getJobId());
+        assertEquals(MessageExportJob.STATUS_COMPLETED, job.getStatus());
+        assertEquals(55, job.getTotalCount());
+        assertEquals(55, job.getExportedCount());
+        assertEquals("broker-a", job.getQueues().get(0).getBrokerName());
+        assertEquals(120, job.getQueues().get(0).getNextOffset());
+        assertEquals(55, new HashSet<>(readMsgIds(job)).size());
+    }
+
+    @Test
+    public void testResumeAfterRestart() throws Exception {
+        MessageExportRequest request = new MessageExportRequest();
+        request.setTopic(TOPIC);
+        request.setQueues(Arrays.asList(new MessageExportQueue("broker-a", 0, 0, 100), new MessageExportQueue("broker-a", 1, 50, 100)));
+        batchesBeforeStop = 3;
+        String jobId = exportService.createJob(request).getJobId();
+        assertTrue(waitingForStop.await(10, TimeUnit.SECONDS));
+
+        // a shutdown pauses the job at a checkpoint
+        exportService.destroy();
+        MessageExportJob paused = exportService.getJob(jobId);
+        assertEquals(MessageExportJob.STATUS_PAUSED, paused.getStatus());
+        assertEquals(60, paused.getExportedCount());
+        assertEquals(30, paused.getQueues().get(0).getNextOffset());
+        assertEquals(80, paused.getQueues().get(1).getNextOffset());
+        assertEquals(60, readMsgIds(paused).size());
+
+        // the next run of the dashboard picks the job up and resumes it
+        batchesBeforeStop = -1;
+        MessageExportServiceImpl restarted = new MessageExportServiceImpl();
+        ReflectionTestUtils.setField(restarted, "messageService", messageService);
+        ReflectionTestUtils.setField(restarted, "configure", configure);
+        restarted.afterPropertiesSet();
+        exportService = restarted;
+        assertEquals(MessageExportJob.STATUS_PAUSED, restarted.getJob(jobId).getStatus());
+        restarted.resumeJob(jobId);
+        MessageExportJob job = waitUntilDone(jobId);
+        assertEquals(MessageExportJob.STATUS_COMPLETED, job.getStatus());
+        assertEquals(150, job.getExportedCount());
+        List<String> msgIds = readMsgIds(job);
+        assertEquals(150, msgIds.size());
+        assertEquals(150, new HashSet<>(msgIds).size());
+    }
+
+    @Test
+    public void testInvalidRequest() {
+        MessageExportRequest request = new MessageExportRequest();
+        request.setTopic(TOPIC);
+        try {
+            exportService.createJob(request);
+            fail();
+        } catch (ServiceException e) {
+            assertEquals("A time range or queue ranges are required", e.getMessage());
+        }
+        request.setBegin(1000L);
+        request.setEnd(2000L);
+        request.setCompression("lzma");
+        try {
+            exportService.createJob(request);
+            fail();
+        } catch (ServiceException e) {
+            assertEquals("Unknown export compression: lzma", e.getMessage());
+        }
+        assertTrue(exportService.listJobs().isEmpty());
+    }
+
+    private void pull(List<QueueOffsetInfo> queueOffsets, BooleanSupplier stopped,
+        BiPredicate<QueueOffsetInfo, PullResult> sink) throws InterruptedException {
+        for (QueueOffsetInfo queueOffset : queueOffsets) {
+            int batches = 0;
+            for (long offset = queueOffset.getStart(); offset < queueOffset.getEnd() && !stopped.getAsBoolean(); offset += 10) {
+                if (batchesBeforeStop >= 0 && batches++ == batchesBeforeStop) {
+                    break;
+                }
+                List<MessageExt> messages = new ArrayList<>();
+                for (long i = offset; i < Math.min(offset + 10, queueOffset.getEnd()); i++) {
+                    MessageExt messageExt = new MessageExt();
+                    MessageQueue mq = queueOffset.getMessageQueues();
+                    messageExt.setTopic(TOPIC);
+                    messageExt.setMsgId(mq.getBrokerName() + "-" + mq.getQueueId() + "-" + i);
+                    messageExt.setQueueOffset(i);
+                    messageExt.setBody("body".getBytes(StandardCharsets.UTF_8));
+                    messages.add(messageExt);
+                }
+                sink.test(queueOffset, new PullResult(PullStatus.FOUND, offset + messages.size(), 0, queueOffset.getEnd(), messages));
+            }
+        }
+        if (batchesBeforeStop >= 0) {
+            waitingForStop.countDown();
+            while (!stopped.getAsBoolean()) {
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private MessageExportJob waitUntilDone(String jobId) throws InterruptedException {
+        for (int i = 0; i < 1000; i++) {
+            MessageExportJob job = exportService.getJob(jobId);
+            if (!MessageExportJob.STATUS_RUNNING.equals(job.getStatus())) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Export job " + jobId + " did not finish");
+    }
+
+    private List<String> readMsgIds(MessageExportJob job) throws Exception {
+        File file = new File(new File(dataDir, "message-export"), job.getFileName());
+        assertEquals(job.getFileSize(), file.length());
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+            new GZIPInputStream(new FileInputStream(file)), StandardCharsets.UTF_8))) {
+            return reader.lines()
+                .map(line -> line.replaceAll(".*\"msgId\":\"([^\"]+)\".*", "$1"))
+                .collect(Collectors.toList());
+        }
+    }
+}
@@ -20,25 +20,34 @@ package org.apache.rocketmq.dashboard.service.impl;
 import com.google.common.cache.Cache;
 import org.apache.rocketmq.acl.common.AclClientRPCHook;
 import org.apache.rocketmq.acl.common.SessionCredentials;
+import org.apache.rocketmq.client.QueryResult;
 import org.apache.rocketmq.client.consumer.DefaultMQPullConsumer;
 import org.apache.rocketmq.client.consumer.PullResult;
 import org.apache.rocketmq.client.consumer.PullStatus;
+import org.apache.rocketmq.client.exception.MQClientException;
 import org.apache.rocketmq.common.Pair;
 import org.apache.rocketmq.common.message.MessageExt;
 import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.dashboard.config.CollectExecutorConfig;
 import org.apache.rocketmq.dashboard.config.RMQConfigure;
 import org.apache.rocketmq.dashboard.exception.ServiceException;
+import org.apache.rocketmq.dashboard.model.MessageBodyView;
+import org.apache.rocketmq.dashboard.model.MessageFilter;
+import org.apache.rocketmq.dashboard.model.MessageKeyResult;
 import org.apache.rocketmq.dashboard.model.MessagePage;
 import org.apache.rocketmq.dashboard.model.MessageQueryByPage;
 import org.apache.rocketmq.dashboard.model.MessageView;
 import org.apache.rocketmq.dashboard.model.QueueOffsetInfo;
+import org.apache.rocketmq.dashboard.model.request.MessageQuery;
 import org.apache.rocketmq.dashboard.support.AutoCloseConsumerWrapper;
 import org.apache.rocketmq.remoting.RPCHook;
+import org.apache.rocketmq.remoting.protocol.ResponseCode;
 import org.apache.rocketmq.remoting.protocol.body.Connection;
 import org.apache.rocketmq.remoting.protocol.body.ConsumeMessageDirectlyResult;
 import org.apache.rocketmq.remoting.protocol.body.ConsumerConnection;
 import org.apache.rocketmq.tools.admin.MQAdminExt;
 import org.apache.rocketmq.tools.admin.api.MessageTrack;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -46,14 +55,23 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.util.FileSystemUtils;
 
+import java.io.File;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -83,6 +101,9 @@ public class MessageServiceImplTest {
     @Mock
     private Cache<String, MessagePage> messagePageCache;
 
+    @Spy
+    private CollectExecutorConfig collectExecutorConfig = new CollectExecutorConfig();
+
 
     private static final String TOPIC = "testTopic";
     private static final String MSG_ID = "testMsgId";
@@ -91,6 +112,8 @@ public class MessageServiceImplTest {
     private static final String KEY = "testKey";
     private static final String TASK_ID = "CID_RMQ_SYS_TASK12345";
 
+    private File dataDir;
+
     @Before
     public void setUp() throws Exception {
         // Set up default mock responses
@@ -99,6 +122,15 @@ public class MessageServiceImplTest {
         when(configure.getSecretKey()).thenReturn("rocketmq");
         when(configure.isUseTLS()).thenReturn(false);
         when(autoCloseConsumerWrapper.getConsumer(any(RPCHook.class), anyBoolean())).thenReturn(defaultMQPullConsumer);
+        dataDir = new File(System.getProperty("java.io.tmpdir"), "rocketmq-dashboard-message-test-" + System.nanoTime());
+        when(configure.getRocketMqDashboardDataPath()).thenReturn(dataDir.getAbsolutePath());
+        messageService.afterPropertiesSet();
+    }
+
+    @After
+    public void tearDown() {
+        messageService.destroy();
+        FileSystemUtils.deleteRecursively(dataDir);
     }
 
     @Test
@@ -174,12 +206,107 @@ public class MessageServiceImplTest {
         testService.queryMessageByTopicAndKey(TOPIC, KEY);
     }
 
+    @Test
+    public void testQueryMessageByTopicAndKeyBodyPreview() throws Exception {
+        // "h\u00e9llo" is 6 bytes, the preview must not cut the 2-byte character
+        MessageExt messageExt = createMessageExt("id1", TOPIC, "h\u00e9llo", System.currentTimeMillis());
+        messageExt.setBody("h\u00e9llo".getBytes(StandardCharsets.UTF_8));
+        when(configure.getMessageBodyPreviewSize()).thenReturn(2);
+        when(mqAdminExt.queryMessage(anyString(), anyString(), anyInt(), anyLong(), anyLong()))
+                .thenReturn(new QueryResult(System.currentTimeMillis(), Collections.singletonList(messageExt)));
+
+        MessageView view = messageService.queryMessageByTopicAndKey(TOPIC, KEY).get(0);
+        assertEquals("h", view.getMessageBody());
+        assertEquals(6, view.getBodyLength());
+        assertTrue(view.isBodyTruncated());
+        assertEquals("id1", view.getMsgId());
+        assertEquals(TOPIC, view.getTopic());
+    }
+
+    @Test
+    public void testQueryMessageByTopicAndKeys() throws Exception {
+        collectExecutorConfig.setBrokerConcurrency(2);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        AtomicInteger lookups = new AtomicInteger();
+        when(mqAdminExt.queryMessage(eq(TOPIC), anyString(), anyInt(), anyLong(), anyLong())).thenAnswer(invocation -> {
+            String key = invocation.getArgument(1);
+            lookups.incrementAndGet();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+                if ("missing".equals(key)) {
+                    throw new MQClientException(ResponseCode.NO_MESSAGE, "query message by key finished, but no message.");
+                }
+                if ("broken".equals(key)) {
+                    throw new MQClientException(ResponseCode.SYSTEM_ERROR, "index service unavailable");
+                }
+                return new QueryResult(System.currentTimeMillis(),
+                        Collections.singletonList(createMessageExt("id-" + key, TOPIC, "body", System.currentTimeMillis())));
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+
+        List<String> keys = Arrays.asList("k1", "k2", " k1", "", "k3", "missing", "broken", "k4", null, "k2");
+        Map<String, MessageKeyResult> results = new HashMap<>();
+        messageService.queryMessageByTopicAndKeys(TOPIC, keys, result -> results.put(result.getKey(), result) == null);
+
+        assertEquals(6, results.size());
+        assertEquals(6, lookups.get());
+        assertTrue(maxInFlight.get() <= 2);
+        assertEquals("id-k1", results.get("k1").getMessages().get(0).getMsgId());
+        assertTrue(results.get("missing").getMessages().isEmpty());
+        assertEquals(null, results.get("missing").getErrMsg());
+        assertEquals(null, results.get("broken").getMessages());
+        assertTrue(results.get("broken").getErrMsg().contains("index service unavailable"));
+
+        // the consumer stops the lookup
+        AtomicInteger received = new AtomicInteger();
+        messageService.queryMessageByTopicAndKeys(TOPIC, keys, result -> received.incrementAndGet() < 1);
+        assertEquals(1, received.get());
+    }
+
+    @Test(expected = ServiceException.class)
+    public void testQueryMessageByTopicAndKeysTooManyKeys() {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i <= 1000; i++) {
+            keys.add("key" + i);
+        }
+        messageService.queryMessageByTopicAndKeys(TOPIC, keys, result -> true);
+    }
+
+    @Test
+    public void testViewMessageBody() throws Exception {
+        MessageExt messageExt = createMessageExt(MSG_ID, TOPIC, "h\u00e9llo", System.currentTimeMillis());
+        messageExt.setBody("h\u00e9llo".getBytes(StandardCharsets.UTF_8));
+        when(mqAdminExt.viewMessage(TOPIC, MSG_ID)).thenReturn(messageExt);
+
+        MessageBodyView bodyView = messageService.viewMessageBody(TOPIC, MSG_ID, 0, 0);
+        assertEquals("h\u00e9llo", bodyView.getBody());
+        assertEquals(6, bodyView.getBodyLength());
+
+        // an offset inside a character starts the range at that character
+        bodyView = messageService.viewMessageBody(TOPIC, MSG_ID, 2, 3);
+        assertEquals(1, bodyView.getOffset());
+        assertEquals(4, bodyView.getLength());
+        assertEquals("\u00e9ll", bodyView.getBody());
+    }
+
+    @Test(expected = ServiceException.class)
+    public void testViewMessageBodyInvalidOffset() throws Exception {
+        when(mqAdminExt.viewMessage(TOPIC, MSG_ID)).thenReturn(createMessageExt(MSG_ID, TOPIC, "body", 0));
+        messageService.viewMessageBody(TOPIC, MSG_ID, 5, 0);
+    }
+
     @Test
     public void testQueryMessageByTopic() throws Exception {
         // Setup message queues
         Set<MessageQueue> messageQueues = new HashSet<>();
-        messageQueues.add(new MessageQueue(TOPIC, "broker-1", 0));
-        messageQueues.add(new MessageQueue(TOPIC, "broker-2", 1));
+        MessageQueue messageQueue1 = new MessageQueue(TOPIC, "broker-1", 0);
+        MessageQueue messageQueue2 = new MessageQueue(TOPIC, "broker-2", 1);
+        messageQueues.add(messageQueue1);
+        messageQueues.add(messageQueue2);
         System.out.println("Consumer from wrapper: " + autoCloseConsumerWrapper.getConsumer(new AclClientRPCHook(new SessionCredentials(configure.getAccessKey(), configure.getSecretKey())), false));
         when(defaultMQPullConsumer.fetchSubscribeMessageQueues(TOPIC)).thenReturn(messageQueues);
         System.out.println(defaultMQPullConsumer.fetchSubscribeMessageQueues(TOPIC));
@@ -196,10 +323,12 @@ public class MessageServiceImplTest {
 
         PullResult emptyResult = createPullResult(PullStatus.NO_NEW_MSG, Collections.emptyList(), 10, 10);
 
-        // First pull gets messages, second pull gets empty to terminate loop
-        when(defaultMQPullConsumer.pull(any(MessageQueue.class), anyString(), anyLong(), anyInt()))
+        // First pull of each queue gets messages, second pull gets empty to terminate loop. The queues are
+        // pulled concurrently, so each one has its own results.
+        when(defaultMQPullConsumer.pull(eq(messageQueue1), anyString(), anyLong(), anyInt()))
                 .thenReturn(pullResult1)
-                .thenReturn(emptyResult)
+                .thenReturn(emptyResult);
+        when(defaultMQPullConsumer.pull(eq(messageQueue2), anyString(), anyLong(), anyInt()))
                 .thenReturn(pullResult2)
                 .thenReturn(emptyResult);
 
@@ -287,6 +416,405 @@ public class MessageServiceImplTest {
         assertEquals("id1", result.get(0).getMsgId());
     }
 
+    @Test
+    public void testQueryMessageByTopicWithFilter() throws Exception {
+        MessageQueue messageQueue = new MessageQueue(TOPIC, "broker-1", 0);
+        when(defaultMQPullConsumer.fetchSubscribeMessageQueues(TOPIC)).thenReturn(new HashSet<>(Collections.singletonList(messageQueue)));
+        when(defaultMQPullConsumer.searchOffset(messageQueue, 1000L)).thenReturn(0L);
+        when(defaultMQPullConsumer.searchOffset(messageQueue, 3000L)).thenReturn(100L);
+
+        MessageExt otherKey = createMessageExt("id1", TOPIC, "order 42 paid", 1500);
+        otherKey.setKeys("order-41");
+        MessageExt noProperty = createMessageExt("id2", TOPIC, "order 42 paid", 1600);
+        noProperty.setKeys("order-42");
+        MessageExt otherBody = createMessageExt("id3", TOPIC, "order 42 cancelled", 1700);
+        otherBody.setKeys("order-42 retry");
+        otherBody.putUserProperty("region", "eu");
+        MessageExt match = createMessageExt("id4", TOPIC, "order 42 paid", 1800);
+        match.setKeys("retry order-42");
+        match.putUserProperty("region", "eu");
+        // the broker finds no matching tag in the first batch, the scan goes on with the next one
+        when(defaultMQPullConsumer.pull(messageQueue, "TagA || TagB", 0L, 32))
+                .thenReturn(createPullResult(PullStatus.NO_MATCHED_MSG, Collections.emptyList(), 32, 0));
+        when(defaultMQPullConsumer.pull(messageQueue, "TagA || TagB", 32L, 32))
+                .thenReturn(createPullResult(PullStatus.FOUND, Arrays.asList(otherKey, noProperty, otherBody, match), 36, 32));
+        when(defaultMQPullConsumer.pull(messageQueue, "TagA || TagB", 36L, 32))
+                .thenReturn(createPullResult(PullStatus.NO_NEW_MSG, Collections.emptyList(), 36, 36));
+
+        MessageFilter filter = new MessageFilter("TagA || TagB", "order-42", "region", "eu", "42 (paid|shipped)");
+        List<MessageView> result = messageService.queryMessageByTopic(TOPIC, 1000, 3000, filter);
+
+        assertEquals(1, result.size());
+        assertEquals("id4", result.get(0).getMsgId());
+        verify(defaultMQPullConsumer, never()).pull(any(MessageQueue.class), eq("*"), anyLong(), anyInt());
+    }
+
+    @Test
+    public void testQueryMessageByTopicStopsAtResultBudget() throws Exception {
+        Set<MessageQueue> messageQueues = new HashSet<>();
+        for (int queueId = 0; queueId < 64; queueId++) {
+            messageQueues.add(new MessageQueue(TOPIC, "broker-" + queueId % 2, queueId));
+        }
+        when(defaultMQPullConsumer.fetchSubscribeMessageQueues(TOPIC)).thenReturn(messageQueues);
+        when(defaultMQPullConsumer.searchOffset(any(MessageQueue.class), eq(1000L))).thenReturn(0L);
+        when(defaultMQPullConsumer.searchOffset(any(MessageQueue.class), eq(3000L))).thenReturn(Long.MAX_VALUE);
+        // every queue holds an endless run of matching messages
+        when(defaultMQPullConsumer.pull(any(MessageQueue.class), anyString(), anyLong(), anyInt())).thenAnswer(invocation -> {
+            long offset = invocation.getArgument(2);
+            List<MessageExt> messages = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                messages.add(createMessageExt("id" + (offset + i), TOPIC, "body", 1000 + (offset + i) % 2000));
+            }
+            return createPullResult(PullStatus.FOUND, messages, offset + 32, offset);
+        });
+
+        List<MessageView> result = messageService.queryMessageByTopic(TOPIC, 1000, 3000);
+
+        // the queues together stop at 2000 matches, even mid-batch
+        assertEquals(2000, result.size());
+        for (int i = 1; i < result.size(); i++) {
+            assertTrue(result.get(i - 1).getStoreTimestamp() >= result.get(i).getStoreTimestamp());
+        }
+    }
+
+    @Test
+    public void testScanMessageByTopic() throws Exception {
+        Set<MessageQueue> messageQueues = new HashSet<>();
+        for (int queueId = 0; queueId < 4; queueId++) {
+            messageQueues.add(new MessageQueue(TOPIC, "broker-" + queueId % 2, queueId));
+        }
+        when(defaultMQPullConsumer.fetchSubscribeMessageQueues(TOPIC)).thenReturn(messageQueues);
+        when(defaultMQPullConsumer.searchOffset(any(MessageQueue.class), eq(1000L))).thenReturn(0L);
+        when(defaultMQPullConsumer.searchOffset(any(MessageQueue.class), eq(3000L))).thenReturn(1000L);
+        // every queue holds 1000 messages, one in two has the key
+        when(defaultMQPullConsumer.pull(any(MessageQueue.class), anyString(), anyLong(), anyInt())).thenAnswer(invocation -> {
+            MessageQueue mq = invocation.getArgument(0);
+            long offset = invocation.getArgument(2);
+            List<MessageExt> messages = new ArrayList<>();
+            for (long i = offset; i < Math.min(offset + 32, 1000); i++) {
+                MessageExt messageExt = createMessageExt(mq.getQueueId() + "-" + i, TOPIC, "body", 1000 + i);
+                messageExt.setKeys(i % 2 == 0 ? KEY : "other");
+                messages.add(messageExt);
+            }
+            if (messages.isEmpty()) {
+                return createPullResult(PullStatus.NO_NEW_MSG, messages, offset, offset);
+            }
+            return createPullResult(PullStatus.FOUND, messages, offset + messages.size(), offset);
+        });
+        MessageFilter filter = new MessageFilter(null, KEY, null, null, null);
+
+        // the whole range is streamed, beyond the limit of queryMessageByTopic
+        Set<String> msgIds = new HashSet<>();
+        messageService.scanMessageByTopic(TOPIC, 1000, 3000, filter, view -> msgIds.add(view.getMsgId()));
+        assertEquals(4 * 500, msgIds.size());
+
+        // a consumer refusing a message stops the scan
+        AtomicInteger received = new AtomicInteger();
+        messageService.scanMessageByTopic(TOPIC, 1000, 3000, filter, view -> received.incrementAndGet() < 10);
+        assertEquals(10, received.get());
+        // the pull consumer is given back once each scan ends
+        verify(autoCloseConsumerWrapper, times(2)).releaseConsumer(defaultMQPullConsumer);
+    }
+
+    @Test(timeout = 30000)
+    public void testQueryWhileScanStalled() throws Exception {
+        // more queues than the query pool has threads, each holding an endless run of matching messages
+        Set<MessageQueue> messageQueues = new HashSet<>();
+        int queues = Math.max(16, Runtime.getRuntime().availableProcessors() * 2) + 4;
+        for (int queueId = 0; queueId < queues; queueId++) {
+            messageQueues.add(new MessageQueue(TOPIC, "broker-" + queueId % 2, queueId));
+        }
+        when(defaultMQPullConsumer.fetchSubscribeMessageQueues(TOPIC)).thenReturn(messageQueues);
+        when(defaultMQPullConsumer.searchOffset(any(MessageQueue.class), eq(1000L))).thenReturn(0L);
+        when(defaultMQPullConsumer.searchOffset(any(MessageQueue.class), eq(3000L))).thenReturn(Long.MAX_VALUE);
+        when(defaultMQPullConsumer.pull(any(MessageQueue.class), anyString(), anyLong(), anyInt())).thenAnswer(invocation -> {
+            long offset = invocation.getArgument(2);
+            List<MessageExt> messages = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                messages.add(createMessageExt("id" + (offset + i), TOPIC, "body", 1000 + (offset + i) % 2000));
+            }
+            return createPullResult(PullStatus.FOUND, messages, offset + 32, offset);
+        });
+
+        // a client that stops reading: the scan buffer fills up and its queues wait to hand over their matches
+        CountDownLatch stalled = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread scan = new Thread(() -> messageService.scanMessageByTopic(TOPIC, 1000, 3000, MessageFilter.ALL, view -> {
+            stalled.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }));
+        scan.start();
+        try {
+            stalled.await();
+            Thread.sleep(200);
+            assertEquals(2000, messageService.queryMessageByTopic(TOPIC, 1000, 3000).size());
+        } finally {
+            release.countDown();
+            scan.join();
+        }
+    }
+
+    @Test
+    public void testMergeByStoreTimestamp() {
+        List<MessageView> queue1 = messageViews(1, 4, 9);
+        List<MessageView> queue2 = messageViews(7, 2, 3);
+        List<MessageView> result = MessageServiceImpl.mergeByStoreTimestamp(Arrays.asList(queue1, messageViews(), queue2));
+        long[] timestamps = result.stream().mapToLong(MessageView::getStoreTimestamp).toArray();
+        assertTrue(Arrays.equals(new long[] {9, 7, 4, 3, 2, 1}, timestamps));
+    }
+
+    private List<MessageView> messageViews(long... storeTimestamps) {
+        List<MessageView> messageViews = new ArrayList<>();
+        for (long storeTimestamp : storeTimestamps) {
+            messageViews.add(MessageView.fromMessageExt(createMessageExt("id" + storeTimestamp, TOPIC, "body", storeTimestamp)));
+        }
+        return messageViews;
+    }
+
+    @Test
+    public void testQueryMessageByPageBoundaries() throws Exception {
+        // a queue of 1000 messages, the one at offset n stored at 10 * n
+        MessageQueue messageQueue = new MessageQueue(TOPIC, "broker-1", 0);
+        when(defaultMQPullConsumer.fetchSubscribeMessageQueues(TOPIC)).thenReturn(new HashSet<>(Collections.singletonList(messageQueue)));
+        when(defaultMQPullConsumer.searchOffset(eq(messageQueue), anyLong())).thenReturn(0L, 1000L, 0L, 1000L);
+        // the next page is prefetched in the background, so the mode is not stubbed again while it runs
+        AtomicReference<String> boundarySearch = new AtomicReference<>("binary");
+        when(configure.getMessageBoundarySearch()).thenAnswer(invocation -> boundarySearch.get());
+        AtomicInteger singleMessagePulls = new AtomicInteger();
+        when(defaultMQPullConsumer.pull(eq(messageQueue), anyString(), anyLong(), anyInt())).thenAnswer(invocation -> {
+            long offset = invocation.getArgument(2);
+            int maxNums = invocation.getArgument(3);
+            if (maxNums == 1) {
+                singleMessagePulls.incrementAndGet();
+            }
+            List<MessageExt> messages = new ArrayList<>();
+            for (long i = offset; i < Math.min(offset + maxNums, 1000); i++) {
+                MessageExt messageExt = createMessageExt("id" + i, TOPIC, "body", 10 * i);
+                messageExt.setQueueOffset(i);
+                messages.add(messageExt);
+            }
+            if (messages.isEmpty()) {
+                return createPullResult(PullStatus.NO_NEW_MSG, messages, offset, offset);
+            }
+            return createPullResult(PullStatus.FOUND, messages, offset + messages.size(), offset);
+        });
+        MessageQuery query = new MessageQuery();
+        query.setPageNum(1);
+        query.setPageSize(10);
+        query.setTopic(TOPIC);
+        query.setTaskId("");
+        query.setBegin(2000);
+        query.setEnd(5000);
+
+        // offsets 200 to 500 hold the messages stored between 2000 and 5000
+        MessagePage page = messageService.queryMessageByPage(query);
+        assertEquals(301, page.getPage().getTotalElements());
+        assertTrue(singleMessagePulls.get() <= 2 * 11);
+
+        boundarySearch.set("scan");
+        page = messageService.queryMessageByPage(query);
+        assertEquals(301, page.getPage().getTotalElements());
+    }
+
+    @Test
+    public void testQueryMessageByPageReusesOffsetIndex() throws Exception {
+        // a queue of 1000 messages, the one at offset n stored at 10 * n
+        MessageQueue messageQueue = new MessageQueue(TOPIC, "broker-1", 0);
+        when(defaultMQPullConsumer.fetchSubscribeMessageQueues(TOPIC)).thenReturn(new HashSet<>(Collections.singletonList(messageQueue)));
+        when(defaultMQPullConsumer.searchOffset(eq(messageQueue), anyLong())).thenAnswer(invocation -> {
+            long timestamp = invocation.getArgument(1);
+            return timestamp <= 2000 ? 0L : 1000L;
+        });
+        AtomicInteger singleMessagePulls = new AtomicInteger();
+        when(defaultMQPullConsumer.pull(eq(messageQueue), anyString(), anyLong(), anyInt())).thenAnswer(invocation -> {
+            long offset = invocation.getArgument(2);
+            int maxNums = invocation.getArgument(3);
+            if (maxNums == 1) {
+                singleMessagePulls.incrementAndGet();
+            }
+            List<MessageExt> messages = new ArrayList<>();
+            for (long i = offset; i < Math.min(offset + maxNums, 1000); i++) {
+                MessageExt messageExt = createMessageExt("id" + i, TOPIC, "body", 10 * i);
+                messageExt.setQueueOffset(i);
+                messages.add(messageExt);
+            }
+            if (messages.isEmpty()) {
+                return createPullResult(PullStatus.NO_NEW_MSG, messages, offset, offset);
+            }
+            return createPullResult(PullStatus.FOUND, messages, offset + messages.size(), offset);
+        });
+        MessageQuery query = new MessageQuery();
+        query.setPageNum(1);
+        query.setPageSize(10);
+        query.setTopic(TOPIC);
+        query.setTaskId("");
+        query.setBegin(2000);
+        query.setEnd(5000);
+
+        assertEquals(301, messageService.queryMessageByPage(query).getPage().getTotalElements());
+        verify(defaultMQPullConsumer, times(2)).searchOffset(eq(messageQueue), anyLong());
+        int firstQueryPulls = singleMessagePulls.get();
+        assertTrue(firstQueryPulls > 0);
+
+        // another user querying the same window is answered from the offset index
+        assertEquals(301, messageService.queryMessageByPage(query).getPage().getTotalElements());
+        verify(defaultMQPullConsumer, times(2)).searchOffset(eq(messageQueue), anyLong());
+        assertEquals(firstQueryPulls, singleMessagePulls.get());
+    }
+
+    @Test
+    public void testPullQueueOffsets() throws Exception {
+        // two queues of 25 and 40 messages, exported from offset 5 of the first and 30 of the second
+        MessageQueue mq0 = new MessageQueue(TOPIC, "broker-1", 0);
+        MessageQueue mq1 = new MessageQueue(TOPIC, "broker-1", 1);
+        when(defaultMQPullConsumer.pull(any(MessageQueue.class), anyString(), anyLong(), anyInt())).thenAnswer(invocation -> {
+            MessageQueue mq = invocation.getArgument(0);
+            long offset = invocation.getArgument(2);
+            int maxNums = invocation.getArgument(3);
+            List<MessageExt> messages = new ArrayList<>();
+            for (long i = offset; i < Math.min(offset + maxNums, queueSize(mq)); i++) {
+                MessageExt messageExt = createMessageExt(mq.getQueueId() + "-" + i, TOPIC, "body", i);
+                messageExt.setQueueOffset(i);
+                messages.add(messageExt);
+            }
+            if (messages.isEmpty()) {
+                return createPullResult(PullStatus.NO_NEW_MSG, messages, offset, offset);
+            }
+            return createPullResult(PullStatus.FOUND, messages, offset + messages.size(), offset);
+        });
+        List<QueueOffsetInfo> queueOffsets = Arrays.asList(new QueueOffsetInfo(0, 5L, 25L, 5L, 5L, mq0),
+            new QueueOffsetInfo(1, 30L, 40L, 30L, 30L, mq1));
+
+        Set<String> msgIds = Collections.synchronizedSet(new HashSet<>());
+        messageService.pullQueueOffsets(queueOffsets, () -> false, (queueOffset, pullResult) -> {
+            for (MessageExt messageExt : pullResult.getMsgFoundList()) {
+                assertNotNull(messageExt.getBody());
+                msgIds.add(messageExt.getMsgId());
+            }
+            return true;
+        });
+        assertEquals(30, msgIds.size());
+        assertTrue(msgIds.contains("0-5") && msgIds.contains("0-24") && msgIds.contains("1-39"));
+        assertTrue(!msgIds.contains("0-4") && !msgIds.contains("0-25") && !msgIds.contains("1-29"));
+
+        // a sink refusing a batch stops its queue
+        AtomicInteger batches = new AtomicInteger();
+        messageService.pullQueueOffsets(queueOffsets.subList(0, 1), () -> false, (queueOffset, pullResult) -> batches.incrementAndGet() < 0);
+        assertEquals(1, batches.get());
+    }
+
+    @Test
+    public void testPullQueueOffsetsKeepsOffQueryPool() throws Exception {
+        when(defaultMQPullConsumer.pull(any(MessageQueue.class), anyString(), anyLong(), anyInt())).thenAnswer(invocation -> {
+            long offset = invocation.getArgument(2);
+            List<MessageExt> messages = new ArrayList<>();
+            messages.add(createMessageExt("id" + offset, TOPIC, "body", offset));
+            return createPullResult(PullStatus.FOUND, messages, offset + 1, offset);
+        });
+        List<QueueOffsetInfo> queueOffsets = new ArrayList<>();
+        for (int queueId = 0; queueId < 20; queueId++) {
+            queueOffsets.add(new QueueOffsetInfo(queueId, 0L, 8L, 0L, 0L, new MessageQueue(TOPIC, "broker-1", queueId)));
+        }
+
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        Set<Integer> pulling = ConcurrentHashMap.newKeySet();
+        AtomicInteger maxPulling = new AtomicInteger();
+        AtomicInteger batches = new AtomicInteger();
+        messageService.pullQueueOffsets(queueOffsets, () -> false, (queueOffset, pullResult) -> {
+            threads.add(Thread.currentThread().getName());
+            pulling.add(queueOffset.getIdx());
+            maxPulling.accumulateAndGet(pulling.size(), Math::max);
+            batches.incrementAndGet();
+            if (pullResult.getNextBeginOffset() >= queueOffset.getEnd()) {
+                pulling.remove(queueOffset.getIdx());
+            }
+            return true;
+        });
+        assertEquals(20 * 8, batches.get());
+        // an export pulls a few queues at a time, on threads the interactive queries do not wait for
+        assertTrue(maxPulling.get() <= 4);
+        for (String thread : threads) {
+            assertTrue(thread, thread.startsWith("ExportMessage_"));
+        }
+    }
+
+    @Test
+    public void testQueryMessageByPageContinuesFromCursor() throws Exception {
+        // two queues of 25 and 40 messages
+        MessageQueue mq0 = new MessageQueue(TOPIC, "broker-1", 0);
+        MessageQueue mq1 = new MessageQueue(TOPIC, "broker-1", 1);
+        when(defaultMQPullConsumer.fetchSubscribeMessageQueues(TOPIC)).thenReturn(new HashSet<>(Arrays.asList(mq0, mq1)));
+        when(defaultMQPullConsumer.searchOffset(any(MessageQueue.class), anyLong())).thenAnswer(invocation -> {
+            long timestamp = invocation.getArgument(1);
+            return timestamp == 0 ? 0L : queueSize(invocation.getArgument(0));
+        });
+        when(defaultMQPullConsumer.pull(any(MessageQueue.class), anyString(), anyLong(), anyInt())).thenAnswer(invocation -> {
+            MessageQueue mq = invocation.getArgument(0);
+            long offset = invocation.getArgument(2);
+            int maxNums = invocation.getArgument(3);
+            List<MessageExt> messages = new ArrayList<>();
+            for (long i = offset; i < Math.min(offset + maxNums, queueSize(mq)); i++) {
+                MessageExt messageExt = createMessageExt(mq.getQueueId() + "-" + i, TOPIC, "body", i);
+                messageExt.setQueueOffset(i);
+                messages.add(messageExt);
+            }
+            if (messages.isEmpty()) {
+                return createPullResult(PullStatus.NO_NEW_MSG, messages, offset, offset);
+            }
+            return createPullResult(PullStatus.FOUND, messages, offset + messages.size(), offset);
+        });
+
+        // walk the pages one after the other, continuing from the cursor
+        List<List<String>> continued = new ArrayList<>();
+        String taskId = "";
+        for (int pageNum = 1; pageNum <= 7; pageNum++) {
+            MessagePage page = messageService.queryMessageByPage(pageQuery(pageNum, taskId));
+            taskId = page.getTaskId();
+            assertEquals(65, page.getPage().getTotalElements());
+            continued.add(msgIds(page));
+        }
+        assertEquals(5, continued.get(6).size());
+        assertTrue(continued.get(6).contains("1-39"));
+
+        // jump to every page of a fresh query, recomputing the offsets
+        String otherTaskId = messageService.queryMessageByPage(pageQuery(1, "")).getTaskId();
+        for (int pageNum = 7; pageNum >= 2; pageNum--) {
+            MessagePage page = messageService.queryMessageByPage(pageQuery(pageNum, otherTaskId));
+            assertEquals(continued.get(pageNum - 1), msgIds(page));
+        }
+
+        // a page past the end is empty
+        assertTrue(messageService.queryMessageByPage(pageQuery(8, taskId)).getPage().getContent().isEmpty());
+    }
+
+    private long queueSize(MessageQueue mq) {
+        return mq.getQueueId() == 0 ? 25L : 40L;
+    }
+
+    private MessageQuery pageQuery(int pageNum, String taskId) {
+        MessageQuery query = new MessageQuery();
+        query.setPageNum(pageNum);
+        query.setPageSize(10);
+        query.setTopic(TOPIC);
+        query.setTaskId(taskId);
+        query.setBegin(0);
+        query.setEnd(1000);
+        return query;
+    }
+
+    private List<String> msgIds(MessagePage page) {
+        List<String> msgIds = new ArrayList<>();
+        for (MessageView view : page.getPage().getContent()) {
+            msgIds.add(view.getMsgId());
+        }
+        return msgIds;
+    }
+
     @Test
     public void testMessageTrackDetail() throws Exception {
         // Setup
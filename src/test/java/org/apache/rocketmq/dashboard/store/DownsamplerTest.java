@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.store;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class DownsamplerTest {
+
+    private static final long BUCKET = TimeUnit.MINUTES.toMillis(5);
+
+    @Test
+    public void testDownsample() {
+        SeriesBuffer buffer = new SeriesBuffer(SeriesSchema.TOPIC, 16);
+        long start = 1697600100000L;
+        for (int i = 0; i < 7; i++) {
+            buffer.append(start + TimeUnit.MINUTES.toMillis(i), Double.doubleToRawLongBits(10 - i), 100 + i,
+                    Double.doubleToRawLongBits(i), 200 + i);
+        }
+        SeriesView buckets = Downsampler.downsample(buffer.snapshot(), BUCKET);
+        Assert.assertEquals(SeriesSchema.TOPIC_ROLLUP, buckets.getSchema());
+        Assert.assertEquals(2, buckets.size());
+        Assert.assertEquals(start, buckets.getTimestamp(0));
+        Assert.assertEquals(start + BUCKET, buckets.getTimestamp(1));
+
+        Assert.assertEquals(6, buckets.getDouble(0, column(SeriesSchema.TOPIC_IN_TPS, SeriesSchema.Aggregate.MIN)), 0);
+        Assert.assertEquals(10, buckets.getDouble(0, column(SeriesSchema.TOPIC_IN_TPS, SeriesSchema.Aggregate.MAX)), 0);
+        Assert.assertEquals(8, buckets.getDouble(0, column(SeriesSchema.TOPIC_IN_TPS, SeriesSchema.Aggregate.AVG)), 0);
+        Assert.assertEquals(6, buckets.getDouble(0, column(SeriesSchema.TOPIC_IN_TPS, SeriesSchema.Aggregate.LAST)), 0);
+        Assert.assertEquals(100, buckets.getLong(0, column(SeriesSchema.TOPIC_IN_MSG_CNT_TODAY, SeriesSchema.Aggregate.MIN)));
+        Assert.assertEquals(104, buckets.getLong(0, column(SeriesSchema.TOPIC_IN_MSG_CNT_TODAY, SeriesSchema.Aggregate.MAX)));
+        Assert.assertEquals(102, buckets.getDouble(0, column(SeriesSchema.TOPIC_IN_MSG_CNT_TODAY, SeriesSchema.Aggregate.AVG)), 0);
+        Assert.assertEquals(206, buckets.getLong(1, column(SeriesSchema.TOPIC_OUT_MSG_CNT_TODAY, SeriesSchema.Aggregate.LAST)));
+        Assert.assertEquals(5.5, buckets.getDouble(1, column(SeriesSchema.TOPIC_OUT_TPS, SeriesSchema.Aggregate.AVG)), 0);
+        Assert.assertEquals("inTps.min", SeriesSchema.TOPIC_ROLLUP.getColumnName(0));
+        Assert.assertEquals("outMsgCntToday.last", SeriesSchema.TOPIC_ROLLUP.getColumnName(15));
+    }
+
+    @Test
+    public void testDownsampleEmpty() {
+        SeriesView buckets = Downsampler.downsample(SeriesView.empty(SeriesSchema.BROKER), BUCKET);
+        Assert.assertEquals(SeriesSchema.BROKER_ROLLUP, buckets.getSchema());
+        Assert.assertTrue(buckets.isEmpty());
+    }
+
+    private int column(int column, SeriesSchema.Aggregate aggregate) {
+        return SeriesSchema.rollupColumn(column, aggregate);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.store;
+
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.dashboard.model.MessagePageCursor;
+import org.apache.rocketmq.dashboard.model.QueueOffsetInfo;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+public class MessageCursorStoreTest {
+
+    private static final String TASK_ID = "0A9A003F00002A9F0000000000000319";
+
+    private File dir;
+
+    @Before
+    public void init() {
+        dir = new File(System.getProperty("java.io.tmpdir"), "rocketmq-dashboard-cursor-test-" + System.nanoTime());
+    }
+
+    @After
+    public void after() {
+        FileSystemUtils.deleteRecursively(dir);
+    }
+
+    @Test
+    public void testPutAndGet() {
+        MessageCursorStore store = new MessageCursorStore(dir, TimeUnit.MINUTES.toMillis(60));
+        Assert.assertNull(store.get(TASK_ID));
+        store.put(TASK_ID, cursor());
+        Assert.assertEquals(2, store.get(TASK_ID).getPageNum());
+
+        // a fresh store instance reads the cursor back from disk
+        MessagePageCursor cursor = new MessageCursorStore(dir, TimeUnit.MINUTES.toMillis(60)).get(TASK_ID);
+        Assert.assertEquals(2, cursor.getPageNum());
+        Assert.assertEquals(10, cursor.getPageSize());
+        Assert.assertEquals(1, cursor.getNextQueue());
+        QueueOffsetInfo info = cursor.getQueueOffsetInfos().get(0);
+        Assert.assertEquals(15L, info.getStartOffset().longValue());
+        Assert.assertEquals(25L, info.getEndOffset().longValue());
+        Assert.assertEquals(new MessageQueue("topic_test", "broker-a", 0), info.getMessageQueues());
+    }
+
+    @Test
+    public void testInvalidTaskId() {
+        MessageCursorStore store = new MessageCursorStore(dir, TimeUnit.MINUTES.toMillis(60));
+        Assert.assertNull(store.get(null));
+        Assert.assertNull(store.get("../" + TASK_ID));
+        try {
+            store.put("../" + TASK_ID, cursor());
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertFalse(dir.exists());
+        }
+    }
+
+    @Test
+    public void testExpiredCursor() {
+        new MessageCursorStore(dir, TimeUnit.MINUTES.toMillis(60)).put(TASK_ID, cursor());
+        File file = new File(dir, TASK_ID + ".json");
+        Assert.assertTrue(file.setLastModified(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(90)));
+
+        MessageCursorStore store = new MessageCursorStore(dir, TimeUnit.MINUTES.toMillis(60));
+        Assert.assertNull(store.get(TASK_ID));
+        // the next write purges the expired file
+        store.put("0A9A003F00002A9F0000000000000320", cursor());
+        Assert.assertFalse(file.exists());
+    }
+
+    private MessagePageCursor cursor() {
+        MessageQueue messageQueue = new MessageQueue("topic_test", "broker-a", 0);
+        return new MessagePageCursor(2, 10, 1,
+                Collections.singletonList(new QueueOffsetInfo(0, 0L, 100L, 15L, 25L, messageQueue)));
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.store;
+
+import com.github.luben.zstd.ZstdInputStream;
+import org.apache.rocketmq.common.message.MessageDecoder;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+public class MessageExportFileTest {
+
+    private File dir;
+
+    @Before
+    public void init() {
+        dir = new File(System.getProperty("java.io.tmpdir"), "rocketmq-dashboard-export-test-" + System.nanoTime());
+        Assert.assertTrue(dir.mkdirs());
+    }
+
+    @After
+    public void after() {
+        FileSystemUtils.deleteRecursively(dir);
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() throws Exception {
+        File target = new File(dir, "export" + MessageExportFile.extension(MessageExportFile.FORMAT_NDJSON, MessageExportFile.COMPRESSION_GZIP));
+        Assert.assertEquals("export.ndjson.gz", target.getName());
+        long checkpoint;
+        try (MessageExportFile file = MessageExportFile.open(target, 0, MessageExportFile.FORMAT_NDJSON, MessageExportFile.COMPRESSION_GZIP)) {
+            file.write(message(0));
+            file.write(message(1));
+            checkpoint = file.checkpoint();
+            file.write(message(2));
+            // a crash before the next checkpoint
+        }
+        Assert.assertEquals(2, readLines(target, checkpoint).size());
+
+        try (MessageExportFile file = MessageExportFile.open(target, checkpoint, MessageExportFile.FORMAT_NDJSON, MessageExportFile.COMPRESSION_GZIP)) {
+            file.write(message(2));
+            file.write(message(3));
+            checkpoint = file.checkpoint();
+        }
+        Assert.assertEquals(checkpoint, target.length());
+        List<String> lines = readLines(target, checkpoint);
+        Assert.assertEquals(4, lines.size());
+        Assert.assertTrue(lines.get(2).contains("\"msgId\":\"msg-2\""));
+        Assert.assertTrue(lines.get(3).contains("\"messageBody\":\"body-3\""));
+    }
+
+    @Test
+    public void testBinaryZstd() throws Exception {
+        File target = new File(dir, "export" + MessageExportFile.extension(MessageExportFile.FORMAT_BINARY, MessageExportFile.COMPRESSION_ZSTD));
+        Assert.assertEquals("export.bin.zst", target.getName());
+        try (MessageExportFile file = MessageExportFile.open(target, 0, MessageExportFile.FORMAT_BINARY, MessageExportFile.COMPRESSION_ZSTD)) {
+            file.write(message(0));
+            file.checkpoint();
+            file.write(message(1));
+            file.write(message(2));
+            file.checkpoint();
+        }
+        byte[] bytes;
+        try (InputStream in = new ZstdInputStream(new FileInputStream(target))) {
+            bytes = in.readAllBytes();
+        }
+        List<MessageExt> messages = MessageDecoder.decodes(ByteBuffer.wrap(bytes));
+        Assert.assertEquals(3, messages.size());
+        Assert.assertEquals("body-2", new String(messages.get(2).getBody(), StandardCharsets.UTF_8));
+        Assert.assertEquals(2, messages.get(2).getQueueOffset());
+    }
+
+    private List<String> readLines(File target, long size) throws Exception {
+        Assert.assertTrue(target.length() >= size);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+            new GZIPInputStream(new LimitedInputStream(new FileInputStream(target), size)), StandardCharsets.UTF_8))) {
+            return reader.lines().collect(Collectors.toList());
+        }
+    }
+
+    private MessageExt message(long queueOffset) {
+        MessageExt messageExt = new MessageExt();
+        messageExt.setTopic("topic_test");
+        messageExt.setMsgId("msg-" + queueOffset);
+        messageExt.setQueueOffset(queueOffset);
+        messageExt.setBody(("body-" + queueOffset).getBytes(StandardCharsets.UTF_8));
+        messageExt.setBornHost(new InetSocketAddress("127.0.0.1", 10000));
+        messageExt.setStoreHost(new InetSocketAddress("127.0.0.1", 10911));
+        messageExt.setBornTimestamp(1000 + queueOffset);
+        messageExt.setStoreTimestamp(2000 + queueOffset);
+        return messageExt;
+    }
+
+    /**
+     * Reads a file up to a checkpoint, like a download does
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long remaining) {
+            super(in);
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            remaining--;
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.store;
+
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class QueueOffsetIndexTest {
+
+    private final MessageQueue mq = new MessageQueue("topic_test", "broker-a", 0);
+
+    private final QueueOffsetIndex index = new QueueOffsetIndex(16, 8, 60_000);
+
+    @Test
+    public void testLookupFromAdjacentAnchors() {
+        // offsets 10 to 14 stored at 100, 110, 120, 120, 140
+        index.recordAll(mq, messages(10, 100, 110, 120, 120, 140));
+        Assert.assertEquals(Long.valueOf(12), index.lookup(mq, 115));
+        Assert.assertEquals(Long.valueOf(12), index.lookup(mq, 120));
+        Assert.assertEquals(Long.valueOf(14), index.lookup(mq, 121));
+        Assert.assertEquals(Long.valueOf(110), index.timestampAt(mq, 11));
+        // nothing known before offset 10 or after offset 14
+        Assert.assertNull(index.lookup(mq, 100));
+        Assert.assertNull(index.lookup(mq, 141));
+        Assert.assertNull(index.lookup(new MessageQueue("topic_test", "broker-a", 1), 115));
+    }
+
+    @Test
+    public void testRecordSearch() {
+        index.recordSearch(mq, 1000, 42);
+        Assert.assertEquals(Long.valueOf(42), index.lookup(mq, 1000));
+        // a search for now may return another offset a moment later
+        long now = System.currentTimeMillis();
+        index.recordSearch(mq, now, 43);
+        Assert.assertNull(index.lookup(mq, now));
+
+        index.invalidate(mq);
+        Assert.assertNull(index.lookup(mq, 1000));
+    }
+
+    @Test
+    public void testNarrow() {
+        index.record(mq, 20, 200);
+        index.record(mq, 50, 500);
+        index.record(mq, 80, 800);
+        Assert.assertArrayEquals(new long[] {51, 80}, index.narrow(mq, 0, 100, timestamp -> timestamp >= 600));
+        Assert.assertArrayEquals(new long[] {21, 50}, index.narrow(mq, 0, 100, timestamp -> timestamp > 200));
+        Assert.assertArrayEquals(new long[] {30, 50}, index.narrow(mq, 30, 100, timestamp -> timestamp >= 300));
+        Assert.assertArrayEquals(new long[] {0, 20}, index.narrow(mq, 0, 100, timestamp -> timestamp >= 100));
+    }
+
+    @Test
+    public void testAnchorsAreBounded() {
+        index.recordAll(mq, messages(0, 0, 10, 20, 30, 40, 50, 60, 70, 80, 90));
+        // the 8 most recent offsets are kept
+        Assert.assertNull(index.timestampAt(mq, 1));
+        Assert.assertEquals(Long.valueOf(20), index.timestampAt(mq, 2));
+        Assert.assertEquals(Long.valueOf(9), index.lookup(mq, 85));
+    }
+
+    private List<MessageExt> messages(long firstOffset, long... storeTimestamps) {
+        List<MessageExt> messages = new ArrayList<>();
+        for (int i = 0; i < storeTimestamps.length; i++) {
+            MessageExt messageExt = new MessageExt();
+            messageExt.setQueueOffset(firstOffset + i);
+            messageExt.setStoreTimestamp(storeTimestamps[i]);
+            messages.add(messageExt);
+        }
+        return messages;
+    }
+}
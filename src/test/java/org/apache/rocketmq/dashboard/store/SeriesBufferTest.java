@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.store;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SeriesBufferTest {
+
+    @Test
+    public void testUnflushedAcrossWrap() {
+        SeriesBuffer buffer = new SeriesBuffer(SeriesSchema.TOPIC, 4);
+        for (int i = 0; i < 3; i++) {
+            buffer.append(i, Double.doubleToRawLongBits(i * 1.5), i, Double.doubleToRawLongBits(i), i * 10);
+        }
+        SeriesView pending = buffer.unflushed();
+        Assert.assertEquals(3, pending.size());
+        Assert.assertEquals(3.0, pending.getDouble(2, SeriesSchema.TOPIC_IN_TPS), 0);
+        buffer.markFlushed(buffer.getNextSequence());
+        Assert.assertTrue(buffer.unflushed().isEmpty());
+
+        for (int i = 3; i < 6; i++) {
+            buffer.append(i, Double.doubleToRawLongBits(i * 1.5), i, Double.doubleToRawLongBits(i), i * 10);
+        }
+        pending = buffer.unflushed();
+        Assert.assertEquals(3, pending.size());
+        Assert.assertEquals(3, pending.getTimestamp(0));
+        Assert.assertEquals(5, pending.getTimestamp(2));
+        Assert.assertEquals(50, buffer.latestRaw(SeriesSchema.TOPIC_OUT_MSG_CNT_TODAY, -1));
+
+        SeriesView all = buffer.snapshot();
+        Assert.assertEquals(4, all.size());
+        Assert.assertEquals(2, all.getTimestamp(0));
+        Assert.assertEquals("5,7.50000,5,5.00000,50", all.formatRow(3));
+    }
+
+    @Test
+    public void testLostBeforeFlush() {
+        SeriesBuffer buffer = new SeriesBuffer(SeriesSchema.BROKER, 2);
+        Assert.assertEquals(-1, buffer.latestRaw(SeriesSchema.BROKER_TPS, -1));
+        for (int i = 0; i < 5; i++) {
+            buffer.append(i, Double.doubleToRawLongBits(i));
+        }
+        Assert.assertEquals(3, buffer.lostSinceFlush());
+        SeriesView pending = buffer.unflushed();
+        Assert.assertEquals(2, pending.size());
+        Assert.assertEquals(3, pending.getTimestamp(0));
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.store;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+public class TimeSeriesStoreTest {
+
+    private static final String DAY = LocalDate.now().toString();
+
+    private static final String SEALED_DAY = "2023-10-18";
+
+    private File rootDir;
+
+    private TimeSeriesStore store;
+
+    @Before
+    public void init() {
+        rootDir = new File(System.getProperty("java.io.tmpdir"), "rocketmq-dashboard-store-test-" + System.nanoTime());
+        store = new TimeSeriesStore(rootDir);
+    }
+
+    @After
+    public void after() {
+        FileSystemUtils.deleteRecursively(rootDir);
+    }
+
+    @Test
+    public void testAppendAndRead() throws Exception {
+        Assert.assertFalse(store.contains(DAY, SeriesSchema.TOPIC));
+        store.append(DAY, "topic_test", points(SeriesSchema.TOPIC, "1697600000000,12.34500,99,1.00000,42"));
+        store.append(DAY, "topic_test", points(SeriesSchema.TOPIC, "1697600060000,2.50000,100,0.50000,43"));
+        store.append(DAY, "%RETRY%group", points(SeriesSchema.TOPIC, "1697600000000,0.00000,0,0.00000,0"));
+
+        Assert.assertTrue(store.contains(DAY, SeriesSchema.TOPIC));
+        SeriesView records = store.read(DAY, SeriesSchema.TOPIC, "topic_test");
+        Assert.assertEquals(2, records.size());
+        Assert.assertEquals("1697600000000,12.34500,99,1.00000,42", records.formatRow(0));
+        Assert.assertEquals("1697600060000,2.50000,100,0.50000,43", records.formatRow(1));
+        Assert.assertEquals(100, records.getLong(1, SeriesSchema.TOPIC_IN_MSG_CNT_TODAY));
+
+        // a fresh store instance reads the same data back from disk
+        Map<String, SeriesView> all = new TimeSeriesStore(rootDir).readAll(DAY, SeriesSchema.TOPIC);
+        Assert.assertEquals(2, all.size());
+        Assert.assertEquals(1, all.get("%RETRY%group").size());
+        Assert.assertTrue(store.read(DAY, SeriesSchema.TOPIC, "unknown").isEmpty());
+    }
+
+    @Test
+    public void testTornRecordIsDropped() throws Exception {
+        store.append(DAY, "broker-a:0", points(SeriesSchema.BROKER, "1697600000000,1.00000"));
+        File segment = new File(new File(new File(rootDir, DAY), SeriesSchema.BROKER.getDirName()), "0.seg");
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+            raf.seek(raf.length());
+            raf.write(new byte[] {1, 2, 3});
+        }
+        Assert.assertEquals(1, store.read(DAY, SeriesSchema.BROKER, "broker-a:0").size());
+
+        store.append(DAY, "broker-a:0", points(SeriesSchema.BROKER, "1697600060000,2.00000"));
+        SeriesView records = store.read(DAY, SeriesSchema.BROKER, "broker-a:0");
+        Assert.assertEquals(2, records.size());
+        Assert.assertEquals("1697600060000,2.00000", records.formatRow(1));
+    }
+
+    @Test
+    public void testSealedDayIsPackedAndMapped() throws Exception {
+        Assert.assertTrue(store.isSealed(SEALED_DAY));
+        Assert.assertFalse(store.isSealed(DAY));
+        store.append(SEALED_DAY, "topic_a", points(SeriesSchema.TOPIC,
+                "1697600000000,1.00000,1,1.00000,1", "1697600060000,2.00000,2,2.00000,2"));
+        store.append(SEALED_DAY, "topic_b", points(SeriesSchema.TOPIC, "1697600000000,3.00000,3,3.00000,3"));
+        File dir = new File(new File(rootDir, SEALED_DAY), SeriesSchema.TOPIC.getDirName());
+
+        SeriesView topicA = store.read(SEALED_DAY, SeriesSchema.TOPIC, "topic_a");
+        Assert.assertEquals(2, topicA.size());
+        Assert.assertEquals("1697600060000,2.00000,2,2.00000,2", topicA.formatRow(1));
+        Assert.assertTrue(new File(dir, PackedDay.PACKED_FILE).exists());
+        Assert.assertFalse(new File(dir, SeriesIndex.INDEX_FILE).exists());
+        Assert.assertTrue(store.contains(SEALED_DAY, SeriesSchema.TOPIC));
+
+        // the packed day is immutable and readable by a fresh store
+        store.append(SEALED_DAY, "topic_b", points(SeriesSchema.TOPIC, "1697600060000,4.00000,4,4.00000,4"));
+        Map<String, SeriesView> all = new TimeSeriesStore(rootDir).readAll(SEALED_DAY, SeriesSchema.TOPIC);
+        Assert.assertEquals(2, all.size());
+        Assert.assertEquals(1, all.get("topic_b").size());
+        Assert.assertTrue(store.read(SEALED_DAY, SeriesSchema.TOPIC, "topic_c").isEmpty());
+    }
+
+    @Test
+    public void testListAndDeleteDays() throws Exception {
+        store.append(DAY, "topic_a", points(SeriesSchema.TOPIC, "1697600000000,1.00000,1,1.00000,1"));
+        store.append(SEALED_DAY, "topic_a", points(SeriesSchema.TOPIC, "1697600000000,1.00000,1,1.00000,1"));
+        Assert.assertEquals(1, store.read(SEALED_DAY, SeriesSchema.TOPIC, "topic_a").size());
+        Assert.assertTrue(new File(rootDir, "not-a-day").mkdirs());
+        Assert.assertEquals(Arrays.asList(SEALED_DAY, DAY), store.listDays());
+
+        store.delete(SEALED_DAY);
+        Assert.assertEquals(Collections.singletonList(DAY), store.listDays());
+        Assert.assertFalse(store.contains(SEALED_DAY, SeriesSchema.TOPIC));
+        Assert.assertTrue(store.read(SEALED_DAY, SeriesSchema.TOPIC, "topic_a").isEmpty());
+    }
+
+    private SeriesView points(SeriesSchema schema, String... rows) {
+        SeriesBuffer buffer = new SeriesBuffer(schema, rows.length);
+        for (String row : rows) {
+            buffer.appendRecord(schema.parseRow(row));
+        }
+        return buffer.snapshot();
+    }
+}
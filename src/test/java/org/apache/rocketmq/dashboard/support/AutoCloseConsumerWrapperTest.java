@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.support;
+
+import org.apache.rocketmq.acl.common.AclClientRPCHook;
+import org.apache.rocketmq.acl.common.SessionCredentials;
+import org.apache.rocketmq.client.consumer.DefaultMQPullConsumer;
+import org.apache.rocketmq.remoting.RPCHook;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class AutoCloseConsumerWrapperTest {
+
+    private final DefaultMQPullConsumer mockConsumer = mock(DefaultMQPullConsumer.class);
+
+    private long idleTimeoutMillis = 60_000;
+
+    private final AutoCloseConsumerWrapper wrapper = new AutoCloseConsumerWrapper() {
+        @Override
+        protected DefaultMQPullConsumer createNewConsumer(RPCHook rpcHook, Boolean useTLS) {
+            return mockConsumer;
+        }
+
+        @Override
+        protected int poolSize() {
+            return 1;
+        }
+
+        @Override
+        protected long idleTimeoutMillis() {
+            return idleTimeoutMillis;
+        }
+    };
+
+    @Test
+    public void testKeyConsumersByCredentialsAndTls() throws Exception {
+        AutoCloseConsumerWrapper keyedWrapper = new AutoCloseConsumerWrapper() {
+            @Override
+            protected DefaultMQPullConsumer createNewConsumer(RPCHook rpcHook, Boolean useTLS) {
+                return mock(DefaultMQPullConsumer.class);
+            }
+
+            @Override
+            protected int poolSize() {
+                return 1;
+            }
+        };
+        try {
+            DefaultMQPullConsumer first = keyedWrapper.getConsumer(new AclClientRPCHook(new SessionCredentials("ak", "sk")), false);
+            Assert.assertSame(first, keyedWrapper.getConsumer(new AclClientRPCHook(new SessionCredentials("ak", "sk")), false));
+            Assert.assertNotSame(first, keyedWrapper.getConsumer(new AclClientRPCHook(new SessionCredentials("ak", "sk2")), false));
+            Assert.assertNotSame(first, keyedWrapper.getConsumer(new AclClientRPCHook(new SessionCredentials("ak", "sk")), true));
+            Assert.assertEquals(3, keyedWrapper.getStats().size());
+        } finally {
+            keyedWrapper.destroy();
+        }
+    }
+
+    @Test
+    public void testLeasedConsumerOutlivesIdleTimeout() throws Exception {
+        RPCHook rpcHook = mock(RPCHook.class);
+        DefaultMQPullConsumer scan = wrapper.getConsumer(rpcHook, false);
+        DefaultMQPullConsumer export = wrapper.getConsumer(rpcHook, false);
+        Assert.assertSame(scan, export);
+
+        // both holders wait on their clients for longer than the idle timeout
+        idleTimeoutMillis = 0;
+        Thread.sleep(5);
+        wrapper.checkAndCloseIdleConsumer();
+        verify(mockConsumer, never()).shutdown();
+
+        wrapper.releaseConsumer(scan);
+        Thread.sleep(5);
+        wrapper.checkAndCloseIdleConsumer();
+        verify(mockConsumer, never()).shutdown();
+
+        wrapper.releaseConsumer(export);
+        Thread.sleep(5);
+        wrapper.checkAndCloseIdleConsumer();
+        verify(mockConsumer).shutdown();
+        wrapper.destroy();
+    }
+
+    @Test
+    public void testDestroyClosesLeasedConsumer() throws Exception {
+        wrapper.getConsumer(null, false);
+        wrapper.destroy();
+        verify(mockConsumer).shutdown();
+    }
+}
@@ -17,19 +17,29 @@
 
 package org.apache.rocketmq.dashboard.task;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.rocketmq.common.MixAll;
+import org.apache.rocketmq.common.message.MessageQueue;
 import org.apache.rocketmq.dashboard.BaseTest;
+import org.apache.rocketmq.dashboard.admin.BrokerFanOut;
 import org.apache.rocketmq.dashboard.config.CollectExecutorConfig;
 import org.apache.rocketmq.dashboard.config.RMQConfigure;
 import org.apache.rocketmq.dashboard.service.impl.DashboardCollectServiceImpl;
+import org.apache.rocketmq.dashboard.store.RollupTier;
+import org.apache.rocketmq.dashboard.store.SeriesBuffer;
+import org.apache.rocketmq.dashboard.store.SeriesSchema;
+import org.apache.rocketmq.dashboard.store.SeriesView;
 import org.apache.rocketmq.dashboard.util.JsonUtil;
 import org.apache.rocketmq.dashboard.util.MockObjectUtil;
+import org.apache.rocketmq.remoting.protocol.admin.ConsumeStats;
+import org.apache.rocketmq.remoting.protocol.admin.OffsetWrapper;
 import org.apache.rocketmq.remoting.protocol.body.BrokerStatsData;
 import org.apache.rocketmq.remoting.protocol.body.ClusterInfo;
+import org.apache.rocketmq.remoting.protocol.body.ConsumeStatsList;
 import org.apache.rocketmq.remoting.protocol.body.GroupList;
 import org.apache.rocketmq.remoting.protocol.body.KVTable;
 import org.apache.rocketmq.remoting.protocol.body.TopicList;
@@ -42,10 +52,15 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.Spy;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
 
 import java.io.File;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -53,9 +68,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class DashboardCollectTaskTest extends BaseTest {
@@ -75,24 +96,44 @@ public class DashboardCollectTaskTest extends BaseTest {
     @Mock
     private ExecutorService collectExecutor;
 
+    @Spy
+    private BrokerTopicStatsCollector brokerTopicStatsCollector;
+
+    @Spy
+    private TopicCollectScheduler topicCollectScheduler;
+
+    @Spy
+    private BrokerFanOut brokerFanOut;
+
+    private CollectExecutorConfig collectExecutorConfig = new CollectExecutorConfig();
+
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     private int taskExecuteNum = 10;
 
     private File brokerFile;
 
     private File topicFile;
 
+    private File storeDir;
+
+    private String nowDateStr;
+
     @Before
     public void init() throws Exception {
         MockitoAnnotations.initMocks(this);
         when(rmqConfigure.getDashboardCollectData()).thenReturn("/tmp/rocketmq-console/test/data");
+        when(rmqConfigure.getDashboardCollectDeadlineMillis()).thenReturn(2000L);
         ClusterInfo clusterInfo = MockObjectUtil.createClusterInfo();
         when(mqAdminExt.examineBrokerClusterInfo()).thenReturn(clusterInfo);
         String dataLocationPath = rmqConfigure.getDashboardCollectData();
         DateFormat format = new SimpleDateFormat("yyyy-MM-dd");
-        String nowDateStr = format.format(new Date());
+        nowDateStr = format.format(new Date());
         brokerFile = new File(dataLocationPath + nowDateStr + ".json");
         topicFile = new File(dataLocationPath + nowDateStr + "_topic" + ".json");
+        storeDir = new File(dataLocationPath + File.separator + "store");
         autoInjection();
+        ReflectionTestUtils.setField(dashboardCollectService, "configure", rmqConfigure);
     }
 
     @Test
@@ -139,7 +180,7 @@ public class DashboardCollectTaskTest extends BaseTest {
         config.setKeepAliveTime(3000);
         ExecutorService collectExecutor = config.collectExecutor(config);
         for (int i = 0; i < taskExecuteNum; i++) {
-            CollectTaskRunnble collectTask = new CollectTaskRunnble("topic_test" + i, mqAdminExt, dashboardCollectService);
+            CollectTaskRunnble collectTask = new CollectTaskRunnble("topic_test" + i, mqAdminExt, dashboardCollectService, brokerFanOut);
             collectExecutor.submit(collectTask);
         }
         collectExecutor.shutdown();
@@ -149,15 +190,65 @@ public class DashboardCollectTaskTest extends BaseTest {
             loop = !collectExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MINUTES);
         }
         while (loop);
-        LoadingCache<String, List<String>> map = dashboardCollectService.getTopicMap();
+        LoadingCache<String, SeriesBuffer> map = dashboardCollectService.getTopicMap();
         Assert.assertEquals(map.size(), taskExecuteNum);
         dashboardCollectTask.saveData();
-        Assert.assertEquals(topicFile.exists(), true);
-        Map<String, List<String>> topicData =
-                JsonUtil.string2Obj(MixAll.file2String(topicFile),
-                        new TypeReference<Map<String, List<String>>>() {
-                        });
+        Assert.assertEquals(storeDir.exists(), true);
+        Map<String, List<String>> topicData = dashboardCollectService.getTopicCache(nowDateStr);
         Assert.assertEquals(topicData.size(), taskExecuteNum);
+        Assert.assertEquals(topicData.get("topic_test0").size(), 1);
+
+        // a second flush only appends the points collected since the previous one
+        dashboardCollectTask.saveData();
+        Assert.assertEquals(dashboardCollectService.getTopicCache(nowDateStr).get("topic_test0").size(), 1);
+    }
+
+    @Test
+    public void testCollectTopicByBroker() throws Exception {
+        TopicList topicList = new TopicList();
+        topicList.setTopicList(Sets.newHashSet("topic_test", "topic_idle", "%RETRY%group_test"));
+        when(mqAdminExt.fetchAllTopicList()).thenReturn(topicList);
+        when(mqAdminExt.fetchConsumeStatsInBroker(anyString(), anyBoolean(), anyLong()))
+                .thenReturn(createConsumeStatsList(100, 40))
+                .thenReturn(createConsumeStatsList(160, 100));
+        when(rmqConfigure.isEnableDashBoardCollect()).thenReturn(true);
+        when(rmqConfigure.getDashboardCollectMode()).thenReturn("broker");
+        when(rmqConfigure.getTimeoutMillis()).thenReturn(3000L);
+        when(rmqConfigure.getDashboardQueueLagGroups()).thenReturn(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ReflectionTestUtils.setField(brokerTopicStatsCollector, "collectExecutor", executor);
+        ReflectionTestUtils.setField(topicCollectScheduler, "collectExecutor", executor);
+        try {
+            dashboardCollectTask.collectTopic();
+            dashboardCollectTask.collectTopic();
+        } finally {
+            executor.shutdown();
+        }
+
+        // one call per broker and round, the stats of the topic are derived from the offsets
+        verify(mqAdminExt, times(2)).fetchConsumeStatsInBroker(anyString(), anyBoolean(), anyLong());
+        verify(mqAdminExt, never()).viewBrokerStatsData(anyString(), anyString(), anyString());
+        SeriesBuffer buffer = dashboardCollectService.getTopicMap().get("topic_test");
+        Assert.assertEquals(2, buffer.size());
+        Assert.assertEquals(60, buffer.latestRaw(SeriesSchema.TOPIC_IN_MSG_CNT_TODAY, 0));
+        Assert.assertEquals(60, buffer.latestRaw(SeriesSchema.TOPIC_OUT_MSG_CNT_TODAY, 0));
+        Assert.assertEquals(1.5, Double.longBitsToDouble(buffer.latestRaw(SeriesSchema.TOPIC_OUT_TPS, 0)), 0);
+        // a topic without consumer group is collected on its own
+        Assert.assertNull(dashboardCollectService.getTopicMap().getIfPresent("topic_idle"));
+        verify(mqAdminExt, times(2)).examineTopicRouteInfo("topic_idle");
+        verify(mqAdminExt, never()).examineTopicRouteInfo("topic_test");
+
+        // the same stats give the lag of the group, and of its queues as it is among the groups with the most lag
+        SeriesBuffer groupBuffer = dashboardCollectService.getGroupMap().get("group_test");
+        Assert.assertEquals(2, groupBuffer.size());
+        Assert.assertEquals(120, groupBuffer.latestRaw(SeriesSchema.GROUP_LAG, 0));
+        Assert.assertEquals(3.0, Double.longBitsToDouble(groupBuffer.latestRaw(SeriesSchema.GROUP_CONSUME_TPS, 0)), 0);
+        Assert.assertEquals(4, dashboardCollectService.getQueueMap().size());
+        SeriesBuffer queueBuffer = dashboardCollectService.getQueueMap().get("group_test@topic_test@broker-a@1");
+        Assert.assertEquals(30, queueBuffer.latestRaw(SeriesSchema.QUEUE_LAG, 0));
+        dashboardCollectTask.saveData();
+        Assert.assertEquals(2, dashboardCollectService.getSeries(nowDateStr, SeriesSchema.GROUP, "group_test").size());
+        Assert.assertEquals(2, dashboardCollectService.getSeries(nowDateStr, SeriesSchema.QUEUE).get("group_test@topic_test@broker-a@1").size());
     }
 
     @Test
@@ -186,17 +277,82 @@ public class DashboardCollectTaskTest extends BaseTest {
         for (int i = 0; i < taskExecuteNum; i++) {
             dashboardCollectTask.collectBroker();
         }
-        LoadingCache<String, List<String>> map = dashboardCollectService.getBrokerMap();
+        LoadingCache<String, SeriesBuffer> map = dashboardCollectService.getBrokerMap();
         Assert.assertEquals(map.size(), 1);
         Assert.assertEquals(map.get("broker-a" + ":" + MixAll.MASTER_ID).size(), taskExecuteNum);
         mockBrokerFileExistBeforeSaveData();
         dashboardCollectTask.saveData();
-        Assert.assertEquals(brokerFile.exists(), true);
-        Map<String, List<String>> brokerData =
-                JsonUtil.string2Obj(MixAll.file2String(brokerFile),
-                        new TypeReference<Map<String, List<String>>>() {
-                        });
+        Assert.assertEquals(storeDir.exists(), true);
+        Map<String, List<String>> brokerData = dashboardCollectService.getBrokerCache(nowDateStr);
         Assert.assertEquals(brokerData.get("broker-a" + ":" + MixAll.MASTER_ID).size(), taskExecuteNum + 2);
+        Assert.assertEquals(brokerData.get("broker-b" + ":" + MixAll.MASTER_ID).size(), 2);
+    }
+
+    @Test
+    public void testCompactData() throws Exception {
+        LocalDate sealedDay = LocalDate.now().minusDays(3);
+        long dayStart = sealedDay.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        List<String> rows = Lists.newArrayList();
+        for (int i = 0; i < 30; i++) {
+            rows.add((dayStart + TimeUnit.MINUTES.toMillis(i)) + "," + i);
+        }
+        Map<String, List<String>> map = new HashMap<>();
+        map.put("broker-a:0", rows);
+        File legacyFile = new File(rmqConfigure.getDashboardCollectData() + sealedDay + ".json");
+        MixAll.string2File(JsonUtil.obj2String(map), legacyFile.getAbsolutePath());
+        when(rmqConfigure.getDashboardRawRetentionDays()).thenReturn(1);
+        when(rmqConfigure.isEnableDashBoardCollect()).thenReturn(true);
+
+        dashboardCollectTask.compactData();
+
+        Assert.assertFalse(legacyFile.exists());
+        // the raw minutes are past their retention, the aggregates are kept
+        Assert.assertFalse(new File(storeDir, sealedDay.toString()).exists());
+        long dayEnd = dayStart + TimeUnit.DAYS.toMillis(1) - 1;
+        SeriesView buckets = dashboardCollectService.querySeries(RollupTier.FIVE_MINUTES, SeriesSchema.BROKER, "broker-a:0", dayStart, dayEnd);
+        Assert.assertEquals(6, buckets.size());
+        Assert.assertEquals(0, buckets.getDouble(0, SeriesSchema.rollupColumn(SeriesSchema.BROKER_TPS, SeriesSchema.Aggregate.MIN)), 0);
+        Assert.assertEquals(4, buckets.getDouble(0, SeriesSchema.rollupColumn(SeriesSchema.BROKER_TPS, SeriesSchema.Aggregate.MAX)), 0);
+        Assert.assertEquals(2, buckets.getDouble(0, SeriesSchema.rollupColumn(SeriesSchema.BROKER_TPS, SeriesSchema.Aggregate.AVG)), 0);
+        Assert.assertEquals(29, buckets.getDouble(5, SeriesSchema.rollupColumn(SeriesSchema.BROKER_TPS, SeriesSchema.Aggregate.LAST)), 0);
+        Assert.assertEquals(1, dashboardCollectService.querySeries(RollupTier.ONE_HOUR, SeriesSchema.BROKER, "broker-a:0", dayStart, dayEnd).size());
+        Assert.assertEquals(RollupTier.FIVE_MINUTES, dashboardCollectService.selectTier(dayStart, dayEnd, 1000));
+        Assert.assertEquals(RollupTier.ONE_HOUR, dashboardCollectService.selectTier(dayStart, dayStart + TimeUnit.DAYS.toMillis(30), 1000));
+    }
+
+    @Test
+    public void testReadDayPastRawRetention() throws Exception {
+        LocalDate oldDay = LocalDate.now().minusDays(8);
+        long dayStart = oldDay.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        List<String> brokerRows = Lists.newArrayList();
+        List<String> topicRows = Lists.newArrayList();
+        for (int i = 0; i < 10; i++) {
+            long timestamp = dayStart + TimeUnit.MINUTES.toMillis(i);
+            brokerRows.add(timestamp + "," + i);
+            topicRows.add(timestamp + "," + i + ",100" + i + ",0.5,50" + i);
+        }
+        File brokerLegacyFile = new File(rmqConfigure.getDashboardCollectData() + oldDay + ".json");
+        File topicLegacyFile = new File(rmqConfigure.getDashboardCollectData() + oldDay + "_topic.json");
+        MixAll.string2File(JsonUtil.obj2String(Collections.singletonMap("broker-a:0", brokerRows)), brokerLegacyFile.getAbsolutePath());
+        MixAll.string2File(JsonUtil.obj2String(Collections.singletonMap("topic_test", topicRows)), topicLegacyFile.getAbsolutePath());
+        when(rmqConfigure.getDashboardRawRetentionDays()).thenReturn(7);
+        when(rmqConfigure.getDashboardFiveMinuteRetentionDays()).thenReturn(90);
+        when(rmqConfigure.isEnableDashBoardCollect()).thenReturn(true);
+
+        dashboardCollectTask.compactData();
+
+        // the legacy files and the raw points are gone, the day is served from its 5-minute buckets
+        Assert.assertFalse(brokerLegacyFile.exists());
+        Assert.assertFalse(topicLegacyFile.exists());
+        Assert.assertFalse(new File(storeDir, oldDay.toString()).exists());
+        List<String> brokerData = dashboardCollectService.getBrokerCache(oldDay.toString()).get("broker-a:0");
+        Assert.assertEquals(2, brokerData.size());
+        Assert.assertEquals(dayStart + ",2.00000", brokerData.get(0));
+        List<String> topicData = dashboardCollectService.getTopicCache(oldDay.toString()).get("topic_test");
+        Assert.assertEquals(2, topicData.size());
+        // rates are averaged, the counters keep their last value
+        Assert.assertEquals((dayStart + TimeUnit.MINUTES.toMillis(5)) + ",7.00000,1009,0.50000,509", topicData.get(1));
+        Assert.assertEquals(2, dashboardCollectService.getSeries(oldDay.toString(), SeriesSchema.TOPIC, "topic_test").size());
     }
 
     @After
@@ -207,6 +363,30 @@ public class DashboardCollectTaskTest extends BaseTest {
         if (topicFile != null && topicFile.exists()) {
             topicFile.delete();
         }
+        if (storeDir != null) {
+            FileSystemUtils.deleteRecursively(storeDir);
+            for (RollupTier tier : RollupTier.values()) {
+                FileSystemUtils.deleteRecursively(new File(storeDir.getParentFile(), tier.getDirName()));
+            }
+        }
+    }
+
+    private ConsumeStatsList createConsumeStatsList(long brokerOffset, long consumerOffset) {
+        Map<String, List<ConsumeStats>> groupStats = new HashMap<>();
+        for (String topic : new String[] {"topic_test", "%RETRY%group_test"}) {
+            ConsumeStats consumeStats = new ConsumeStats();
+            for (int queueId = 0; queueId < 2; queueId++) {
+                OffsetWrapper offsetWrapper = new OffsetWrapper();
+                offsetWrapper.setBrokerOffset(brokerOffset / 2);
+                offsetWrapper.setConsumerOffset(consumerOffset / 2);
+                consumeStats.getOffsetTable().put(new MessageQueue(topic, "broker-a", queueId), offsetWrapper);
+            }
+            consumeStats.setConsumeTps(1.5);
+            groupStats.computeIfAbsent("group_test", key -> Lists.newArrayList()).add(consumeStats);
+        }
+        ConsumeStatsList consumeStatsList = new ConsumeStatsList();
+        consumeStatsList.setConsumeStatsList(Lists.newArrayList(Collections.singletonList(groupStats)));
+        return consumeStatsList;
     }
 
     private void mockBrokerFileExistBeforeSaveData() throws Exception {
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.task;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.rocketmq.dashboard.BaseTest;
+import org.apache.rocketmq.dashboard.admin.BrokerFanOut;
+import org.apache.rocketmq.dashboard.config.CollectExecutorConfig;
+import org.apache.rocketmq.dashboard.config.RMQConfigure;
+import org.apache.rocketmq.dashboard.service.impl.DashboardCollectServiceImpl;
+import org.apache.rocketmq.dashboard.store.SeriesBuffer;
+import org.apache.rocketmq.dashboard.util.MockObjectUtil;
+import org.apache.rocketmq.remoting.protocol.body.GroupList;
+import org.apache.rocketmq.tools.admin.MQAdminExt;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TopicCollectSchedulerTest extends BaseTest {
+
+    @Spy
+    private TopicCollectScheduler topicCollectScheduler;
+
+    @Spy
+    private DashboardCollectServiceImpl dashboardCollectService;
+
+    @Mock
+    private MQAdminExt mqAdminExt;
+
+    @Mock
+    private RMQConfigure rmqConfigure;
+
+    @Spy
+    private BrokerFanOut brokerFanOut;
+
+    private CollectExecutorConfig collectExecutorConfig = new CollectExecutorConfig();
+
+    private ExecutorService collectExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private List<String> collectOrder = Collections.synchronizedList(Lists.newArrayList());
+
+    @Before
+    public void init() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(rmqConfigure.getDashboardCollectDeadlineMillis()).thenReturn(5000L);
+        when(mqAdminExt.examineTopicRouteInfo(anyString())).thenAnswer(invocation -> {
+            collectOrder.add(invocation.getArgument(0));
+            return MockObjectUtil.createTopicRouteData();
+        });
+        when(mqAdminExt.queryTopicConsumeByWho(anyString())).thenReturn(new GroupList());
+        when(mqAdminExt.viewBrokerStatsData(anyString(), anyString(), anyString())).thenReturn(MockObjectUtil.createBrokerStatsData());
+        autoInjection();
+    }
+
+    @After
+    public void after() {
+        collectExecutor.shutdown();
+    }
+
+    @Test
+    public void testHotTopicsFirst() {
+        SeriesBuffer hot = dashboardCollectService.getTopicMap().getUnchecked("topic_hot");
+        hot.append(0, Double.doubleToRawLongBits(100), 0, Double.doubleToRawLongBits(50), 0);
+        SeriesBuffer cold = dashboardCollectService.getTopicMap().getUnchecked("topic_cold");
+        cold.append(0, Double.doubleToRawLongBits(1), 0, Double.doubleToRawLongBits(0), 0);
+
+        Assert.assertTrue(topicCollectScheduler.runRound(() -> Sets.newHashSet("topic_new", "topic_cold", "topic_hot")));
+        Assert.assertEquals(Lists.newArrayList("topic_hot", "topic_cold", "topic_new"), collectOrder);
+        Assert.assertEquals(1, meterRegistry.get("rocketmq.dashboard.collect.round.completion").gauge().value(), 0);
+        Assert.assertEquals(3, meterRegistry.get("rocketmq.dashboard.collect.round.topics").gauge().value(), 0);
+        Assert.assertEquals(2, hot.size());
+    }
+
+    @Test
+    public void testSkipWhileRunning() {
+        when(rmqConfigure.getDashboardCollectDeadlineMillis()).thenReturn(200L);
+        // an executor that never runs its tasks keeps the first round in flight
+        ExecutorService stuckExecutor = mock(ExecutorService.class);
+        ReflectionTestUtils.setField(topicCollectScheduler, "collectExecutor", stuckExecutor);
+
+        Assert.assertTrue(topicCollectScheduler.runRound(() -> Sets.newHashSet("topic_a", "topic_b")));
+        Assert.assertEquals(0, meterRegistry.get("rocketmq.dashboard.collect.round.completion").gauge().value(), 0);
+        Assert.assertTrue(meterRegistry.get("rocketmq.dashboard.collect.round.lag").gauge().value() >= 200);
+
+        Assert.assertFalse(topicCollectScheduler.runRound(() -> Sets.newHashSet("topic_a")));
+        Assert.assertEquals(1, meterRegistry.get("rocketmq.dashboard.collect.round.skipped").counter().count(), 0);
+    }
+}
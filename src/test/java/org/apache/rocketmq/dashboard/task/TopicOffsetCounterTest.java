@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.dashboard.task;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class TopicOffsetCounterTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    @Test
+    public void testRateAndCounts() {
+        TopicOffsetCounter counter = new TopicOffsetCounter();
+        counter.update(0, 1000, 500);
+        Assert.assertEquals(0, counter.getPutTps(), 0);
+        Assert.assertEquals(0, counter.getPutCount());
+
+        counter.update(MINUTE, 1600, 800);
+        Assert.assertEquals(10, counter.getPutTps(), 0);
+        Assert.assertEquals(600, counter.getPutCount());
+        Assert.assertEquals(300, counter.getConsumeCount());
+
+        // a consumer offset reset does not count negative messages
+        counter.update(2 * MINUTE, 1600, 100);
+        Assert.assertEquals(0, counter.getPutTps(), 0);
+        Assert.assertEquals(300, counter.getConsumeCount());
+    }
+
+    @Test
+    public void testCountsCoverOneDay() {
+        TopicOffsetCounter counter = new TopicOffsetCounter();
+        long hour = TimeUnit.HOURS.toMillis(1);
+        for (int i = 0; i <= 30; i++) {
+            counter.update(i * hour, i * 100L, 0);
+        }
+        // the window starts at the checkpoint taken 24 hours ago
+        Assert.assertEquals(2400, counter.getPutCount());
+    }
+}